@@ -5,30 +5,138 @@
 
 package com.zimbra.common.io;
 
-import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Objects;
 
 /**
+ * Buffered line-oriented input stream for protocol servers.
+ * <p>
+ * Unlike {@link java.io.BufferedInputStream}, whose subclasses read under the object monitor, this class does no
+ * locking: an instance belongs to the single thread serving its connection. That keeps a handler blocked reading an
+ * idle connection from pinning its carrier when it runs on a virtual thread. Mark and reset are not supported.
+ *
  * @since 2004. 10. 26.
  * @author jhahm
  */
-public class TcpServerInputStream extends BufferedInputStream {
+public class TcpServerInputStream extends FilterInputStream {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
 
     StringBuilder buffer;
     protected static final int CR = 13;
     protected static final int LF = 10;
 
+    private final byte[] buf;
+    private int pos;
+    private int count;
+
     public TcpServerInputStream(InputStream in) {
-        super(in);
-        buffer = new StringBuilder(128);
+        this(in, DEFAULT_BUFFER_SIZE);
     }
 
     public TcpServerInputStream(InputStream in, int size) {
-        super(in, size);
+        super(in);
+        if (size <= 0) {
+            throw new IllegalArgumentException("Buffer size <= 0");
+        }
+        buf = new byte[size];
         buffer = new StringBuilder(128);
     }
 
+    private int fill() throws IOException {
+        pos = 0;
+        count = 0;
+        int n = in.read(buf, 0, buf.length);
+        if (n > 0) {
+            count = n;
+        }
+        return n;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos >= count && fill() <= 0) {
+            return -1;
+        }
+        return buf[pos++] & 0xff;
+    }
+
+    /**
+     * Reads up to {@code len} bytes, continuing past the first chunk only while more input is available without
+     * blocking (the same contract as {@link java.io.BufferedInputStream#read(byte[], int, int)}).
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        int n = 0;
+        while (true) {
+            int nread = readChunk(b, off + n, len - n);
+            if (nread <= 0) {
+                return n == 0 ? nread : n;
+            }
+            n += nread;
+            if (n >= len || in.available() <= 0) {
+                return n;
+            }
+        }
+    }
+
+    private int readChunk(byte[] b, int off, int len) throws IOException {
+        int avail = count - pos;
+        if (avail <= 0) {
+            // large reads bypass the buffer
+            if (len >= buf.length) {
+                return in.read(b, off, len);
+            }
+            if (fill() <= 0) {
+                return -1;
+            }
+            avail = count;
+        }
+        int n = Math.min(avail, len);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        int avail = count - pos;
+        if (avail <= 0) {
+            return in.skip(n);
+        }
+        long skipped = Math.min(avail, n);
+        pos += (int) skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (count - pos) + in.available();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
     /**
      * Reads a line from the stream.  A line is terminated with either
      * CRLF or bare LF.  (This is different from the behavior of
@@ -138,6 +138,14 @@ public final class LC {
 
   public static final KnownKey zimbra_nio_file_copy_chunk_size_kb = KnownKey.newKey(512); // KB
   public static final KnownKey zimbra_blob_input_stream_buffer_size_kb = KnownKey.newKey(1); // KB
+  public static final KnownKey zimbra_blob_positional_read_enabled = KnownKey.newKey(true);
+  public static final KnownKey zimbra_fd_cache_concurrency_level = KnownKey.newKey(16);
+
+  public static final KnownKey zimbra_message_cache_max_bytes =
+      KnownKey.newKey(256L * 1024 * 1024); // bytes
+
+  public static final KnownKey zimbra_message_cache_expanded_max_bytes =
+      KnownKey.newKey(64L * 1024 * 1024); // bytes
 
   @Supported
   public static final KnownKey zimbra_mailbox_manager_hardref_cache = KnownKey.newKey(2500);
@@ -148,6 +156,8 @@ public final class LC {
 
   @Supported public static final KnownKey zimbra_mailbox_galsync_cache = KnownKey.newKey(10000);
 
+  public static final KnownKey zimbra_mailbox_item_cache_global_max = KnownKey.newKey(200000);
+
   @Supported
   public static final KnownKey zimbra_mailbox_change_checkpoint_frequency = KnownKey.newKey(100);
 
@@ -163,6 +173,9 @@ public final class LC {
 
   @Supported public static final KnownKey zimbra_reindex_threads = KnownKey.newKey(10);
 
+  public static final KnownKey zimbra_index_parse_threads =
+      KnownKey.newKey(Runtime.getRuntime().availableProcessors());
+
   @Supported public static final KnownKey zimbra_index_max_readers = KnownKey.newKey(35);
 
   @Supported public static final KnownKey zimbra_index_max_writers = KnownKey.newKey(100);
@@ -183,6 +196,8 @@ public final class LC {
   @Supported public static final KnownKey zimbra_index_max_transaction_items = KnownKey.newKey(100);
 
   public static final KnownKey zimbra_index_lucene_io_impl = KnownKey.newKey("nio");
+  public static final KnownKey zimbra_index_lucene_mmap_hot_searches = KnownKey.newKey(20);
+  public static final KnownKey zimbra_index_lucene_mmap_hot_window = KnownKey.newKey(300);
 
   @Supported public static final KnownKey zimbra_index_lucene_merge_policy = KnownKey.newKey(true);
 
@@ -208,6 +223,15 @@ public final class LC {
   @Supported
   public static final KnownKey zimbra_index_lucene_max_terms_per_query = KnownKey.newKey(50000);
 
+  public static final KnownKey zimbra_index_lucene_nrt = KnownKey.newKey(true);
+
+  public static final KnownKey zimbra_search_result_cache_max_total_hits =
+      KnownKey.newKey(100000);
+  public static final KnownKey zimbra_search_result_cache_max_hits = KnownKey.newKey(1000);
+  public static final KnownKey zimbra_search_result_cache_ttl = KnownKey.newKey(60);
+  public static final KnownKey zimbra_search_remote_threads = KnownKey.newKey(8);
+  public static final KnownKey zimbra_search_remote_timeout = KnownKey.newKey(30000);
+
   @Supported
   public static final KnownKey zimbra_index_elasticsearch_url_base =
       KnownKey.newKey("http://localhost:9200/");
@@ -243,6 +267,9 @@ public final class LC {
   @Supported
   public static final KnownKey zimbra_session_max_pending_notifications = KnownKey.newKey(400);
 
+  public static final KnownKey zimbra_session_notification_fragment_cache_size =
+      KnownKey.newKey(10000);
+
   @Supported public static final KnownKey zimbra_converter_enabled_uuencode = KnownKey.newKey(true);
 
   @Supported public static final KnownKey zimbra_converter_depth_max = KnownKey.newKey(100);
@@ -262,6 +289,8 @@ public final class LC {
 
   public static final KnownKey zimbra_servlet_output_stream_buffer_size = KnownKey.newKey(5120);
 
+  public static final KnownKey soap_batch_parallel_threads = KnownKey.newKey(8);
+
   public static final KnownKey rest_response_cache_control_value =
       KnownKey.newKey("no-store, no-cache");
 
@@ -361,6 +390,11 @@ public final class LC {
 
   @Supported public static final KnownKey ldap_cache_account_maxage = KnownKey.newKey(15);
 
+  // the negative account cache is off by default: an account created on another server is
+  // reported as non-existing here until the entry expires
+  public static final KnownKey ldap_cache_account_negative_maxsize = KnownKey.newKey(0);
+  public static final KnownKey ldap_cache_account_negative_maxage = KnownKey.newKey(1);
+
   @Supported public static final KnownKey ldap_cache_cos_maxsize = KnownKey.newKey(100);
 
   @Supported public static final KnownKey ldap_cache_cos_maxage = KnownKey.newKey(15);
@@ -568,6 +602,7 @@ public final class LC {
       KnownKey.newKey("${zimbra_tmp_directory}/calcache");
 
   @Supported public static final KnownKey calendar_cache_lru_size = KnownKey.newKey(1000);
+  public static final KnownKey calendar_cache_max_instances = KnownKey.newKey(200000);
 
   @Supported public static final KnownKey calendar_cache_range_month_from = KnownKey.newKey(0);
 
@@ -583,6 +618,11 @@ public final class LC {
   public static final KnownKey nio_imap_enabled = KnownKey.newKey(true);
   public static final KnownKey nio_pop3_enabled = KnownKey.newKey(true);
 
+  // Run TCP protocol handlers on virtual threads; takes precedence over the NIO servers when enabled.
+  public static final KnownKey imap_virtual_threads_enabled = KnownKey.newKey(false);
+  public static final KnownKey pop3_virtual_threads_enabled = KnownKey.newKey(false);
+  public static final KnownKey lmtp_virtual_threads_enabled = KnownKey.newKey(false);
+
   public static final KnownKey nio_max_write_queue_size = KnownKey.newKey(10000);
 
   public static final KnownKey imap_max_request_size = KnownKey.newKey(10 * 1024);
@@ -1017,6 +1057,7 @@ public final class LC {
 
   public static final KnownKey zimbra_lmtp_validate_messages = KnownKey.newKey(true);
   public static final KnownKey zimbra_lmtp_max_line_length = KnownKey.newKey(10240);
+  public static final KnownKey zimbra_lmtp_delivery_threads = KnownKey.newKey(8);
 
   public static final KnownKey data_source_scheduling_enabled = KnownKey.newKey(true);
   public static final KnownKey data_source_eas_sync_email = KnownKey.newKey(true);
@@ -1148,6 +1189,9 @@ public final class LC {
 
   @Supported public static final KnownKey compute_aggregate_quota_threads = KnownKey.newKey(10);
 
+  public static final KnownKey zimbra_filter_parsed_script_cache_size = KnownKey.newKey(1000);
+  public static final KnownKey zimbra_filter_sieve_pattern_cache_size = KnownKey.newKey(10000);
+
   // Remove this in 8.0.
   public static final KnownKey filter_null_env_sender_for_dsn_redirect = KnownKey.newKey(true);
 
@@ -1428,6 +1428,10 @@ public final class AdminConstants {
   // index stats
   public static final String A_MAX_DOCS = "maxDocs";
   public static final String A_DELETED_DOCS = "deletedDocs";
+  public static final String A_BYTES_READ = "bytesRead";
+  public static final String A_BYTES_WRITTEN = "bytesWritten";
+  public static final String A_FILES_OPENED = "filesOpened";
+  public static final String A_MAPPED = "mapped";
 
   // mailbox table
   public static final String A_MT_ID = "id";
@@ -5,9 +5,11 @@
 
 package com.zimbra.common.soap;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -30,6 +32,7 @@ import com.google.common.io.Files;
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.StringUtil;
 import com.zimbra.common.util.ZimbraLog;
+import com.zimbra.common.util.ZimbraServletOutputStream;
 
 /**
  * @since Mar 16, 2005
@@ -462,13 +465,31 @@ public abstract class Element implements Cloneable {
 
     // dumping the element hierarchy
     public byte[] toUTF8() {
-      return toString().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            output(out);
+        } catch (IOException e) {
+            // should really not happen with a ByteArrayOutputStream, just log it
+            ZimbraLog.soap.error("Caught IOException: ", e);
+        }
+        return out.toByteArray();
     }
 
     public void output(Appendable out) throws IOException {
         marshal(out);
     }
 
+    /**
+     * Serializes this <tt>Element</tt> as UTF-8 to an <code>OutputStream</code>, encoding it as it
+     * is marshaled instead of building the whole document as a String first.  The stream is not
+     * flushed.
+     */
+    public void output(OutputStream out) throws IOException {
+        ZimbraServletOutputStream appendable = new ZimbraServletOutputStream(out);
+        marshal(appendable);
+        appendable.flush();
+    }
+
     public abstract String prettyPrint();
 
     public abstract String prettyPrint(boolean safe);
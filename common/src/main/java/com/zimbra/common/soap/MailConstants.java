@@ -1022,6 +1022,12 @@ public final class MailConstants {
   public static final String E_QUERY = "query";
   public static final String E_HIT_MIMEPART = "hp";
   public static final String E_SUGEST = "suggest";
+  public static final String E_PARTIAL = "partial";
+  public static final String A_PARTIAL_ACCOUNT = "acct";
+  public static final String A_PARTIAL_SERVER = "server";
+  public static final String A_PARTIAL_REASON = "reason";
+  public static final String PARTIAL_REASON_TIMEOUT = "timeout";
+  public static final String PARTIAL_REASON_ERROR = "error";
   public static final String A_QUERY = "query";
   public static final String A_GROUPBY = "groupBy";
   public static final String A_SEARCH_TYPES = "types";
@@ -233,6 +233,15 @@ public abstract class SoapTransport {
         viaHolder.get().removeFirst();
     }
 
+    /**
+     * Returns the {@code via} header value of the current thread context, or null if there is none.
+     *
+     * @see #setVia(String)
+     */
+    public static String getVia() {
+        return viaHolder.get().peek();
+    }
+
     /** Sets the version of SOAP to use when generating requests. */
     public void setRequestProtocol(SoapProtocol proto) {
         if (proto != null)
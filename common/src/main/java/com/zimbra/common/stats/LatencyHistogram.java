@@ -0,0 +1,76 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.common.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with fixed, millisecond based bucket boundaries. Each bucket counts
+ * the samples whose latency is less than or equal to its upper bound; the last bucket collects
+ * everything above the largest bound.
+ */
+public class LatencyHistogram {
+
+  /** Upper bounds (inclusive, in milliseconds) of every bucket but the last one. */
+  private static final long[] BOUNDS_MS = {1, 5, 10, 50, 100, 500, 1000, 5000, 10000};
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_MS.length + 1);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalNanos = new AtomicLong();
+
+  /** Returns the bucket column names, e.g. {@code le_1ms}, ..., {@code gt_10000ms}. */
+  public static List<String> getBucketNames() {
+    List<String> names = new ArrayList<>(BOUNDS_MS.length + 1);
+    for (long bound : BOUNDS_MS) {
+      names.add("le_" + bound + "ms");
+    }
+    names.add("gt_" + BOUNDS_MS[BOUNDS_MS.length - 1] + "ms");
+    return names;
+  }
+
+  /** Records one sample of the given duration in nanoseconds. */
+  public void record(long nanos) {
+    long millis = TimeUnit.NANOSECONDS.toMillis(Math.max(nanos, 0));
+    int bucket = 0;
+    while (bucket < BOUNDS_MS.length && millis > BOUNDS_MS[bucket]) {
+      bucket++;
+    }
+    buckets.incrementAndGet(bucket);
+    count.incrementAndGet();
+    totalNanos.addAndGet(nanos);
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  /** Returns the average latency in milliseconds since the last call to {@link #reset}. */
+  public double getAverageMillis() {
+    long samples = count.get();
+    return samples == 0 ? 0.0 : (double) totalNanos.get() / samples / 1_000_000.0;
+  }
+
+  /** Returns the number of samples in each bucket, in the order of {@link #getBucketNames()}. */
+  public long[] getBuckets() {
+    long[] snapshot = new long[buckets.length()];
+    for (int i = 0; i < snapshot.length; i++) {
+      snapshot[i] = buckets.get(i);
+    }
+    return snapshot;
+  }
+
+  public void reset() {
+    for (int i = 0; i < buckets.length(); i++) {
+      buckets.set(i, 0);
+    }
+    count.set(0);
+    totalNanos.set(0);
+  }
+}
@@ -575,6 +575,24 @@ public final class ZimbraLog {
     ZimbraLog.addToContext(C_OPROTO, protocol);
   }
 
+  /**
+   * Returns a copy of the current thread's logging context, to carry it over to another thread
+   * with {@link #setContext}.
+   */
+  public static Map<String, String> getContext() {
+    Map<String, String> contextMap = sContextMap.get();
+    return contextMap == null ? Collections.emptyMap() : new LinkedHashMap<>(contextMap);
+  }
+
+  /** Replaces the current thread's logging context with a copy of the given one. */
+  public static void setContext(Map<String, String> context) {
+    clearContext();
+    if (!context.isEmpty()) {
+      sContextMap.set(new LinkedHashMap<>(context));
+      updateContextString();
+    }
+  }
+
   /** Clears the current thread's logging context. */
   public static void clearContext() {
     Map<String, String> contextMap = sContextMap.get();
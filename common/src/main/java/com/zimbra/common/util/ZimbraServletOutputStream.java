@@ -6,9 +6,7 @@
 package com.zimbra.common.util;
 
 import java.io.IOException;
-
-import java.nio.charset.StandardCharsets;
-import javax.servlet.ServletOutputStream;
+import java.io.OutputStream;
 
 import com.zimbra.common.localconfig.LC;
 
@@ -47,57 +45,108 @@ import com.zimbra.common.localconfig.LC;
  * This wrapper implements the append methods by converting data to UTF-8 and 
  * write to the ServletOutputStream.  This way IOexception won't be eaten(problem of doing 1), 
  * and we don't interfere with jetty's process in deciding on the transfer encoding(problem of doing 2).
+ *
+ * Characters are encoded straight into a byte buffer, so that marshaling a large response
+ * doesn't create an intermediate String for every buffer full of data.  A surrogate pair
+ * split across two appends is encoded correctly; unpaired surrogates are written as '?',
+ * like String.getBytes() does.
  */
 
 public class ZimbraServletOutputStream implements Appendable {
 
     private static final int BUFFER_SIZE = LC.zimbra_servlet_output_stream_buffer_size.intValueWithinRange(512, 20480);
-    ServletOutputStream mOut;
-    
-    // buffer to avoid frequent toString().getBytes()
-    StringBuilder mBuffer = new StringBuilder(BUFFER_SIZE);
-    
-    public ZimbraServletOutputStream(ServletOutputStream out) {
+    private final OutputStream mOut;
+
+    private final byte[] mBuffer = new byte[BUFFER_SIZE];
+    private int mCount;
+
+    // high surrogate of a pair whose low surrogate hasn't been appended yet, 0 if none
+    private char mHighSurrogate;
+
+    public ZimbraServletOutputStream(OutputStream out) {
         mOut = out;
     }
-    
+
     public Appendable append(CharSequence csq) throws IOException {
+        if (csq == null) {
+            csq = "null";
+        }
         append(csq, 0, csq.length());
         return this;
     }
 
     public Appendable append(char c) throws IOException {
-        if (mBuffer.length() + 1 > BUFFER_SIZE)
-            flush();
-        mBuffer.append(c);
+        encode(c);
         return this;
     }
 
     public Appendable append(CharSequence csq, int start, int end) throws IOException {
-        int lenToAppend = end - start;
-        
-        if (lenToAppend >= BUFFER_SIZE) {
-            // data to append itself exceeds our threshold, don't let the buffer grow(realloc)
-            flush(); // flush existing data in the buffer
-            write(csq.subSequence(start, end).toString()); // then directly flush this append data out without buffering
-        } else {
-            if (mBuffer.length() + lenToAppend > BUFFER_SIZE)
-                flush();
-            mBuffer.append(csq, start, end);
+        if (csq == null) {
+            csq = "null";
+        }
+        for (int i = start; i < end; i++) {
+            char c = csq.charAt(i);
+            if (c < 0x80 && mHighSurrogate == 0 && mCount < BUFFER_SIZE) {
+                mBuffer[mCount++] = (byte) c;
+            } else {
+                encode(c);
+            }
         }
-        
         return this;
     }
-    
-    private void write(String str) throws IOException {
-        mOut.write(str.getBytes(StandardCharsets.UTF_8));
+
+    private void encode(char c) throws IOException {
+        if (mCount + 4 > BUFFER_SIZE) {
+            writeBuffer();
+        }
+        if (mHighSurrogate != 0) {
+            char high = mHighSurrogate;
+            mHighSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int cp = Character.toCodePoint(high, c);
+                mBuffer[mCount++] = (byte) (0xF0 | (cp >> 18));
+                mBuffer[mCount++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                mBuffer[mCount++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                mBuffer[mCount++] = (byte) (0x80 | (cp & 0x3F));
+                return;
+            }
+            mBuffer[mCount++] = '?';
+            encode(c);
+            return;
+        }
+        if (c < 0x80) {
+            mBuffer[mCount++] = (byte) c;
+        } else if (c < 0x800) {
+            mBuffer[mCount++] = (byte) (0xC0 | (c >> 6));
+            mBuffer[mCount++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            mHighSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            mBuffer[mCount++] = '?';
+        } else {
+            mBuffer[mCount++] = (byte) (0xE0 | (c >> 12));
+            mBuffer[mCount++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            mBuffer[mCount++] = (byte) (0x80 | (c & 0x3F));
+        }
     }
-    
+
+    private void writeBuffer() throws IOException {
+        if (mCount > 0) {
+            mOut.write(mBuffer, 0, mCount);
+            mCount = 0;
+        }
+    }
+
+    /**
+     * Writes out the buffered data, once all the data has been appended.  Doesn't flush the
+     * underlying stream, see above.
+     */
     public void flush() throws IOException {
-        if (mBuffer.length() > 0) {
-            write(mBuffer.toString());
-            mBuffer.setLength(0);
+        if (mHighSurrogate != 0) {
+            mHighSurrogate = 0;
+            mBuffer[mCount++] = '?';
         }
+        writeBuffer();
     }
 
 }
@@ -0,0 +1,57 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.common.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+public class TcpServerInputStreamTest {
+
+  private static TcpServerInputStream stream(String data, int size) {
+    return new TcpServerInputStream(
+        new ByteArrayInputStream(data.getBytes(StandardCharsets.US_ASCII)), size);
+  }
+
+  @Test
+  void readsLinesAcrossBufferBoundaries() throws IOException {
+    TcpServerInputStream in = stream("a1 NOOP\r\nbare lf\nlast", 4);
+
+    assertEquals("a1 NOOP", in.readLine());
+    assertEquals("bare lf", in.readLine());
+    assertNull(in.readLine());
+  }
+
+  @Test
+  void readsLiteralAfterLine() throws IOException {
+    TcpServerInputStream in = stream("a1 APPEND {10}\r\n0123456789tail\r\n", 8);
+
+    assertEquals("a1 APPEND {10}", in.readLine());
+    byte[] literal = new byte[10];
+    assertEquals(10, in.read(literal, 0, literal.length));
+    assertArrayEquals("0123456789".getBytes(StandardCharsets.US_ASCII), literal);
+    assertEquals("tail", in.readLine());
+    assertEquals(-1, in.read(literal, 0, literal.length));
+  }
+
+  @Test
+  void skipsBufferedThenUnderlyingBytes() throws IOException {
+    TcpServerInputStream in = stream("x\r\n0123456789abcdef\r\n", 8);
+
+    assertEquals("x", in.readLine());
+    long skipped = 0;
+    while (skipped < 16) {
+      skipped += in.skip(16 - skipped);
+    }
+    assertEquals("", in.readLine());
+    assertEquals(0, in.available());
+  }
+}
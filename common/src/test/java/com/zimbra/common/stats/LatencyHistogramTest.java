@@ -0,0 +1,45 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.common.stats;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  void recordsSamplesInMatchingBuckets() {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    histogram.record(TimeUnit.MICROSECONDS.toNanos(200));
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(7));
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+    histogram.record(TimeUnit.SECONDS.toNanos(30));
+
+    assertEquals(4, histogram.getCount());
+    assertArrayEquals(new long[] {1, 0, 2, 0, 0, 0, 0, 0, 0, 1}, histogram.getBuckets());
+  }
+
+  @Test
+  void bucketNamesMatchBuckets() {
+    assertEquals(new LatencyHistogram().getBuckets().length, LatencyHistogram.getBucketNames().size());
+    assertEquals("gt_10000ms", LatencyHistogram.getBucketNames().get(9));
+  }
+
+  @Test
+  void resetClearsSamples() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(2));
+
+    histogram.reset();
+
+    assertEquals(0, histogram.getCount());
+    assertEquals(0.0, histogram.getAverageMillis());
+  }
+}
@@ -5,8 +5,10 @@
 package com.zimbra.common.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
+import java.util.Map;
 import java.util.Objects;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -55,4 +57,24 @@ class ZimbraLogTest {
     final ExtendedLogger test = LogManager.getContext(false).getLogger("test");
     assertEquals(Level.DEBUG, test.getLevel());
   }
+
+  @Test
+  void shouldCarryContextOverToAnotherThread() throws Exception {
+    ZimbraLog.clearContext();
+    ZimbraLog.addAccountNameToContext("user@example.com");
+    final Map<String, String> context = ZimbraLog.getContext();
+    final String[] seen = new String[1];
+    final Thread thread =
+        new Thread(
+            () -> {
+              ZimbraLog.setContext(context);
+              seen[0] = ZimbraLog.getContextString();
+              ZimbraLog.clearContext();
+            });
+    thread.start();
+    thread.join();
+    assertEquals(ZimbraLog.getContextString(), seen[0]);
+    ZimbraLog.clearContext();
+    assertTrue(ZimbraLog.getContext().isEmpty());
+  }
 }
@@ -0,0 +1,83 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.common.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import com.zimbra.common.soap.Element;
+import com.zimbra.common.soap.Element.JSONElement;
+import com.zimbra.common.soap.Element.XMLElement;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class ZimbraServletOutputStreamTest {
+
+  private static final String[] SAMPLES = {
+    "plain ascii", "café", "日本語", "emoji 😀!", "lone \ud83d high", "lone \ude00 low"
+  };
+
+  private static byte[] encode(String... chunks) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ZimbraServletOutputStream out = new ZimbraServletOutputStream(bytes);
+    for (String chunk : chunks) {
+      out.append(chunk);
+    }
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  @Test
+  void encodesLikeStringGetBytes() throws IOException {
+    for (String sample : SAMPLES) {
+      assertArrayEquals(sample.getBytes(StandardCharsets.UTF_8), encode(sample), sample);
+    }
+  }
+
+  @Test
+  void surrogatePairSplitAcrossAppends() throws IOException {
+    String emoji = "😀";
+    assertArrayEquals(
+        emoji.getBytes(StandardCharsets.UTF_8), encode(emoji.substring(0, 1), emoji.substring(1)));
+  }
+
+  @Test
+  void encodesAcrossBufferBoundaries() throws IOException {
+    Random random = new Random(42);
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < 100_000) {
+      sb.append(SAMPLES[random.nextInt(SAMPLES.length)]);
+    }
+    String text = sb.toString();
+    // appended in chunks of random size, some bigger than the buffer
+    String[] chunks = new String[200];
+    int start = 0;
+    for (int i = 0; i < chunks.length - 1; i++) {
+      int end = Math.min(text.length(), start + random.nextInt(30_000) / (1 + random.nextInt(20)));
+      chunks[i] = text.substring(start, end);
+      start = end;
+    }
+    chunks[chunks.length - 1] = text.substring(start);
+    assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), encode(chunks));
+  }
+
+  @Test
+  void elementOutputMatchesToString() throws IOException {
+    for (Element root : new Element[] {new XMLElement("root"), new JSONElement("root")}) {
+      for (int i = 0; i < 1000; i++) {
+        root.addNonUniqueElement("m")
+            .addAttribute("id", i)
+            .addAttribute("su", "subject é😀 <" + i + ">", Element.Disposition.CONTENT);
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      root.output(bytes);
+      assertArrayEquals(root.toString().getBytes(StandardCharsets.UTF_8), bytes.toByteArray());
+      assertArrayEquals(bytes.toByteArray(), root.toUTF8());
+    }
+  }
+}
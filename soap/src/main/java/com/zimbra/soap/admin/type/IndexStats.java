@@ -11,6 +11,7 @@ import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlType;
 
 import com.zimbra.common.soap.AdminConstants;
+import com.zimbra.soap.type.ZmBoolean;
 
 @XmlAccessorType(XmlAccessType.NONE)
 @XmlType(propOrder = {})
@@ -29,6 +30,34 @@ public class IndexStats {
     @XmlAttribute(name=AdminConstants.A_DELETED_DOCS /* totalSize */, required=true)
     private final int numDeletedDocs;
 
+    /**
+     * @zm-api-field-tag bytes-read
+     * @zm-api-field-description bytes read from the index since the mailbox was loaded
+     */
+    @XmlAttribute(name=AdminConstants.A_BYTES_READ /* bytesRead */, required=false)
+    private Long bytesRead;
+
+    /**
+     * @zm-api-field-tag bytes-written
+     * @zm-api-field-description bytes written to the index since the mailbox was loaded
+     */
+    @XmlAttribute(name=AdminConstants.A_BYTES_WRITTEN /* bytesWritten */, required=false)
+    private Long bytesWritten;
+
+    /**
+     * @zm-api-field-tag files-opened
+     * @zm-api-field-description index files opened since the mailbox was loaded
+     */
+    @XmlAttribute(name=AdminConstants.A_FILES_OPENED /* filesOpened */, required=false)
+    private Long filesOpened;
+
+    /**
+     * @zm-api-field-tag mapped
+     * @zm-api-field-description whether the index files are currently memory mapped
+     */
+    @XmlAttribute(name=AdminConstants.A_MAPPED /* mapped */, required=false)
+    private ZmBoolean mapped;
+
     /**
      * no-argument constructor wanted by JAXB
      */
@@ -45,4 +74,13 @@ public class IndexStats {
     public int getMaxDocs() { return maxDocs; }
     public int getNumDeletedDocs() { return numDeletedDocs; }
 
+    public void setBytesRead(Long bytesRead) { this.bytesRead = bytesRead; }
+    public void setBytesWritten(Long bytesWritten) { this.bytesWritten = bytesWritten; }
+    public void setFilesOpened(Long filesOpened) { this.filesOpened = filesOpened; }
+    public void setMapped(Boolean mapped) { this.mapped = ZmBoolean.fromBool(mapped); }
+    public Long getBytesRead() { return bytesRead; }
+    public Long getBytesWritten() { return bytesWritten; }
+    public Long getFilesOpened() { return filesOpened; }
+    public Boolean getMapped() { return ZmBoolean.toBool(mapped); }
+
 }
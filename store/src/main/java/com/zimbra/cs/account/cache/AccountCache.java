@@ -12,154 +12,172 @@
 package com.zimbra.cs.account.cache;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
-import org.apache.commons.lang.StringUtils;
-
-import com.zimbra.common.util.MapUtil;
-import com.zimbra.common.stats.Counter;
-import com.zimbra.common.stats.HitRateCounter;
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
 import com.zimbra.cs.account.Account;
 import com.zimbra.cs.account.Provisioning;
 
-public class AccountCache implements IAccountCache {
-
-    private Map<String, CacheEntry> mNameCache;
-    private Map<String, CacheEntry> mIdCache;
-    private Map<String, CacheEntry> mAliasCache;
-    private Map<String, CacheEntry> mForeignPrincipalCache;
-    private Map<String, CacheEntry> mOldNameCache;
-    private Counter mHitRate = new HitRateCounter();
-
-    private long mRefreshTTL;
+/**
+ * Accounts indexed by id, name, alias, foreign principal and old mail address.
+ *
+ * <p>Lookups don't take any lock, see {@link ConcurrentEntryCache}. Names that are known not to
+ * exist are kept in a separate negative cache, so that repeated lookups of unknown addresses
+ * (typically recipients of incoming mail) don't each cost an LDAP search.
+ */
+public class AccountCache extends ConcurrentEntryCache<Account> implements IAccountCache {
 
-    static class CacheEntry {
-        long mLifetime;
-        Account mEntry;
+    private static final int NAME = 0;
+    private static final int ALIAS = 1;
+    private static final int FOREIGN_PRINCIPAL = 2;
+    private static final int OLD_NAME = 3;
 
-        CacheEntry(Account entry, long expires) {
-            mEntry = entry;
-            mLifetime = System.currentTimeMillis() + expires;
-        }
+    /* lower-cased name -> expiration time, null if caching of non-existing names is disabled */
+    private final ConcurrentMap<String, Long> mNegativeCache;
+    private final long mNegativeRefreshTTL;
 
-        boolean isStale() {
-            return mLifetime < System.currentTimeMillis();
-        }
+    /**
+     * @param maxItems
+     * @param refreshTTL
+     */
+    public AccountCache(int maxItems, long refreshTTL) {
+        this(maxItems, refreshTTL, 0, 0);
     }
 
     /**
      * @param maxItems
      * @param refreshTTL
+     * @param maxItemsNegative max number of non-existing names to remember, 0 to disable
+     * @param refreshTTLNegative how long a name is remembered as non-existing, 0 to disable
      */
-    public AccountCache(int maxItems, long refreshTTL) {
-        mNameCache = MapUtil.newLruMap(maxItems);
-        mIdCache = MapUtil.newLruMap(maxItems);
-        mAliasCache = MapUtil.newLruMap(maxItems);
-        mForeignPrincipalCache = MapUtil.newLruMap(maxItems);
-        mOldNameCache = MapUtil.newLruMap(maxItems);
-        mRefreshTTL = refreshTTL;
+    public AccountCache(int maxItems, long refreshTTL, int maxItemsNegative, long refreshTTLNegative) {
+        super(maxItems, refreshTTL, 4);
+        if (maxItemsNegative > 0 && refreshTTLNegative > 0) {
+            mNegativeCache = new ConcurrentLinkedHashMap.Builder<String, Long>()
+                    .maximumWeightedCapacity(maxItemsNegative).build();
+        } else {
+            mNegativeCache = null;
+        }
+        mNegativeRefreshTTL = refreshTTLNegative;
     }
 
     @Override
-    public synchronized void clear() {
-        mNameCache.clear();
-        mIdCache.clear();
-        mAliasCache.clear();
-        mForeignPrincipalCache.clear();
-        mOldNameCache.clear();
+    String[][] keys(Account entry) {
+        return new String[][] {
+            { entry.getName() },
+            entry.getMultiAttr(Provisioning.A_zimbraMailAlias),
+            entry.getMultiAttr(Provisioning.A_zimbraForeignPrincipal),
+            { entry.getOldMailAddress() }
+        };
     }
 
     @Override
-    public synchronized void remove(Account entry) {
-        if (entry != null) {
-            mNameCache.remove(entry.getName());
-            mIdCache.remove(entry.getId());
-
-            String[] aliases = entry.getMultiAttr(Provisioning.A_zimbraMailAlias);
-            for (String alias : aliases) {
-                mAliasCache.remove(alias);
-            }
-
-            String[] fps = entry.getMultiAttr(Provisioning.A_zimbraForeignPrincipal);
-            for (String fp : fps) {
-                mForeignPrincipalCache.remove(fp);
-            }
-            mOldNameCache.remove(entry.getOldMailAddress());
+    public void clear() {
+        super.clear();
+        if (mNegativeCache != null) {
+            mNegativeCache.clear();
         }
     }
 
     @Override
-    public synchronized void put(Account entry) {
-        if (entry != null) {
-            CacheEntry cacheEntry = new CacheEntry(entry, mRefreshTTL);
-            mNameCache.put(entry.getName(), cacheEntry);
-            mIdCache.put(entry.getId(), cacheEntry);
-
-            String[] aliases = entry.getMultiAttr(Provisioning.A_zimbraMailAlias);
-            for (String alias : aliases) {
-                mAliasCache.put(alias, cacheEntry);
-            }
+    public void remove(Account entry) {
+        removeEntry(entry);
+    }
 
-            String[] fps = entry.getMultiAttr(Provisioning.A_zimbraForeignPrincipal);
-            for (String fp : fps) {
-                mForeignPrincipalCache.put(fp, cacheEntry);
-            }
-            if (StringUtils.isNotEmpty(entry.getOldMailAddress())) {
-                mOldNameCache.put(entry.getOldMailAddress(), cacheEntry);
+    @Override
+    public void put(Account entry) {
+        if (entry != null) {
+            putEntry(entry);
+            // the account exists under all of its names now
+            if (mNegativeCache != null) {
+                for (String[] keys : keys(entry)) {
+                    for (String key : keys) {
+                        if (key != null) {
+                            mNegativeCache.remove(key.toLowerCase());
+                        }
+                    }
+                }
             }
         }
     }
 
     @Override
-    public synchronized void replace(Account entry) {
-        remove(entry);
+    public void replace(Account entry) {
+        // put() drops the keys of the entry it replaces
         put(entry);
     }
 
-    private Account get(String key, Map cache) {
-        CacheEntry ce = (CacheEntry) cache.get(key);
-        if (ce != null) {
-            if (mRefreshTTL != 0 && ce.isStale()) {
-                remove(ce.mEntry);
-                mHitRate.increment(0);
-                return null;
-            } else {
-                mHitRate.increment(100);
-                return ce.mEntry;
-            }
-        } else {
-            mHitRate.increment(0);
-            return null;
+    @Override
+    public Account getById(String key) {
+        return count(lookupById(key));
+    }
+
+    @Override
+    public Account getByName(String key) {
+        return count(lookupByName(key.toLowerCase()));
+    }
+
+    private Account lookupByName(String key) {
+        Account acct = lookup(NAME, key);
+        if (acct == null) {
+            acct = lookup(ALIAS, key);
+        }
+        if (acct == null) {
+            acct = lookup(OLD_NAME, key);
         }
+        return acct;
     }
 
     @Override
-    public synchronized Account getById(String key) {
-        return get(key, mIdCache);
+    public Account getByForeignPrincipal(String key) {
+        return count(lookup(FOREIGN_PRINCIPAL, key));
     }
 
     @Override
-    public synchronized Account getByName(String key) {
-        Account acct = get(key.toLowerCase(), mNameCache) != null ? get(key.toLowerCase(), mNameCache)
-                : get(key.toLowerCase(), mAliasCache) != null ? get(key.toLowerCase(), mAliasCache)
-                        : get(key.toLowerCase(), mOldNameCache);
-        return acct;
+    public boolean isNonExistingName(String name) {
+        if (mNegativeCache == null || name == null) {
+            return false;
+        }
+        String key = name.toLowerCase();
+        Long expires = mNegativeCache.get(key);
+        if (expires == null) {
+            return false;
+        }
+        if (expires < System.currentTimeMillis()) {
+            mNegativeCache.remove(key, expires);
+            return false;
+        }
+        return true;
     }
 
     @Override
-    public synchronized Account getByForeignPrincipal(String key) {
-        return get(key, mForeignPrincipalCache);
+    public void putNonExistingName(String name) {
+        if (mNegativeCache == null || name == null) {
+            return;
+        }
+        String key = name.toLowerCase();
+        // the account may have been created and cached since the caller's search
+        if (lookupByName(key) == null) {
+            mNegativeCache.put(key, System.currentTimeMillis() + mNegativeRefreshTTL);
+        }
     }
 
     @Override
-    public synchronized int getSize() {
-        return mIdCache.size();
+    public void removeFromNegativeCache(String name) {
+        if (mNegativeCache != null && name != null) {
+            mNegativeCache.remove(name.toLowerCase());
+        }
     }
 
-    /**
-     * Returns the cache hit rate as a value between 0 and 100.
-     */
     @Override
-    public synchronized double getHitRate() {
-        return mHitRate.getAverage();
+    void expire(long now) {
+        super.expire(now);
+        if (mNegativeCache != null) {
+            for (Map.Entry<String, Long> entry : mNegativeCache.entrySet()) {
+                if (entry.getValue() < now) {
+                    mNegativeCache.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        }
     }
 }
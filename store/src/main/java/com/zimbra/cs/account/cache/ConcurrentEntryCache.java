@@ -0,0 +1,268 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.account.cache;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.zimbra.common.stats.Counter;
+import com.zimbra.common.stats.HitRateCounter;
+import com.zimbra.common.util.Constants;
+import com.zimbra.common.util.ZimbraLog;
+import com.zimbra.cs.account.NamedEntry;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lock-free cache of {@link NamedEntry}s, indexed by id and by any number of secondary keys
+ * (name, aliases, ...).
+ *
+ * <p>The id index is a bounded LRU map and is authoritative: an entry found through a secondary
+ * index is only returned if it is still the one cached for its id. Secondary indexes therefore
+ * never need to be updated atomically with the id index; an entry that was replaced, removed or
+ * evicted in the meantime is just a miss. Every cached entry remembers the keys it was indexed
+ * under, so that it can be unindexed even if the attributes of the entry object changed since.
+ *
+ * <p>Entries older than the refresh TTL are never returned, and are dropped in the background by
+ * a shared sweeper thread instead of lingering until they are looked up again.
+ */
+abstract class ConcurrentEntryCache<E extends NamedEntry> implements IEntryCache {
+
+  private static final ScheduledExecutorService SWEEPER =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("LdapCacheSweeper").setDaemon(true).build());
+
+  private static final long MIN_SWEEP_INTERVAL = Constants.MILLIS_PER_SECOND;
+
+  static final class CacheEntry<E> {
+    final E entry;
+    final String id;
+    final String[][] keys;
+    final long expires;
+
+    CacheEntry(E entry, String id, String[][] keys, long expires) {
+      this.entry = entry;
+      this.id = id;
+      this.keys = keys;
+      this.expires = expires;
+    }
+  }
+
+  private final long refreshTTL;
+  private final List<ConcurrentMap<String, CacheEntry<E>>> indexes;
+  private final ConcurrentMap<String, CacheEntry<E>> byId;
+  private final Counter hitRate = new HitRateCounter();
+
+  /**
+   * @param maxItems maximum number of cached entries
+   * @param refreshTTL time in millis after which an entry is stale, 0 to never expire entries
+   * @param indexCount number of secondary indexes, see {@link #keys}
+   */
+  ConcurrentEntryCache(int maxItems, long refreshTTL, int indexCount) {
+    this.refreshTTL = refreshTTL;
+    indexes = new ArrayList<>(indexCount);
+    for (int i = 0; i < indexCount; i++) {
+      indexes.add(new ConcurrentHashMap<>());
+    }
+    byId =
+        new ConcurrentLinkedHashMap.Builder<String, CacheEntry<E>>()
+            .maximumWeightedCapacity(maxItems)
+            .listener((id, evicted) -> unindex(evicted))
+            .build();
+    if (refreshTTL > 0) {
+      Sweeper.schedule(this, Math.max(refreshTTL, MIN_SWEEP_INTERVAL));
+    }
+  }
+
+  /**
+   * Returns the secondary keys of an entry, one array per secondary index. Null and empty keys are
+   * ignored.
+   */
+  abstract String[][] keys(E entry);
+
+  final void putEntry(E entry) {
+    if (entry == null || entry.getId() == null) {
+      return;
+    }
+    CacheEntry<E> ce =
+        new CacheEntry<>(
+            entry, entry.getId(), keys(entry), System.currentTimeMillis() + refreshTTL);
+    CacheEntry<E> old = byId.put(ce.id, ce);
+    if (old != null) {
+      unindex(old);
+    }
+    index(ce);
+    // lost a race with a concurrent put, remove or eviction of the same id
+    if (byId.get(ce.id) != ce) {
+      unindex(ce);
+    }
+  }
+
+  /** Removes the entry cached for the id of {@code entry}, and anything cached under its keys. */
+  final void removeEntry(E entry) {
+    if (entry == null) {
+      return;
+    }
+    removeById(entry.getId());
+    String[][] keys = keys(entry);
+    for (int i = 0; i < keys.length; i++) {
+      for (String key : keys[i]) {
+        if (key != null && !key.isEmpty()) {
+          indexes.get(i).remove(key);
+        }
+      }
+    }
+  }
+
+  final void removeById(String id) {
+    if (id != null) {
+      CacheEntry<E> ce = byId.remove(id);
+      if (ce != null) {
+        unindex(ce);
+      }
+    }
+  }
+
+  final void removeByKey(int index, String key) {
+    if (key != null) {
+      indexes.get(index).remove(key);
+    }
+  }
+
+  /** Looks up an entry by id without counting the access in the hit rate. */
+  final E lookupById(String id) {
+    return id == null ? null : live(byId.get(id));
+  }
+
+  /** Looks up an entry by secondary key without counting the access in the hit rate. */
+  final E lookup(int index, String key) {
+    if (key == null) {
+      return null;
+    }
+    ConcurrentMap<String, CacheEntry<E>> map = indexes.get(index);
+    CacheEntry<E> ce = map.get(key);
+    if (ce == null) {
+      return null;
+    }
+    if (byId.get(ce.id) != ce) {
+      map.remove(key, ce);
+      return null;
+    }
+    return live(ce);
+  }
+
+  private E live(CacheEntry<E> ce) {
+    if (ce == null) {
+      return null;
+    }
+    if (refreshTTL != 0 && ce.expires < System.currentTimeMillis()) {
+      if (byId.remove(ce.id, ce)) {
+        unindex(ce);
+      }
+      return null;
+    }
+    return ce.entry;
+  }
+
+  /** Counts a lookup in the hit rate, and returns its result. */
+  final <T> T count(T found) {
+    hitRate.increment(found != null ? 100 : 0);
+    return found;
+  }
+
+  public void clear() {
+    byId.clear();
+    for (ConcurrentMap<String, CacheEntry<E>> index : indexes) {
+      index.clear();
+    }
+  }
+
+  /** Drops the entries that are stale at the given time. */
+  void expire(long now) {
+    if (refreshTTL == 0) {
+      return;
+    }
+    for (CacheEntry<E> ce : byId.values()) {
+      if (ce.expires < now && byId.remove(ce.id, ce)) {
+        unindex(ce);
+      }
+    }
+  }
+
+  private void index(CacheEntry<E> ce) {
+    for (int i = 0; i < ce.keys.length; i++) {
+      for (String key : ce.keys[i]) {
+        if (key != null && !key.isEmpty()) {
+          indexes.get(i).put(key, ce);
+        }
+      }
+    }
+  }
+
+  private void unindex(CacheEntry<E> ce) {
+    for (int i = 0; i < ce.keys.length; i++) {
+      for (String key : ce.keys[i]) {
+        if (key != null && !key.isEmpty()) {
+          indexes.get(i).remove(key, ce);
+        }
+      }
+    }
+  }
+
+  @Override
+  public int getSize() {
+    return byId.size();
+  }
+
+  /** Returns the cache hit rate as a value between 0 and 100. */
+  @Override
+  public double getHitRate() {
+    return hitRate.getAverage();
+  }
+
+  /**
+   * Periodically expires the entries of one cache. Only weakly references the cache, and cancels
+   * itself once the cache has been collected.
+   */
+  private static final class Sweeper implements Runnable {
+    private final WeakReference<ConcurrentEntryCache<?>> cache;
+    private volatile ScheduledFuture<?> future;
+
+    private Sweeper(ConcurrentEntryCache<?> cache) {
+      this.cache = new WeakReference<>(cache);
+    }
+
+    static void schedule(ConcurrentEntryCache<?> cache, long interval) {
+      Sweeper sweeper = new Sweeper(cache);
+      sweeper.future =
+          SWEEPER.scheduleWithFixedDelay(sweeper, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run() {
+      ConcurrentEntryCache<?> c = cache.get();
+      if (c == null) {
+        ScheduledFuture<?> f = future;
+        if (f != null) {
+          f.cancel(false);
+        }
+        return;
+      }
+      try {
+        c.expire(System.currentTimeMillis());
+      } catch (RuntimeException e) {
+        // keep the sweeper scheduled
+        ZimbraLog.cache.warn("unable to expire LDAP cache entries", e);
+      }
+    }
+  }
+}
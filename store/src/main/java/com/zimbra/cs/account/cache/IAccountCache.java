@@ -15,4 +15,11 @@ public interface IAccountCache extends IEntryCache {
     Account getById(String key);
     Account getByName(String key);
     Account getByForeignPrincipal(String key);
+
+    /*
+     * negative cache, for names that are known not to belong to any account
+     */
+    boolean isNonExistingName(String name);
+    void putNonExistingName(String name);
+    void removeFromNegativeCache(String name);
 }
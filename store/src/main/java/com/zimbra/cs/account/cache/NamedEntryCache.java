@@ -12,131 +12,70 @@
 package com.zimbra.cs.account.cache;
 
 import java.util.List;
-import java.util.Map;
 
-import com.zimbra.common.util.MapUtil;
-import com.zimbra.common.stats.Counter;
-import com.zimbra.common.stats.HitRateCounter;
 import com.zimbra.cs.account.NamedEntry;
 
 /**
+ * Entries indexed by id and name. Lookups don't take any lock, see {@link ConcurrentEntryCache}.
+ *
  * @author schemers
  **/
-public class NamedEntryCache<E extends NamedEntry> implements INamedEntryCache<E> {
-    
-    private Map mNameCache;
-    private Map mIdCache;
-    
-    private long mRefreshTTL;
-    private Counter mHitRate = new HitRateCounter();
-   
+public class NamedEntryCache<E extends NamedEntry> extends ConcurrentEntryCache<E>
+        implements INamedEntryCache<E> {
+
+    private static final int NAME = 0;
 
-    static class CacheEntry<E extends NamedEntry> {
-        long mLifetime;
-        E mEntry;
-        CacheEntry(E entry, long expires) {
-            mEntry = entry;
-            mLifetime = System.currentTimeMillis() + expires;
-        }
-        
-        boolean isStale() {
-            return mLifetime < System.currentTimeMillis();
-        }
-    }
-    
 /**
  * @param maxItems
  * @param refreshTTL
  */
     public NamedEntryCache(int maxItems, long refreshTTL) {
-        mNameCache = MapUtil.newLruMap(maxItems);
-        mIdCache = MapUtil.newLruMap(maxItems);
-        mRefreshTTL = refreshTTL;
+        super(maxItems, refreshTTL, 1);
     }
 
     @Override
-    public synchronized void clear() {
-        mNameCache.clear();
-        mIdCache.clear();
+    String[][] keys(E entry) {
+        return new String[][] { { entry.getName() } };
     }
 
     @Override
-    public synchronized void remove(String name, String id) {
-        mNameCache.remove(name);
-        mIdCache.remove(id);
+    public void remove(String name, String id) {
+        removeByKey(NAME, name);
+        removeById(id);
     }
-    
+
     @Override
-    public synchronized void remove(E entry) {
-        if (entry != null) {
-            mNameCache.remove(entry.getName());
-            mIdCache.remove(entry.getId());
-        }
+    public void remove(E entry) {
+        removeEntry(entry);
     }
-    
+
     @Override
-    public synchronized void put(E entry) {
-        if (entry != null) {
-            CacheEntry<E> cacheEntry = new CacheEntry<>(entry, mRefreshTTL);
-            mNameCache.put(entry.getName(), cacheEntry);
-            mIdCache.put(entry.getId(), cacheEntry);
-        }
+    public void put(E entry) {
+        putEntry(entry);
     }
-    
+
     @Override
-    public synchronized void replace(E entry) {
-        remove(entry);
-        put(entry);
+    public void replace(E entry) {
+        // put() drops the keys of the entry it replaces
+        putEntry(entry);
     }
 
     @Override
-    public synchronized void put(List<E> entries, boolean clear) {
+    public void put(List<E> entries, boolean clear) {
         if (entries != null) {
             if (clear) clear();
             for (E e: entries)
-                put(e);
+                putEntry(e);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private E get(String key, Map cache) {
-        CacheEntry<E> ce = (CacheEntry<E>) cache.get(key);
-        if (ce != null) {
-            if (mRefreshTTL != 0 && ce.isStale()) {
-                remove(ce.mEntry);
-                mHitRate.increment(0);
-                return null;
-            } else {
-                mHitRate.increment(100);
-                return ce.mEntry;
-            }
-        } else {
-            mHitRate.increment(0);
-            return null;
-        }
-    }
-    
-    @Override
-    public synchronized E getById(String key) {
-        return get(key, mIdCache);
-    }
-    
-    @Override
-    public synchronized E getByName(String key) {
-        return get(key.toLowerCase(), mNameCache);
-    }
-    
     @Override
-    public synchronized int getSize() {
-        return mIdCache.size();
+    public E getById(String key) {
+        return count(lookupById(key));
     }
-    
-  
-    /**
-     * Returns the cache hit rate as a value between 0 and 100.
-     */
+
     @Override
-    public synchronized double getHitRate() {
-        return mHitRate.getAverage();
+    public E getByName(String key) {
+        return count(lookup(NAME, key.toLowerCase()));
     }
 }
@@ -6,6 +6,7 @@ import com.zimbra.cs.account.ArgException;
 import com.zimbra.cs.account.CommandHandler;
 import com.zimbra.cs.account.ProvUtil;
 import com.zimbra.cs.account.soap.SoapProvisioning;
+import com.zimbra.soap.admin.type.IndexStats;
 import org.apache.http.HttpException;
 
 import java.io.IOException;
@@ -31,5 +32,11 @@ class GetIndexStatsCommandHandler implements CommandHandler {
     SoapProvisioning.IndexStatsInfo stats = sp.getIndexStats(acct);
     provUtil.getConsole().println(String.format(
             "stats: maxDocs:%d numDeletedDocs:%d", stats.getMaxDocs(), stats.getNumDeletedDocs()));
+    IndexStats io = stats.getIOStats();
+    if (io != null) {
+      provUtil.getConsole().println(String.format(
+              "io: bytesRead:%d bytesWritten:%d filesOpened:%d mapped:%b",
+              io.getBytesRead(), io.getBytesWritten(), io.getFilesOpened(), io.getMapped()));
+    }
   }
 }
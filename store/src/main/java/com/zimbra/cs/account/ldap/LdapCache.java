@@ -57,7 +57,9 @@ abstract class LdapCache {
     private final IAccountCache accountCache =
         new AccountCache(
             LC.ldap_cache_account_maxsize.intValue(),
-            LC.ldap_cache_account_maxage.intValue() * Constants.MILLIS_PER_MINUTE);
+            LC.ldap_cache_account_maxage.intValue() * Constants.MILLIS_PER_MINUTE,
+            LC.ldap_cache_account_negative_maxsize.intValue(),
+            LC.ldap_cache_account_negative_maxage.intValue() * Constants.MILLIS_PER_MINUTE);
 
     private final INamedEntryCache<LdapCos> cosCache =
         new NamedEntryCache<>(
@@ -175,6 +177,17 @@ abstract class LdapCache {
         return null;
       }
 
+      @Override
+      public boolean isNonExistingName(String name) {
+        return false;
+      }
+
+      @Override
+      public void putNonExistingName(String name) {}
+
+      @Override
+      public void removeFromNegativeCache(String name) {}
+
       @Override
       public int getSize() {
         return 0;
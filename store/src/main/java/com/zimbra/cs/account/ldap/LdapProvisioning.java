@@ -1164,13 +1164,21 @@ public class LdapProvisioning extends LdapProv implements CacheAwareProvisioning
 
     Account account = accountCache.getByName(emailAddress);
     if (account == null) {
+      // addresses that are known not to exist are searched again only when asked for the master
+      if (!loadFromMaster && accountCache.isNonExistingName(emailAddress)) {
+        return null;
+      }
       account =
           getAccountByQuery(
               mDIT.mailBranchBaseDN(),
               filterFactory.accountByName(emailAddress),
               null,
               loadFromMaster);
-      accountCache.put(account);
+      if (account == null) {
+        accountCache.putNonExistingName(emailAddress);
+      } else {
+        accountCache.put(account);
+      }
     }
     return account;
   }
@@ -1522,6 +1530,7 @@ public class LdapProvisioning extends LdapProv implements CacheAwareProvisioning
       entry.setDN(dn);
 
       zlc.createEntry(entry);
+      accountCache.removeFromNegativeCache(emailAddress);
       acct = getAccountById(zimbraIdStr, zlc, true);
       if (acct == null) {
         throw ServiceException.FAILURE(
@@ -2367,6 +2376,7 @@ public class LdapProvisioning extends LdapProv implements CacheAwareProvisioning
   @Override
   public void addAlias(Account acct, String alias) throws ServiceException {
     addAliasInternal(acct, alias);
+    accountCache.removeFromNegativeCache(IDNUtil.toAsciiEmail(alias.toLowerCase().trim()));
   }
 
   @Override
@@ -3345,6 +3355,7 @@ public class LdapProvisioning extends LdapProv implements CacheAwareProvisioning
 
     // prune cache
     accountCache.remove(acct);
+    accountCache.removeFromNegativeCache(newName);
 
     LdapEntry entry = (LdapEntry) acct;
     if (acct == null) throw AccountServiceException.NO_SUCH_ACCOUNT(zimbraId);
@@ -8824,6 +8835,9 @@ public class LdapProvisioning extends LdapProv implements CacheAwareProvisioning
             AccountBy accountBy =
                 (entry.mEntryBy == Key.CacheEntryBy.id) ? AccountBy.id : AccountBy.name;
             Account account = getFromCache(accountBy, entry.mEntryIdentity);
+            if (accountBy == AccountBy.name) {
+              accountCache.removeFromNegativeCache(entry.mEntryIdentity);
+            }
             /*
              * We now call removeFromCache instead of reload for flushing an account
              * from cache.   This change was originally for bug 25028, but that would still
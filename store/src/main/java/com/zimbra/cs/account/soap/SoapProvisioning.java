@@ -220,6 +220,7 @@ import com.zimbra.soap.admin.type.DomainSelector;
 import com.zimbra.soap.admin.type.EffectiveRightsTargetSelector;
 import com.zimbra.soap.admin.type.GranteeSelector;
 import com.zimbra.soap.admin.type.GranteeSelector.GranteeBy;
+import com.zimbra.soap.admin.type.IndexStats;
 import com.zimbra.soap.admin.type.LoggerInfo;
 import com.zimbra.soap.admin.type.MailboxByAccountIdSelector;
 import com.zimbra.soap.admin.type.MailboxWithMailboxId;
@@ -1401,10 +1402,16 @@ public class SoapProvisioning extends Provisioning {
   public static final class IndexStatsInfo {
     private final int maxDocs;
     private final int numDeletedDocs;
+    private final IndexStats ioStats;
 
     public IndexStatsInfo(int maxDocs, int numDeletedDocs) {
+      this(maxDocs, numDeletedDocs, null);
+    }
+
+    IndexStatsInfo(int maxDocs, int numDeletedDocs, IndexStats ioStats) {
       this.maxDocs = maxDocs;
       this.numDeletedDocs = numDeletedDocs;
+      this.ioStats = ioStats;
     }
 
     public int getMaxDocs() {
@@ -1414,6 +1421,11 @@ public class SoapProvisioning extends Provisioning {
     public int getNumDeletedDocs() {
       return numDeletedDocs;
     }
+
+    /** Returns the I/O statistics of the index, {@code null} if the server doesn't report them. */
+    public IndexStats getIOStats() {
+      return ioStats;
+    }
   }
 
   public IndexStatsInfo getIndexStats(Account acct) throws ServiceException {
@@ -1421,7 +1433,11 @@ public class SoapProvisioning extends Provisioning {
     GetIndexStatsRequest req =
         new GetIndexStatsRequest(new MailboxByAccountIdSelector(acct.getId()));
     GetIndexStatsResponse resp = this.invokeJaxb(req, server.getAttr(A_zimbraServiceHostname));
-    return new IndexStatsInfo(resp.getStats().getMaxDocs(), resp.getStats().getNumDeletedDocs());
+    IndexStats stats = resp.getStats();
+    return new IndexStatsInfo(
+        stats.getMaxDocs(),
+        stats.getNumDeletedDocs(),
+        stats.getBytesRead() != null ? stats : null);
   }
 
   public static final class VerifyIndexResult {
@@ -6,7 +6,6 @@
 package com.zimbra.cs.fb;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import com.zimbra.common.localconfig.LC;
@@ -27,9 +26,7 @@ import com.zimbra.cs.mailbox.Mailbox;
 import com.zimbra.cs.mailbox.MailboxManager;
 import com.zimbra.cs.mailbox.calendar.IcalXmlStrMap;
 import com.zimbra.cs.mailbox.calendar.cache.CalSummaryCache.CalendarDataResult;
-import com.zimbra.cs.mailbox.calendar.cache.CalendarItemData;
-import com.zimbra.cs.mailbox.calendar.cache.FullInstanceData;
-import com.zimbra.cs.mailbox.calendar.cache.InstanceData;
+import com.zimbra.cs.mailbox.calendar.cache.FreeBusyIndex.BusyTime;
 
 public class LocalFreeBusyProvider {
 
@@ -57,10 +54,10 @@ public class LocalFreeBusyProvider {
 
         List<CalendarDataResult> calDataResultList;
         if (folder == FreeBusyQuery.CALENDAR_FOLDER_ALL) {
-            calDataResultList = mbox.getAllCalendarsSummaryForRange(null, MailItem.Type.APPOINTMENT, start, end);
+            calDataResultList = mbox.getAllCalendarsSummaryForRange(null, MailItem.Type.APPOINTMENT, start, end, false);
         } else {
             calDataResultList = new ArrayList<>(1);
-            calDataResultList.add(mbox.getCalendarSummaryForRange(null, folder, MailItem.Type.APPOINTMENT, start, end));
+            calDataResultList.add(mbox.getCalendarSummaryForRange(null, folder, MailItem.Type.APPOINTMENT, start, end, false));
         }
         for (CalendarDataResult result : calDataResultList) {
             int folderId = result.data.getFolderId();
@@ -78,55 +75,13 @@ public class LocalFreeBusyProvider {
                         f.getName(), folderId, folderFBAllowed, accountAceAllowed);
                 continue;
             }
-            for (Iterator<CalendarItemData> iter = result.data.calendarItemIterator(); iter.hasNext(); ) {
-                CalendarItemData appt = iter.next();
-                int apptId = appt.getCalItemId();
+            for (BusyTime busy : result.data.getBusyTimes(start, end)) {
+                int apptId = busy.getCalItemId();
                 if (apptId == exApptId)
                     continue;
-                FullInstanceData defaultInstance = appt.getDefaultData();
-                if (defaultInstance == null)
-                    continue;
-                boolean isTransparent = false;
-                String transp = defaultInstance.getTransparency();
-                isTransparent = IcalXmlStrMap.TRANSP_TRANSPARENT.equals(transp);
-                long defaultDuration = 0;
-                if (defaultInstance.getDuration() != null)
-                    defaultDuration = defaultInstance.getDuration();
-                String defaultFreeBusy = defaultInstance.getFreeBusyActual();
-                for (Iterator<InstanceData> instIter = appt.instanceIterator(); instIter.hasNext(); ) {
-                    InstanceData instance = instIter.next();
-                    long instStart = instance.getDtStart() != null ? instance.getDtStart() : 0;
-                    // Skip instances that are outside the time range but were returned due to alarm being in range.
-                    if (instStart >= end)
-                        continue;
-                    long dur = defaultDuration;
-                    if (instance.getDuration() != null)
-                        dur = instance.getDuration();
-                    if (dur <= 0)  // Only consider instances with non-zero, positive duration.
-                        continue;
-                    long instEnd = instStart + dur;
-
-                    long recurIdDt = 0;
-                    // Skip if instance is TRANSPARENT to free/busy searches.
-                    if (instance instanceof FullInstanceData) {
-                        FullInstanceData fullInst = (FullInstanceData) instance;
-                        String transpInst = fullInst.getTransparency();
-                        recurIdDt = fullInst.getRecurrenceId();
-                        if (IcalXmlStrMap.TRANSP_TRANSPARENT.equals(transpInst))
-                            continue;
-                    } else if (isTransparent) {
-                        continue;
-                    }
-
-                    String freeBusy = instance.getFreeBusyActual();
-                    if (freeBusy == null)
-                        freeBusy = defaultFreeBusy;
-                    if (!IcalXmlStrMap.FBTYPE_FREE.equals(freeBusy)) {
-                        FBInstance fbInst = new FBInstance(freeBusy, instStart, instEnd, apptId, recurIdDt);
-                        Interval ival = new Interval(instStart, instEnd, freeBusy, fbInst);
-                        intervals.addInterval(ival);
-                    }
-                }
+                FBInstance fbInst = new FBInstance(busy.getFreeBusy(), busy.getStart(), busy.getEnd(), apptId, busy.getRecurrenceId());
+                Interval ival = new Interval(busy.getStart(), busy.getEnd(), busy.getFreeBusy(), fbInst);
+                intervals.addInterval(ival);
             }
         }
         if (!accountAceAllowed && numAllowedFolders == 0 && !LC.freebusy_disable_nodata_status.booleanValue()) {
@@ -34,6 +34,8 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.jsieve.exception.SyntaxException;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Sets;
 import com.sun.mail.smtp.SMTPMessage;
 import com.zimbra.client.ZFolder;
@@ -977,6 +979,29 @@ public final class FilterUtil {
 		return processedStr;
 	}
 
+    /**
+     * Compiled {@code :matches} patterns by regex flags and Sieve pattern. The rules of the
+     * accounts that share a script have the same keys, so a pattern is compiled once for all of
+     * them instead of on every comparison of every delivery.
+     */
+    private static final Cache<String, Pattern> SIEVE_PATTERNS = CacheBuilder.newBuilder()
+        .maximumSize(LC.zimbra_filter_sieve_pattern_cache_size.intValue()).build();
+
+    /**
+     * Returns the compiled java regex of a Sieve pattern.
+     *
+     * @throws java.util.regex.PatternSyntaxException if the converted pattern isn't a valid regex
+     */
+    public static Pattern getSievePattern(String pattern, int flags) {
+        String key = flags + ":" + pattern;
+        Pattern compiled = SIEVE_PATTERNS.getIfPresent(key);
+        if (compiled == null) {
+            compiled = Pattern.compile(sieveToJavaRegex(pattern), flags);
+            SIEVE_PATTERNS.put(key, compiled);
+        }
+        return compiled;
+    }
+
     /**
      * Converts a Sieve pattern in a java regex pattern
      */
@@ -5,6 +5,11 @@
 
 package com.zimbra.cs.filter;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.zimbra.common.localconfig.LC;
 import com.zimbra.common.service.DeliveryServiceException;
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.Pair;
@@ -57,7 +62,8 @@ public final class RuleManager {
      * cached data.  The cache is invalidated whenever an <tt>Account</tt> attribute
      * is modified, so the script and parsed rules won't get out of sync.
      */
-    private static final String FILTER_RULES_CACHE_KEY =
+    @VisibleForTesting
+    static final String FILTER_RULES_CACHE_KEY =
         RuleManager.class.getSimpleName() + ".FILTER_RULES_CACHE";
     private static final String OUTGOING_FILTER_RULES_CACHE_KEY =
         RuleManager.class.getSimpleName() + ".OUTGOING_FILTER_RULES_CACHE";
@@ -69,6 +75,15 @@ public final class RuleManager {
             RuleManager.class.getSimpleName() + ".ADMIN_OUTGOING_FILTER_RULES_BEFORE_CACHE";
     private static final String ADMIN_OUTGOING_FILTER_RULES_AFTER_CACHE_KEY =
             RuleManager.class.getSimpleName() + ".ADMIN_OUTGOING_FILTER_RULES_AFTER_CACHE";
+
+    /**
+     * Parsed Sieve scripts by SHA-256 of the script. Admin rules are usually the same for a whole
+     * COS or domain, and many users have the same rules, so the accounts with the same script share
+     * one node tree instead of parsing and holding a copy each.
+     */
+    private static final Cache<String, Node> PARSED_SCRIPTS = CacheBuilder.newBuilder()
+        .maximumSize(LC.zimbra_filter_parsed_script_cache_size.intValue()).build();
+
     public static final String editHeaderUserScriptError = "EDIT_HEADER_NOT_SUPPORTED_FOR_USER_SCRIPT";
 
     public enum FilterType {INCOMING, OUTGOING}
@@ -134,7 +149,7 @@ public final class RuleManager {
             script = "";
         }
         try {
-            Node node = parse(script);
+            Node node = getParsedScript(script);
             // evaluate against dummy mail adapter to catch more errors
             SIEVE_FACTORY.evaluate(new DummyMailAdapter(), node);
             // save
@@ -210,7 +225,7 @@ public final class RuleManager {
 
             ZimbraLog.filter.debug("attrName[%s] rule[%s]", sieveScriptAttrName, script);
 
-            node = parse(script);
+            node = getParsedScript(script);
             account.setCachedData(rulesCacheKey, node);
         }
         return node;
@@ -561,6 +576,24 @@ public final class RuleManager {
         return node;
     }
 
+    /**
+     * Returns the root of the node tree of the sieve script, shared with every other entry that
+     * has the same script. The tree must not be modified: callers that rewrite the rules parse
+     * their own copy with {@link #parse(String)}.
+     */
+    private static Node getParsedScript(String script) throws ParseException {
+        String hash = Hashing.sha256().hashString(script, StandardCharsets.UTF_8).toString();
+        Node node = PARSED_SCRIPTS.getIfPresent(hash);
+        if (node == null) {
+            node = parse(script);
+            Node shared = PARSED_SCRIPTS.asMap().putIfAbsent(hash, node);
+            if (shared != null) {
+                node = shared;
+            }
+        }
+        return node;
+    }
+
     /**
      * Eliminate the undefined escape sequences from the sieve filter script string.
      * Only \\ (backslash backslash) and \" (backslash double-quote) are defined as
@@ -820,7 +853,7 @@ public final class RuleManager {
                 adminRule = "";
             }
             ZimbraLog.filter.debug("filterType[%s] rule[%s]", filterType == FilterType.INCOMING ? "incoming" : "outgoing", adminRule);
-            node = parse(adminRule);
+            node = getParsedScript(adminRule);
             entry.setCachedData(rulesCacheKey, node);
         }
         return node;
@@ -53,8 +53,8 @@ public class ZimbraAsciiCasemap extends AsciiCasemap implements ZimbraComparator
     public boolean matches(String string, String glob)
             throws SievePatternException {
         try {
-            String regex = FilterUtil.sieveToJavaRegex(glob.toUpperCase());
-            final Matcher matcher = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.DOTALL).matcher(string.toUpperCase());
+            final Matcher matcher = FilterUtil.getSievePattern(glob.toUpperCase(),
+                    Pattern.CASE_INSENSITIVE | Pattern.DOTALL).matcher(string.toUpperCase());
             return matcher.matches();
         } catch (PatternSyntaxException e) {
             throw new SievePatternException(e.getMessage());
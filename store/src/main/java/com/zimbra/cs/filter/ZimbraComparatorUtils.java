@@ -19,7 +19,6 @@ import static org.apache.jsieve.tests.ComparatorTags.COMPARATOR_TAG;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import org.apache.jsieve.Argument;
@@ -307,8 +306,7 @@ public class ZimbraComparatorUtils {
     public static boolean matches(String string, String glob)
             throws SievePatternException {
         try {
-            String regex = FilterUtil.sieveToJavaRegex(glob);
-            final Matcher matcher = Pattern.compile(regex).matcher(string);
+            final Matcher matcher = FilterUtil.getSievePattern(glob, 0).matcher(string);
             return matcher.matches();
         } catch (PatternSyntaxException e) {
             throw new SievePatternException(e.getMessage());
@@ -337,8 +337,8 @@ public class HeaderTest extends Header {
             for (String sourceStr : values) {
                 for (Object key : keys) {
                     String keyStr = ((String) key);
-                    String regex = FilterUtil.sieveToJavaRegex(keyStr);
-                    Matcher matcher = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.DOTALL).matcher(sourceStr);
+                    Matcher matcher = FilterUtil.getSievePattern(keyStr, Pattern.CASE_INSENSITIVE | Pattern.DOTALL)
+                            .matcher(sourceStr);
                     int grpCount = matcher.groupCount();
                     if (matcher.find() && grpCount > 0) {
                         mailAdapter.resetMatchedValues();
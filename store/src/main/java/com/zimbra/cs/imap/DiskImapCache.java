@@ -78,9 +78,7 @@ final class DiskImapCache implements ImapSessionManager.Cache<String, ImapFolder
         ObjectOutputStream oos = null;
         try {
             oos = new ObjectOutputStream(fos = new FileOutputStream(pagefile));
-            synchronized (folder) {
-                oos.writeObject(folder);
-            }
+            oos.writeObject(folder); // ImapFolder.writeObject() takes the folder's own lock
         } catch (IOException e) {
             ByteUtil.closeStream(oos);
             ByteUtil.closeStream(fos);
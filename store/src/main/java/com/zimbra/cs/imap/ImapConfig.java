@@ -107,6 +107,11 @@ public class ImapConfig extends ServerConfig {
         return LC.imap_thread_keep_alive_time.intValue();
     }
 
+    @Override
+    public boolean isVirtualThreadsEnabled() {
+        return LC.imap_virtual_threads_enabled.booleanValue();
+    }
+
     public boolean isCleartextLoginEnabled() {
         return getBooleanAttr(A_zimbraImapCleartextLoginEnabled, false);
     }
@@ -5,6 +5,10 @@
 
 package com.zimbra.cs.imap;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -18,6 +22,7 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.google.common.base.Function;
 import com.google.common.base.Strings;
@@ -48,7 +53,7 @@ import com.zimbra.cs.session.PendingModifications.Change;
  */
 public final class ImapFolder implements ImapListener.ImapFolderData, java.io.Serializable {
     // Update serialVersionUID when changing any instance members. Otherwise serialization won't work correctly.
-    private static final long serialVersionUID = 3845968507901145794L;
+    private static final long serialVersionUID = 3845968507901145795L;
     public static final byte SELECT_READONLY  = 0x01;
     public static final byte SELECT_CONDSTORE = 0x02;
 
@@ -63,7 +68,10 @@ public final class ImapFolder implements ImapListener.ImapFolderData, java.io.Se
     private final int uidValidity;
     private String query;
     private Set<MailItem.Type> typeConstraint = ImapHandler.ITEM_TYPES;
-    private final List<ImapMessage> sequence = new ArrayList<>();
+    // serialized in the ImapMessageListFormat, see writeObject()
+    private transient List<ImapMessage> sequence = new ArrayList<>();
+    // guards sequence; not the object monitor, so that paging the folder out does not pin a virtual thread
+    private transient ReentrantLock sequenceLock = new ReentrantLock();
     private final ImapFlagCache tags;   // operationally could be "transient", but that makes deserialization replay depend on magic
 
     // below this point are session-specific attributes of the folder SELECT state
@@ -274,17 +282,48 @@ public final class ImapFolder implements ImapListener.ImapFolderData, java.io.Se
         return sdata == null ? false : sdata.writable;
     }
 
-    public synchronized void traverse(Function<ImapMessage, Void> func) {
-        int prevUid = -1;
-        for (Iterator<ImapMessage> it = sequence.iterator(); it.hasNext();) {
-            ImapMessage i4msg = it.next();
-            if (i4msg.imapUid == prevUid) {
-                ZimbraLog.imap.warn("duplicate UID %d in cached folder %s", prevUid, this.folderIdentifier);
-                it.remove();
-            } else {
-                prevUid = i4msg.imapUid;
-                func.apply(i4msg);
+    public void traverse(Function<ImapMessage, Void> func) {
+        sequenceLock.lock();
+        try {
+            int prevUid = -1;
+            for (Iterator<ImapMessage> it = sequence.iterator(); it.hasNext();) {
+                ImapMessage i4msg = it.next();
+                if (i4msg.imapUid == prevUid) {
+                    ZimbraLog.imap.warn("duplicate UID %d in cached folder %s", prevUid, this.folderIdentifier);
+                    it.remove();
+                } else {
+                    prevUid = i4msg.imapUid;
+                    func.apply(i4msg);
+                }
             }
+        } finally {
+            sequenceLock.unlock();
+        }
+    }
+
+    /** Writes the message list in the {@link ImapMessageListFormat} rather than as one serialized
+     *  object per message. */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        sequenceLock.lock();
+        try {
+            out.defaultWriteObject();
+            byte[] packed = ImapMessageListFormat.encode(sequence);
+            out.writeInt(packed.length);
+            out.write(packed);
+        } finally {
+            sequenceLock.unlock();
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        sequenceLock = new ReentrantLock();
+        byte[] packed = new byte[in.readInt()];
+        in.readFully(packed);
+        try {
+            sequence = ImapMessageListFormat.decode(packed);
+        } catch (RuntimeException e) {
+            throw new InvalidObjectException("corrupt IMAP message list: " + e);
         }
     }
 
@@ -343,33 +382,38 @@ public final class ImapFolder implements ImapListener.ImapFolderData, java.io.Se
 
     /** Returns the ImapMessage with the given Zimbra item ID from the
      *  folder's {@link #sequence} message list. */
-    protected synchronized ImapMessage getById(int id) {
-        if (id <= 0 || getSize() == 0) {
-            return null;
-        }
-        // leverage the fact that by default, the message's item id and its IMAP uid are identical
-        int seq = uidSearch(id);
-        if (seq >= 0 && seq < sequence.size()) {
-            ImapMessage i4msg = sequence.get(seq);
-            // slightly tricky: must check if message is expunged in order to catch the case of
-            //   using the web client to move the message out of the folder and back in before
-            //   the IMAP server can tell the client about the EXPUNGE from the first move
-            if (i4msg != null && i4msg.msgId == id && !i4msg.isExpunged()) {
-                return checkRemoved(i4msg);
+    protected ImapMessage getById(int id) {
+        sequenceLock.lock();
+        try {
+            if (id <= 0 || getSize() == 0) {
+                return null;
+            }
+            // leverage the fact that by default, the message's item id and its IMAP uid are identical
+            int seq = uidSearch(id);
+            if (seq >= 0 && seq < sequence.size()) {
+                ImapMessage i4msg = sequence.get(seq);
+                // slightly tricky: must check if message is expunged in order to catch the case of
+                //   using the web client to move the message out of the folder and back in before
+                //   the IMAP server can tell the client about the EXPUNGE from the first move
+                if (i4msg != null && i4msg.msgId == id && !i4msg.isExpunged()) {
+                    return checkRemoved(i4msg);
+                }
             }
-        }
 
-        // if item id and IMAP uid differ, the message goes in the "mMessageIds" map
-        if (messageIds == null) {
-            // lookup miss means we need to generate the item-id-to-imap-message mapping
-            messageIds = new HashMap<>();
-            for (ImapMessage i4msg : sequence) {
-                if (i4msg != null && i4msg.msgId != i4msg.imapUid) {
-                    messageIds.put(i4msg.msgId, i4msg);
+            // if item id and IMAP uid differ, the message goes in the "mMessageIds" map
+            if (messageIds == null) {
+                // lookup miss means we need to generate the item-id-to-imap-message mapping
+                messageIds = new HashMap<>();
+                for (ImapMessage i4msg : sequence) {
+                    if (i4msg != null && i4msg.msgId != i4msg.imapUid) {
+                        messageIds.put(i4msg.msgId, i4msg);
+                    }
                 }
             }
+            return checkRemoved(messageIds.get(id));
+        } finally {
+            sequenceLock.unlock();
         }
-        return checkRemoved(messageIds.get(id));
     }
 
     /** Returns the ImapMessage with the given IMAP UID from the folder's
@@ -408,38 +452,43 @@ public final class ImapFolder implements ImapListener.ImapFolderData, java.io.Se
      *  the folder's {@link #sequence} message list and inserted into the
      *  {@link #mMessageIds} hash (if the latter hash has been instantiated).
      * @return true if message cached successfully without modification false if a renumber was required. */
-    protected synchronized boolean cache(ImapMessage i4msg, boolean recent) {
-        // provide the information missing from the DB search
-        if (folderIdentifier.id == Mailbox.ID_FOLDER_SPAM) {
-            i4msg.sflags |= ImapMessage.FLAG_SPAM | ImapMessage.FLAG_JUNKRECORDED;
-        }
-        if (recent) {
-            i4msg.sflags |= ImapMessage.FLAG_RECENT;
-            SessionData sdata = sessionData;
-            if (sdata != null) {
-                sdata.recentCount++;
+    protected boolean cache(ImapMessage i4msg, boolean recent) {
+        sequenceLock.lock();
+        try {
+            // provide the information missing from the DB search
+            if (folderIdentifier.id == Mailbox.ID_FOLDER_SPAM) {
+                i4msg.sflags |= ImapMessage.FLAG_SPAM | ImapMessage.FLAG_JUNKRECORDED;
             }
-        }
-        // update the folder information
-        ImapMessage last = null;
-        if (sequence.size() > 0 && (last = sequence.get(sequence.size() - 1)).imapUid > i4msg.imapUid) {
-            ZimbraLog.imap.debug("adding out of order UID. prev: %s current: %s", last, i4msg);
-            if (!insertOutOfOrder(i4msg)) {
-                return false;
+            if (recent) {
+                i4msg.sflags |= ImapMessage.FLAG_RECENT;
+                SessionData sdata = sessionData;
+                if (sdata != null) {
+                    sdata.recentCount++;
+                }
             }
-        } else if (last != null && last.imapUid == i4msg.imapUid) {
-            //should never occur, log so we can learn more if it does
-            ZimbraLog.imap.warn("duplicate UID %s %s added to sequence", i4msg, last, new Exception());
-            sequence.set(sequence.size() - 1, i4msg);
-            setIndex(i4msg, sequence.size());
-        } else {
-            //normal case, last item has lower UID so just add to the end
-            sequence.add(i4msg);
-            setIndex(i4msg, sequence.size());
+            // update the folder information
+            ImapMessage last = null;
+            if (sequence.size() > 0 && (last = sequence.get(sequence.size() - 1)).imapUid > i4msg.imapUid) {
+                ZimbraLog.imap.debug("adding out of order UID. prev: %s current: %s", last, i4msg);
+                if (!insertOutOfOrder(i4msg)) {
+                    return false;
+                }
+            } else if (last != null && last.imapUid == i4msg.imapUid) {
+                //should never occur, log so we can learn more if it does
+                ZimbraLog.imap.warn("duplicate UID %s %s added to sequence", i4msg, last, new Exception());
+                sequence.set(sequence.size() - 1, i4msg);
+                setIndex(i4msg, sequence.size());
+            } else {
+                //normal case, last item has lower UID so just add to the end
+                sequence.add(i4msg);
+                setIndex(i4msg, sequence.size());
+            }
+            // update the tag cache to include only the tags in the folder
+            updateTagCache(i4msg);
+            return true;
+        } finally {
+            sequenceLock.unlock();
         }
-        // update the tag cache to include only the tags in the folder
-        updateTagCache(i4msg);
-        return true;
     }
 
     private boolean insertOutOfOrder(ImapMessage i4msg) {
@@ -700,25 +749,35 @@ public final class ImapFolder implements ImapListener.ImapFolderData, java.io.Se
         }
     }
 
-    protected synchronized ImapMessageSet getAllMessages() {
-        ImapMessageSet result = new ImapMessageSet();
-        if (getSize() > 0) {
-            result.addAll(sequence);
-            result.remove(null);
+    protected ImapMessageSet getAllMessages() {
+        sequenceLock.lock();
+        try {
+            ImapMessageSet result = new ImapMessageSet();
+            if (getSize() > 0) {
+                result.addAll(sequence);
+                result.remove(null);
+            }
+            return result;
+        } finally {
+            sequenceLock.unlock();
         }
-        return result;
     }
 
-    protected synchronized ImapMessageSet getFlaggedMessages(ImapFlag i4flag) {
-        ImapMessageSet result = new ImapMessageSet();
-        if (i4flag != null && getSize() > 0) {
-            for (ImapMessage i4msg : sequence) {
-                if (i4msg != null && i4flag.matches(i4msg)) {
-                    result.add(i4msg);
+    protected ImapMessageSet getFlaggedMessages(ImapFlag i4flag) {
+        sequenceLock.lock();
+        try {
+            ImapMessageSet result = new ImapMessageSet();
+            if (i4flag != null && getSize() > 0) {
+                for (ImapMessage i4msg : sequence) {
+                    if (i4msg != null && i4flag.matches(i4msg)) {
+                        result.add(i4msg);
+                    }
                 }
             }
+            return result;
+        } finally {
+            sequenceLock.unlock();
         }
-        return result;
     }
 
     private static int parseId(String id) {
@@ -1061,59 +1120,69 @@ public final class ImapFolder implements ImapListener.ImapFolderData, java.io.Se
         return sb.toString();
     }
 
-    protected synchronized List<Integer> collapseExpunged(boolean byUID) {
-        if (getSize() == 0) {
-            return Collections.emptyList();
-        }
-        ZimbraLog.imap.debug("  ** iterating (collapseExpunged)");
-
-        boolean trimmed = false;
-        int seq = 1;
-        List<Integer> removed = new ArrayList<>();
-        for (ListIterator<ImapMessage> lit = sequence.listIterator(); lit.hasNext(); seq++) {
-            ImapMessage i4msg = lit.next();
-            if (i4msg.isExpunged()) {
-                ZimbraLog.imap.debug("  ** removing: %s", i4msg);
-                // uncache() removes pointers to the message from mMessageIds;
-                //   if the message appears again in sequence, it *must* be later and the
-                //   subsequent call to setIndex() will correctly update the mMessageIds mapping
-                uncache(i4msg);
-                lit.remove();
-                // note that we can't send expunge notifications for messages the client doesn't know about yet...
-                if (!i4msg.isAdded()) {
-                    removed.add(byUID ? i4msg.imapUid : seq);
+    protected List<Integer> collapseExpunged(boolean byUID) {
+        sequenceLock.lock();
+        try {
+            if (getSize() == 0) {
+                return Collections.emptyList();
+            }
+            ZimbraLog.imap.debug("  ** iterating (collapseExpunged)");
+
+            boolean trimmed = false;
+            int seq = 1;
+            List<Integer> removed = new ArrayList<>();
+            for (ListIterator<ImapMessage> lit = sequence.listIterator(); lit.hasNext(); seq++) {
+                ImapMessage i4msg = lit.next();
+                if (i4msg.isExpunged()) {
+                    ZimbraLog.imap.debug("  ** removing: %s", i4msg);
+                    // uncache() removes pointers to the message from mMessageIds;
+                    //   if the message appears again in sequence, it *must* be later and the
+                    //   subsequent call to setIndex() will correctly update the mMessageIds mapping
+                    uncache(i4msg);
+                    lit.remove();
+                    // note that we can't send expunge notifications for messages the client doesn't know about yet...
+                    if (!i4msg.isAdded()) {
+                        removed.add(byUID ? i4msg.imapUid : seq);
+                    }
+                    seq--;
+                    trimmed = true;
+                } else if (trimmed) {
+                    setIndex(i4msg, seq);
                 }
-                seq--;
-                trimmed = true;
-            } else if (trimmed) {
-                setIndex(i4msg, seq);
             }
+            return removed;
+        } finally {
+            sequenceLock.unlock();
         }
-        return removed;
     }
 
-    protected synchronized void restore(ImapListener sess, SessionData sdata)
+    protected void restore(ImapListener sess, SessionData sdata)
             throws ImapSessionClosedException, ServiceException {
-        session = sess;
-        MailboxStore sessMbox = session.getMailbox();
-        if (sessMbox == null) {
-            mailboxStore = null;
-            throw new ImapSessionClosedException();
-        }
-        mailboxStore = ImapMailboxStore.get(sessMbox, sessMbox.getAccountId());
-        if (mailboxStore == null) {
-            ZimbraLog.imap.warn("Unable to get mailboxStore corresponding to mailbox=%s sessionPath=%s",
-                    sessMbox, session.getPath());
-            throw new ImapSessionClosedException();
-        }
-        path = session.getPath();
-        // FIXME: NOT RESTORING sequence.msg.sflags PROPERLY -- need to serialize it!!!
-        sessionData = sdata;
-        if (folderIdentifier == null) {
-            ZimbraLog.imap.warn("Restored ImapFolder has null folderIdentifier mailbox=%s sessionPath=%s",
-                    sessMbox, session.getPath());
-            /* We're going to have big problems with this anyway, if this is true */
-            throw new ImapSessionClosedException();
+        sequenceLock.lock();
+        try {
+            session = sess;
+            MailboxStore sessMbox = session.getMailbox();
+            if (sessMbox == null) {
+                mailboxStore = null;
+                throw new ImapSessionClosedException();
+            }
+            mailboxStore = ImapMailboxStore.get(sessMbox, sessMbox.getAccountId());
+            if (mailboxStore == null) {
+                ZimbraLog.imap.warn("Unable to get mailboxStore corresponding to mailbox=%s sessionPath=%s",
+                        sessMbox, session.getPath());
+                throw new ImapSessionClosedException();
+            }
+            path = session.getPath();
+            // FIXME: NOT RESTORING sequence.msg.sflags PROPERLY -- need to serialize it!!!
+            sessionData = sdata;
+            if (folderIdentifier == null) {
+                ZimbraLog.imap.warn("Restored ImapFolder has null folderIdentifier mailbox=%s sessionPath=%s",
+                        sessMbox, session.getPath());
+                /* We're going to have big problems with this anyway, if this is true */
+                throw new ImapSessionClosedException();
+            }
+        } finally {
+            sequenceLock.unlock();
         }
     }
 
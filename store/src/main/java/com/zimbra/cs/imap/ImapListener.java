@@ -14,6 +14,7 @@ import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.google.common.base.MoreObjects;
 import com.zimbra.common.localconfig.DebugConfig;
@@ -48,6 +49,9 @@ public abstract class ImapListener extends Session {
     protected ImapHandler handler;
     private final ImapMailboxStore imapMboxStore;
     private final Map<Integer, Integer> renumberCount = new ConcurrentHashMap<>();
+    // guards paging of mFolder in and out of the session cache; an explicit lock rather than the object monitor so
+    //   that cache I/O does not pin a handler running on a virtual thread (lock order is Mailbox, then this lock)
+    private final ReentrantLock folderDataLock = new ReentrantLock();
 
     /** Number of queued notifications beyond which we deserialize the session,
      *  apply the changes, and reserialize the session.  This both constrains
@@ -536,9 +540,12 @@ public abstract class ImapListener extends Session {
             mbox.lock(true);
         }
         try {
-            synchronized (this) {
+            folderDataLock.lock();
+            try {
                 MANAGER.uncacheSession(this);
                 return isRegistered() ? (ImapListener)super.unregister() : this;
+            } finally {
+                folderDataLock.unlock();
             }
         } finally {
             if (mbox != null) {
@@ -547,6 +554,14 @@ public abstract class ImapListener extends Session {
         }
     }
 
+    void lockFolderData() {
+        folderDataLock.lock();
+    }
+
+    void unlockFolderData() {
+        folderDataLock.unlock();
+    }
+
     @Override
     public void doEncodeState(Element parent) {
         mFolder.doEncodeState(parent.addNonUniqueElement("imap"));
@@ -569,7 +584,8 @@ public abstract class ImapListener extends Session {
         // Need to lock in the same order here, otherwise can result in deadlock.
         mbox.lock(true); // serialize() locks Mailbox deep inside of it
         try {
-            synchronized (this) {
+            folderDataLock.lock();
+            try {
                 if (mFolder instanceof ImapFolder) { // if the data's already paged out, we can short-circuit
                     mFolder = createPagedFolderData(active, (ImapFolder) mFolder);
                 } else if (mFolder instanceof PagedFolderData) {
@@ -593,6 +609,8 @@ public abstract class ImapListener extends Session {
                         }
                     }
                 }
+            } finally {
+                folderDataLock.unlock();
             }
         } finally {
             mbox.unlock();
@@ -638,7 +656,8 @@ public abstract class ImapListener extends Session {
         }
         ImapHandler i4handler = handler;
         try {
-            synchronized (this) {
+            folderDataLock.lock();
+            try {
                 AddedItems added = new AddedItems();
                 if (pnsIn.deleted != null) {
                     @SuppressWarnings("unchecked")
@@ -662,6 +681,8 @@ public abstract class ImapListener extends Session {
                 }
 
                 mFolder.finishNotification(changeId);
+            } finally {
+                folderDataLock.unlock();
             }
 
             if (i4handler != null && i4handler.isIdle()) {
@@ -696,7 +717,8 @@ public abstract class ImapListener extends Session {
         // Need to lock in the same order here, otherwise can result in deadlock.
         mbox.lock(true); // PagedFolderData.replay() locks Mailbox deep inside of it.
         try {
-            synchronized (this) {
+            folderDataLock.lock();
+            try {
                 // if the data's already paged in, we can short-circuit
                 if (mFolder instanceof PagedFolderData) {
                     PagedFolderData paged = (PagedFolderData) mFolder;
@@ -730,6 +752,8 @@ public abstract class ImapListener extends Session {
                     }
                 }
                 return (ImapFolder) mFolder;
+            } finally {
+                folderDataLock.unlock();
             }
         } finally {
             mbox.unlock();
@@ -804,11 +828,14 @@ public abstract class ImapListener extends Session {
         }
         mbox.lock(true);
         try {
-            synchronized (this) {
+            folderDataLock.lock();
+            try {
                 PagedFolderData paged = mFolder instanceof PagedFolderData ? (PagedFolderData) mFolder : null;
                 if (paged != null) { // if the data's already paged in, we can short-circuit
                     MANAGER.updateAccessTime(paged.getCacheKey());
                 }
+            } finally {
+                folderDataLock.unlock();
             }
         } finally {
             mbox.unlock();
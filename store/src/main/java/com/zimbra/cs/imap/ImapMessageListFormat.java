@@ -0,0 +1,131 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.imap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.zimbra.cs.mailbox.MailItem;
+
+/**
+ * Format {@link ImapFolder} writes its message list in to the IMAP session caches.  The list is
+ * written column by column, one primitive array per {@link ImapMessage} field, with the distinct tag
+ * sets stored once, so that it's converted with bulk copies instead of serializing one object per
+ * message.  It's only a cache format: a selected folder still holds one {@code ImapMessage} per
+ * message.
+ */
+final class ImapMessageListFormat {
+    private static final int FORMAT_VERSION = 1;
+    private static final int NO_TAGS = -1;
+
+    private ImapMessageListFormat() {
+    }
+
+    /** Encodes messages in sequence (i.e. increasing UID) order. */
+    static byte[] encode(List<ImapMessage> messages) {
+        int size = messages.size();
+        int[] msgIds = new int[size];
+        int[] imapUids = new int[size];
+        short[] sflags = new short[size];
+        int[] flags = new int[size];
+        int[] tagSets = new int[size];
+        Map<List<String>, Integer> tagSetIds = new HashMap<>();
+        List<byte[]> encodedTags = new ArrayList<>();
+        int tagBytes = 0;
+        for (int i = 0; i < size; i++) {
+            ImapMessage i4msg = messages.get(i);
+            msgIds[i] = i4msg.msgId;
+            imapUids[i] = i4msg.imapUid;
+            sflags[i] = i4msg.sflags;
+            flags[i] = i4msg.flags;
+            if (i4msg.tags == null) {
+                tagSets[i] = NO_TAGS;
+            } else {
+                Integer tagSet = tagSetIds.get(Arrays.asList(i4msg.tags));
+                if (tagSet == null) {
+                    tagSet = encodedTags.size();
+                    tagSetIds.put(Arrays.asList(i4msg.tags), tagSet);
+                    byte[] encoded = encodeTagSet(i4msg.tags);
+                    encodedTags.add(encoded);
+                    tagBytes += encoded.length;
+                }
+                tagSets[i] = tagSet;
+            }
+        }
+        ByteBuffer buf = ByteBuffer.allocate(3 * Integer.BYTES + tagBytes
+                + size * (4 * Integer.BYTES + Short.BYTES));
+        buf.putInt(FORMAT_VERSION).putInt(size).putInt(encodedTags.size());
+        for (byte[] encoded : encodedTags) {
+            buf.put(encoded);
+        }
+        buf.asIntBuffer().put(msgIds).put(imapUids).put(flags).put(tagSets);
+        buf.position(buf.position() + 4 * size * Integer.BYTES);
+        buf.asShortBuffer().put(sflags);
+        return buf.array();
+    }
+
+    /** Decodes the messages, numbering them in order from sequence number 1. */
+    static List<ImapMessage> decode(byte[] data) {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        int version = buf.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("unknown IMAP message list format " + version);
+        }
+        int size = buf.getInt();
+        String[][] tagSetTable = new String[buf.getInt()][];
+        for (int i = 0; i < tagSetTable.length; i++) {
+            tagSetTable[i] = decodeTagSet(buf);
+        }
+        int[] msgIds = new int[size];
+        int[] imapUids = new int[size];
+        int[] flags = new int[size];
+        int[] tagSets = new int[size];
+        short[] sflags = new short[size];
+        buf.asIntBuffer().get(msgIds).get(imapUids).get(flags).get(tagSets);
+        buf.position(buf.position() + 4 * size * Integer.BYTES);
+        buf.asShortBuffer().get(sflags);
+
+        List<ImapMessage> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ImapMessage i4msg = new ImapMessage(msgIds[i], MailItem.Type.MESSAGE, imapUids[i], flags[i],
+                    tagSets[i] == NO_TAGS ? null : tagSetTable[tagSets[i]]);
+            // session flags carry the contact type as well
+            i4msg.sflags = sflags[i];
+            i4msg.sequence = i + 1;
+            messages.add(i4msg);
+        }
+        return messages;
+    }
+
+    private static byte[] encodeTagSet(String[] tags) {
+        byte[][] names = new byte[tags.length][];
+        int length = Integer.BYTES;
+        for (int i = 0; i < tags.length; i++) {
+            names[i] = tags[i].getBytes(StandardCharsets.UTF_8);
+            length += Integer.BYTES + names[i].length;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(length).putInt(names.length);
+        for (byte[] name : names) {
+            buf.putInt(name.length).put(name);
+        }
+        return buf.array();
+    }
+
+    private static String[] decodeTagSet(ByteBuffer buf) {
+        String[] tags = new String[buf.getInt()];
+        for (int i = 0; i < tags.length; i++) {
+            byte[] name = new byte[buf.getInt()];
+            buf.get(name);
+            tags[i] = new String(name, StandardCharsets.UTF_8);
+        }
+        return tags;
+    }
+}
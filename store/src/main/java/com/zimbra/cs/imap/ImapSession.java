@@ -75,9 +75,14 @@ public class ImapSession extends ImapListener {
         }
     }
 
-    synchronized int getFootprint() {
-        // FIXME: consider saved search results, in-memory data for paged sessions
-        return mFolder instanceof ImapFolder ? mFolder.getSize() : 0;
+    int getFootprint() {
+        lockFolderData();
+        try {
+            // FIXME: consider saved search results, in-memory data for paged sessions
+            return mFolder instanceof ImapFolder ? mFolder.getSize() : 0;
+        } finally {
+            unlockFolderData();
+        }
     }
 
     /** If the folder is selected READ-WRITE, updates its high-water RECENT
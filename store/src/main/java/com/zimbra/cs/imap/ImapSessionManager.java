@@ -455,7 +455,8 @@ final class ImapSessionManager {
             return null;
         }
         //   FIXME: may want to prefer loaded folders over paged-out folders
-        synchronized (i4listener) {
+        i4listener.lockFolderData();
+        try {
             ImapFolder i4selected;
             try {
                 i4selected = i4listener.getImapFolder();
@@ -481,6 +482,8 @@ final class ImapSessionManager {
                 i4listener.unregister();
             }
             return i4list;
+        } finally {
+            i4listener.unlockFolderData();
         }
     }
 
@@ -22,13 +22,12 @@ import com.zimbra.cs.mailbox.Tag;
 import com.zimbra.cs.service.util.ItemId;
 import com.zimbra.cs.util.IOUtil;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumSet;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -94,6 +93,8 @@ public class DBQueryOperation extends QueryOperation {
   private final List<QueryInfo> queryInfo = new ArrayList<>();
 
   private DbSearch.FetchMode fetch = null;
+  /** What {@link #dbHits} were fetched with, fewer columns than {@link #fetch} for DB-first joins. */
+  private DbSearch.FetchMode dbHitsFetch = null;
   private QueryExecuteMode executeMode = null;
 
   private enum QueryExecuteMode {
@@ -540,7 +541,7 @@ public class DBQueryOperation extends QueryOperation {
 
           if (docs == null || !ZimbraQueryResultsImpl.shouldAddDuplicateHits(sr.getType())) {
             ZimbraHit toAdd =
-                context.getResults().getZimbraHit(context.getMailbox(), sr, null, fetch);
+                context.getResults().getZimbraHit(context.getMailbox(), sr, null, dbHitsFetch);
             if (toAdd != null) {
               // make sure we only return each hit once
               if (!mSeenHits.containsKey(toAdd)) {
@@ -551,7 +552,7 @@ public class DBQueryOperation extends QueryOperation {
           } else {
             for (Document doc : docs) {
               ZimbraHit toAdd =
-                  context.getResults().getZimbraHit(context.getMailbox(), sr, doc, fetch);
+                  context.getResults().getZimbraHit(context.getMailbox(), sr, doc, dbHitsFetch);
               if (toAdd != null) {
                 // make sure we only return each hit once
                 if (!mSeenHits.containsKey(toAdd)) {
@@ -655,12 +656,22 @@ public class DBQueryOperation extends QueryOperation {
 
   private void dbSearch(List<DbSearch.Result> results, SortBy sort, int offset, int size)
       throws ServiceException {
+    dbSearch(results, fetch, sort, offset, size);
+  }
+
+  private void dbSearch(
+      List<DbSearch.Result> results,
+      DbSearch.FetchMode fetchMode,
+      SortBy sort,
+      int offset,
+      int size)
+      throws ServiceException {
     long start = System.currentTimeMillis();
     results.addAll(
         context
             .getMailbox()
             .index
-            .search(constraints, fetch, sort, offset, size, context.getParams().inDumpster()));
+            .search(constraints, fetchMode, sort, offset, size, context.getParams().inDumpster()));
     ZimbraLog.search.debug("DBSearch elapsed=%d", System.currentTimeMillis() - start);
   }
 
@@ -696,10 +707,16 @@ public class DBQueryOperation extends QueryOperation {
     DbSearchConstraints.Leaf sc = getTopLeafConstraint();
     sc.hasIndexId = Boolean.TRUE;
 
+    // most of the candidates usually don't match the text part, don't build their items: those of
+    // the matching ones are loaded in batches by the ItemPreloadingGrouper
+    if (fetch == DbSearch.FetchMode.MAIL_ITEM && context.getParams().getPrefetch()) {
+      dbHitsFetch = DbSearch.FetchMode.ID;
+    }
+
     do {
       // (1) Get the next chunk of results from the DB
       List<DbSearch.Result> dbResults = new ArrayList<>();
-      dbSearch(dbResults, sort, dbOffset, MAX_HITS_PER_CHUNK);
+      dbSearch(dbResults, dbHitsFetch, sort, dbOffset, MAX_HITS_PER_CHUNK);
 
       if (dbResults.size() < MAX_HITS_PER_CHUNK) {
         endOfHits = true;
@@ -712,18 +729,10 @@ public class DBQueryOperation extends QueryOperation {
         //    for "ORIGINAL-LUCENE-PART AND id:(RESULTS-FROM-1-ABOVE)"
         try {
           // For each search result, do two things:
-          //    -- remember the indexId in a hash, so we can find the SearchResult later
+          //    -- remember the indexId, so we can find the SearchResult later
           //    -- add that indexId to our new booleanquery
-          Map<Integer, List<DbSearch.Result>> mailItemToResultsMap =
-              new HashMap<>();
-
+          IndexIdLookup mailItemToResults = new IndexIdLookup(dbResults);
           for (DbSearch.Result sr : dbResults) {
-            List<DbSearch.Result> results = mailItemToResultsMap.get(sr.getIndexId());
-            if (results == null) {
-              results = new LinkedList<>();
-              mailItemToResultsMap.put(sr.getIndexId(), results);
-            }
-            results.add(sr);
             // add the new query to the mLuceneOp's query
             luceneOp.addFilterClause(
                 new Term(LuceneFields.L_MAILBOX_BLOB_ID, String.valueOf(sr.getIndexId())));
@@ -740,10 +749,7 @@ public class DBQueryOperation extends QueryOperation {
               hasMore = false;
             }
             for (int indexId : indexIds) {
-              List<DbSearch.Result> results = mailItemToResultsMap.get(indexId);
-              if (results != null) {
-                dbHits.addAll(results);
-              } else {
+              if (!mailItemToResults.addResults(indexId, dbHits)) {
                 ZimbraLog.search.warn(
                     "Lucene returned item ID %d but wasn't in resultMap", indexId);
                 throw ServiceException.FAILURE(
@@ -824,6 +830,7 @@ public class DBQueryOperation extends QueryOperation {
     } else {
       SortBy sort = getSortOrder();
       dbHits = new ArrayList<>();
+      dbHitsFetch = fetch;
       switch (executeMode) {
         case NO_RESULTS:
           assert (false); // notreached
@@ -1280,4 +1287,40 @@ public class DBQueryOperation extends QueryOperation {
   public long getCursorOffset() {
     return cursorOffset;
   }
+
+  /**
+   * Finds the DB results of a DB-first join by the index ids Lucene returns. The index ids are
+   * packed with the positions of their results into a sorted {@code long} array, so that a chunk of
+   * a thousand candidates doesn't box an {@link Integer} and allocate a list for each of them.
+   */
+  private static final class IndexIdLookup {
+    private final List<DbSearch.Result> results;
+    private final long[] keys; // index id in the high 32 bits, position in results in the low ones
+
+    IndexIdLookup(List<DbSearch.Result> results) {
+      this.results = results;
+      keys = new long[results.size()];
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = ((long) results.get(i).getIndexId() << 32) | i;
+      }
+      Arrays.sort(keys);
+    }
+
+    /**
+     * Adds the results with the index id to {@code to}, in the order they were returned by the DB.
+     *
+     * @return false if there are none
+     */
+    boolean addResults(int indexId, List<DbSearch.Result> to) {
+      int i = Arrays.binarySearch(keys, (long) indexId << 32);
+      if (i < 0) {
+        i = -i - 1;
+      }
+      int start = to.size();
+      for (; i < keys.length && (int) (keys[i] >> 32) == indexId; i++) {
+        to.add(results.get((int) keys[i]));
+      }
+      return to.size() > start;
+    }
+  }
 }
@@ -8,7 +8,11 @@ package com.zimbra.cs.index;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.apache.lucene.store.BufferedIndexInput;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.IndexInput;
@@ -27,16 +31,33 @@ import com.zimbra.cs.stats.ZimbraPerf;
 /**
  * Lucene {@link FSDirectory} wrapper to count I/O bytes.
  * <p>
- * This forwards all its method calls to the underlying {@link FSDirectory}.
+ * This forwards all its method calls to the underlying {@link FSDirectory}. Besides the server wide
+ * {@link ZimbraPerf} counters, each instance keeps the I/O statistics of its own index. Reads and writes are
+ * reported in batches of a buffer's worth of bytes, not per call. Nothing is counted while
+ * {@link LC#zimbra_index_disable_perf_counters} is set.
  *
  * @see FSDirectory
  * @author ysasaki
  */
 public final class LuceneDirectory extends Directory {
     private final FSDirectory directory;
+    private final MMapDirectory mmapDirectory;
+    private final HotPolicy hotPolicy;
+    private final boolean disableCounters = LC.zimbra_index_disable_perf_counters.booleanValue();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder filesOpened = new LongAdder();
 
     private LuceneDirectory(FSDirectory dir) {
         directory = dir;
+        mmapDirectory = null;
+        hotPolicy = null;
+    }
+
+    private LuceneDirectory(FSDirectory dir, MMapDirectory mmap, HotPolicy policy) {
+        directory = dir;
+        mmapDirectory = mmap;
+        hotPolicy = policy;
     }
 
     /**
@@ -66,6 +87,10 @@ public final class LuceneDirectory extends Directory {
      *      space, and you don't rely on overwriting files on Windows) but it's still an important limitation to be
      *      aware of. This class supplies a (possibly dangerous) workaround mentioned in the bug report, which may fail
      *      on non-Sun JVMs.
+     *  <li>{@code auto} - {@code nio}, except for the files opened for read while the index is hot, which are
+     *      memory mapped. An index is hot once it's been searched {@link LC#zimbra_index_lucene_mmap_hot_searches}
+     *      times within {@link LC#zimbra_index_lucene_mmap_hot_window} seconds, and cools down after a window with
+     *      fewer searches. Only the few busy mailboxes of a server take virtual memory for their index.
      * </ul>
      *
      * @param path directory path
@@ -79,6 +104,14 @@ public final class LuceneDirectory extends Directory {
             dir = new MMapDirectory(path, new SingleInstanceLockFactory());
         } else if ("simple".equals(impl)) {
             dir = new SimpleFSDirectory(path, new SingleInstanceLockFactory());
+        } else if ("auto".equals(impl)) {
+            dir = new NIOFSDirectory(path, new SingleInstanceLockFactory());
+            // only opens inputs, locking is left to the NIO directory
+            MMapDirectory mmap = new MMapDirectory(path, new SingleInstanceLockFactory());
+            mmap.setUseUnmap(MMapDirectory.UNMAP_SUPPORTED);
+            ZimbraLog.index.info("OpenLuceneIndex impl=auto,dir=%s", path);
+            return new LuceneDirectory(dir, mmap, new HotPolicy(LC.zimbra_index_lucene_mmap_hot_searches.intValue(),
+                    LC.zimbra_index_lucene_mmap_hot_window.longValue() * 1000L));
         } else {
             dir = FSDirectory.open(path, new SingleInstanceLockFactory());
         }
@@ -86,6 +119,79 @@ public final class LuceneDirectory extends Directory {
         return new LuceneDirectory(dir);
     }
 
+    /**
+     * Records a search of the index, which is what makes an index hot in {@code auto} mode. A hot index memory maps
+     * the files opened from now on, i.e. the segments of the readers opened or reopened after it became hot.
+     */
+    public void recordSearch() {
+        if (hotPolicy != null) {
+            hotPolicy.recordSearch(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Returns true if files opened for read are currently memory mapped.
+     */
+    public boolean isMapped() {
+        return directory instanceof MMapDirectory ||
+                (hotPolicy != null && hotPolicy.isHot(System.currentTimeMillis()));
+    }
+
+    /**
+     * Returns the number of bytes read from this index since it was opened.
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * Returns the number of bytes written to this index since it was opened.
+     */
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * Returns the number of files opened for read or write since this index was opened.
+     */
+    public long getFilesOpened() {
+        return filesOpened.sum();
+    }
+
+    /**
+     * Access frequency of an index. The searches are counted in fixed windows: the index is hot while the current
+     * or the previous window has enough searches.
+     */
+    static final class HotPolicy {
+        private final int searches;
+        private final long window;
+        private final AtomicLong windowStart;
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile boolean hot = false;
+
+        HotPolicy(int searches, long window) {
+            this.searches = searches;
+            this.window = window;
+            windowStart = new AtomicLong(System.currentTimeMillis());
+        }
+
+        void recordSearch(long now) {
+            long start = windowStart.get();
+            if (now - start >= window && windowStart.compareAndSet(start, now)) {
+                // the count only tells about the previous window if that window ended just now
+                hot = count.getAndSet(0) >= searches && now - start < window * 2;
+            }
+            if (count.incrementAndGet() >= searches) {
+                hot = true;
+            }
+        }
+
+        boolean isHot(long now) {
+            // the flag isn't refreshed while nobody searches, an index idle for a whole window is cold
+            return hot && now - windowStart.get() < window * 2;
+        }
+    }
+
     public File getDirectory() {
         return directory.getDirectory();
     }
@@ -124,7 +230,9 @@ public final class LuceneDirectory extends Directory {
 
     @Override
     public IndexOutput createOutput(String name) throws IOException {
-        return new LuceneIndexOutput(directory.createOutput(name));
+        IndexOutput out = directory.createOutput(name);
+        opened(false);
+        return new LuceneIndexOutput(this, out);
     }
 
     @Override
@@ -134,12 +242,41 @@ public final class LuceneDirectory extends Directory {
 
     @Override
     public IndexInput openInput(String name) throws IOException {
-        return new LuceneIndexInput(directory.openInput(name));
+        boolean mapped = isMapped();
+        IndexInput in = mapped && mmapDirectory != null ? mmapDirectory.openInput(name) : directory.openInput(name);
+        opened(mapped);
+        return new LuceneIndexInput(this, in);
     }
 
     @Override
     public IndexInput openInput(String name, int bufferSize) throws IOException {
-        return new LuceneIndexInput(directory.openInput(name, bufferSize));
+        boolean mapped = isMapped();
+        IndexInput in = mapped && mmapDirectory != null ?
+                mmapDirectory.openInput(name, bufferSize) : directory.openInput(name, bufferSize);
+        opened(mapped);
+        return new LuceneIndexInput(this, in);
+    }
+
+    private void opened(boolean mapped) {
+        if (!disableCounters) {
+            filesOpened.increment();
+            ZimbraPerf.COUNTER_IDX_FILES_OPENED.increment();
+            ZimbraPerf.COUNTER_IDX_MMAP.increment(mapped ? 100 : 0);
+        }
+    }
+
+    private void read(long len) {
+        if (!disableCounters && len > 0) {
+            bytesRead.add(len);
+            ZimbraPerf.COUNTER_IDX_BYTES_READ.increment(len);
+        }
+    }
+
+    private void written(long len) {
+        if (!disableCounters && len > 0) {
+            bytesWritten.add(len);
+            ZimbraPerf.COUNTER_IDX_BYTES_WRITTEN.increment(len);
+        }
     }
 
     @Override
@@ -154,7 +291,13 @@ public final class LuceneDirectory extends Directory {
 
     @Override
     public void close() throws IOException {
-        directory.close();
+        try {
+            directory.close();
+        } finally {
+            if (mmapDirectory != null) {
+                mmapDirectory.close();
+            }
+        }
     }
 
     @Override
@@ -177,37 +320,51 @@ public final class LuceneDirectory extends Directory {
         return directory.toString();
     }
 
+    /**
+     * Forwards the reads to the underlying input, so that memory mapped inputs keep reading straight from the
+     * mapping. Like any Lucene input it's used by one thread at a time, so the bytes are summed in a plain field and
+     * reported in batches of {@link BufferedIndexInput#BUFFER_SIZE} and when the input is closed. Clones are never
+     * closed by Lucene, they only report full batches.
+     */
     private static final class LuceneIndexInput extends IndexInput {
+        private final LuceneDirectory owner;
         private final IndexInput input;
-        private boolean disableCounters = LC.zimbra_index_disable_perf_counters.booleanValue();
+        private long pending = 0;
 
-        LuceneIndexInput(IndexInput in) {
+        LuceneIndexInput(LuceneDirectory dir, IndexInput in) {
+            owner = dir;
             input = in;
         }
 
+        private void count(int len) {
+            pending += len;
+            if (pending >= BufferedIndexInput.BUFFER_SIZE) {
+                report();
+            }
+        }
+
+        private void report() {
+            owner.read(pending);
+            pending = 0;
+        }
+
         @Override
         public byte readByte() throws IOException {
-            if (!disableCounters) {
-                ZimbraPerf.COUNTER_IDX_BYTES_READ.increment(1);
-            }
-            return input.readByte();
+            byte b = input.readByte();
+            count(1);
+            return b;
         }
 
         @Override
         public void readBytes(byte[] b, int offset, int len) throws IOException {
-            if (!disableCounters) {
-                ZimbraPerf.COUNTER_IDX_BYTES_READ.increment(len);
-            }
             input.readBytes(b, offset, len);
+            count(len);
         }
 
         @Override
-        public void readBytes(byte[] b, int offset, int len, boolean useBuffer)
-            throws IOException {
-            if (!disableCounters) {
-                ZimbraPerf.COUNTER_IDX_BYTES_READ.increment(len);
-            }
+        public void readBytes(byte[] b, int offset, int len, boolean useBuffer) throws IOException {
             input.readBytes(b, offset, len, useBuffer);
+            count(len);
         }
 
         @Override
@@ -217,7 +374,11 @@ public final class LuceneDirectory extends Directory {
 
         @Override
         public void close() throws IOException {
-            input.close();
+            try {
+                input.close();
+            } finally {
+                report();
+            }
         }
 
         @Override
@@ -237,50 +398,67 @@ public final class LuceneDirectory extends Directory {
 
         @Override
         public Object clone() {
-            return new LuceneIndexInput((IndexInput) input.clone());
+            return new LuceneIndexInput(owner, (IndexInput) input.clone());
         }
     }
 
+    /**
+     * Counts the bytes written in batches of {@link BufferedIndexInput#BUFFER_SIZE}, reported when a batch is full
+     * and when the output is flushed or closed.
+     */
     private static final class LuceneIndexOutput extends IndexOutput {
+        private final LuceneDirectory owner;
         private final IndexOutput output;
-        private boolean disableCounters = LC.zimbra_index_disable_perf_counters.booleanValue();
+        private long pending = 0;
 
-        LuceneIndexOutput(IndexOutput out) {
+        LuceneIndexOutput(LuceneDirectory dir, IndexOutput out) {
+            owner = dir;
             output = out;
         }
 
+        private void count(int len) {
+            pending += len;
+            if (pending >= BufferedIndexInput.BUFFER_SIZE) {
+                report();
+            }
+        }
+
+        private void report() {
+            owner.written(pending);
+            pending = 0;
+        }
+
         @Override
         public void writeByte(byte b) throws IOException {
-            if (!disableCounters) {
-                ZimbraPerf.COUNTER_IDX_BYTES_WRITTEN.increment(1);
-            }
             output.writeByte(b);
+            count(1);
         }
 
         @Override
         public void writeBytes(byte[] b, int len) throws IOException {
-            if (!disableCounters) {
-                ZimbraPerf.COUNTER_IDX_BYTES_WRITTEN.increment(len);
-            }
             output.writeBytes(b, len);
+            count(len);
         }
 
         @Override
         public void writeBytes(byte[] b, int offset, int len) throws IOException {
-            if (!disableCounters) {
-                ZimbraPerf.COUNTER_IDX_BYTES_WRITTEN.increment(len);
-            }
             output.writeBytes(b, offset, len);
+            count(len);
         }
 
         @Override
         public void flush() throws IOException {
             output.flush();
+            report();
         }
 
         @Override
         public void close() throws IOException {
-            output.close();
+            try {
+                output.close();
+            } finally {
+                report();
+            }
         }
 
         @Override
@@ -18,14 +18,17 @@ import com.zimbra.cs.mailbox.Folder;
 import com.zimbra.cs.mailbox.MailItem;
 import com.zimbra.cs.mailbox.Mailbox;
 import com.zimbra.cs.mailbox.MailboxIndex;
+import com.zimbra.cs.stats.ZimbraPerf;
 import com.zimbra.cs.util.IOUtil;
 import com.zimbra.cs.volume.Volume;
 import com.zimbra.cs.volume.VolumeManager;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
@@ -52,6 +55,7 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.NoSuchDirectoryException;
 import org.apache.lucene.util.Version;
 
@@ -251,22 +255,68 @@ public final class LuceneIndex extends IndexStore {
       return; // already warmed up
     }
     long start = System.currentTimeMillis();
-    try {
-      try (IndexSearcher searcher = (IndexSearcher) openSearcher()) {
-        searcher.search(
-            new TermQuery(new Term(LuceneFields.L_CONTENT, "zimbra")),
-            1,
-            new Sort(new SortField(LuceneFields.L_SORT_DATE, SortField.STRING, true)));
-      }
+    try (IndexSearcherImpl searcher = (IndexSearcherImpl) openSearcher()) {
+      warm(searcher.luceneSearcher);
     } catch (IOException e) {
       ZimbraLog.search.warn("Failed to warm up", e);
     }
     ZimbraLog.search.debug("WarmUpLuceneSearcher elapsed=%d", System.currentTimeMillis() - start);
   }
 
+  /** Loads the per-segment caches used by the most common sort order. */
+  private static void warm(IndexSearcher searcher) throws IOException {
+    searcher.search(
+        new TermQuery(new Term(LuceneFields.L_CONTENT, "zimbra")),
+        1,
+        new Sort(new SortField(LuceneFields.L_SORT_DATE, SortField.STRING, true)));
+  }
+
+  /**
+   * Warms the segments of {@code newReader} that {@code oldReader} didn't have. Segments only
+   * differing by their deletions share their caches with the old reader.
+   *
+   * @return number of warmed segments
+   */
+  private static int warmNewSegments(IndexReader oldReader, IndexReader newReader)
+      throws IOException {
+    IndexReader[] oldSegments = oldReader.getSequentialSubReaders();
+    IndexReader[] newSegments = newReader.getSequentialSubReaders();
+    if (newSegments == null) {
+      return 0;
+    }
+    Set<Object> known = new HashSet<>();
+    if (oldSegments != null) {
+      for (IndexReader segment : oldSegments) {
+        known.add(segment.getCoreCacheKey());
+      }
+    }
+    int warmed = 0;
+    for (IndexReader segment : newSegments) {
+      if (!known.contains(segment.getCoreCacheKey())) {
+        try (IndexSearcher searcher = new IndexSearcher(segment)) {
+          warm(searcher);
+        }
+        warmed++;
+      }
+    }
+    return warmed;
+  }
+
+  /** Returns the directory of this index, which keeps the I/O statistics of the mailbox. */
+  public LuceneDirectory getLuceneDirectory() {
+    return luceneDirectory;
+  }
+
   /** Removes IndexSearcher used for this index from cache. */
   @Override
   public void evict() {
+    ZimbraLog.index.debug(
+        "LuceneIO mbox=%d,mapped=%b,read=%d,written=%d,opened=%d",
+        mailbox.getId(),
+        luceneDirectory.isMapped(),
+        luceneDirectory.getBytesRead(),
+        luceneDirectory.getBytesWritten(),
+        luceneDirectory.getFilesOpened());
     if (mailbox.isGalSyncMailbox()) {
       IOUtil.closeQuietly(GAL_SEARCHER_CACHE.remove(mailbox.getId()));
     } else {
@@ -293,6 +343,25 @@ public final class LuceneIndex extends IndexStore {
     }
   }
 
+  /**
+   * Opens a reader from the current writer, which sees the writer's changes without reading them
+   * back from the index directory.
+   *
+   * @return null unless NRT is enabled and a writer is open
+   */
+  private IndexReader openNearRealTimeReader() throws IOException {
+    assert (Thread.holdsLock(this));
+    IndexWriterRef ref = writerInfo.getWriterRef();
+    if (ref == null || !LC.zimbra_index_lucene_nrt.booleanValue()) {
+      return null;
+    }
+    try {
+      return IndexReader.open(ref.get(), true);
+    } catch (AlreadyClosedException e) { // the writer failed and is being closed
+      return null;
+    }
+  }
+
   private IndexWriter openIndexWriter(IndexWriterConfig.OpenMode mode, boolean tryRepair)
       throws IOException {
     try {
@@ -359,6 +428,7 @@ public final class LuceneIndex extends IndexStore {
    */
   @Override
   public synchronized ZimbraIndexSearcher openSearcher() throws IOException {
+    luceneDirectory.recordSearch();
     IndexSearcherImpl searcher = null;
     if (mailbox.isGalSyncMailbox()) {
       searcher = GAL_SEARCHER_CACHE.get(mailbox.getId());
@@ -374,7 +444,8 @@ public final class LuceneIndex extends IndexStore {
     READER_THROTTLE.acquireUninterruptibly();
     long start = System.currentTimeMillis();
     try {
-      searcher = new IndexSearcherImpl(openIndexReader(true));
+      IndexReader reader = openNearRealTimeReader();
+      searcher = new IndexSearcherImpl(reader != null ? reader : openIndexReader(true));
     } catch (IOException e) {
       // Handle the special case of trying to open a not-yet-created index, by opening for write and
       // immediately
@@ -504,6 +575,7 @@ public final class LuceneIndex extends IndexStore {
         repair(e);
         throw e; // fail to commit regardless of the repair
       }
+      refreshSearcher(writerInfo.getWriterRef().get());
       mailbox.index.submit(task); // merge must run in background
       success = true;
     } catch (RejectedExecutionException e) {
@@ -515,6 +587,77 @@ public final class LuceneIndex extends IndexStore {
     }
   }
 
+  /**
+   * Replaces the cached searcher, if any, with one that sees the changes just committed by {@code
+   * writer}. Only the segments that changed are opened and warmed, the others are shared with the
+   * previous searcher. In NRT mode the new reader is obtained from the writer, otherwise from the
+   * index directory. On failure the cached searcher is evicted, and the next search opens a new one.
+   */
+  private void refreshSearcher(IndexWriter writer) {
+    assert (Thread.holdsLock(this));
+    IndexSearcherImpl searcher;
+    if (mailbox.isGalSyncMailbox()) {
+      searcher = GAL_SEARCHER_CACHE.get(mailbox.getId());
+    } else {
+      searcher = SEARCHER_CACHE.getIfPresent(mailbox.getId());
+    }
+    if (searcher == null) {
+      return;
+    }
+    searcher.inc(); // don't let the cache close it while reopening
+    try {
+      refreshSearcher(searcher, writer);
+    } finally {
+      IOUtil.closeQuietly(searcher);
+    }
+  }
+
+  private void refreshSearcher(IndexSearcherImpl searcher, IndexWriter writer) {
+    long start = ZimbraPerf.STOPWATCH_IDX_REOPEN.start();
+    IndexReader oldReader = searcher.luceneSearcher.getIndexReader();
+    IndexSearcherImpl newSearcher;
+    int newSegments;
+    try {
+      IndexReader newReader =
+          LC.zimbra_index_lucene_nrt.booleanValue()
+              ? IndexReader.openIfChanged(oldReader, writer, true)
+              : IndexReader.openIfChanged(oldReader, true);
+      if (newReader == null) {
+        return;
+      }
+      newSearcher = new IndexSearcherImpl(newReader);
+      try {
+        newSegments = warmNewSegments(oldReader, newReader);
+      } catch (IOException e) {
+        IOUtil.closeQuietly(newSearcher);
+        throw e;
+      }
+    } catch (IOException | AlreadyClosedException e) {
+      ZimbraLog.search.warn("Failed to reopen IndexSearcher %s", searcher, e);
+      evict();
+      return;
+    }
+
+    if (mailbox.isGalSyncMailbox()) {
+      // make sure that we close the previous value associated with the key
+      IOUtil.closeQuietly(GAL_SEARCHER_CACHE.put(mailbox.getId(), newSearcher));
+    } else {
+      // Bug: 69870
+      // No need to close the previous value associated with the key here.
+      // CacheBuilder sends a callback using removalListener onRemoval(..)
+      // which eventually closes IndexSearcher
+      SEARCHER_CACHE.asMap().put(mailbox.getId(), newSearcher);
+    }
+    long elapsed = ZimbraPerf.STOPWATCH_IDX_REOPEN.stop(start);
+    ZimbraPerf.COUNTER_IDX_SEGMENTS.increment(newSearcher.getSegmentCount());
+    ZimbraLog.search.debug(
+        "ReopenLuceneSearcher mbox=%d,%s,newSegments=%d,elapsed=%d",
+        mailbox.getId(),
+        newSearcher,
+        newSegments,
+        elapsed);
+  }
+
   /**
    * Called by {@link IndexWriterRef#dec()}. Can be called by the thread that opened the writer or
    * the merge thread.
@@ -665,6 +808,21 @@ public final class LuceneIndex extends IndexStore {
     config.setMergeScheduler(new MergeScheduler());
     config.setMaxBufferedDocs(LC.zimbra_index_lucene_max_buffered_docs.intValue());
     config.setRAMBufferSizeMB(LC.zimbra_index_lucene_ram_buffer_size_kb.intValue() / 1024.0);
+    if (LC.zimbra_index_lucene_nrt.booleanValue()) {
+      // keep the segment readers open between commits so that NRT readers share them
+      config.setReaderPooling(true);
+      config.setReaderTermsIndexDivisor(LC.zimbra_index_lucene_term_index_divisor.intValue());
+      // merged segments are warmed before NRT readers see them, the others by refreshSearcher()
+      config.setMergedSegmentWarmer(
+          new IndexWriter.IndexReaderWarmer() {
+            @Override
+            public void warm(IndexReader reader) throws IOException {
+              try (IndexSearcher searcher = new IndexSearcher(reader)) {
+                LuceneIndex.warm(searcher);
+              }
+            }
+          });
+    }
     if (LC.zimbra_index_lucene_merge_policy.booleanValue()) {
       LogDocMergePolicy policy = new LogDocMergePolicy();
       config.setMergePolicy(policy);
@@ -748,33 +906,8 @@ public final class LuceneIndex extends IndexStore {
 
     @Override
     public void close() throws IOException {
+      // also refreshes the cached searcher, while the writer is still known to be open
       writer.index.commitWriter();
-      ZimbraIndexSearcher searcher = null;
-      if (writer.getIndex().mailbox.isGalSyncMailbox()) {
-        searcher = GAL_SEARCHER_CACHE.get(writer.getIndex().mailbox.getId());
-      } else {
-        searcher = SEARCHER_CACHE.getIfPresent(writer.getIndex().mailbox.getId());
-      }
-      if (searcher != null) {
-        ZimbraLuceneIndexReader ndxReader = (ZimbraLuceneIndexReader) searcher.getIndexReader();
-        IndexReader newReader = IndexReader.openIfChanged(ndxReader.getLuceneReader(), true);
-        if (newReader != null) {
-          if (writer.getIndex().mailbox.isGalSyncMailbox()) {
-            // make sure that we close the previous value associated with the key
-            IOUtil.closeQuietly(
-                GAL_SEARCHER_CACHE.put(
-                    writer.getIndex().mailbox.getId(), new IndexSearcherImpl(newReader)));
-          } else {
-            // Bug: 69870
-            // No need to close the previous value associated with the key here.
-            // CacheBuilder sends a callback using removalListener onRemoval(..)
-            // which eventually closes IndexSearcher
-            SEARCHER_CACHE
-                .asMap()
-                .put(writer.getIndex().mailbox.getId(), new IndexSearcherImpl(newReader));
-          }
-        }
-      }
     }
 
     @Override
@@ -907,6 +1040,19 @@ public final class LuceneIndex extends IndexStore {
       count.incrementAndGet();
     }
 
+    int getSegmentCount() {
+      IndexReader[] segments = luceneSearcher.getIndexReader().getSequentialSubReaders();
+      return segments == null ? 1 : segments.length;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("docs", luceneSearcher.getIndexReader().numDocs())
+          .add("segments", getSegmentCount())
+          .toString();
+    }
+
     @Override
     public void close() throws IOException {
       if (count.decrementAndGet() == 0) {
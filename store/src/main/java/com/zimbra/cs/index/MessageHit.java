@@ -50,6 +50,10 @@ public final class MessageHit extends ZimbraHit {
         document = doc;
     }
 
+    Document getDocument() {
+        return document;
+    }
+
     int getFolderId() throws ServiceException {
         return getMessage().getFolderId();
     }
@@ -82,6 +82,10 @@ public final class MessagePartHit extends ZimbraHit {
         }
     }
 
+    Document getDocument() {
+        return document;
+    }
+
     public String getFilename() {
         return document != null ? document.get(LuceneFields.L_FILENAME) : null;
     }
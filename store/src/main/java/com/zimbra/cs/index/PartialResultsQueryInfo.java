@@ -0,0 +1,43 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.index;
+
+import com.zimbra.common.soap.Element;
+import com.zimbra.common.soap.MailConstants;
+
+/**
+ * Reports a remote part of a search whose hits are missing from the results, because its server
+ * didn't answer in time or failed.
+ *
+ * @see MailConstants#PARTIAL_REASON_TIMEOUT
+ * @see MailConstants#PARTIAL_REASON_ERROR
+ */
+public final class PartialResultsQueryInfo implements QueryInfo {
+
+    private final String mAcctId;
+    private final String mServer;
+    private final String mReason;
+
+    public PartialResultsQueryInfo(String acctId, String server, String reason) {
+        mAcctId = acctId;
+        mServer = server;
+        mReason = reason;
+    }
+
+    @Override
+    public Element toXml(Element parent) {
+        Element qinfo = parent.addElement(MailConstants.E_PARTIAL);
+        qinfo.addAttribute(MailConstants.A_PARTIAL_ACCOUNT, mAcctId);
+        qinfo.addAttribute(MailConstants.A_PARTIAL_SERVER, mServer);
+        qinfo.addAttribute(MailConstants.A_PARTIAL_REASON, mReason);
+        return qinfo;
+    }
+
+    @Override
+    public String toString() {
+        return "PARTIAL(" + mAcctId + "," + mServer + "," + mReason + ")";
+    }
+}
@@ -5,19 +5,25 @@
 
 package com.zimbra.cs.index;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.zimbra.common.account.Key;
+import com.zimbra.common.localconfig.LC;
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.soap.AdminConstants;
 import com.zimbra.common.soap.Element;
 import com.zimbra.common.soap.MailConstants;
 import com.zimbra.common.soap.SoapFaultException;
 import com.zimbra.common.soap.SoapProtocol;
+import com.zimbra.common.soap.SoapTransport;
+import com.zimbra.common.util.Pair;
 import com.zimbra.common.util.ZimbraLog;
 import com.zimbra.cs.account.AuthToken;
 import com.zimbra.cs.account.Provisioning;
 import com.zimbra.cs.account.Server;
 import com.zimbra.cs.httpclient.URLUtil;
+import com.zimbra.cs.session.Session;
 import com.zimbra.soap.DocumentHandler;
 import com.zimbra.soap.ProxyTarget;
 import com.zimbra.soap.ZimbraSoapContext;
@@ -25,6 +31,14 @@ import com.zimbra.soap.ZimbraSoapContext;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Represents the results of a query made on a remote server. This class takes
@@ -45,6 +59,17 @@ public final class ProxiedQueryResults extends ZimbraQueryResultsImpl {
      */
     protected static final int MIN_BUFFER_CHUNK_SIZE = 25;
 
+    /**
+     * maximum time (ms) to wait for each round-trip to the remote server, before going on without its hits.
+     */
+    private static final long BRANCH_TIMEOUT = LC.zimbra_search_remote_timeout.longValue();
+
+    /**
+     * Runs the round-trips to the remote servers, so that the remote parts of a search wait on their servers
+     * concurrently.
+     */
+    private static final ExecutorService REMOTE_EXECUTOR = newRemoteExecutor();
+
     protected ArrayList<ProxiedHit> hitBuffer;
     protected int bufferStartOffset = 0;  // inclusive
     protected int bufferEndOffset = 0; // not-inclusive
@@ -64,8 +89,18 @@ public final class ProxiedQueryResults extends ZimbraQueryResultsImpl {
      */
     private long mTimeout = -1;
 
+    /**
+     * maximum time (ms) to wait for each round-trip to the remote server, see {@link #BRANCH_TIMEOUT}.
+     */
+    private long branchTimeout = BRANCH_TIMEOUT;
+
     private List<QueryInfo> queryInfo = new ArrayList<>();
 
+    /**
+     * the request for the next chunk of hits, sent ahead of time, or null
+     */
+    private Chunk pending;
+
     /**
      * A search request in the current mailbox on a different server.
      *
@@ -100,6 +135,16 @@ public final class ProxiedQueryResults extends ZimbraQueryResultsImpl {
         this.responseProto = respProto;
     }
 
+    private static ExecutorService newRemoteExecutor() {
+        int threads = LC.zimbra_search_remote_threads.intValueWithinRange(1, 256);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("RemoteSearch-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private void setSearchParams(SearchParams params) {
         searchParams = (SearchParams) params.clone();
         if ((searchParams.getCursor() != null) && (searchParams.getLimit() > 0) && (searchParams.getLimit() < 500)) {
@@ -131,6 +176,11 @@ public final class ProxiedQueryResults extends ZimbraQueryResultsImpl {
         mTimeout = timeout;
     }
 
+    @VisibleForTesting
+    void setBranchTimeout(long timeout) {
+        branchTimeout = timeout;
+    }
+
     @Override
     public long getCursorOffset() {
         return -1;
@@ -138,6 +188,10 @@ public final class ProxiedQueryResults extends ZimbraQueryResultsImpl {
 
     @Override
     public void close() {
+        if (pending != null) {
+            pending.response.cancel(true);
+            pending = null;
+        }
     }
 
     @Override
@@ -174,6 +228,7 @@ public final class ProxiedQueryResults extends ZimbraQueryResultsImpl {
         ZimbraHit retVal = peekNext();
         if (retVal != null) {
             iterOffset++;
+            readAhead();
         }
         return retVal;
     }
@@ -204,15 +259,50 @@ public final class ProxiedQueryResults extends ZimbraQueryResultsImpl {
     }
 
     /**
-     * Always does a request -- caller is responsible for checking to see if this is necessary or not
+     * Starts fetching the chunk of hits following the current buffer, once half of it has been
+     * consumed, so that iterating doesn't wait for the whole round trip at the end of each chunk.
      */
-    private boolean bufferNextHits() throws ServiceException {
-        if (atEndOfList || searchParams.getHopCount() > ZimbraSoapContext.MAX_HOP_COUNT) {
-            return false;
+    private void readAhead() throws ServiceException {
+        if (pending == null && !atEndOfList && !singleShotRemoteRequest && hitBuffer != null
+                && (iterOffset - bufferStartOffset) * 2 >= bufferEndOffset - bufferStartOffset) {
+            pending = request(bufferEndOffset);
+        }
+    }
+
+    /**
+     * Sends the search request for the hits from {@code offset} to the remote server, without
+     * waiting for the response. Called when the search begins, so that the remote parts of a search
+     * wait on their servers concurrently.
+     */
+    void prefetch() throws ServiceException {
+        if (pending == null && !atEndOfList && iterOffset >= bufferEndOffset) {
+            pending = request(iterOffset);
         }
+    }
 
-        bufferStartOffset = iterOffset;
+    /** The hits of a remote request which may still be running. */
+    private static final class Chunk {
+        final int offset;
+        final int size;
+        final ProxyTarget proxy;
+        final ZimbraSoapContext zscProxy;
+        final Session session; // gets the notifications returned with the hits, or null
+        final Future<Pair<Element, Element>> response; // header and body of the response
+        final long deadline;
+
+        Chunk(int offset, int size, ProxyTarget proxy, ZimbraSoapContext zscProxy, Session session,
+                Future<Pair<Element, Element>> response, long deadline) {
+            this.offset = offset;
+            this.size = size;
+            this.proxy = proxy;
+            this.zscProxy = zscProxy;
+            this.session = session;
+            this.response = response;
+            this.deadline = deadline;
+        }
+    }
 
+    private Chunk request(int offset) throws ServiceException {
         int chunkSizeToUse;
         if (singleShotRemoteRequest) {
             chunkSizeToUse = searchParams.getLimit();
@@ -226,12 +316,9 @@ public final class ProxiedQueryResults extends ZimbraQueryResultsImpl {
             }
         }
 
-        bufferEndOffset = bufferStartOffset + chunkSizeToUse;
-        hitBuffer = new ArrayList<>(chunkSizeToUse);
-
         Element searchElt = Element.create(responseProto, MailConstants.SEARCH_REQUEST);
 
-        searchParams.setOffset(bufferStartOffset);
+        searchParams.setOffset(offset);
         searchParams.setLimit(chunkSizeToUse);
         searchParams.encodeParams(searchElt);
         if (singleShotRemoteRequest && (searchParams.getCursor() != null)) {
@@ -245,7 +332,6 @@ public final class ProxiedQueryResults extends ZimbraQueryResultsImpl {
             }
         }
 
-        // call the remote server now!
         Server targetServer = Provisioning.getInstance().get(Key.ServerBy.name, server);
         String baseurl = null;
         try {
@@ -260,6 +346,7 @@ public final class ProxiedQueryResults extends ZimbraQueryResultsImpl {
             proxy.setTimeouts(mTimeout);
         }
 
+        // each round trip gets its own context, the session is only touched on the calling thread
         ZimbraSoapContext zscInbound = searchParams.getRequestContext();
         ZimbraSoapContext zscProxy;
         if (zscInbound != null) {
@@ -268,29 +355,98 @@ public final class ProxiedQueryResults extends ZimbraQueryResultsImpl {
             zscProxy = new ZimbraSoapContext(authToken, targetAcctId,
                     responseProto, responseProto, searchParams.getHopCount() + 1);
         }
+        Session session = DocumentHandler.prepareProxyNotification(proxy, zscProxy,
+                DocumentHandler.getReferencedSession(zscInbound));
 
+        // call the remote server now! the thread running the request gets the via header and the
+        // logging context of this one, and gives back its own when done: it may be this thread
+        String via = SoapTransport.getVia();
+        Map<String, String> logContext = ZimbraLog.getContext();
         long start = System.currentTimeMillis();
-        Element searchResp = null;
+        Future<Pair<Element, Element>> response = REMOTE_EXECUTOR.submit(() -> {
+            Map<String, String> previousLogContext = ZimbraLog.getContext();
+            ZimbraLog.setContext(logContext);
+            if (via != null) {
+                SoapTransport.setVia(via);
+            }
+            try {
+                return proxy.execute(searchElt, zscProxy);
+            } finally {
+                ZimbraLog.index.debug("Remote query took " + (System.currentTimeMillis() - start) + "ms; URL=" +
+                        proxy.toString() + "; QUERY=" + searchElt.toString());
+                if (via != null) {
+                    SoapTransport.clearVia();
+                }
+                ZimbraLog.setContext(previousLogContext);
+            }
+        });
+        return new Chunk(offset, chunkSizeToUse, proxy, zscProxy, session, response, start + branchTimeout);
+    }
+
+    /**
+     * Waits for the response of a remote request, until the deadline of the request.
+     *
+     * @return null if the remote server didn't answer in time or failed, in which case the hits it
+     * didn't return are reported as missing
+     */
+    private Element await(Chunk chunk) throws ServiceException {
         try {
-            searchResp = DocumentHandler.proxyWithNotification(
-                    searchElt, proxy, zscProxy, zscInbound);
-        } catch (SoapFaultException sfe) {
-            ZimbraLog.index.warn("Unable to (" + sfe + ") fetch search results from remote server " + proxy);
+            Pair<Element, Element> envelope = chunk.response.get(
+                    Math.max(0, chunk.deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            DocumentHandler.handleProxyNotification(chunk.proxy, chunk.zscProxy, chunk.session,
+                    envelope.getFirst());
+            return envelope.getSecond().detach();
+        } catch (TimeoutException e) {
+            chunk.response.cancel(true);
+            ZimbraLog.index.warn("Timed out fetching search results from remote server " + chunk.proxy);
+            queryInfo.add(new PartialResultsQueryInfo(targetAcctId, server,
+                    MailConstants.PARTIAL_REASON_TIMEOUT));
+            return null;
+        } catch (InterruptedException e) {
+            chunk.response.cancel(true);
+            Thread.currentThread().interrupt();
+            throw ServiceException.INTERRUPTED("remote search");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SoapFaultException || (cause instanceof ServiceException &&
+                    ServiceException.PROXY_ERROR.equals(((ServiceException) cause).getCode()))) {
+                ZimbraLog.index.warn("Unable to (" + cause + ") fetch search results from remote server " + chunk.proxy);
+                queryInfo.add(new PartialResultsQueryInfo(targetAcctId, server,
+                        MailConstants.PARTIAL_REASON_ERROR));
+                return null;
+            } else if (cause instanceof ServiceException) {
+                throw (ServiceException) cause;
+            }
+            throw ServiceException.FAILURE("remote search failed: " + chunk.proxy, cause);
+        }
+    }
+
+    /**
+     * Always does a request -- caller is responsible for checking to see if this is necessary or not
+     */
+    private boolean bufferNextHits() throws ServiceException {
+        if (atEndOfList || searchParams.getHopCount() > ZimbraSoapContext.MAX_HOP_COUNT) {
+            return false;
+        }
+
+        Chunk chunk = pending;
+        pending = null;
+        if (chunk == null || chunk.offset != iterOffset) {
+            if (chunk != null) {
+                chunk.response.cancel(true);
+            }
+            chunk = request(iterOffset);
+        }
+        Element searchResp = await(chunk);
+
+        bufferStartOffset = iterOffset;
+        if (searchResp == null) {
             atEndOfList = true;
             bufferEndOffset = iterOffset;
             return false;
-        } catch (ServiceException e) {
-            if (ServiceException.PROXY_ERROR.equals(e.getCode())) {
-                ZimbraLog.index.warn("Unable to (" + e + ") fetch search results from remote server " + proxy);
-                atEndOfList = true;
-                bufferEndOffset = iterOffset;
-                return false;
-            }
-            throw e;
-        } finally {
-            long elapsed = System.currentTimeMillis() - start;
-            ZimbraLog.index.debug("Remote query took " + elapsed + "ms; URL=" + proxy.toString() + "; QUERY=" + searchElt.toString());
         }
+        bufferEndOffset = bufferStartOffset + chunk.size;
+        hitBuffer = new ArrayList<>(chunk.size);
 
         int hitOffset;
         if (singleShotRemoteRequest) {
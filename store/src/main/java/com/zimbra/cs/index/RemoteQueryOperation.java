@@ -88,6 +88,16 @@ final class RemoteQueryOperation extends FilterQueryOperation {
                 remoteServer.getName(), params, queryString, params.getFetchMode());
     }
 
+    /**
+     * Sends the request to the remote server without waiting for its response, so that the other parts
+     * of the search run while the remote server answers.
+     */
+    void prefetch() throws ServiceException {
+        if (results != null) {
+            results.prefetch();
+        }
+    }
+
     @Override
     public void resetIterator() throws ServiceException {
         if (results != null) {
@@ -0,0 +1,515 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.index;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.zimbra.common.localconfig.LC;
+import com.zimbra.common.service.ServiceException;
+import com.zimbra.common.util.ZimbraLog;
+import com.zimbra.cs.account.Account;
+import com.zimbra.cs.mailbox.MailItem;
+import com.zimbra.cs.mailbox.Mailbox;
+import com.zimbra.cs.mailbox.OperationContext;
+import com.zimbra.cs.stats.ZimbraPerf;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.lucene.document.Document;
+
+/**
+ * Cache of resolved search hits of a mailbox, so that paging through a search and running it again
+ * while the mailbox didn't change don't go through Lucene and the database again.
+ *
+ * <p>Hits are recorded while the caller consumes the results of a search, and stored when the
+ * results are closed, along with the mailbox change id read before the search ran. An entry is only
+ * used while the mailbox is still at that change id, and for the pages it covers. Only the ids, sort
+ * values and matched Lucene documents of the hits are kept; the items are loaded from the mailbox
+ * again when the hits are replayed. Searches with a cursor, and searches returning hits from other
+ * mailboxes, aren't cached.
+ *
+ * <p>The entries of all the mailboxes share one cache, bounded by the total number of hits they
+ * hold. When the caller is paging through the results, the hits of the next page are read ahead
+ * before the results are closed; the first page of a search is cached as consumed.
+ */
+public final class SearchResultCache {
+
+  private static final int MAX_HITS = LC.zimbra_search_result_cache_max_hits.intValue();
+
+  private static final Cache<Key, Entry> ENTRIES =
+      CacheBuilder.newBuilder()
+          .maximumWeight(Math.max(0, LC.zimbra_search_result_cache_max_total_hits.longValue()))
+          .weigher((Key key, Entry entry) -> entry.weight)
+          .expireAfterWrite(LC.zimbra_search_result_cache_ttl.intValue(), TimeUnit.SECONDS)
+          .build();
+
+  private final Mailbox mailbox;
+  // part of the keys, bumped to drop the entries of the mailbox without going through the cache
+  private final AtomicInteger generation = new AtomicInteger();
+
+  public SearchResultCache(Mailbox mbox) {
+    mailbox = mbox;
+  }
+
+  /** Identifies the hits of a query, regardless of the page requested. */
+  public static final class Key {
+    private final List<Object> values;
+
+    private Key(Object... values) {
+      this.values = Arrays.asList(values);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && values.equals(((Key) o).values);
+    }
+
+    @Override
+    public int hashCode() {
+      return values.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return values.toString();
+    }
+  }
+
+  /**
+   * @return the key the hits of the query are cached with, or null if they can't be cached
+   */
+  public Key getKey(ZimbraQuery zq) {
+    SearchParams params = zq.getParams();
+    if (MAX_HITS <= 0 || params.getCursor() != null) {
+      return null;
+    }
+    switch (params.getFetchMode()) {
+      case NORMAL:
+      case IDS:
+        break;
+      default: // the hits carry data that isn't cached
+        return null;
+    }
+    OperationContext octxt = zq.getOperationContext();
+    Account authAccount = octxt == null ? null : octxt.getAuthenticatedUser();
+    TimeZone tz = params.getTimeZone();
+    return new Key(
+        mailbox.getId(),
+        generation.get(),
+        authAccount == null ? null : authAccount.getId(),
+        octxt != null && octxt.isUsingAdminPrivileges(),
+        params.getQueryString(),
+        zq.toString(), // parsed: relative dates and folder names are resolved
+        params.getTypes(),
+        params.getSortBy(),
+        params.getFetchMode(),
+        params.getIncludeTagDeleted(),
+        params.getIncludeTagMuted(),
+        params.inDumpster(),
+        params.getDefaultField(),
+        params.getCalItemExpandStart(),
+        params.getCalItemExpandEnd(),
+        tz == null ? null : tz.getID(),
+        params.getLocale());
+  }
+
+  /**
+   * Returns the cached hits of the query if the mailbox is still at {@code changeId} and they
+   * cover the page requested by {@code params}.
+   *
+   * @return replayed results, or null if there are none
+   */
+  public ZimbraQueryResults get(Key key, int changeId, SearchParams params) {
+    Entry entry = ENTRIES.getIfPresent(key);
+    if (entry == null || !entry.covers(changeId, params)) {
+      ZimbraPerf.COUNTER_SEARCH_RESULT_CACHE.increment(0);
+      return null;
+    }
+    ZimbraPerf.COUNTER_SEARCH_RESULT_CACHE.increment(100);
+    ZimbraLog.search.debug(
+        "CacheHitSearchResult hits=%d,complete=%b,change=%d",
+        entry.hits.size(),
+        entry.complete,
+        changeId);
+    return new CachedQueryResults(mailbox, params.getTypes(), entry);
+  }
+
+  /**
+   * Wraps the results of a search so that the hits consumed from them are cached when they are
+   * closed.
+   *
+   * @param changeId mailbox change id read before the search ran
+   */
+  public ZimbraQueryResults record(
+      Key key, int changeId, SearchParams params, ZimbraQueryResults results) {
+    return new RecordingQueryResults(this, key, changeId, params, results);
+  }
+
+  /** Drops the entries of the mailbox; they are no longer looked up and age out of the cache. */
+  public void clear() {
+    generation.incrementAndGet();
+  }
+
+  private void put(Key key, Entry entry) {
+    Entry current = ENTRIES.getIfPresent(key);
+    // don't replace a longer list of hits for the same state of the mailbox
+    if (current == null
+        || current.changeId != entry.changeId
+        || (!current.complete && current.hits.size() < entry.hits.size())
+        || entry.complete) {
+      ENTRIES.put(key, entry);
+    }
+  }
+
+  private static final class Entry {
+    final int changeId;
+    final SortBy sortBy;
+    final List<QueryInfo> info;
+    final List<CachedHit> hits;
+    final boolean complete; // all the hits of the query, not only the first ones
+    final int weight; // number of hits, with those of conversations and messages
+
+    Entry(
+        int changeId,
+        SortBy sortBy,
+        List<QueryInfo> info,
+        List<CachedHit> hits,
+        boolean complete) {
+      this.changeId = changeId;
+      this.sortBy = sortBy;
+      this.info = info;
+      this.hits = hits;
+      this.complete = complete;
+      this.weight = weigh(hits);
+    }
+
+    private static int weigh(List<CachedHit> hits) {
+      int weight = hits.size();
+      for (CachedHit hit : hits) {
+        if (hit.children != null) {
+          weight += weigh(hit.children);
+        }
+      }
+      return weight;
+    }
+
+    boolean covers(int changeId, SearchParams params) {
+      // one more hit than the page tells whether there are more
+      return this.changeId == changeId
+          && (complete || hits.size() > (long) params.getOffset() + params.getLimit());
+    }
+  }
+
+  /** What it takes to build a {@link ZimbraHit} again. */
+  private static final class CachedHit {
+    enum Kind {
+      CONVERSATION,
+      MESSAGE,
+      PART,
+      CONTACT,
+      APPOINTMENT
+    }
+
+    final Kind kind;
+    final int id;
+    final Object sortValue;
+    final Document document;
+    final List<CachedHit> children; // message hits of a conversation, parts of a message
+
+    private CachedHit(
+        Kind kind, int id, Object sortValue, Document document, List<CachedHit> children) {
+      this.kind = kind;
+      this.id = id;
+      this.sortValue = sortValue;
+      this.document = document;
+      this.children = children;
+    }
+
+    /**
+     * @return null if the hit can't be built again from the mailbox
+     */
+    static CachedHit of(ZimbraHit hit) {
+      if (hit instanceof ConversationHit) {
+        List<CachedHit> messages = new ArrayList<>();
+        for (MessageHit msgHit : ((ConversationHit) hit).getMessageHits()) {
+          CachedHit message = of(msgHit);
+          if (message == null) {
+            return null;
+          }
+          messages.add(message);
+        }
+        return new CachedHit(
+            Kind.CONVERSATION, ((ConversationHit) hit).getItemId(), hit.sortValue, null, messages);
+      } else if (hit instanceof MessageHit) {
+        MessageHit msgHit = (MessageHit) hit;
+        List<CachedHit> parts = Collections.emptyList();
+        if (msgHit.getMatchedMimePartNames() != null) {
+          parts = new ArrayList<>();
+          for (MessagePartHit part : msgHit.getMatchedMimePartNames()) {
+            parts.add(
+                new CachedHit(
+                    Kind.PART, part.getItemId(), part.sortValue, part.getDocument(), null));
+          }
+        }
+        return new CachedHit(
+            Kind.MESSAGE, msgHit.getItemId(), hit.sortValue, msgHit.getDocument(), parts);
+      } else if (hit instanceof MessagePartHit) {
+        MessagePartHit part = (MessagePartHit) hit;
+        return new CachedHit(Kind.PART, part.getItemId(), hit.sortValue, part.getDocument(), null);
+      } else if (hit.getClass() == ContactHit.class) {
+        return new CachedHit(
+            Kind.CONTACT, ((ContactHit) hit).getItemId(), hit.sortValue, null, null);
+      } else if (hit.getClass() == CalendarItemHit.class) {
+        return new CachedHit(
+            Kind.APPOINTMENT, ((CalendarItemHit) hit).getItemId(), hit.sortValue, null, null);
+      }
+      return null;
+    }
+  }
+
+  /** Replays cached hits. */
+  private static final class CachedQueryResults extends ZimbraQueryResultsImpl {
+    private final Mailbox mailbox;
+    private final Entry entry;
+    private final ZimbraHit[] hits;
+    private int next = 0;
+
+    CachedQueryResults(Mailbox mbox, Set<MailItem.Type> types, Entry entry) {
+      super(types, entry.sortBy, SearchParams.Fetch.NORMAL);
+      this.mailbox = mbox;
+      this.entry = entry;
+      this.hits = new ZimbraHit[entry.hits.size()];
+    }
+
+    private ZimbraHit getHit(int index) {
+      if (hits[index] == null) {
+        hits[index] = toHit(entry.hits.get(index));
+      }
+      return hits[index];
+    }
+
+    private ZimbraHit toHit(CachedHit cached) {
+      switch (cached.kind) {
+        case CONVERSATION:
+          ConversationHit conv = getConversationHit(mailbox, cached.id, cached.sortValue);
+          for (CachedHit message : cached.children) {
+            conv.addMessageHit((MessageHit) toHit(message));
+          }
+          return conv;
+        case MESSAGE:
+          MessageHit msg =
+              getMessageHit(mailbox, cached.id, null, cached.document, cached.sortValue);
+          for (CachedHit part : cached.children) {
+            // adds itself to the message hit
+            getMessagePartHit(mailbox, part.id, null, part.document, part.sortValue)
+                .getMessageResult();
+          }
+          return msg;
+        case PART:
+          return getMessagePartHit(mailbox, cached.id, null, cached.document, cached.sortValue);
+        case CONTACT:
+          return getContactHit(mailbox, cached.id, null, cached.sortValue);
+        case APPOINTMENT:
+          return getAppointmentHit(mailbox, cached.id, null, cached.sortValue);
+        default:
+          throw new IllegalStateException(cached.kind.name());
+      }
+    }
+
+    @Override
+    public void resetIterator() {
+      next = 0;
+    }
+
+    @Override
+    public ZimbraHit getNext() {
+      ZimbraHit hit = peekNext();
+      if (hit != null) {
+        next++;
+      }
+      return hit;
+    }
+
+    @Override
+    public ZimbraHit peekNext() {
+      return next < hits.length ? getHit(next) : null;
+    }
+
+    @Override
+    public ZimbraHit skipToHit(int hitNo) {
+      next = Math.min(hitNo, hits.length);
+      return getNext();
+    }
+
+    @Override
+    public List<QueryInfo> getResultInfo() {
+      return entry.info;
+    }
+
+    @Override
+    public long getCursorOffset() {
+      return -1;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  /** Records the hits consumed from the results of a search, in order from the first one. */
+  private static final class RecordingQueryResults implements ZimbraQueryResults {
+    private final SearchResultCache cache;
+    private final Key key;
+    private final int changeId;
+    private final SearchParams params;
+    private final ZimbraQueryResults results;
+    private final List<CachedHit> recorded = new ArrayList<>();
+    private int position = 0; // of the next hit of the results
+    private boolean recording = true; // hits are still appended to the recorded ones
+    private boolean cacheable = true; // the recorded hits can be built again
+    private boolean complete = false;
+
+    RecordingQueryResults(
+        SearchResultCache cache,
+        Key key,
+        int changeId,
+        SearchParams params,
+        ZimbraQueryResults results) {
+      this.cache = cache;
+      this.key = key;
+      this.changeId = changeId;
+      this.params = params;
+      this.results = results;
+    }
+
+    private void record(ZimbraHit hit) {
+      if (recording && position == recorded.size()) {
+        if (hit == null) {
+          complete = true;
+        } else if (recorded.size() >= MAX_HITS) {
+          recording = false;
+        } else {
+          CachedHit cached = CachedHit.of(hit);
+          if (cached == null) {
+            recording = false;
+            cacheable = false;
+          } else {
+            recorded.add(cached);
+          }
+        }
+      }
+    }
+
+    @Override
+    public void resetIterator() throws ServiceException {
+      results.resetIterator();
+      position = 0;
+    }
+
+    @Override
+    public ZimbraHit getNext() throws ServiceException {
+      ZimbraHit hit = results.getNext();
+      record(hit);
+      if (hit != null) {
+        position++;
+      }
+      return hit;
+    }
+
+    @Override
+    public ZimbraHit peekNext() throws ServiceException {
+      return results.peekNext();
+    }
+
+    @Override
+    public ZimbraHit skipToHit(int hitNo) throws ServiceException {
+      if (!recording || hitNo >= MAX_HITS) {
+        // too far to be cached, let the results skip the way they can
+        recording = false;
+        ZimbraHit hit = results.skipToHit(hitNo);
+        position = hitNo + 1;
+        return hit;
+      }
+      resetIterator();
+      for (int i = 0; i < hitNo; i++) {
+        if (getNext() == null) {
+          return null;
+        }
+      }
+      return getNext();
+    }
+
+    @Override
+    public boolean hasNext() throws ServiceException {
+      boolean hasNext = results.hasNext();
+      if (!hasNext) {
+        record(null);
+      }
+      return hasNext;
+    }
+
+    @Override
+    public SortBy getSortBy() {
+      return results.getSortBy();
+    }
+
+    @Override
+    public List<QueryInfo> getResultInfo() {
+      return results.getResultInfo();
+    }
+
+    @Override
+    public long getCursorOffset() {
+      return results.getCursorOffset();
+    }
+
+    @Override
+    public boolean isPreSorted() {
+      return results.isPreSorted();
+    }
+
+    /**
+     * Reads ahead the hits of the next page, so that it can be served from the cache. Only done
+     * when the caller is past the first page: most searches never get a second one.
+     */
+    private void readAhead() throws ServiceException {
+      if (params.getOffset() <= 0) {
+        return;
+      }
+      long target = Math.min(MAX_HITS, (long) params.getOffset() + 2L * params.getLimit() + 1);
+      while (recording && !complete && position == recorded.size() && recorded.size() < target) {
+        getNext();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        readAhead();
+        if (cacheable && (complete || !recorded.isEmpty())) {
+          List<QueryInfo> info = results.getResultInfo();
+          cache.put(
+              key,
+              new Entry(
+                  changeId,
+                  results.getSortBy(),
+                  info == null ? Collections.emptyList() : new ArrayList<>(info),
+                  Collections.unmodifiableList(recorded),
+                  complete));
+        }
+      } catch (ServiceException | RuntimeException e) {
+        ZimbraLog.search.debug("Failed to cache search results", e);
+      } finally {
+        results.close();
+      }
+    }
+  }
+}
@@ -25,6 +25,20 @@ public final class UnionQueryOperation extends CombiningQueryOperation {
 
     private boolean atStart = true; // don't re-fill buffer twice if they call hasNext() then reset() w/o actually getting next
     private ZimbraHit cachedNextHit = null;
+    // operations with hits left, from the last to the first next hit, when merging sorted hits
+    private List<Branch> merge = null;
+
+    private static final class Branch {
+        final int index;
+        final QueryOperation op;
+        ZimbraHit next;
+
+        Branch(int index, QueryOperation op, ZimbraHit next) {
+            this.index = index;
+            this.op = op;
+            this.next = next;
+        }
+    }
 
     @Override
     public long getCursorOffset() {
@@ -47,6 +61,7 @@ public final class UnionQueryOperation extends CombiningQueryOperation {
             q.resetIterator();
           }
             cachedNextHit = null;
+            merge = null;
             internalGetNext();
         }
     }
@@ -81,34 +96,52 @@ public final class UnionQueryOperation extends CombiningQueryOperation {
                 // no more results!
 
             } else {
-                // mergesort: loop through QueryOperations and find the "best" hit
-                int currentBestHitOffset = -1;
-                ZimbraHit currentBestHit = null;
-                for (int i = 0; i < operations.size(); i++) {
-                    QueryOperation op = operations.get(i);
-                    if (op.hasNext()) {
-                        if (currentBestHitOffset == -1) {
-                            currentBestHitOffset = i;
-                            currentBestHit = op.peekNext();
-                        } else {
-                            ZimbraHit opNext = op.peekNext();
-                            int result = opNext.compareTo(context.getResults().getSortBy(), currentBestHit);
-                            if (result < 0) {
-                                // "before"
-                                currentBestHitOffset = i;
-                                currentBestHit = opNext;
-                            }
+                // k-way mergesort: the operation with the "best" next hit is at the end of the list
+                if (merge == null) {
+                    merge = new ArrayList<>(operations.size());
+                    for (int i = 0; i < operations.size(); i++) {
+                        QueryOperation op = operations.get(i);
+                        if (op.hasNext()) {
+                            insert(new Branch(i, op, op.peekNext()));
                         }
                     }
                 }
-                if (currentBestHitOffset > -1) {
-                    cachedNextHit = operations.get(currentBestHitOffset).getNext();
-                    assert(cachedNextHit == currentBestHit);
+                if (!merge.isEmpty()) {
+                    Branch best = merge.remove(merge.size() - 1);
+                    cachedNextHit = best.op.getNext();
+                    assert(cachedNextHit == best.next);
+                    if (best.op.hasNext()) {
+                        best.next = best.op.peekNext();
+                        insert(best);
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Inserts an operation in {@link #merge} with a binary search, so that each hit takes log(k) comparisons
+     * for k operations. Operations with equal hits return them in the order they were added.
+     */
+    private void insert(Branch branch) throws ServiceException {
+        int low = 0;
+        int high = merge.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (precedes(merge.get(mid), branch)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        merge.add(low, branch);
+    }
+
+    private boolean precedes(Branch lhs, Branch rhs) throws ServiceException {
+        int result = lhs.next.compareTo(context.getResults().getSortBy(), rhs.next);
+        return result < 0 || (result == 0 && lhs.index < rhs.index);
+    }
+
 
     @Override
     public void close() throws IOException {
@@ -290,6 +323,7 @@ public final class UnionQueryOperation extends CombiningQueryOperation {
     public Object clone() {
         assert(cachedNextHit == null);
         UnionQueryOperation result = (UnionQueryOperation) super.clone();
+        result.merge = null;
         result.operations = new ArrayList<>(operations.size());
         for (QueryOperation op : operations) {
             result.operations.add((QueryOperation) op.clone());
@@ -310,6 +344,7 @@ public final class UnionQueryOperation extends CombiningQueryOperation {
     protected void begin(QueryContext ctx) throws ServiceException {
         assert(context == null);
         context = ctx;
+        prefetchRemote();
         for (QueryOperation op : operations) {
             ZimbraLog.search.debug("Executing: %s", op);
             // add 1 to chunk size b/c we buffer
@@ -318,6 +353,20 @@ public final class UnionQueryOperation extends CombiningQueryOperation {
         internalGetNext();
     }
 
+    /**
+     * Sends the requests of all the remote parts up front, so that the remote servers are searched
+     * concurrently and while the local parts run, rather than one after the other as the hits are merged.
+     */
+    private void prefetchRemote() throws ServiceException {
+        for (QueryOperation op : operations) {
+            if (op instanceof RemoteQueryOperation) {
+                ((RemoteQueryOperation) op).prefetch();
+            } else if (op instanceof UnionQueryOperation) {
+                ((UnionQueryOperation) op).prefetchRemote();
+            }
+        }
+    }
+
     @Override
     public List<QueryInfo> getResultInfo() {
         List<QueryInfo> result = new ArrayList<>();
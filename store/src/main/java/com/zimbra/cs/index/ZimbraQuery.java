@@ -745,6 +745,10 @@ public final class ZimbraQuery {
     return params;
   }
 
+  OperationContext getOperationContext() {
+    return octxt;
+  }
+
   /**
    * Runs the search and gets an open result set.
    *
@@ -66,6 +66,11 @@ public class LmtpConfig extends ServerConfig {
         return getIntAttr(A_zimbraLmtpNumThreads, super.getMaxThreads());
     }
 
+    @Override
+    public boolean isVirtualThreadsEnabled() {
+        return LC.lmtp_virtual_threads_enabled.booleanValue();
+    }
+
     @Override
     public int getBindPort() {
         return getIntAttr(A_zimbraLmtpBindPort, Config.D_LMTP_BIND_PORT);
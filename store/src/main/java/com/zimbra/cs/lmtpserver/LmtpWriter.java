@@ -5,10 +5,17 @@
 
 package com.zimbra.cs.lmtpserver;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Writer;
 
+/**
+ * {@link PrintWriter} that terminates lines with CRLF. A writer is only used by the thread serving its connection, so
+ * none of the overrides synchronize on {@code lock}. {@link PrintWriter} subclasses otherwise write and flush under
+ * the object monitor, which pins a virtual thread to its carrier for the duration of the socket write.
+ */
 public class LmtpWriter extends PrintWriter {
 
     private static final String lineSeparator = "\r\n";
@@ -21,72 +28,114 @@ public class LmtpWriter extends PrintWriter {
         super(out, false);
     }
 
-    public void println () {
-        synchronized (lock) {
-            write(lineSeparator);
+    @Override
+    public void write(int c) {
+        try {
+            ensureOpen().write(c);
+        } catch (InterruptedIOException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            setError();
         }
     }
 
-    public void println(boolean x) {
-        synchronized (lock) {
-            print(x);
-            println();
+    @Override
+    public void write(char[] buf, int off, int len) {
+        try {
+            ensureOpen().write(buf, off, len);
+        } catch (InterruptedIOException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            setError();
         }
     }
 
-    public void println(char x) {
-        synchronized (lock) {
-            print (x);
-            println ();
+    @Override
+    public void write(String s, int off, int len) {
+        try {
+            ensureOpen().write(s, off, len);
+        } catch (InterruptedIOException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            setError();
         }
     }
 
-    public void println (int x) {
-        synchronized (lock) {
-            print (x);
-            println ();
+    @Override
+    public void flush() {
+        try {
+            ensureOpen().flush();
+        } catch (IOException e) {
+            setError();
         }
     }
 
-    public void println (long x) {
-        synchronized (lock) {
-            print (x);
-            println ();
+    @Override
+    public void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            setError();
         }
     }
 
-    public void println (float x) {
-        synchronized (lock) {
-            print (x);
-            println ();
+    private Writer ensureOpen() throws IOException {
+        if (out == null) {
+            throw new IOException("Stream closed");
         }
+        return out;
+    }
+
+    public void println () {
+        write(lineSeparator);
+    }
+
+    public void println(boolean x) {
+        print(x);
+        println();
+    }
+
+    public void println(char x) {
+        print (x);
+        println ();
+    }
+
+    public void println (int x) {
+        print (x);
+        println ();
+    }
+
+    public void println (long x) {
+        print (x);
+        println ();
+    }
+
+    public void println (float x) {
+        print (x);
+        println ();
     }
 
     public void println (double x) {
-        synchronized (lock) {
-            print (x);
-            println ();
-        }
+        print (x);
+        println ();
     }
 
     public void println (char[] x) {
-        synchronized (lock) {
-            print (x);
-            println ();
-        }
+        print (x);
+        println ();
     }
 
     public void println (String x) {
-        synchronized (lock) {
-            print (x);
-            println ();
-        }
+        print (x);
+        println ();
     }
 
     public void println (Object x) {
-        synchronized (lock) {
-            print (x);
-            println ();
-        }
+        print (x);
+        println ();
     }
 }
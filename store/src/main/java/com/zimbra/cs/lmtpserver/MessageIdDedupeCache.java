@@ -0,0 +1,233 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.lmtpserver;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Message-IDs of the messages recently delivered over LMTP, with the ids of the mailboxes they
+ * were delivered to.
+ *
+ * <p>The Message-IDs are split across segments with a lock each, so that concurrent LMTP sessions
+ * only contend when their Message-IDs fall in the same segment. A segment keeps its entries in
+ * access order: the least recently used entries are evicted once the cache is full, and entries
+ * older than the timeout are dropped whatever the size of the cache. Entries are keyed by a 128-bit
+ * hash of the Message-ID and hold a sorted array of mailbox ids, rather than the Message-ID string
+ * and a set of boxed integers.
+ *
+ * <p>The size and the timeout can be changed at any time, the entries in the cache are kept.
+ */
+final class MessageIdDedupeCache {
+
+  private static final int SEGMENTS = 16;
+  private static final HashFunction HASH = Hashing.murmur3_128();
+
+  private final Segment[] segments;
+  private final LongSupplier clock;
+  private volatile int segmentSize;
+  private volatile long timeoutMillis;
+
+  MessageIdDedupeCache() {
+    this(SEGMENTS, System::currentTimeMillis);
+  }
+
+  MessageIdDedupeCache(int segmentCount, LongSupplier clock) {
+    segments = new Segment[segmentCount];
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment();
+    }
+    this.clock = clock;
+  }
+
+  /**
+   * Sets the maximum number of Message-IDs in the cache, and how long they stay in the cache.
+   *
+   * @param maxSize maximum number of Message-IDs, 0 disables the cache
+   * @param timeout milliseconds a Message-ID stays in the cache after its last delivery, 0 for no
+   *     limit
+   */
+  void configure(int maxSize, long timeout) {
+    int size = maxSize <= 0 ? 0 : (maxSize + segments.length - 1) / segments.length;
+    timeoutMillis = Math.max(timeout, 0);
+    if (size < segmentSize) {
+      segmentSize = size;
+      for (Segment segment : segments) {
+        synchronized (segment) {
+          segment.trim(size);
+        }
+      }
+    } else {
+      segmentSize = size;
+    }
+  }
+
+  /** Returns true if the message was delivered to the mailbox. */
+  boolean contains(String msgid, int mboxId) {
+    Key key = new Key(msgid);
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      Entry entry = segment.get(key);
+      if (entry == null) {
+        return false;
+      }
+      if (isExpired(entry, clock.getAsLong())) {
+        segment.remove(key);
+        return false;
+      }
+      return entry.contains(mboxId);
+    }
+  }
+
+  /** Remembers that the message was delivered to the mailbox. */
+  void add(String msgid, int mboxId) {
+    int size = segmentSize;
+    if (size == 0) {
+      return;
+    }
+    Key key = new Key(msgid);
+    Segment segment = segmentFor(key);
+    long now = clock.getAsLong();
+    synchronized (segment) {
+      Entry entry = segment.get(key);
+      if (entry == null || isExpired(entry, now)) {
+        entry = new Entry();
+        segment.put(key, entry);
+      }
+      entry.add(mboxId);
+      entry.delivered = now;
+      segment.trim(size);
+      segment.expire(now);
+    }
+  }
+
+  /** Forgets that the message was delivered to the mailbox. */
+  void remove(String msgid, int mboxId) {
+    Key key = new Key(msgid);
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      Entry entry = segment.get(key);
+      if (entry != null && entry.remove(mboxId) && entry.size == 0) {
+        segment.remove(key);
+      }
+    }
+  }
+
+  /** Returns the number of Message-IDs in the cache, including the expired ones not dropped yet. */
+  int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  private Segment segmentFor(Key key) {
+    return segments[(int) ((key.low >>> 1) % segments.length)];
+  }
+
+  private boolean isExpired(Entry entry, long now) {
+    long timeout = timeoutMillis;
+    return timeout > 0 && now - entry.delivered > timeout;
+  }
+
+  private final class Segment extends LinkedHashMap<Key, Entry> {
+    private static final long serialVersionUID = 1L;
+
+    Segment() {
+      super(16, 0.75f, true);
+    }
+
+    /** Evicts the least recently used entries beyond {@code max}. */
+    void trim(int max) {
+      Iterator<Entry> i = values().iterator();
+      for (int excess = size() - max; excess > 0 && i.hasNext(); excess--) {
+        i.next();
+        i.remove();
+      }
+    }
+
+    /** Drops the expired entries among the least recently used ones. */
+    void expire(long now) {
+      Iterator<Entry> i = values().iterator();
+      while (i.hasNext() && isExpired(i.next(), now)) {
+        i.remove();
+      }
+    }
+  }
+
+  private static final class Key {
+    final long high;
+    final long low;
+
+    Key(String msgid) {
+      HashCode hash = HASH.hashString(msgid, StandardCharsets.UTF_8);
+      byte[] bytes = hash.asBytes();
+      high = Longs.fromBytes(
+          bytes[0], bytes[1], bytes[2], bytes[3], bytes[4], bytes[5], bytes[6], bytes[7]);
+      low = Longs.fromBytes(
+          bytes[8], bytes[9], bytes[10], bytes[11], bytes[12], bytes[13], bytes[14], bytes[15]);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (high ^ (high >>> 32));
+    }
+  }
+
+  /** Sorted set of mailbox ids, only accessed under the lock of its segment. */
+  private static final class Entry {
+    private int[] ids = new int[1];
+    private int size;
+    long delivered;
+
+    boolean contains(int id) {
+      return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    void add(int id) {
+      int pos = Arrays.binarySearch(ids, 0, size, id);
+      if (pos >= 0) {
+        return;
+      }
+      pos = -pos - 1;
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+      }
+      System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+      ids[pos] = id;
+      size++;
+    }
+
+    boolean remove(int id) {
+      int pos = Arrays.binarySearch(ids, 0, size, id);
+      if (pos < 0) {
+        return false;
+      }
+      System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+      size--;
+      return true;
+    }
+  }
+}
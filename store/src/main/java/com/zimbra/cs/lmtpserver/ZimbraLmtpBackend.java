@@ -12,6 +12,8 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.zimbra.common.account.Key.AccountBy;
 import com.zimbra.common.lmtp.LmtpClient;
 import com.zimbra.common.lmtp.LmtpProtocolException;
@@ -23,9 +25,6 @@ import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.BufferStream;
 import com.zimbra.common.util.ByteUtil;
 import com.zimbra.common.util.CopyInputStream;
-import com.zimbra.common.util.LruMap;
-import com.zimbra.common.util.MapUtil;
-import com.zimbra.common.util.TimeoutMap;
 import com.zimbra.common.util.ZimbraLog;
 import com.zimbra.cs.account.Account;
 import com.zimbra.cs.account.Config;
@@ -50,6 +49,7 @@ import com.zimbra.cs.service.util.ItemId;
 import com.zimbra.cs.store.Blob;
 import com.zimbra.cs.store.BlobInputStream;
 import com.zimbra.cs.store.MailboxBlob;
+import com.zimbra.cs.stats.ZimbraPerf;
 import com.zimbra.cs.store.StoreManager;
 import com.zimbra.cs.util.Zimbra;
 import java.io.ByteArrayInputStream;
@@ -58,11 +58,14 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import javax.mail.MessagingException;
@@ -71,14 +74,16 @@ import javax.mail.internet.MimeMessage;
 public class ZimbraLmtpBackend implements LmtpBackend {
 
   private static List<LmtpCallback> callbacks = new CopyOnWriteArrayList<>();
-  private static Map<String, Set<Integer>> receivedMessageIDs;
+  private static final MessageIdDedupeCache receivedMessageIDs = new MessageIdDedupeCache();
   private static final LoadingCache<Integer, ReentrantLock> mailboxDeliveryLocks = createMailboxDeliveryLocks();
+  /** Delivers a message to the recipients of a shared delivery concurrently, null if disabled. */
+  private static final ExecutorService DELIVERY_EXECUTOR = newDeliveryExecutor();
 
   private final LmtpConfig config;
 
   public ZimbraLmtpBackend(LmtpConfig lmtpConfig) {
     config = lmtpConfig;
-    checkDedupeCacheSize(); // This initializes receivedMessageIDs
+    checkDedupeCacheSize();
   }
 
   /**
@@ -106,6 +111,24 @@ public class ZimbraLmtpBackend implements LmtpBackend {
     return cache;
   }
 
+  private static ExecutorService newDeliveryExecutor() {
+    int threads = LC.zimbra_lmtp_delivery_threads.intValueWithinRange(0, 256);
+    if (threads == 0) {
+      return null;
+    }
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            60,
+            TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("LmtpDelivery-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   @Override
   public LmtpReply getAddressStatus(LmtpAddress address) {
     String addr = address.getEmailAddress();
@@ -178,13 +201,7 @@ public class ZimbraLmtpBackend implements LmtpBackend {
     if (msgid == null || msgid.equals(""))
       return false;
 
-    synchronized (ZimbraLmtpBackend.class) {
-      Set<Integer> mboxIds = receivedMessageIDs.get(msgid);
-      if (mboxIds != null && mboxIds.contains(mbox.getId())) {
-        return true;
-      }
-    }
-    return false;
+    return receivedMessageIDs.contains(msgid, mbox.getId());
   }
 
   /**
@@ -207,55 +224,16 @@ public class ZimbraLmtpBackend implements LmtpBackend {
   }
 
   /**
-   * If the configured Message-ID cache size has changed, create a new cache and
-   * copy values from
-   * the old one.
+   * Applies the configured Message-ID cache size and timeout, which may have changed since the
+   * last delivery.
    */
   private void checkDedupeCacheSize() {
     try {
       Config config = Provisioning.getInstance().getConfig();
-      int cacheSize = config.getMessageIdDedupeCacheSize();
-      long entryTimeout = config.getMessageIdDedupeCacheTimeout();
-      synchronized (ZimbraLmtpBackend.class) {
-        Map<String, Set<Integer>> newMap = null;
-        if (receivedMessageIDs == null) {
-          // if non-zero entry timeout is specified then use a timeout map, else use an
-          // lru map
-          receivedMessageIDs = entryTimeout == 0
-              ? new LruMap<>(cacheSize)
-              : new TimeoutMap<>(entryTimeout);
-        } else if (receivedMessageIDs instanceof LruMap) {
-          if (entryTimeout != 0) {
-            // change to a timeout map
-            newMap = MapUtil.newTimeoutMap(entryTimeout);
-          } else if (((LruMap) receivedMessageIDs).getMaxSize() != cacheSize) {
-            // adjust lru map size
-            newMap = MapUtil.newLruMap(cacheSize);
-          }
-        } else if (receivedMessageIDs instanceof TimeoutMap) {
-          if (entryTimeout == 0) {
-            // change to a lru map
-            newMap = MapUtil.newLruMap(cacheSize);
-          } else {
-            ((TimeoutMap) receivedMessageIDs).setTimeout(entryTimeout);
-          }
-        }
-        if (newMap != null) {
-          // Copy entries from the old map to the new one. The old map
-          // is iterated in order from least-recently accessed to last accessed.
-          // If the new map size is smaller, we'll get the latest entries.
-          newMap.putAll(receivedMessageIDs);
-          receivedMessageIDs = newMap;
-        }
-      }
+      receivedMessageIDs.configure(
+          config.getMessageIdDedupeCacheSize(), config.getMessageIdDedupeCacheTimeout());
     } catch (ServiceException e) {
       ZimbraLog.lmtp.warn("Unable to update dedupe cache size.", e);
-      // create an empty lru map if it doesn't exist already.
-      synchronized (ZimbraLmtpBackend.class) {
-        if (receivedMessageIDs == null) {
-          receivedMessageIDs = new LruMap<>(0);
-        }
-      }
     }
   }
 
@@ -266,26 +244,14 @@ public class ZimbraLmtpBackend implements LmtpBackend {
     if (msgid == null || msgid.equals(""))
       return;
 
-    synchronized (ZimbraLmtpBackend.class) {
-      Set<Integer> mboxIds = receivedMessageIDs.get(msgid);
-      if (mboxIds == null) {
-        mboxIds = new HashSet<>();
-        receivedMessageIDs.put(msgid, mboxIds);
-      }
-      mboxIds.add(mbox.getId());
-    }
+    receivedMessageIDs.add(msgid, mbox.getId());
   }
 
   private void removeFromDedupeCache(String msgid, Mailbox mbox) {
     if (mbox == null || Strings.isNullOrEmpty(msgid))
       return;
 
-    synchronized (ZimbraLmtpBackend.class) {
-      Set<Integer> mboxIds = receivedMessageIDs.get(msgid);
-      if (mboxIds != null) {
-        mboxIds.remove(mbox.getId());
-      }
-    }
+    receivedMessageIDs.remove(msgid, mbox.getId());
   }
 
   private enum DeliveryAction {
@@ -531,191 +497,58 @@ public class ZimbraLmtpBackend implements LmtpBackend {
 
       // We now know which addresses are valid and which ParsedMessage
       // version each recipient needs. Deliver!
-      for (LmtpAddress recipient : recipients) {
-        String rcptEmail = recipient.getEmailAddress();
-        LmtpReply reply = LmtpReply.TEMPORARY_FAILURE;
-        RecipientDetail rd = rcptMap.get(recipient);
-        if (rd == null) {
-          // Account or mailbox not found.
-          ZimbraLog.lmtp.info(
-              "rejecting message from=%s,to=%s: account or mailbox not found",
-              envSender, rcptEmail);
-          recipient.setDeliveryStatus(LmtpReply.PERMANENT_FAILURE);
-          continue;
-        }
-        if (rd.account != null) {
-          ZimbraLog.addAccountNameToContext(rd.account.getName());
+      boolean parallel = shared && DELIVERY_EXECUTOR != null && targetMailboxIds.size() > 1;
+      if (parallel) {
+        if (pmAttachIndex != null) {
+          pmAttachIndex.prepareSharedDelivery();
         }
-        if (rd.mbox != null) {
-          ZimbraLog.addMboxToContext(rd.mbox.getId());
+        if (pmNoAttachIndex != null) {
+          pmNoAttachIndex.prepareSharedDelivery();
         }
-
-        boolean success = false;
-        try {
-          switch (rd.action) {
-            case discard:
-              ZimbraLog.lmtp.info(
-                  "accepted and discarded message from=%s,to=%s: local delivery is disabled",
-                  envSender, rcptEmail);
-              if (rd.account.getPrefMailForwardingAddress() != null) {
-                // mail forwarding is set up
-                for (LmtpCallback callback : callbacks) {
-                  ZimbraLog.lmtp.debug("Executing callback %s", callback.getClass().getName());
-                  callback.forwardWithoutDelivery(rd.account, rd.mbox, envSender, rcptEmail, rd.pm);
-                }
-              }
-              reply = LmtpReply.DELIVERY_OK;
-              break;
-            case deliver:
-              Account account = rd.account;
-              Mailbox mbox = rd.mbox;
-              ParsedMessage pm = rd.pm;
-              List<ItemId> addedMessageIds = null;
-              ReentrantLock lock = mailboxDeliveryLocks.get(mbox.getId());
-              boolean acquiredLock;
-              try {
-                // Wait for the lock, up to the timeout
-                acquiredLock = lock.tryLock(LC.zimbra_mailbox_lock_timeout.intValue(), TimeUnit.SECONDS);
-              } catch (InterruptedException e) {
-                acquiredLock = false;
-              }
-              if (!acquiredLock) {
-                ZimbraLog.lmtp.info(
-                    "try again for message from=%s,to=%s: another mail delivery in progress.",
-                    envSender, rcptEmail);
-                reply = LmtpReply.TEMPORARY_FAILURE;
-                break;
-              }
-              try {
-                if (dedupe(pm, mbox)) {
-                  // message was already delivered to this mailbox
-                  ZimbraLog.lmtp.info(
-                      "Not delivering message with duplicate Message-ID %s", pm.getMessageID());
-                } else if (mbox.dedupeForSelfMsg(pm)) {
-                  ZimbraLog.mailbox.info(
-                      "not delivering message, because it is a duplicate of sent message %s",
-                      pm.getMessageID());
-
-                } else if (recipient.getSkipFilters()) {
-                  msgId = pm.getMessageID();
-                  int folderId = Mailbox.ID_FOLDER_INBOX;
-                  if (recipient.getFolder() != null) {
-                    try {
-                      Folder folder = mbox.getFolderByPath(null, recipient.getFolder());
-                      folderId = folder.getId();
-                    } catch (ServiceException se) {
-                      if (se.getCode().equals(MailServiceException.NO_SUCH_FOLDER)) {
-                        Folder folder = mbox.createFolder(
-                            null,
-                            recipient.getFolder(),
-                            new Folder.FolderOptions().setDefaultView(MailItem.Type.MESSAGE));
-                        folderId = folder.getId();
-                      } else {
-                        throw se;
-                      }
-                    }
-                  }
-                  int flags = Flag.BITMASK_UNREAD;
-                  if (recipient.getFlags() != null) {
-                    flags = Flag.toBitmask(recipient.getFlags());
-                  }
-                  DeliveryOptions dopt = new DeliveryOptions().setFolderId(folderId);
-                  dopt.setFlags(flags).setTags(recipient.getTags()).setRecipientEmail(rcptEmail);
-                  Message msg = mbox.addMessage(null, pm, dopt, sharedDeliveryCtxt);
-                  addedMessageIds = Lists.newArrayList(new ItemId(msg));
-                } else if (!DebugConfig.disableIncomingFilter) {
-                  // Get msgid first, to avoid having to reopen and reparse the blob
-                  // file if Mailbox.addMessageInternal() closes it.
-                  pm.getMessageID();
-                  addedMessageIds = RuleManager.applyRulesToIncomingMessage(
-                      null,
-                      mbox,
-                      pm,
-                      (int) blob.getRawSize(),
-                      rcptEmail,
-                      env,
-                      sharedDeliveryCtxt,
-                      Mailbox.ID_FOLDER_INBOX,
-                      false,
-                      true);
-                } else {
-                  pm.getMessageID();
-                  DeliveryOptions dopt = new DeliveryOptions().setFolderId(Mailbox.ID_FOLDER_INBOX);
-                  dopt.setFlags(Flag.BITMASK_UNREAD).setRecipientEmail(rcptEmail);
-                  Message msg = mbox.addMessage(null, pm, dopt, sharedDeliveryCtxt);
-                  addedMessageIds = Lists.newArrayList(new ItemId(msg));
-                }
-                success = true;
-                if (addedMessageIds != null && addedMessageIds.size() > 0) {
-                  addToDedupeCache(pm, mbox);
+      }
+      String messageId = msgId;
+      Thread caller = Thread.currentThread();
+      Map<String, String> logContext = ZimbraLog.getContext();
+      List<LmtpAddress> parallelRecipients = new ArrayList<>();
+      List<Future<?>> deliveries = new ArrayList<>();
+      for (LmtpAddress recipient : recipients) {
+        RecipientDetail rd = rcptMap.get(recipient);
+        // The first delivery stores the blob and logs it for redo, the other mailboxes link to it
+        // and can be delivered to concurrently.
+        if (parallel
+            && rd != null
+            && rd.action == DeliveryAction.deliver
+            && !sharedDeliveryCtxt.isFirst()) {
+          Runnable task =
+              () -> {
+                // the executor runs the task on the calling thread when it's saturated
+                if (Thread.currentThread() == caller) {
+                  ZimbraPerf.COUNTER_LMTP_DLVD_POOL_FULL.increment(100);
+                  deliverToRecipient(recipient, rd, env, blob, sharedDeliveryCtxt, messageId);
+                  return;
                 }
-              } finally {
-                lock.unlock();
-              }
-
-              if (addedMessageIds != null && addedMessageIds.size() > 0) {
-                // Execute callbacks
-                for (LmtpCallback callback : callbacks) {
-                  for (ItemId id : addedMessageIds) {
-                    if (id.belongsTo(mbox)) {
-                      // Message was added to the local mailbox, as opposed to a mountpoint.
-                      ZimbraLog.lmtp.debug("Executing callback %s", callback.getClass().getName());
-                      try {
-                        Message msg = mbox.getMessageById(null, id.getId());
-                        callback.afterDelivery(account, mbox, envSender, rcptEmail, msg);
-                      } catch (OutOfMemoryError oome) {
-                        Zimbra.halt("LMTP callback failed", oome);
-                      } catch (Throwable t) {
-                        ZimbraLog.lmtp.warn("LMTP callback threw an exception", t);
-                      }
-                    }
-                  }
+                ZimbraPerf.COUNTER_LMTP_DLVD_POOL_FULL.increment(0);
+                ZimbraLog.setContext(logContext);
+                try {
+                  deliverToRecipient(recipient, rd, env, blob, sharedDeliveryCtxt, messageId);
+                } finally {
+                  ZimbraLog.clearContext();
                 }
-              }
-              reply = LmtpReply.DELIVERY_OK;
-              break;
-            case defer:
-              // Delivery to mailbox skipped. Let MTA retry again later.
-              // This case happens for shared delivery to a mailbox in
-              // backup mode.
-              ZimbraLog.lmtp.info(
-                  "try again for message from=%s,to=%s: mailbox skipped", envSender, rcptEmail);
-              reply = LmtpReply.TEMPORARY_FAILURE;
-              break;
-          }
-        } catch (DeliveryServiceException e) {
-          ZimbraLog.lmtp.info(
-              "rejecting message from=%s,to=%s: sieve filter rule", envSender, rcptEmail);
-          reply = LmtpReply.PERMANENT_MESSAGE_REFUSED;
-        } catch (ServiceException e) {
-          if (e.getCode().equals(MailServiceException.QUOTA_EXCEEDED)) {
-            ZimbraLog.lmtp.info("rejecting message from=%s,to=%s: overquota", envSender, rcptEmail);
-            if (config.isPermanentFailureWhenOverQuota()) {
-              reply = LmtpReply.PERMANENT_FAILURE_OVER_QUOTA;
-            } else {
-              reply = LmtpReply.TEMPORARY_FAILURE_OVER_QUOTA;
-            }
-          } else if (e.isReceiversFault()) {
-            ZimbraLog.lmtp.info("try again for message from=%s,to=%s", envSender, rcptEmail, e);
-            reply = LmtpReply.TEMPORARY_FAILURE;
-          } else {
-            ZimbraLog.lmtp.info("rejecting message from=%s,to=%s", envSender, rcptEmail, e);
-            reply = LmtpReply.PERMANENT_FAILURE;
-          }
-        } catch (Exception e) {
-          reply = LmtpReply.TEMPORARY_FAILURE;
-          ZimbraLog.lmtp.warn("try again for message from=%s,to=%s", envSender, rcptEmail, e);
-        } finally {
-          if (rd.action == DeliveryAction.deliver && !success) {
-            // Message was not delivered. Remove it from the dedupe
-            // cache so we don't dedupe it on LMTP retry.
-            removeFromDedupeCache(msgId, rd.mbox);
-          }
-          recipient.setDeliveryStatus(reply);
-          if (shared && rd != null && rd.esd) {
-            rd.mbox.endSharedDelivery();
-            rd.esd = false;
-          }
+              };
+          parallelRecipients.add(recipient);
+          deliveries.add(DELIVERY_EXECUTOR.submit(task));
+        } else {
+          deliverToRecipient(recipient, rd, env, blob, sharedDeliveryCtxt, messageId);
+        }
+      }
+      // replies are sent in recipient order once all the deliveries are done
+      for (int i = 0; i < deliveries.size(); i++) {
+        try {
+          Uninterruptibles.getUninterruptibly(deliveries.get(i));
+        } catch (ExecutionException e) {
+          ZimbraLog.lmtp.warn(
+              "try again for message from=%s,to=%s",
+              envSender, parallelRecipients.get(i).getEmailAddress(), e.getCause());
         }
       }
 
@@ -752,6 +585,207 @@ public class ZimbraLmtpBackend implements LmtpBackend {
     }
   }
 
+  /**
+   * Delivers the message to a single local recipient, and sets the recipient's delivery status.
+   * Recipients of a shared delivery may be delivered to concurrently, once the first mailbox has
+   * been delivered to.
+   */
+  private void deliverToRecipient(
+      LmtpAddress recipient,
+      RecipientDetail rd,
+      LmtpEnvelope env,
+      Blob blob,
+      DeliveryContext sharedDeliveryCtxt,
+      String msgId) {
+    String envSender = env.getSender().getEmailAddress();
+    boolean shared = sharedDeliveryCtxt.getShared();
+    String rcptEmail = recipient.getEmailAddress();
+    LmtpReply reply = LmtpReply.TEMPORARY_FAILURE;
+    if (rd == null) {
+      // Account or mailbox not found.
+      ZimbraLog.lmtp.info(
+          "rejecting message from=%s,to=%s: account or mailbox not found", envSender, rcptEmail);
+      recipient.setDeliveryStatus(LmtpReply.PERMANENT_FAILURE);
+      return;
+    }
+    if (rd.account != null) {
+      ZimbraLog.addAccountNameToContext(rd.account.getName());
+    }
+    if (rd.mbox != null) {
+      ZimbraLog.addMboxToContext(rd.mbox.getId());
+    }
+
+    boolean success = false;
+    long start = ZimbraPerf.STOPWATCH_LMTP_DLVD_RCPT.start();
+    try {
+      switch (rd.action) {
+        case discard:
+          ZimbraLog.lmtp.info(
+              "accepted and discarded message from=%s,to=%s: local delivery is disabled",
+              envSender, rcptEmail);
+          if (rd.account.getPrefMailForwardingAddress() != null) {
+            // mail forwarding is set up
+            for (LmtpCallback callback : callbacks) {
+              ZimbraLog.lmtp.debug("Executing callback %s", callback.getClass().getName());
+              callback.forwardWithoutDelivery(rd.account, rd.mbox, envSender, rcptEmail, rd.pm);
+            }
+          }
+          reply = LmtpReply.DELIVERY_OK;
+          break;
+        case deliver:
+          Account account = rd.account;
+          Mailbox mbox = rd.mbox;
+          ParsedMessage pm = rd.pm;
+          List<ItemId> addedMessageIds = null;
+          ReentrantLock lock = mailboxDeliveryLocks.get(mbox.getId());
+          boolean acquiredLock;
+          try {
+            // Wait for the lock, up to the timeout
+            acquiredLock = lock.tryLock(LC.zimbra_mailbox_lock_timeout.intValue(), TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            acquiredLock = false;
+          }
+          if (!acquiredLock) {
+            ZimbraLog.lmtp.info(
+                "try again for message from=%s,to=%s: another mail delivery in progress.",
+                envSender, rcptEmail);
+            reply = LmtpReply.TEMPORARY_FAILURE;
+            break;
+          }
+          try {
+            if (dedupe(pm, mbox)) {
+              // message was already delivered to this mailbox
+              ZimbraLog.lmtp.info(
+                  "Not delivering message with duplicate Message-ID %s", pm.getMessageID());
+            } else if (mbox.dedupeForSelfMsg(pm)) {
+              ZimbraLog.mailbox.info(
+                  "not delivering message, because it is a duplicate of sent message %s",
+                  pm.getMessageID());
+
+            } else if (recipient.getSkipFilters()) {
+              int folderId = Mailbox.ID_FOLDER_INBOX;
+              if (recipient.getFolder() != null) {
+                try {
+                  Folder folder = mbox.getFolderByPath(null, recipient.getFolder());
+                  folderId = folder.getId();
+                } catch (ServiceException se) {
+                  if (se.getCode().equals(MailServiceException.NO_SUCH_FOLDER)) {
+                    Folder folder = mbox.createFolder(
+                        null,
+                        recipient.getFolder(),
+                        new Folder.FolderOptions().setDefaultView(MailItem.Type.MESSAGE));
+                    folderId = folder.getId();
+                  } else {
+                    throw se;
+                  }
+                }
+              }
+              int flags = Flag.BITMASK_UNREAD;
+              if (recipient.getFlags() != null) {
+                flags = Flag.toBitmask(recipient.getFlags());
+              }
+              DeliveryOptions dopt = new DeliveryOptions().setFolderId(folderId);
+              dopt.setFlags(flags).setTags(recipient.getTags()).setRecipientEmail(rcptEmail);
+              Message msg = mbox.addMessage(null, pm, dopt, sharedDeliveryCtxt);
+              addedMessageIds = Lists.newArrayList(new ItemId(msg));
+            } else if (!DebugConfig.disableIncomingFilter) {
+              // Get msgid first, to avoid having to reopen and reparse the blob
+              // file if Mailbox.addMessageInternal() closes it.
+              pm.getMessageID();
+              addedMessageIds = RuleManager.applyRulesToIncomingMessage(
+                  null,
+                  mbox,
+                  pm,
+                  (int) blob.getRawSize(),
+                  rcptEmail,
+                  env,
+                  sharedDeliveryCtxt,
+                  Mailbox.ID_FOLDER_INBOX,
+                  false,
+                  true);
+            } else {
+              pm.getMessageID();
+              DeliveryOptions dopt = new DeliveryOptions().setFolderId(Mailbox.ID_FOLDER_INBOX);
+              dopt.setFlags(Flag.BITMASK_UNREAD).setRecipientEmail(rcptEmail);
+              Message msg = mbox.addMessage(null, pm, dopt, sharedDeliveryCtxt);
+              addedMessageIds = Lists.newArrayList(new ItemId(msg));
+            }
+            success = true;
+            if (addedMessageIds != null && addedMessageIds.size() > 0) {
+              addToDedupeCache(pm, mbox);
+            }
+          } finally {
+            lock.unlock();
+          }
+
+          if (addedMessageIds != null && addedMessageIds.size() > 0) {
+            // Execute callbacks
+            for (LmtpCallback callback : callbacks) {
+              for (ItemId id : addedMessageIds) {
+                if (id.belongsTo(mbox)) {
+                  // Message was added to the local mailbox, as opposed to a mountpoint.
+                  ZimbraLog.lmtp.debug("Executing callback %s", callback.getClass().getName());
+                  try {
+                    Message msg = mbox.getMessageById(null, id.getId());
+                    callback.afterDelivery(account, mbox, envSender, rcptEmail, msg);
+                  } catch (OutOfMemoryError oome) {
+                    Zimbra.halt("LMTP callback failed", oome);
+                  } catch (Throwable t) {
+                    ZimbraLog.lmtp.warn("LMTP callback threw an exception", t);
+                  }
+                }
+              }
+            }
+          }
+          reply = LmtpReply.DELIVERY_OK;
+          break;
+        case defer:
+          // Delivery to mailbox skipped. Let MTA retry again later.
+          // This case happens for shared delivery to a mailbox in
+          // backup mode.
+          ZimbraLog.lmtp.info(
+              "try again for message from=%s,to=%s: mailbox skipped", envSender, rcptEmail);
+          reply = LmtpReply.TEMPORARY_FAILURE;
+          break;
+      }
+    } catch (DeliveryServiceException e) {
+      ZimbraLog.lmtp.info("rejecting message from=%s,to=%s: sieve filter rule", envSender, rcptEmail);
+      reply = LmtpReply.PERMANENT_MESSAGE_REFUSED;
+    } catch (ServiceException e) {
+      if (e.getCode().equals(MailServiceException.QUOTA_EXCEEDED)) {
+        ZimbraLog.lmtp.info("rejecting message from=%s,to=%s: overquota", envSender, rcptEmail);
+        if (config.isPermanentFailureWhenOverQuota()) {
+          reply = LmtpReply.PERMANENT_FAILURE_OVER_QUOTA;
+        } else {
+          reply = LmtpReply.TEMPORARY_FAILURE_OVER_QUOTA;
+        }
+      } else if (e.isReceiversFault()) {
+        ZimbraLog.lmtp.info("try again for message from=%s,to=%s", envSender, rcptEmail, e);
+        reply = LmtpReply.TEMPORARY_FAILURE;
+      } else {
+        ZimbraLog.lmtp.info("rejecting message from=%s,to=%s", envSender, rcptEmail, e);
+        reply = LmtpReply.PERMANENT_FAILURE;
+      }
+    } catch (Exception e) {
+      reply = LmtpReply.TEMPORARY_FAILURE;
+      ZimbraLog.lmtp.warn("try again for message from=%s,to=%s", envSender, rcptEmail, e);
+    } finally {
+      if (rd.action == DeliveryAction.deliver) {
+        ZimbraPerf.STOPWATCH_LMTP_DLVD_RCPT.stop(start);
+        if (!success) {
+          // Message was not delivered. Remove it from the dedupe
+          // cache so we don't dedupe it on LMTP retry.
+          removeFromDedupeCache(msgId, rd.mbox);
+        }
+      }
+      recipient.setDeliveryStatus(reply);
+      if (shared && rd != null && rd.esd) {
+        rd.mbox.endSharedDelivery();
+        rd.esd = false;
+      }
+    }
+  }
+
   private void deliverMessageToRemoteMailboxes(Blob blob, byte[] data, LmtpEnvelope env) {
     Multimap<String, LmtpAddress> serverToRecipientsMap = env.getRemoteServerToRecipientsMap();
     for (String server : serverToRecipientsMap.keySet()) {
@@ -0,0 +1,464 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.mailbox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Per-mailbox cache of {@link MailItem}s, keyed by primitive item id, evicting the least recently
+ * used items first.
+ *
+ * <p>Entries live in parallel arrays: an open-addressing hash table of node indexes, and nodes
+ * chained in the order they were cached (eldest first). Lookups therefore don't box the item id,
+ * and an entry costs a few array slots instead of a map entry plus an {@code Integer}. The uuid
+ * index maps directly to the cached item.
+ *
+ * <p>The number of items cached by all mailboxes together is bounded by {@link ItemCacheBudget}.
+ * Mailbox trims its cache at the end of every transaction, at which point the budget may also
+ * evict the eldest items of idle mailboxes. A mailbox pins its cache for the duration of a
+ * transaction so that other mailboxes never evict from it while it is being used.
+ *
+ * <p>Lookups only take the read lock, so readers of the same mailbox don't exclude each other. A
+ * lookup doesn't reorder the chain, it marks the node as referenced instead. Eviction gives
+ * referenced nodes a second chance by moving them to the end of the chain, which approximates
+ * LRU order without writes to shared state on the read path. The locks are {@link
+ * java.util.concurrent.locks.ReentrantReadWriteLock}s rather than monitors so that virtual threads
+ * waiting for the cache don't pin their carrier.
+ */
+final class ItemCache {
+
+  private static final int NONE = -1;
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final int mailboxId;
+  private final ItemCacheBudget budget;
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Lock readLock = lock.readLock();
+  private final Lock writeLock = lock.writeLock();
+
+  // hash table of node index + 1; 0 marks an empty slot
+  private int[] table;
+  private int mask;
+
+  // node storage
+  private int[] keys;
+  private MailItem[] items;
+  // set by lookups under the read lock, cleared under the write lock; racing readers only ever
+  // store the same value
+  private boolean[] referenced;
+  private int[] prev;
+  private int[] next;
+  private int used; // nodes ever allocated; nodes below this are either linked or on the free list
+  private int free = NONE; // free list, chained through next[]
+
+  private int head = NONE; // eldest
+  private int tail = NONE; // most recently used
+  private int size;
+
+  private final Map<String, MailItem> uuid2item = new HashMap<>();
+
+  // hit rate since the last stats dump
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  // number of items accounted for in the global budget
+  final AtomicInteger accounted = new AtomicInteger();
+  // number of transactions currently using this cache
+  private final AtomicInteger pins = new AtomicInteger();
+  // set on every access, cleared by the budget's clock hand
+  private volatile boolean accessed;
+
+  ItemCache(int mailboxId, ItemCacheBudget budget) {
+    this.mailboxId = mailboxId;
+    this.budget = budget;
+    allocate();
+    budget.register(this);
+  }
+
+  private void allocate() {
+    table = new int[INITIAL_CAPACITY * 2];
+    mask = table.length - 1;
+    keys = new int[INITIAL_CAPACITY];
+    items = new MailItem[INITIAL_CAPACITY];
+    referenced = new boolean[INITIAL_CAPACITY];
+    prev = new int[INITIAL_CAPACITY];
+    next = new int[INITIAL_CAPACITY];
+  }
+
+  int getMailboxId() {
+    return mailboxId;
+  }
+
+  public void put(MailItem item) {
+    int id = item.getId();
+    writeLock.lock();
+    try {
+      int slot = find(id);
+      if (slot >= 0) {
+        int node = table[slot] - 1;
+        MailItem old = items[node];
+        if (old.getUuid() != null && uuid2item.get(old.getUuid()) == old) {
+          uuid2item.remove(old.getUuid());
+        }
+        items[node] = item;
+        referenced[node] = false;
+        moveToTail(node);
+      } else {
+        if (size + 1 > table.length / 2) {
+          rehash(table.length * 2);
+        }
+        int node = allocateNode();
+        keys[node] = id;
+        items[node] = item;
+        referenced[node] = false;
+        linkLast(node);
+        insert(node);
+        size++;
+        accounted.incrementAndGet();
+        budget.added(1);
+      }
+      String uuid = item.getUuid();
+      if (uuid != null) {
+        uuid2item.put(uuid, item);
+      }
+    } finally {
+      writeLock.unlock();
+    }
+    accessed = true;
+  }
+
+  public MailItem get(int id) {
+    accessed = true;
+    readLock.lock();
+    try {
+      return lookup(id);
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  public MailItem get(String uuid) {
+    accessed = true;
+    readLock.lock();
+    try {
+      MailItem item = uuid2item.get(uuid);
+      if (item == null) {
+        misses.increment();
+        return null;
+      }
+      // always go through the id lookup, to count the access and mark the node as referenced
+      return lookup(item.getId());
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  // Called with the read lock held.
+  private MailItem lookup(int id) {
+    int slot = find(id);
+    if (slot < 0) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    int node = table[slot] - 1;
+    if (!referenced[node]) {
+      referenced[node] = true;
+    }
+    return items[node];
+  }
+
+  public MailItem remove(MailItem item) {
+    return remove(item.getId());
+  }
+
+  public MailItem remove(int id) {
+    writeLock.lock();
+    try {
+      int slot = find(id);
+      if (slot < 0) {
+        return null;
+      }
+      int node = table[slot] - 1;
+      MailItem removed = items[node];
+      delete(slot);
+      freeNode(node);
+      return removed;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  public boolean contains(MailItem item) {
+    readLock.lock();
+    try {
+      return find(item.getId()) >= 0;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /**
+   * Returns a snapshot of the cached items, least recently used first: the items that haven't
+   * been looked up since they were cached or given a second chance, then the others.
+   */
+  public List<MailItem> values() {
+    readLock.lock();
+    try {
+      List<MailItem> values = new ArrayList<>(size);
+      for (int node = head; node != NONE; node = next[node]) {
+        if (!referenced[node]) {
+          values.add(items[node]);
+        }
+      }
+      for (int node = head; node != NONE; node = next[node]) {
+        if (referenced[node]) {
+          values.add(items[node]);
+        }
+      }
+      return values;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  public int size() {
+    readLock.lock();
+    try {
+      return size;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  public void clear() {
+    writeLock.lock();
+    try {
+      // start over with small arrays, the cache may have been much bigger than it will be again
+      allocate();
+      uuid2item.clear();
+      head = tail = free = NONE;
+      used = 0;
+      size = 0;
+      budget.added(-accounted.getAndSet(0));
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Drops up to {@code count} least recently used items; returns how many were dropped. Items
+   * looked up since they were cached are moved to the end of the chain instead, once.
+   */
+  int evictEldest(int count) {
+    return evictEldest(count, false);
+  }
+
+  /**
+   * Like {@link #evictEldest(int)}, but drops nothing if a transaction has pinned the cache. The pin
+   * count is checked under the write lock, which {@link #pin()} waits for, so the cache can't get
+   * pinned while items are being dropped.
+   */
+  int evictEldestIfUnpinned(int count) {
+    return evictEldest(count, true);
+  }
+
+  private int evictEldest(int count, boolean unlessPinned) {
+    writeLock.lock();
+    try {
+      if (unlessPinned && pins.get() > 0) {
+        return 0;
+      }
+      int evicted = 0;
+      while (evicted < count && head != NONE) {
+        int node = head;
+        if (referenced[node]) {
+          referenced[node] = false;
+          moveToTail(node);
+          continue;
+        }
+        delete(find(keys[node]));
+        freeNode(node);
+        evicted++;
+      }
+      return evicted;
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * Makes room in the global budget, evicting from idle mailboxes first and from this cache as a
+   * last resort. Must be called by the transaction that has this cache pinned.
+   */
+  void enforceBudget() {
+    budget.enforce(this);
+  }
+
+  void pin() {
+    // excludes the budget's evictions from this cache, see evictEldestIfUnpinned()
+    readLock.lock();
+    try {
+      pins.incrementAndGet();
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  void unpin() {
+    pins.decrementAndGet();
+  }
+
+  /** Clears the accessed bit and returns its previous value. */
+  boolean clearAccessed() {
+    boolean was = accessed;
+    accessed = false;
+    return was;
+  }
+
+  /**
+   * Returns the number of hits and misses since the last call, and resets them. Returns null if
+   * the cache hasn't been accessed since the last call.
+   */
+  long[] drainHitCounts() {
+    long[] counts = {hits.sumThenReset(), misses.sumThenReset()};
+    return counts[0] == 0 && counts[1] == 0 ? null : counts;
+  }
+
+  private static int hash(int id) {
+    int h = id * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private int find(int id) {
+    int slot = hash(id) & mask;
+    while (true) {
+      int entry = table[slot];
+      if (entry == 0) {
+        return NONE;
+      }
+      if (keys[entry - 1] == id) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  private void insert(int node) {
+    int slot = hash(keys[node]) & mask;
+    while (table[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = node + 1;
+  }
+
+  // Removes the table entry at the given slot, shifting back the entries of the same probe run so
+  // that lookups never stop at the freed slot by mistake.
+  private void delete(int slot) {
+    table[slot] = 0;
+    int gap = slot;
+    int i = slot;
+    while (true) {
+      i = (i + 1) & mask;
+      int entry = table[i];
+      if (entry == 0) {
+        return;
+      }
+      int home = hash(keys[entry - 1]) & mask;
+      // leave the entry where it is if its home slot lies cyclically in (gap, i]
+      boolean reachable = gap <= i ? gap < home && home <= i : gap < home || home <= i;
+      if (!reachable) {
+        table[gap] = entry;
+        table[i] = 0;
+        gap = i;
+      }
+    }
+  }
+
+  private void rehash(int capacity) {
+    table = new int[capacity];
+    mask = capacity - 1;
+    for (int node = head; node != NONE; node = next[node]) {
+      insert(node);
+    }
+  }
+
+  private int allocateNode() {
+    if (free != NONE) {
+      int node = free;
+      free = next[node];
+      return node;
+    }
+    if (used == keys.length) {
+      int capacity = keys.length * 2;
+      keys = Arrays.copyOf(keys, capacity);
+      items = Arrays.copyOf(items, capacity);
+      referenced = Arrays.copyOf(referenced, capacity);
+      prev = Arrays.copyOf(prev, capacity);
+      next = Arrays.copyOf(next, capacity);
+    }
+    return used++;
+  }
+
+  // Unlinks a node that has already been removed from the table and puts it on the free list.
+  private void freeNode(int node) {
+    MailItem item = items[node];
+    String uuid = item.getUuid();
+    if (uuid != null && uuid2item.get(uuid) == item) {
+      uuid2item.remove(uuid);
+    }
+    unlink(node);
+    items[node] = null;
+    referenced[node] = false;
+    next[node] = free;
+    free = node;
+    size--;
+    accounted.decrementAndGet();
+    budget.added(-1);
+  }
+
+  private void linkLast(int node) {
+    prev[node] = tail;
+    next[node] = NONE;
+    if (tail == NONE) {
+      head = node;
+    } else {
+      next[tail] = node;
+    }
+    tail = node;
+  }
+
+  private void unlink(int node) {
+    int p = prev[node];
+    int n = next[node];
+    if (p == NONE) {
+      head = n;
+    } else {
+      next[p] = n;
+    }
+    if (n == NONE) {
+      tail = p;
+    } else {
+      prev[n] = p;
+    }
+  }
+
+  private void moveToTail(int node) {
+    if (node != tail) {
+      unlink(node);
+      linkLast(node);
+    }
+  }
+}
@@ -0,0 +1,182 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.mailbox;
+
+import com.zimbra.common.localconfig.LC;
+import com.zimbra.common.stats.StatsDumperDataSource;
+import com.zimbra.common.util.ZimbraLog;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the number of {@link MailItem}s held by the item caches of all loaded mailboxes.
+ *
+ * <p>Before, each mailbox held its item cache through a {@code SoftReference}, so under memory
+ * pressure every cache vanished at once. Caches are now strongly held by their mailbox and the
+ * budget evicts from them in a CLOCK sweep over the registered caches: a cache that was accessed
+ * since the hand last passed gets a second chance, otherwise its eldest items are dropped. Caches
+ * in use by a transaction are skipped. Caches are registered through weak references so that a
+ * {@link Mailbox} dropped by {@link MailboxManager} doesn't stay reachable from here.
+ *
+ * <p>The budget is also the source of the {@code item_cache.csv} stats file, which lists the
+ * item cache hit rate of every mailbox accessed during the interval.
+ */
+public final class ItemCacheBudget implements StatsDumperDataSource {
+
+  private static final ItemCacheBudget INSTANCE =
+      new ItemCacheBudget(LC.zimbra_mailbox_item_cache_global_max.longValue());
+
+  /** Fraction of a victim cache dropped per visit of the clock hand. */
+  private static final int EVICT_DIVISOR = 4;
+
+  private final long maxItems;
+  private final AtomicLong total = new AtomicLong();
+
+  // guards caches and hand
+  private final Object lock = new Object();
+  private final List<CacheRef> caches = new ArrayList<>();
+  private final ReferenceQueue<ItemCache> collected = new ReferenceQueue<>();
+  private int hand;
+
+  private static final class CacheRef extends WeakReference<ItemCache> {
+    final int mailboxId;
+    final AtomicInteger accounted;
+
+    CacheRef(ItemCache cache, ReferenceQueue<ItemCache> queue) {
+      super(cache, queue);
+      mailboxId = cache.getMailboxId();
+      accounted = cache.accounted;
+    }
+  }
+
+  ItemCacheBudget(long maxItems) {
+    this.maxItems = maxItems;
+  }
+
+  public static ItemCacheBudget getInstance() {
+    return INSTANCE;
+  }
+
+  public long getMaxItems() {
+    return maxItems;
+  }
+
+  /** Returns the number of items currently cached by all mailboxes. */
+  public long getTotal() {
+    return total.get();
+  }
+
+  void register(ItemCache cache) {
+    synchronized (lock) {
+      expunge();
+      caches.add(new CacheRef(cache, collected));
+    }
+  }
+
+  void added(int delta) {
+    total.addAndGet(delta);
+  }
+
+  /**
+   * Evicts items until the budget is met. The caller's own cache is only evicted from as a last
+   * resort, and must not be in use by any other transaction than the caller's.
+   */
+  void enforce(ItemCache self) {
+    if (total.get() <= maxItems) {
+      return;
+    }
+    synchronized (lock) {
+      expunge();
+      // Give up after two full turns without evicting anything: the first one may only clear the
+      // accessed bits.
+      int fruitless = 0;
+      while (total.get() > maxItems && fruitless < caches.size() * 2) {
+        if (hand >= caches.size()) {
+          hand = 0;
+        }
+        ItemCache cache = caches.get(hand++).get();
+        fruitless++;
+        if (cache == null || cache == self || cache.clearAccessed()) {
+          continue;
+        }
+        long excess = total.get() - maxItems;
+        int share = Math.max(cache.size() / EVICT_DIVISOR, 1);
+        if (cache.evictEldestIfUnpinned((int) Math.min(share, excess)) > 0) {
+          fruitless = 0;
+        }
+      }
+      long excess = total.get() - maxItems;
+      if (excess > 0 && self != null) {
+        int evicted = self.evictEldest((int) Math.min(excess, Integer.MAX_VALUE));
+        ZimbraLog.cache.debug(
+            "item cache budget exhausted, evicted %d items from mailbox %d",
+            evicted, self.getMailboxId());
+      }
+    }
+  }
+
+  // Called with lock held.  Drops the registrations of collected caches and releases their items
+  // from the budget.
+  private void expunge() {
+    CacheRef ref;
+    boolean found = false;
+    while ((ref = (CacheRef) collected.poll()) != null) {
+      total.addAndGet(-ref.accounted.getAndSet(0));
+      found = true;
+    }
+    if (found) {
+      caches.removeIf(r -> r.get() == null);
+    }
+  }
+
+  ////////////// StatsDumperDataSource implementation //////////////
+  @Override
+  public Collection<String> getDataLines() {
+    List<String> lines = new ArrayList<>();
+    synchronized (lock) {
+      expunge();
+      for (CacheRef ref : caches) {
+        ItemCache cache = ref.get();
+        long[] counts = cache == null ? null : cache.drainHitCounts();
+        if (counts == null) {
+          continue;
+        }
+        long accesses = counts[0] + counts[1];
+        lines.add(
+            String.format(
+                Locale.ROOT,
+                "%d,%d,%d,%d,%.1f",
+                ref.mailboxId,
+                cache.size(),
+                counts[0],
+                counts[1],
+                counts[0] * 100.0 / accesses));
+      }
+    }
+    return lines;
+  }
+
+  @Override
+  public String getFilename() {
+    return "item_cache";
+  }
+
+  @Override
+  public String getHeader() {
+    return "mailbox_id,size,hits,misses,hit_rate";
+  }
+
+  @Override
+  public boolean hasTimestampColumn() {
+    return true;
+  }
+}
@@ -226,7 +226,6 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.lang.ref.SoftReference;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -501,7 +500,10 @@ public class Mailbox implements MailboxStore {
       this.sync = null;
       this.config = null;
       this.deletes = null;
-      this.itemCache = null;
+      if (this.itemCache != null) {
+        this.itemCache.unpin();
+        this.itemCache = null;
+      }
       this.indexItems.clear();
       this.dirty.clear();
       this.otherDirtyStuff.clear();
@@ -593,82 +595,6 @@ public class Mailbox implements MailboxStore {
     }
   }
 
-  private static class ItemCache {
-    private final Map<Integer /* id */, MailItem> mapById;
-    private final Map<String /* uuid */, Integer /* id */> uuid2id;
-    private final Mailbox mbox;
-
-    public ItemCache(Mailbox mbox) {
-      mapById =
-          new ConcurrentLinkedHashMap.Builder<Integer, MailItem>()
-              .maximumWeightedCapacity(MAX_ITEM_CACHE_WITH_LISTENERS)
-              .build();
-      uuid2id = new ConcurrentHashMap<>(MAX_ITEM_CACHE_WITH_LISTENERS);
-      this.mbox = mbox;
-    }
-
-    public void put(MailItem item) {
-      int id = item.getId();
-      mapById.put(id, item);
-      String uuid = item.getUuid();
-      if (uuid != null) {
-        uuid2id.put(uuid, id);
-      }
-    }
-
-    public MailItem get(int id) {
-      return mapById.get(id);
-    }
-
-    public MailItem get(String uuid) {
-      // Always fetch item from mapById map to preserve LRU's access time ordering.
-      Integer id = uuid2id.get(uuid);
-      return id != null ? mapById.get(id) : null;
-    }
-
-    public MailItem remove(MailItem item) {
-      return remove(item.getId());
-    }
-
-    public MailItem remove(int id) {
-      if (false) {
-        MailItem removed = null;
-        try {
-          removed = MemcachedItemCache.getInstance().remove(mbox, id);
-        } catch (ServiceException e) {
-          ZimbraLog.mailbox.error("error while removing item from cache", e);
-        }
-        return removed;
-      } else {
-        MailItem removed = mapById.remove(id);
-        if (removed != null) {
-          String uuid = removed.getUuid();
-          if (uuid != null) {
-            uuid2id.remove(uuid);
-          }
-        }
-        return removed;
-      }
-    }
-
-    public boolean contains(MailItem item) {
-      return mapById.containsKey(item.getId());
-    }
-
-    public Collection<MailItem> values() {
-      return mapById.values();
-    }
-
-    public int size() {
-      return mapById.size();
-    }
-
-    public void clear() {
-      mapById.clear();
-      uuid2id.clear();
-    }
-  }
-
   // This class handles all the indexing internals for the Mailbox
   public final MailboxIndex index;
   public final MailboxLock lock;
@@ -695,7 +621,7 @@ public class Mailbox implements MailboxStore {
 
   private FolderCache mFolderCache;
   private Map<Object, Tag> mTagCache;
-  private SoftReference<ItemCache> mItemCache = new SoftReference<>(null);
+  private final ItemCache mItemCache;
   private final Map<String, Integer> mConvHashes =
       new ConcurrentLinkedHashMap.Builder<String, Integer>()
           .maximumWeightedCapacity(MAX_MSGID_CACHE)
@@ -718,6 +644,7 @@ public class Mailbox implements MailboxStore {
     // version init done in open()
     // index init done in open()
     lock = new MailboxLock(data.accountId, this);
+    mItemCache = new ItemCache(mId, ItemCacheBudget.getInstance());
   }
 
   public void setGalSyncMailbox(boolean galSyncMailbox) {
@@ -1715,7 +1642,7 @@ public class Mailbox implements MailboxStore {
     write = write || requiresWriteLock();
     assert recorder == null || write;
     assert !Thread.holdsLock(this) : "use MailboxLock";
-    lock.lock(write);
+    lock.lock(write, caller);
     if (!write && requiresWriteLock()) {
       // another call must have purged the cache.
       // the lock.lock() call should have resulted in write lock already
@@ -1749,14 +1676,11 @@ public class Mailbox implements MailboxStore {
       recorder.setChangeId(getOperationChangeID());
     }
 
-    // keep a hard reference to the item cache to avoid having it GCed during the op
-    ItemCache cache = mItemCache.get();
-    if (cache == null) {
-      cache = new ItemCache(this);
-      mItemCache = new SoftReference<>(cache);
-      ZimbraLog.cache.debug("created a new MailItem cache for mailbox " + getId());
+    // pin the item cache, so that the global item budget doesn't evict from it during the op
+    if (currentChange().itemCache == null) {
+      mItemCache.pin();
+      currentChange().itemCache = mItemCache;
     }
-    currentChange().itemCache = cache;
 
     // don't permit mailbox access during maintenance
     if (maintenance != null && !maintenance.canAccess()) {
@@ -2973,7 +2897,7 @@ public class Mailbox implements MailboxStore {
     }
     assert (currentChange().depth == 0);
 
-    ItemCache cache = mItemCache.get();
+    ItemCache cache = mItemCache;
     FolderCache folders =
         mFolderCache == null || Collections.disjoint(pms.changedTypes, FOLDER_TYPES)
             ? mFolderCache
@@ -5432,6 +5356,21 @@ public class Mailbox implements MailboxStore {
   public CalendarDataResult getCalendarSummaryForRange(
       OperationContext octxt, int folderId, MailItem.Type type, long start, long end)
       throws ServiceException {
+    return getCalendarSummaryForRange(octxt, folderId, type, start, end, true);
+  }
+
+  /**
+   * @param computeSubRange if false, the result may be the whole cached summary of the folder
+   *     rather than its items in the range
+   */
+  public CalendarDataResult getCalendarSummaryForRange(
+      OperationContext octxt,
+      int folderId,
+      MailItem.Type type,
+      long start,
+      long end,
+      boolean computeSubRange)
+      throws ServiceException {
     lock.lock(false);
     try {
       Folder folder = getFolderById(folderId);
@@ -5441,7 +5380,7 @@ public class Mailbox implements MailboxStore {
       }
       return CalendarCacheManager.getInstance()
           .getSummaryCache()
-          .getCalendarSummary(octxt, getAccountId(), folderId, type, start, end, true);
+          .getCalendarSummary(octxt, getAccountId(), folderId, type, start, end, computeSubRange);
     } finally {
       lock.release();
     }
@@ -5449,6 +5388,16 @@ public class Mailbox implements MailboxStore {
 
   public List<CalendarDataResult> getAllCalendarsSummaryForRange(
       OperationContext octxt, MailItem.Type type, long start, long end) throws ServiceException {
+    return getAllCalendarsSummaryForRange(octxt, type, start, end, true);
+  }
+
+  /**
+   * @param computeSubRange if false, the results may be the whole cached summaries of the folders
+   *     rather than their items in the range
+   */
+  public List<CalendarDataResult> getAllCalendarsSummaryForRange(
+      OperationContext octxt, MailItem.Type type, long start, long end, boolean computeSubRange)
+      throws ServiceException {
     boolean success = false;
     try {
       // folder cache is populated in beginTransaction...
@@ -5475,7 +5424,7 @@ public class Mailbox implements MailboxStore {
               CalendarCacheManager.getInstance()
                   .getSummaryCache()
                   .getCalendarSummary(
-                      octxt, getAccountId(), folder.getId(), type, start, end, true);
+                      octxt, getAccountId(), folder.getId(), type, start, end, computeSubRange);
           if (result != null) {
             list.add(result);
           }
@@ -6815,7 +6764,7 @@ public class Mailbox implements MailboxStore {
       localMsgMarkedRead = true;
     }
 
-    lock.lock();
+    lock.lock(true, "addMessage");
     try {
       try {
         Message message =
@@ -11128,6 +11077,12 @@ public class Mailbox implements MailboxStore {
       }
     } catch (RuntimeException e) {
       ZimbraLog.mailbox.error("ignoring error during item cache trim", e);
+    } finally {
+      // stay within the item budget shared by all mailboxes
+      ItemCache cache = currentChange().itemCache;
+      if (cache != null) {
+        cache.enforceBudget();
+      }
     }
   }
 
@@ -8,7 +8,9 @@ package com.zimbra.cs.mailbox;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -30,10 +32,12 @@ import com.zimbra.cs.index.IndexDocument;
 import com.zimbra.cs.index.IndexPendingDeleteException;
 import com.zimbra.cs.index.IndexStore;
 import com.zimbra.cs.index.Indexer;
+import com.zimbra.cs.index.LuceneDirectory;
 import com.zimbra.cs.index.LuceneFields;
 import com.zimbra.cs.index.LuceneIndex;
 import com.zimbra.cs.index.ReSortingQueryResults;
 import com.zimbra.cs.index.SearchParams;
+import com.zimbra.cs.index.SearchResultCache;
 import com.zimbra.cs.index.SortBy;
 import com.zimbra.cs.index.ZimbraAnalyzer;
 import com.zimbra.cs.index.ZimbraIndexReader.TermFieldEnumeration;
@@ -46,15 +50,23 @@ import com.zimbra.cs.mailbox.Mailbox.IndexItemEntry;
 import com.zimbra.cs.util.Zimbra;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.SynchronousQueue;
@@ -92,12 +104,27 @@ public final class MailboxIndex {
           TimeUnit.SECONDS,
           new SynchronousQueue<>(),
           new ThreadFactoryBuilder().setNameFormat("ReIndex-%d").setDaemon(true).build());
+  // MIME parsing and text extraction of the items being indexed, shared by all mailboxes.
+  private static final ForkJoinPool PARSE_POOL =
+      new ForkJoinPool(
+          Math.max(1, LC.zimbra_index_parse_threads.intValue()),
+          pool -> {
+            ForkJoinWorkerThread thread =
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("IndexParse-" + thread.getPoolIndex());
+            return thread;
+          },
+          null,
+          false);
+  // Items of a mailbox being parsed ahead of the one that is next to be added to the index.
+  private static final int MAX_PARSE_AHEAD = PARSE_POOL.getParallelism() * 2;
 
   private volatile long lastFailedTime = -1;
   // Only one thread may run index at a time.
   private final Semaphore indexLock = new Semaphore(1);
   private final Mailbox mailbox;
   private final Analyzer analyzer;
+  private final SearchResultCache resultCache;
   private IndexStore indexStore;
   // current re-indexing operation for this mailbox, or NULL if a re-index is not in progress.
   private volatile ReIndexTask reIndex;
@@ -117,6 +144,7 @@ public final class MailboxIndex {
       analyzerName = null;
     }
     analyzer = ZimbraAnalyzer.getAnalyzer(analyzerName);
+    resultCache = new SearchResultCache(mbox);
   }
 
   /** Starts all index threads. */
@@ -170,7 +198,10 @@ public final class MailboxIndex {
         ZimbraLog.index.error("Failed to index deferred items", e);
       }
     }
-    return search(query);
+    // the hits of items still waiting to be indexed may come later without a mailbox change
+    boolean cacheable =
+        reIndex == null && !(query.hasTextOperation() && getDeferredCount(types) > 0);
+    return search(query, cacheable);
   }
 
   public ZimbraQueryResults search(
@@ -209,7 +240,7 @@ public final class MailboxIndex {
     return search(octxt, queryString, types, sortBy, chunkSize, false);
   }
 
-  private ZimbraQueryResults search(ZimbraQuery zq) throws ServiceException {
+  private ZimbraQueryResults search(ZimbraQuery zq, boolean cacheable) throws ServiceException {
     SearchParams params = zq.getParams();
     ZimbraLog.search.debug("query: %s", params.getQueryString());
     ZimbraLog.searchstat.debug("query: %s", zq.toSanitizedtring());
@@ -234,11 +265,21 @@ public final class MailboxIndex {
         break;
     }
 
+    SearchResultCache.Key key = cacheable ? resultCache.getKey(zq) : null;
+    // read before searching, so that changes made meanwhile invalidate the cached hits
+    int changeId = mailbox.getLastChangeID();
+    if (key != null) {
+      ZimbraQueryResults cached = resultCache.get(key, changeId, params);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
     ZimbraQueryResults results = zq.execute();
     if (isLocalizedSort) {
       results = new ReSortingQueryResults(results, originalSort, params);
     }
-    return results;
+    return key == null ? results : resultCache.record(key, changeId, params, results);
   }
 
   /** Returns true if any of the specified email addresses exists in contacts, otherwise false. */
@@ -290,6 +331,7 @@ public final class MailboxIndex {
   }
 
   void evict() {
+    resultCache.clear();
     indexStore.evict();
   }
 
@@ -297,6 +339,7 @@ public final class MailboxIndex {
     if (isReIndexInProgress()) {
       cancelReIndex();
     }
+    resultCache.clear();
     indexStore.deleteIndex();
   }
 
@@ -443,6 +486,7 @@ public final class MailboxIndex {
             Integer.toString(mailbox.getId()), "Compact Index");
       }
       REINDEX_EXECUTOR.submit(reIndex = task);
+      resultCache.clear();
     } catch (RejectedExecutionException e) {
       throw ServiceException.FAILURE("Unable to submit reindex request. Try again later", e);
     }
@@ -711,9 +755,10 @@ public final class MailboxIndex {
   }
 
   /**
-   * Index a potentially very large list of {@link MailItem}s. Iterate through the list of items,
-   * fetch each one and call generateIndexData(). Buffer the items, IndexData into a chunk and when
-   * the chunk gets sufficiently large, run a Mailbox transaction to actually do the indexing
+   * Index a potentially very large list of {@link MailItem}s. Items are fetched in batches of
+   * {@link #MAX_TX_ITEMS}, their index data is generated in parallel on {@link #PARSE_POOL}, and
+   * they are added to the index in chunks, in the order they were fetched, by a mailbox transaction
+   * run from the calling thread.
    *
    * @param ids item IDs to index
    * @param status progress will be written to the status
@@ -728,91 +773,204 @@ public final class MailboxIndex {
       return;
     }
 
-    // we re-index 'chunks' of items -- up to a certain size or count
-    List<Mailbox.IndexItemEntry> chunk = new ArrayList<>();
-    long chunkByteSize = 0;
-    int i = 0;
+    IndexPipeline pipeline = new IndexPipeline(status);
+    try {
+      for (List<Integer> batch : Iterables.partition(ids, MAX_TX_ITEMS)) {
+        if (status.isCancelled()) {
+          throw ServiceException.INTERRUPTED("cancelled");
+        }
+        for (MailItem item : fetchItems(batch, status)) {
+          pipeline.add(item);
+        }
+      }
+      pipeline.finish();
+    } finally {
+      pipeline.cancel();
+    }
+  }
+
+  /**
+   * Fetches the items in a single read transaction. If some of them can't be fetched that way,
+   * falls back to fetching them one by one.
+   *
+   * @return the fetched items, deleted items and items failed to fetch are accounted in the status
+   */
+  private List<MailItem> fetchItems(List<Integer> ids, BatchStatus status)
+      throws ServiceException {
+    MailItem[] items = null;
+    try {
+      mailbox.beginReadTransaction("IndexItemList-Fetch", null);
+      items = mailbox.getItemById(ids, MailItem.Type.UNKNOWN);
+    } catch (ServiceException e) { // deleted or corrupted items, handled below
+      ZimbraLog.index.debug("Failed to fetch items in batch, fetching one by one", e);
+    } finally {
+      mailbox.endTransaction(items != null);
+    }
+    if (items != null) {
+      return Arrays.asList(items);
+    }
+
+    List<MailItem> result = new ArrayList<>(ids.size());
     for (int id : ids) {
-      i++;
+      MailItem item = fetchItem(id, status);
+      if (item != null) {
+        result.add(item);
+      }
+    }
+    return result;
+  }
+
+  private MailItem fetchItem(int id, BatchStatus status) throws ServiceException {
+    MailItem item = null;
+    try {
+      mailbox.beginReadTransaction("IndexItemList-Fetch", null);
+      item = mailbox.getItemById(id, MailItem.Type.UNKNOWN, false);
+    } catch (MailServiceException.NoSuchItemException e) { // fallback to dumpster
+      try {
+        item = mailbox.getItemById(id, MailItem.Type.UNKNOWN, true);
+      } catch (MailServiceException.NoSuchItemException again) { // The item has just been deleted.
+        ZimbraLog.index.debug("deferred item no longer exist id=%d", id);
+        removeDeferredId(id);
+        status.addProcessed(1);
+      }
+    } catch (MailServiceException e) {
+      // fetch without metadata because reindex will regenerate metadata
+      if (MailServiceException.INVALID_METADATA.equals(e.getCode()) && isReIndexInProgress()) {
+        UnderlyingData ud = DbMailItem.getById(mailbox, id, MailItem.Type.UNKNOWN, false);
+        ud.metadata = null; // ignore corrupted metadata
+        item = mailbox.getItem(ud);
+      } else {
+        throw e;
+      }
+    } catch (Exception e) {
+      ZimbraLog.index.warn("Failed to fetch deferred item id=%d", id, e);
       status.addProcessed(1);
+      status.addFailed(1);
+    } finally {
+      mailbox.endTransaction(item != null);
+    }
+    return item;
+  }
+
+  /**
+   * Generates the index data of fetched items on {@link #PARSE_POOL}, a bounded number of them
+   * ahead, and adds them to the index in chunks, in the order they were added to the pipeline. Only
+   * the thread driving the pipeline writes to the index and updates the status.
+   */
+  private final class IndexPipeline {
+    private final BatchStatus status;
+    private final Map<String, String> logContext = ZimbraLog.getContext();
+    private final Deque<ParseTask> parsing = new ArrayDeque<>();
+    private final List<Mailbox.IndexItemEntry> chunk = new ArrayList<>();
+    private long chunkByteSize = 0;
+
+    IndexPipeline(BatchStatus status) {
+      this.status = status;
+    }
+
+    void add(MailItem item) throws ServiceException {
+      parsing.add(new ParseTask(item, PARSE_POOL.submit(() -> generateIndexData(item))));
+      while (parsing.size() > MAX_PARSE_AHEAD) {
+        collect(parsing.remove());
+      }
+    }
+
+    /** Waits for all the items to be parsed, and adds what is left to the index. */
+    void finish() throws ServiceException {
+      while (!parsing.isEmpty()) {
+        collect(parsing.remove());
+      }
+      commit();
+    }
 
-      // Fetch the item and generate the list of Lucene documents to index. Do this without holding
-      // the Mailbox
-      // lock. Once we've accumulated a "chunk" of items, do a mailbox transaction to actually add
-      // them to the
-      // index.
-      ZimbraLog.index.debug("Tokenizing id=%d", id);
-      MailItem item = null;
+    /** Discards the items not added to the index yet. */
+    void cancel() {
+      for (ParseTask task : parsing) {
+        task.future.cancel(false);
+      }
+      parsing.clear();
+      chunk.clear();
+    }
+
+    private List<IndexDocument> generateIndexData(MailItem item)
+        throws MailItem.TemporaryIndexingException {
+      ZimbraLog.setContext(logContext);
       try {
-        mailbox.beginReadTransaction("IndexItemList-Fetch", null);
-        item = mailbox.getItemById(id, MailItem.Type.UNKNOWN, false);
-      } catch (MailServiceException.NoSuchItemException e) { // fallback to dumpster
-        try {
-          item = mailbox.getItemById(id, MailItem.Type.UNKNOWN, true);
-        } catch (
-            MailServiceException.NoSuchItemException again) { // The item has just been deleted.
-          ZimbraLog.index.debug("deferred item no longer exist id=%d", id);
-          removeDeferredId(id);
-          continue;
-        }
-      } catch (MailServiceException e) {
-        // fetch without metadata because reindex will regenerate metadata
-        if (MailServiceException.INVALID_METADATA.equals(e.getCode()) && isReIndexInProgress()) {
-          UnderlyingData ud = DbMailItem.getById(mailbox, id, MailItem.Type.UNKNOWN, false);
-          ud.metadata = null; // ignore corrupted metadata
-          item = mailbox.getItem(ud);
-        } else {
-          throw e;
-        }
-      } catch (Exception e) {
-        ZimbraLog.index.warn("Failed to fetch deferred item id=%d", id, e);
-        status.addFailed(1);
-        continue;
+        ZimbraLog.index.debug("Tokenizing id=%d", item.getId());
+        return item.generateIndexData();
       } finally {
-        mailbox.endTransaction(item != null);
+        ZimbraLog.clearContext();
       }
+    }
+
+    private void collect(ParseTask task) throws ServiceException {
+      status.addProcessed(1);
+      MailItem item = task.item;
       try {
-        chunk.add(new Mailbox.IndexItemEntry(item, item.generateIndexData()));
-      } catch (MailItem.TemporaryIndexingException e) {
-        ZimbraLog.index.warn("Temporary index failure id=%d", id, e);
-        lastFailedTime = System.currentTimeMillis();
-        status.addFailed(1);
-        continue;
+        chunk.add(new Mailbox.IndexItemEntry(item, task.future.get()));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw ServiceException.INTERRUPTED("interrupted");
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof MailItem.TemporaryIndexingException) {
+          ZimbraLog.index.warn("Temporary index failure id=%d", item.getId(), e.getCause());
+          lastFailedTime = System.currentTimeMillis();
+          status.addFailed(1);
+          return;
+        }
+        Throwables.throwIfUnchecked(e.getCause());
+        throw ServiceException.FAILURE("Failed to generate index data id=" + item.getId(), e);
       }
       chunkByteSize += item.getSize();
+      if (chunkByteSize > MAX_TX_BYTES || chunk.size() >= MAX_TX_ITEMS) {
+        commit();
+      }
+    }
 
-      if (i == ids.size() || chunkByteSize > MAX_TX_BYTES || chunk.size() >= MAX_TX_ITEMS) {
-        // we have a chunk of items and their corresponding index data -- add them to the index
-        try {
-          ZimbraLog.index.debug("Batch progress %d/%d", i, ids.size());
+    /** Adds the chunk of items and their corresponding index data to the index. */
+    private void commit() throws ServiceException {
+      if (chunk.isEmpty()) {
+        return;
+      }
+      try {
+        ZimbraLog.index.debug("Batch progress %d/%d", status.getProcessed(), status.getTotal());
 
-          if (status.isCancelled()) {
-            throw ServiceException.INTERRUPTED("cancelled");
-          }
+        if (status.isCancelled()) {
+          throw ServiceException.INTERRUPTED("cancelled");
+        }
 
+        try {
+          boolean success = false;
           try {
-            boolean success = false;
-            try {
-              mailbox.beginTransaction("IndexItemList-Commit", null);
-              for (Mailbox.IndexItemEntry entry : chunk) {
-                mailbox.addIndexItemToCurrentChange(entry);
-              }
-              success = true;
-            } finally {
-              mailbox.endTransaction(success);
+            mailbox.beginTransaction("IndexItemList-Commit", null);
+            for (Mailbox.IndexItemEntry entry : chunk) {
+              mailbox.addIndexItemToCurrentChange(entry);
             }
-          } catch (ServiceException e) {
-            ZimbraLog.index.warn("Failed to index chunk=%s", chunk, e);
-            status.addFailed(chunk.size());
+            success = true;
+          } finally {
+            mailbox.endTransaction(success);
           }
-        } finally {
-          chunk.clear();
-          chunkByteSize = 0;
+        } catch (ServiceException e) {
+          ZimbraLog.index.warn("Failed to index chunk=%s", chunk, e);
+          status.addFailed(chunk.size());
         }
+      } finally {
+        chunk.clear();
+        chunkByteSize = 0;
       }
     }
   }
 
+  private static final class ParseTask {
+    final MailItem item;
+    final Future<List<IndexDocument>> future;
+
+    ParseTask(MailItem item, Future<List<IndexDocument>> future) {
+      this.item = item;
+      this.future = future;
+    }
+  }
+
   /** Mailbox version (1.0,1.1)->1.2 Re-Index all contacts. */
   void upgradeMailboxTo1_2() throws ServiceException {
     DbConnection conn = DbPool.getConnection(mailbox);
@@ -999,11 +1157,16 @@ public final class MailboxIndex {
   public static final class IndexStats {
     private final int maxDocs;
     private final int numDeletedDocs;
+    private final LuceneDirectory directory;
 
     public IndexStats(int maxDocs, int numDeletedDocs) {
-      super();
+      this(maxDocs, numDeletedDocs, null);
+    }
+
+    IndexStats(int maxDocs, int numDeletedDocs, LuceneDirectory directory) {
       this.maxDocs = maxDocs;
       this.numDeletedDocs = numDeletedDocs;
+      this.directory = directory;
     }
 
     public int getMaxDocs() {
@@ -1013,6 +1176,27 @@ public final class MailboxIndex {
     public int getNumDeletedDocs() {
       return numDeletedDocs;
     }
+
+    /** Returns false if the index store doesn't keep I/O statistics. */
+    public boolean hasIOStats() {
+      return directory != null;
+    }
+
+    public long getBytesRead() {
+      return directory != null ? directory.getBytesRead() : 0;
+    }
+
+    public long getBytesWritten() {
+      return directory != null ? directory.getBytesWritten() : 0;
+    }
+
+    public long getFilesOpened() {
+      return directory != null ? directory.getFilesOpened() : 0;
+    }
+
+    public boolean isMapped() {
+      return directory != null && directory.isMapped();
+    }
   }
 
   public IndexStats getIndexStats() throws ServiceException {
@@ -1027,7 +1211,10 @@ public final class MailboxIndex {
       throw ServiceException.FAILURE("Failed to open Indexer", e);
     }
 
-    return new IndexStats(maxDocs, numDeletedDocs);
+    return new IndexStats(
+        maxDocs,
+        numDeletedDocs,
+        indexStore instanceof LuceneIndex ? ((LuceneIndex) indexStore).getLuceneDirectory() : null);
   }
 
   /**
@@ -1367,7 +1554,7 @@ public final class MailboxIndex {
     @Override
     void addProcessed(int delta) {
       processed += delta;
-      if (processed % 2000 == 0) {
+      if (processed / 2000 != (processed - delta) / 2000) {
         ZimbraLog.index.info("Re-index progress %d/%d", processed, total);
       }
     }
@@ -12,9 +12,11 @@ import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.ZimbraLog;
 import com.zimbra.cs.mailbox.lock.DebugZLock;
 import com.zimbra.cs.mailbox.lock.ZLock;
-import java.util.EmptyStackException;
-import java.util.Stack;
+import com.zimbra.cs.stats.ZimbraPerf;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 import org.apache.curator.framework.recipes.locks.InterProcessSemaphoreMutex;
 
 /**
@@ -25,11 +27,16 @@ import org.apache.curator.framework.recipes.locks.InterProcessSemaphoreMutex;
  * Mailbox.beginTransaction()}) internally acquires the mailbox lock and it's released by {@code
  * Mailbox.endTransaction()}, so that you don't have to explicitly call {@link #lock()} and {@link
  * #release()} wrapping a mailbox transaction.
+ *
+ * <p>Lock wait and hold times of the outermost acquisition are recorded per operation in {@link
+ * ZimbraPerf#MBOX_LOCK_WAIT_TRACKER} and {@link ZimbraPerf#MBOX_LOCK_HOLD_TRACKER}.
  */
 public final class MailboxLock {
+  private static final String UNNAMED_OPERATION = "other";
+
   private final ZLock zLock = DebugConfig.debugMailboxLock ? new DebugZLock() : new ZLock();
   private InterProcessSemaphoreMutex dLock = null;
-  private final Stack<Boolean> lockStack = new Stack<>();
+  private final ThreadLocal<Deque<Hold>> holds = ThreadLocal.withInitial(ArrayDeque::new);
   private Mailbox mbox;
 
   public MailboxLock(String id, Mailbox mbox) {
@@ -79,20 +86,32 @@ public final class MailboxLock {
     lock(true);
   }
 
-  private boolean tryLock(boolean write) throws InterruptedException {
-    if (write) {
-      return zLock.writeLock().tryLock(0, TimeUnit.SECONDS);
-    } else {
-      return zLock.readLock().tryLock(0, TimeUnit.SECONDS);
+  /**
+   * Tries to acquire the given lock, waiting up to {@code zimbra_mailbox_lock_timeout} seconds if
+   * it is not immediately available.
+   *
+   * @return false if the lock could not be acquired before the timeout
+   * @throws LockFailedException if too many threads are already waiting for the lock
+   */
+  private boolean acquire(Lock lock) throws InterruptedException {
+    if (lock.tryLock(0, TimeUnit.SECONDS)) {
+      return true;
     }
-  }
-
-  private boolean tryLockWithTimeout(boolean write) throws InterruptedException {
-    if (write) {
-      return zLock.writeLock().tryLock(LC.zimbra_mailbox_lock_timeout.intValue(), TimeUnit.SECONDS);
-    } else {
-      return zLock.readLock().tryLock(LC.zimbra_mailbox_lock_timeout.intValue(), TimeUnit.SECONDS);
+    int queueLength = zLock.getQueueLength();
+    if (queueLength >= LC.zimbra_mailbox_lock_max_waiting_threads.intValue()) {
+      // Too many threads are already waiting for the lock, can't let you queued. We don't want to
+      // log stack trace
+      // here because once requests back up, each new incoming request falls into here, which
+      // creates too much
+      // noise in the logs. Unless debug switch is enabled
+      LockFailedException e = new LockFailedException("too many waiters: " + queueLength);
+      if (DebugConfig.debugMailboxLock) {
+        e.logStackTrace();
+      }
+      throw e;
     }
+    // Wait for the lock up to the timeout.
+    return lock.tryLock(LC.zimbra_mailbox_lock_timeout.intValue(), TimeUnit.SECONDS);
   }
 
   private ThreadLocal<Boolean> assertReadLocks = null;
@@ -137,61 +156,46 @@ public final class MailboxLock {
   }
 
   public void lock(boolean write) {
+    lock(write, UNNAMED_OPERATION);
+  }
+
+  /**
+   * Acquires the lock on behalf of the named operation.
+   *
+   * @param write true to acquire exclusive access to the mailbox
+   * @param operation operation name the wait and hold times are recorded under
+   * @throws LockFailedException failed to lock
+   */
+  public void lock(boolean write, String operation) {
     write = write || mbox.requiresWriteLock();
     ZimbraLog.mailbox.trace("LOCK %s", (write ? "WRITE" : "READ"));
     assert (neverReadBeforeWrite(write));
+    long start = System.nanoTime();
     try {
-      if (tryLock(write)) {
-        if (mbox.requiresWriteLock() && !isWriteLockedByCurrentThread()) {
-          // writer finished a purge while we waited
-          promote();
-          return;
-        }
-        lockStack.push(write);
-        try {
-          acquireDistributedLock(write);
-        } catch (ServiceException e) {
-          release();
-          LockFailedException lfe = new LockFailedException("lockdb");
-          lfe.logStackTrace();
-          throw lfe;
-        }
-        return;
-      }
-      int queueLength = zLock.getQueueLength();
-      if (queueLength >= LC.zimbra_mailbox_lock_max_waiting_threads.intValue()) {
-        // Too many threads are already waiting for the lock, can't let you queued. We don't want to
-        // log stack trace
-        // here because once requests back up, each new incoming request falls into here, which
-        // creates too much
-        // noise in the logs. Unless debug switch is enabled
-        LockFailedException e = new LockFailedException("too many waiters: " + queueLength);
-        if (DebugConfig.debugMailboxLock) {
-          e.logStackTrace();
-        }
+      if (!acquire(write ? zLock.writeLock() : zLock.readLock())) {
+        LockFailedException e = new LockFailedException("timeout");
+        e.logStackTrace();
         throw e;
       }
-      // Wait for the lock up to the timeout.
-      if (tryLockWithTimeout(write)) {
-        if (mbox.requiresWriteLock() && !isWriteLockedByCurrentThread()) {
-          // writer finished a purge while we waited
-          promote();
-          return;
-        }
-        lockStack.push(write);
-        try {
-          acquireDistributedLock(write);
-        } catch (ServiceException e) {
-          release();
-          LockFailedException lfe = new LockFailedException("lockdb");
-          lfe.logStackTrace();
-          throw lfe;
-        }
+      if (mbox.requiresWriteLock() && !isWriteLockedByCurrentThread()) {
+        // writer finished a purge while we waited
+        promote(operation);
         return;
       }
-      LockFailedException e = new LockFailedException("timeout");
-      e.logStackTrace();
-      throw e;
+      long now = System.nanoTime();
+      Deque<Hold> stack = holds.get();
+      if (stack.isEmpty()) {
+        ZimbraPerf.MBOX_LOCK_WAIT_TRACKER.addStat(operation, now - start);
+      }
+      stack.push(new Hold(write, operation, now));
+      try {
+        acquireDistributedLock(write);
+      } catch (ServiceException e) {
+        release();
+        LockFailedException lfe = new LockFailedException("lockdb");
+        lfe.logStackTrace();
+        throw lfe;
+      }
     } catch (InterruptedException e) {
       throw new LockFailedException("interrupted", e);
     } finally {
@@ -200,31 +204,36 @@ public final class MailboxLock {
   }
 
   public void release() {
-    Boolean write = false;
-    try {
-      write = lockStack.pop();
-    } catch (EmptyStackException ese) {
+    Deque<Hold> stack = holds.get();
+    Hold hold = stack.poll();
+    if (hold == null) {
       // should only occur if locked failed; i.e. tryLock() returned error
       // or if call site has unbalanced lock/release
       ZimbraLog.mailbox.trace("release when not locked?");
+      holds.remove();
       assert (getHoldCount() == 0);
       assert (debugReleaseReadLock());
       return;
     }
     // keep release in order so caller doesn't have to manage write/read flag
-    ZimbraLog.mailbox.trace("RELEASE %s", (write ? "WRITE" : "READ"));
+    ZimbraLog.mailbox.trace("RELEASE %s", (hold.write ? "WRITE" : "READ"));
 
-    releaseDistributedLock(write);
-    if (write) {
+    releaseDistributedLock(hold.write);
+    if (hold.write) {
       assert (zLock.getWriteHoldCount() > 0);
       zLock.writeLock().unlock();
     } else {
       zLock.readLock().unlock();
       assert (debugReleaseReadLock());
     }
+    if (stack.isEmpty()) {
+      holds.remove();
+      ZimbraPerf.MBOX_LOCK_HOLD_TRACKER.addStat(
+          hold.operation, System.nanoTime() - hold.acquiredAt);
+    }
   }
 
-  private void promote() {
+  private void promote(String operation) {
     assert (getHoldCount() == zLock.getReadHoldCount());
     int count = zLock.getReadHoldCount();
     for (int i = 0; i < count - 1; i++) {
@@ -233,7 +242,20 @@ public final class MailboxLock {
     zLock.readLock().unlock();
     assert (debugReleaseReadLock());
     for (int i = 0; i < count; i++) {
-      lock(true);
+      lock(true, operation);
+    }
+  }
+
+  /** A lock acquisition of the current thread, released in LIFO order. */
+  private static final class Hold {
+    private final boolean write;
+    private final String operation;
+    private final long acquiredAt;
+
+    private Hold(boolean write, String operation, long acquiredAt) {
+      this.write = write;
+      this.operation = operation;
+      this.acquiredAt = acquiredAt;
     }
   }
 
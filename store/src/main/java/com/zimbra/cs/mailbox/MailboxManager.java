@@ -7,6 +7,7 @@ package com.zimbra.cs.mailbox;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
 import com.zimbra.common.account.Key.AccountBy;
 import com.zimbra.common.localconfig.DebugConfig;
 import com.zimbra.common.localconfig.LC;
@@ -27,16 +28,17 @@ import com.zimbra.cs.stats.ZimbraPerf;
 import com.zimbra.cs.util.AccountUtil;
 import com.zimbra.cs.util.Zimbra;
 import java.lang.ref.SoftReference;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 
 public class MailboxManager {
 
@@ -110,7 +112,7 @@ public class MailboxManager {
 
   /**
    * Maps account IDs (<code>String</code>s) to mailbox IDs (<code>Integer</code>s). <i>Every</i>
-   * mailbox in existence on the server appears in this mapping.
+   * mailbox in existence on the server appears in this mapping. Reads don't take the manager lock.
    */
   private Map<String, Integer> mailboxIds;
 
@@ -127,15 +129,26 @@ public class MailboxManager {
    * expires due to memory pressure combined with a lack of outstanding references to the {@link
    * Mailbox}. Only one {@link Mailbox} per user is cached, and only that {@link Mailbox} can
    * process user requests.
+   *
+   * <p>Lookups don't take the manager lock. Changes to the cache that must be atomic with respect
+   * to each other (caching a freshly loaded mailbox, maintenance transitions) are still done
+   * while holding it.
    */
   private MailboxMap cache;
 
+  /**
+   * Mailboxes being loaded from the database, so that concurrent requests for a mailbox that isn't
+   * cached wait for a single load instead of each instantiating their own copy.
+   */
+  private final ConcurrentHashMap<Integer, MailboxLoad> loading =
+      new ConcurrentHashMap<>();
+
   public MailboxManager() throws ServiceException {
     DbConnection conn = null;
     synchronized (this) {
       try {
         conn = DbPool.getConnection();
-        mailboxIds = DbMailbox.listMailboxes(conn, this);
+        mailboxIds = new ConcurrentHashMap<>(DbMailbox.listMailboxes(conn, this));
         cache = createCache();
       } finally {
         DbPool.quietClose(conn);
@@ -344,10 +357,7 @@ public class MailboxManager {
       String accountId, FetchMode fetchMode, boolean skipMailHostCheck) throws ServiceException {
     if (accountId == null) throw new IllegalArgumentException();
 
-    Integer mailboxKey;
-    synchronized (this) {
-      mailboxKey = mailboxIds.get(accountId.toLowerCase());
-    }
+    Integer mailboxKey = mailboxIds.get(accountId.toLowerCase());
     if (mailboxKey != null) {
       if (DebugConfig.mockMultiserverInstall)
         lookupAccountWithHostCheck(accountId, skipMailHostCheck);
@@ -358,9 +368,7 @@ public class MailboxManager {
 
     // auto-create the mailbox if this is the right host...
     Account account = lookupAccountWithHostCheck(accountId, skipMailHostCheck);
-    synchronized (this) {
-      mailboxKey = mailboxIds.get(accountId.toLowerCase());
-    }
+    mailboxKey = mailboxIds.get(accountId.toLowerCase());
     if (mailboxKey != null) return getMailboxById(mailboxKey, fetchMode, skipMailHostCheck);
     else return createMailbox(null, account, skipMailHostCheck);
   }
@@ -432,13 +440,11 @@ public class MailboxManager {
     long startTime = ZimbraPerf.STOPWATCH_MBOX_GET.start();
 
     Mailbox mbox = null;
-    synchronized (this) {
-      // check to see if the mailbox has already been cached
-      Object cached = retrieveFromCache(mailboxId, true);
-      if (cached instanceof Mailbox) {
-        ZimbraPerf.COUNTER_MBOX_CACHE.increment(100);
-        mbox = (Mailbox) cached;
-      }
+    // check to see if the mailbox has already been cached
+    Object cached = retrieveFromCache(mailboxId, true);
+    if (cached instanceof Mailbox) {
+      ZimbraPerf.COUNTER_MBOX_CACHE.increment(100);
+      mbox = (Mailbox) cached;
     }
 
     if (fetchMode == FetchMode.ONLY_IF_CACHED && (mbox == null || !mbox.isOpen())) {
@@ -448,48 +454,7 @@ public class MailboxManager {
 
     if (mbox == null) { // not found in cache
       ZimbraPerf.COUNTER_MBOX_CACHE.increment(0);
-      MailboxData data;
-      DbConnection conn = DbPool.getConnection();
-      try {
-        // fetch the Mailbox data from the database
-        data = DbMailbox.getMailboxStats(conn, mailboxId);
-        if (data == null) {
-          throw MailServiceException.NO_SUCH_MBOX(mailboxId);
-        }
-      } finally {
-        conn.closeQuietly();
-      }
-
-      mbox = instantiateMailbox(data);
-      Account account = mbox.getAccount();
-      boolean isGalSyncAccount = AccountUtil.isGalSyncAccount(account);
-      mbox.setGalSyncMailbox(isGalSyncAccount);
-
-      if (!skipMailHostCheck) {
-        // The host check here makes sure that sessions that were
-        // already connected at the time of mailbox move are not
-        // allowed to continue working with this mailbox which is
-        // essentially a soft-deleted copy.  The WRONG_HOST
-        // exception forces the clients to reconnect to the new
-        // server.
-        if (!Provisioning.getInstance().onLocalServer(account))
-          throw ServiceException.WRONG_HOST(account.getMailHost(), null);
-      }
-
-      synchronized (this) {
-        // avoid the race condition by re-checking the cache and using that data (if any)
-        Object cached = retrieveFromCache(mailboxId, false);
-        if (cached instanceof Mailbox) {
-          mbox = (Mailbox) cached;
-        } else {
-          // cache the newly-created Mailbox object
-          if (cached instanceof MailboxMaintenance) {
-            ((MailboxMaintenance) cached).setMailbox(mbox);
-          } else {
-            cacheMailbox(mbox);
-          }
-        }
-      }
+      mbox = loadMailbox(mailboxId, skipMailHostCheck);
     }
 
     // now, make sure the mailbox is opened -- we do this after releasing MailboxManager lock so
@@ -532,12 +497,126 @@ public class MailboxManager {
     return mbox;
   }
 
+  /**
+   * Instantiates a mailbox that isn't cached. If another thread is already loading the same
+   * mailbox, waits for it and uses its instance instead of fetching the mailbox a second time.
+   */
+  private Mailbox loadMailbox(int mailboxId, boolean skipMailHostCheck) throws ServiceException {
+    MailboxLoad load = new MailboxLoad();
+    MailboxLoad pending = loading.putIfAbsent(mailboxId, load);
+    if (pending != null && pending.loader != Thread.currentThread()) {
+      return checkHostAndCache(mailboxId, awaitLoad(pending), skipMailHostCheck);
+    } else if (pending != null) {
+      // reentrant load from within the instantiation of the same mailbox; don't wait for ourselves
+      return checkHostAndCache(mailboxId, fetchMailbox(mailboxId), skipMailHostCheck);
+    }
+
+    Mailbox mbox;
+    try {
+      mbox = fetchMailbox(mailboxId);
+    } catch (ServiceException | RuntimeException | Error e) {
+      load.completeExceptionally(e);
+      loading.remove(mailboxId, load);
+      throw e;
+    }
+    try {
+      return checkHostAndCache(mailboxId, mbox, skipMailHostCheck);
+    } finally {
+      // waiters run their own host check, and pick up the cached instance if we cached it
+      load.complete(mbox);
+      loading.remove(mailboxId, load);
+    }
+  }
+
+  private Mailbox fetchMailbox(int mailboxId) throws ServiceException {
+    MailboxData data;
+    DbConnection conn = DbPool.getConnection();
+    try {
+      // fetch the Mailbox data from the database
+      data = DbMailbox.getMailboxStats(conn, mailboxId);
+      if (data == null) {
+        throw MailServiceException.NO_SUCH_MBOX(mailboxId);
+      }
+    } finally {
+      conn.closeQuietly();
+    }
+
+    Mailbox mbox = instantiateMailbox(data);
+    Account account = mbox.getAccount();
+    boolean isGalSyncAccount = AccountUtil.isGalSyncAccount(account);
+    mbox.setGalSyncMailbox(isGalSyncAccount);
+    return mbox;
+  }
+
+  private Mailbox checkHostAndCache(int mailboxId, Mailbox mbox, boolean skipMailHostCheck)
+      throws ServiceException {
+    if (!skipMailHostCheck) {
+      // The host check here makes sure that sessions that were
+      // already connected at the time of mailbox move are not
+      // allowed to continue working with this mailbox which is
+      // essentially a soft-deleted copy.  The WRONG_HOST
+      // exception forces the clients to reconnect to the new
+      // server.
+      Account account = mbox.getAccount();
+      if (!Provisioning.getInstance().onLocalServer(account))
+        throw ServiceException.WRONG_HOST(account.getMailHost(), null);
+    }
+
+    synchronized (this) {
+      // avoid the race condition by re-checking the cache and using that data (if any)
+      Object cached = retrieveFromCache(mailboxId, false);
+      if (cached instanceof Mailbox) {
+        mbox = (Mailbox) cached;
+      } else {
+        // cache the newly-created Mailbox object
+        if (cached instanceof MailboxMaintenance) {
+          ((MailboxMaintenance) cached).setMailbox(mbox);
+        } else {
+          cacheMailbox(mbox);
+        }
+      }
+    }
+    return mbox;
+  }
+
+  /** A mailbox load in progress, see {@link #loadMailbox}. */
+  private static final class MailboxLoad extends CompletableFuture<Mailbox> {
+    final Thread loader = Thread.currentThread();
+  }
+
+  private static Mailbox awaitLoad(MailboxLoad pending) throws ServiceException {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return pending.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof ServiceException) {
+            throw (ServiceException) cause;
+          } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw ServiceException.FAILURE("loading mailbox", cause);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   /**
    * @return A list of *hard references* to all currently-loaded mailboxes which are not . in
    *     MAINTENANCE mode. Caller must be careful to not hang onto this list for very long or else
    *     mailboxes will not be purged.
    */
-  public synchronized List<Mailbox> getAllLoadedMailboxes() {
+  public List<Mailbox> getAllLoadedMailboxes() {
     List<Mailbox> mboxes = new ArrayList<>(cache.size());
     for (Object o : cache.values()) {
       if (o instanceof Mailbox) {
@@ -556,7 +635,7 @@ public class MailboxManager {
    * Returns the number of hard references to currently-loaded mailboxes, either in MAINTENANCE mode
    * or not.
    */
-  public synchronized int getCacheSize() {
+  public int getCacheSize() {
     int count = 0;
     for (Object o : cache.values()) {
       if (o instanceof Mailbox || o instanceof MailboxMaintenance) {
@@ -571,7 +650,7 @@ public class MailboxManager {
    * caller can assume that one of the {@link Listener} APIs be called for this mailbox at some
    * point in the future, if this mailbox is ever accessed.
    */
-  public synchronized boolean isMailboxLoadedAndAvailable(int mailboxId) {
+  public boolean isMailboxLoadedAndAvailable(int mailboxId) {
     Object cached = cache.get(mailboxId);
     if (cached == null) {
       return false;
@@ -584,24 +663,22 @@ public class MailboxManager {
   }
 
   private Object retrieveFromCache(int mailboxId, boolean trackGC) throws MailServiceException {
-    synchronized (this) {
-      Object cached = cache.get(mailboxId, trackGC);
-      if (cached instanceof MailboxMaintenance) {
-        MailboxMaintenance maintenance = (MailboxMaintenance) cached;
-        if (!maintenance.canAccess()) {
-          if (isMailboxLockedOut(maintenance.getAccountId())) {
-            throw MailServiceException.MAINTENANCE(mailboxId, "mailbox locked out for maintenance");
-          } else {
-            throw MailServiceException.MAINTENANCE(mailboxId);
-          }
-        }
-        if (maintenance.getMailbox() != null) {
-          return maintenance.getMailbox();
+    Object cached = cache.get(mailboxId, trackGC);
+    if (cached instanceof MailboxMaintenance) {
+      MailboxMaintenance maintenance = (MailboxMaintenance) cached;
+      if (!maintenance.canAccess()) {
+        if (isMailboxLockedOut(maintenance.getAccountId())) {
+          throw MailServiceException.MAINTENANCE(mailboxId, "mailbox locked out for maintenance");
+        } else {
+          throw MailServiceException.MAINTENANCE(mailboxId);
         }
       }
-      // if we've retrieved NULL or a Mailbox or an accessible lock, return it
-      return cached;
+      if (maintenance.getMailbox() != null) {
+        return maintenance.getMailbox();
+      }
     }
+    // if we've retrieved NULL or a Mailbox or an accessible lock, return it
+    return cached;
   }
 
   /**
@@ -615,7 +692,7 @@ public class MailboxManager {
     return new ExternalVirtualMailbox(data);
   }
 
-  protected synchronized void cacheAccount(String accountId, int mailboxId) {
+  protected void cacheAccount(String accountId, int mailboxId) {
     mailboxIds.put(accountId.toLowerCase(), mailboxId);
   }
 
@@ -716,9 +793,7 @@ public class MailboxManager {
    * @return
    */
   public int getMailboxCount() {
-    synchronized (this) {
-      return mailboxIds.size();
-    }
+    return mailboxIds.size();
   }
 
   /**
@@ -727,13 +802,7 @@ public class MailboxManager {
    * accounts whose <code>zimbraMailHost</code> LDAP attribute points to this server.
    */
   public int[] getMailboxIds() {
-    int i = 0;
-    synchronized (this) {
-      Collection<Integer> col = mailboxIds.values();
-      int[] mailboxIds = new int[col.size()];
-      for (int id : col) mailboxIds[i++] = id;
-      return mailboxIds;
-    }
+    return mailboxIds.values().stream().mapToInt(Integer::intValue).toArray();
   }
 
   public Set<Integer> getPurgePendingMailboxes(long time) throws ServiceException {
@@ -752,13 +821,7 @@ public class MailboxManager {
    * zimbraMailHost</code> LDAP attribute points to this server.
    */
   public String[] getAccountIds() {
-    int i = 0;
-    synchronized (this) {
-      Set<String> set = mailboxIds.keySet();
-      String[] accountIds = new String[set.size()];
-      for (String o : set) accountIds[i++] = o;
-      return accountIds;
-    }
+    return mailboxIds.keySet().toArray(new String[0]);
   }
 
   /**
@@ -768,10 +831,7 @@ public class MailboxManager {
    * @return
    */
   public int lookupMailboxId(String accountId) {
-    Integer v;
-    synchronized (this) {
-      v = mailboxIds.get(accountId);
-    }
+    Integer v = mailboxIds.get(accountId);
     return v != null ? v : -1;
   }
 
@@ -788,15 +848,13 @@ public class MailboxManager {
    */
   public Map<String, Long> getMailboxSizes(List<NamedEntry> accounts) throws ServiceException {
     List<Integer> requested;
-    synchronized (this) {
-      if (accounts == null) {
-        requested = new ArrayList<>(mailboxIds.values());
-      } else {
-        requested = new ArrayList<>(accounts.size());
-        for (NamedEntry account : accounts) {
-          Integer mailboxId = mailboxIds.get(account.getId());
-          if (mailboxId != null) requested.add(mailboxId);
-        }
+    if (accounts == null) {
+      requested = new ArrayList<>(mailboxIds.values());
+    } else {
+      requested = new ArrayList<>(accounts.size());
+      for (NamedEntry account : accounts) {
+        Integer mailboxId = mailboxIds.get(account.getId());
+        if (mailboxId != null) requested.add(mailboxId);
       }
     }
 
@@ -1039,57 +1097,71 @@ public class MailboxManager {
     }
   }
 
+  /**
+   * Keeps the most recently used mailboxes strongly referenced and the others through {@link
+   * SoftReference}s. Safe for concurrent use: all entries live in a single {@link
+   * ConcurrentHashMap}, so a mailbox never disappears from the map while it is being demoted to a
+   * soft reference, and the recency order of the hard references is kept by a {@link
+   * ConcurrentLinkedHashMap} of keys.
+   */
   protected static class MailboxMap implements Map<Integer, Object> {
     final int mHardSize;
-    final LinkedHashMap<Integer, Object> mHardMap;
-    final HashMap<Integer, Object> mSoftMap;
+    // values are a Mailbox, a MailboxMaintenance or a SoftReference to a Mailbox
+    final ConcurrentHashMap<Integer, Object> mMap;
+    // keys of the hard references, in LRU order; null if all mailboxes are softly referenced
+    final ConcurrentLinkedHashMap<Integer, Boolean> mHardKeys;
 
-    @SuppressWarnings("serial")
     MailboxMap(int hardSize) {
       hardSize = Math.max(hardSize, 0);
       mHardSize = hardSize;
-      mSoftMap = new HashMap<>();
-      mHardMap =
-          new LinkedHashMap<Integer, Object>(mHardSize / 4, (float) .75, true) {
-            @Override
-            protected boolean removeEldestEntry(Entry<Integer, Object> eldest) {
-              if (size() <= mHardSize) return false;
-
-              Object obj = eldest.getValue();
-              if (obj instanceof Mailbox) obj = new SoftReference<>((Mailbox) obj);
-              mSoftMap.put(eldest.getKey(), obj);
-              return true;
-            }
-          };
+      mMap = new ConcurrentHashMap<>();
+      mHardKeys =
+          hardSize == 0
+              ? null
+              : new ConcurrentLinkedHashMap.Builder<Integer, Boolean>()
+                  .maximumWeightedCapacity(hardSize)
+                  .listener((key, value) -> soften(key))
+                  .build();
     }
 
     protected MailboxMap() {
       mHardSize = 0;
-      mHardMap = null;
-      mSoftMap = null;
+      mMap = null;
+      mHardKeys = null;
+    }
+
+    private void soften(Integer key) {
+      mMap.computeIfPresent(
+          key, (k, obj) -> obj instanceof Mailbox ? new SoftReference<>((Mailbox) obj) : obj);
+    }
+
+    private static Object unwrap(Object obj) {
+      return obj instanceof SoftReference ? ((SoftReference<?>) obj).get() : obj;
     }
 
     @Override
     public void clear() {
-      mHardMap.clear();
-      mSoftMap.clear();
+      mMap.clear();
+      if (mHardKeys != null) mHardKeys.clear();
     }
 
     @Override
     public boolean containsKey(Object key) {
-      return mHardMap.containsKey(key) || mSoftMap.containsKey(key);
+      return mMap.containsKey(key);
     }
 
     @Override
     public boolean containsValue(Object value) {
-      return mHardMap.containsValue(value) || mSoftMap.containsValue(value);
+      return values().contains(value);
     }
 
     @Override
     public Set<Entry<Integer, Object>> entrySet() {
       Set<Entry<Integer, Object>> entries = new HashSet<>(size());
-      if (mHardSize > 0) entries.addAll(mHardMap.entrySet());
-      entries.addAll(mSoftMap.entrySet());
+      for (Entry<Integer, Object> entry : mMap.entrySet()) {
+        Object obj = unwrap(entry.getValue());
+        if (obj != null) entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), obj));
+      }
       return entries;
     }
 
@@ -1099,43 +1171,39 @@ public class MailboxManager {
     }
 
     public Object get(Object key, boolean trackGC) {
-      Object obj = mHardSize > 0 ? mHardMap.get(key) : null;
-      if (obj == null) {
-        obj = mSoftMap.get(key);
-        if (obj instanceof SoftReference) {
-          obj = ((SoftReference<?>) obj).get();
-          if (trackGC && obj == null)
-            ZimbraLog.mailbox.debug("mailbox " + key + " has been GCed; reloading");
-        }
+      Object obj = mMap.get(key);
+      if (obj instanceof SoftReference) {
+        obj = ((SoftReference<?>) obj).get();
+        if (trackGC && obj == null)
+          ZimbraLog.mailbox.debug("mailbox " + key + " has been GCed; reloading");
+      } else if (obj != null && mHardKeys != null) {
+        // record the access for the LRU ordering
+        mHardKeys.get(key);
       }
       return obj;
     }
 
     @Override
     public boolean isEmpty() {
-      return mHardMap.isEmpty() && mSoftMap.isEmpty();
+      return mMap.isEmpty();
     }
 
     @Override
     public Set<Integer> keySet() {
-      Set<Integer> keys = new HashSet<>(size());
-      if (mHardSize > 0) keys.addAll(mHardMap.keySet());
-      keys.addAll(mSoftMap.keySet());
-      return keys;
+      return new HashSet<>(mMap.keySet());
     }
 
     @Override
     public Object put(Integer key, Object value) {
       Object removed;
-      if (mHardSize > 0) {
-        removed = mHardMap.put(key, value);
-        if (removed == null) removed = mSoftMap.remove(key);
+      if (mHardKeys != null) {
+        removed = mMap.put(key, value);
+        mHardKeys.put(key, Boolean.TRUE);
       } else {
         if (value instanceof Mailbox) value = new SoftReference<>(value);
-        removed = mSoftMap.put(key, value);
+        removed = mMap.put(key, value);
       }
-      if (removed instanceof SoftReference) removed = ((SoftReference<?>) removed).get();
-      return removed;
+      return unwrap(removed);
     }
 
     @Override
@@ -1146,33 +1214,29 @@ public class MailboxManager {
 
     @Override
     public Object remove(Object key) {
-      Object removed = mHardSize > 0 ? mHardMap.remove(key) : null;
-      if (removed == null) {
-        removed = mSoftMap.remove(key);
-        if (removed instanceof SoftReference) removed = ((SoftReference<?>) removed).get();
-      }
-      return removed;
+      Object removed = mMap.remove(key);
+      if (mHardKeys != null) mHardKeys.remove(key);
+      return unwrap(removed);
     }
 
     @Override
     public int size() {
-      return mHardMap.size() + mSoftMap.size();
+      return mMap.size();
     }
 
     @Override
     public Collection<Object> values() {
       List<Object> values = new ArrayList<>(size());
-      if (mHardSize > 0) values.addAll(mHardMap.values());
-      for (Object o : mSoftMap.values()) {
-        if (o instanceof SoftReference) o = ((SoftReference<?>) o).get();
-        values.add(o);
+      for (Object o : mMap.values()) {
+        o = unwrap(o);
+        if (o != null) values.add(o);
       }
       return values;
     }
 
     @Override
     public String toString() {
-      return "<" + mHardMap.toString() + ", " + mSoftMap.toString() + ">";
+      return mMap.toString();
     }
   }
 }
@@ -7,18 +7,20 @@ package com.zimbra.cs.mailbox;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
 
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
 import com.zextras.mailbox.encryption.EncryptionHandler;
 import com.zextras.mailbox.encryption.EncryptionHandlerFactory;
 
+import com.zimbra.common.localconfig.LC;
 import com.zimbra.common.mime.MimeConstants;
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.util.ByteUtil;
@@ -35,25 +37,51 @@ import com.zimbra.cs.store.MailboxBlob;
 import com.zimbra.cs.store.StoreManager;
 import com.zimbra.cs.util.JMSession;
 
+/**
+ * Caches parsed <tt>MimeMessage</tt> trees by blob digest.
+ * <p>
+ * Raw and expanded (uuencode-converted or S/MIME-decrypted) trees are bounded by separate byte
+ * budgets, <tt>zimbra_message_cache_max_bytes</tt> and
+ * <tt>zimbra_message_cache_expanded_max_bytes</tt>.  Raw trees are weighed by the message data they
+ * keep on the heap, but never less than the raw budget divided by <tt>zimbraMessageCacheSize</tt>,
+ * so the attribute still bounds the number of cached messages.  Evicting an expanded tree keeps the
+ * raw tree cached; it is expanded again on the next request.
+ */
 public class MessageCache {
 
     private static final Log sLog = LogFactory.getLog(MessageCache.class);
 
     static final class CacheNode {
         CacheNode()  { }
-        MimeMessage message;
-        MimeMessage expanded;
-        Map<Integer, String> smimeAccessInfo = new HashMap<>();
-        long size = 0;
+        volatile MimeMessage message;
+        volatile MimeMessage expanded;
+        Map<Integer, String> smimeAccessInfo = Collections.synchronizedMap(new HashMap<>());
+        /** Bytes of raw message data held in memory. */
+        volatile long size = 0;
+        /** Estimated bytes held by {@link #expanded} when it differs from {@link #message}. */
+        volatile long expandedSize = 0;
     }
 
+    /** Minimum weight of a raw tree, see class comment. */
+    private static volatile long sMinNodeWeight = 1;
+
     /** Cache mapping message digest to the corresponding message structure. */
-    private static Map<String, CacheNode> sCache = new LinkedHashMap<>(150, (float) 0.75, true);
-    /** Maximum number of items in {@link #sCache}. */
-    private static int sMaxCacheSize;
+    private static final ConcurrentLinkedHashMap<String, CacheNode> sCache =
+        new ConcurrentLinkedHashMap.Builder<String, CacheNode>()
+            .maximumWeightedCapacity(0)
+            .weigher(node -> toWeight(Math.max(node.size, sMinNodeWeight)))
+            .listener(MessageCache::onEviction)
+            .build();
+    /** Nodes whose expanded tree differs from the raw one, weighed by {@link CacheNode#expandedSize}. */
+    private static final ConcurrentLinkedHashMap<String, CacheNode> sExpandedCache =
+        new ConcurrentLinkedHashMap.Builder<String, CacheNode>()
+            .maximumWeightedCapacity(0)
+            .weigher(node -> toWeight(node.expandedSize))
+            .listener(MessageCache::onExpandedEviction)
+            .build();
     /** Number of bytes of message data stored in the cache.  This value includes only
      * messages that are read into memory, not streamed from disk. */
-    private static volatile long sDataSize = 0;
+    private static final AtomicLong sDataSize = new AtomicLong();
 
     static {
         try {
@@ -64,25 +92,68 @@ public class MessageCache {
     }
 
     public static void loadSettings() throws ServiceException {
-        sMaxCacheSize = Provisioning.getInstance().getLocalServer().getMessageCacheSize();
-        ZimbraLog.cache.info("setting message cache size to " + sMaxCacheSize);
+        int maxCacheSize = Provisioning.getInstance().getLocalServer().getMessageCacheSize();
+        long maxBytes = maxCacheSize > 0 ? LC.zimbra_message_cache_max_bytes.longValue() : 0;
+        long maxExpandedBytes = maxCacheSize > 0 ? LC.zimbra_message_cache_expanded_max_bytes.longValue() : 0;
+        sMinNodeWeight = Math.max(maxBytes / Math.max(maxCacheSize, 1), 1);
+        sCache.setCapacity(toCapacity(maxBytes));
+        sExpandedCache.setCapacity(toCapacity(maxExpandedBytes));
+        ZimbraLog.cache.info("setting message cache size to %d messages, %d bytes raw, %d bytes expanded",
+            maxCacheSize, maxBytes, maxExpandedBytes);
+    }
+
+    private static int toCapacity(long bytes) {
+        return (int) Math.max(Math.min(bytes, Integer.MAX_VALUE), 0);
+    }
+
+    private static int toWeight(long bytes) {
+        return (int) Math.max(Math.min(bytes, Integer.MAX_VALUE), 1);
+    }
+
+    private static void onEviction(String digest, CacheNode node) {
+        sLog.debug("Pruning digest %s from the cache.", digest);
+        ZimbraPerf.COUNTER_MSG_CACHE_EVICTIONS.increment();
+        sDataSize.addAndGet(-node.size);
+        removeExpanded(digest);
+    }
+
+    private static void onExpandedEviction(String digest, CacheNode node) {
+        sLog.debug("Pruning expanded message for digest %s from the cache.", digest);
+        ZimbraPerf.COUNTER_MSG_CACHE_EXPANDED_EVICTIONS.increment();
+        dropExpanded(node);
+    }
+
+    private static void removeExpanded(String digest) {
+        CacheNode node = sExpandedCache.remove(digest);
+        if (node != null) {
+            dropExpanded(node);
+        }
+    }
+
+    private static void dropExpanded(CacheNode node) {
+        sDataSize.addAndGet(-node.expandedSize);
+        node.expandedSize = 0;
+        node.expanded = null;
+        // decrypted content is gone, so every mailbox has to decrypt it again
+        node.smimeAccessInfo.clear();
     }
 
     /** Returns the number of messages in the cache. */
     public static int getSize() {
-        synchronized (sCache) {
-            return sCache.size();
-        }
+        return sCache.size();
+    }
+
+    /** Returns the number of messages whose expanded tree is cached separately. */
+    public static int getExpandedSize() {
+        return sExpandedCache.size();
     }
 
     public static boolean contains(String digest) {
-        synchronized (sCache) {
-            return sCache.containsKey(digest);
-        }
+        return sCache.containsKey(digest);
     }
 
     public static long getDataSize() {
-        return sDataSize;
+        return sDataSize.get();
     }
 
     /** Uncaches any data associated with the given item.  This must be done
@@ -117,12 +188,11 @@ public class MessageCache {
      *  stale data. */
     public static void purge(String digest) {
         if (digest != null) {
-            synchronized (sCache) {
-                CacheNode node = sCache.remove(digest);
-                if (node != null) {
-                    sLog.debug("Purged digest %s from the message cache.", digest);
-                    sDataSize -= node.size;
-                }
+            CacheNode node = sCache.remove(digest);
+            if (node != null) {
+                sLog.debug("Purged digest %s from the message cache.", digest);
+                sDataSize.addAndGet(-node.size);
+                removeExpanded(digest);
             }
         }
     }
@@ -140,34 +210,29 @@ public class MessageCache {
      * @see com.zimbra.cs.mime.UUEncodeConverter */
     static MimeMessage getMimeMessage(MailItem item, boolean expand) throws ServiceException {
         String digest = item.getDigest();
-        CacheNode cnode = null;
         boolean cacheHit = true;
-        boolean newNode = false;
         InputStream in = null;
         int mboxId = item.getMailboxId();
         boolean isEncrypted = false;
 
-        synchronized (sCache) {
-            cnode = sCache.get(digest);
-            if (cnode == null) {
-                newNode = true;
-                cnode = new CacheNode();
-            }
+        CacheNode cnode = sCache.get(digest);
+        boolean newNode = cnode == null;
+        if (newNode) {
+            cnode = new CacheNode();
         }
+        MimeMessage message = cnode.message;
+        MimeMessage expanded = cnode.expanded;
 
         try {
-            if (cnode.message == null) {
+            if (message == null) {
                 sLog.debug("Loading MimeMessage for item %d.", item.getId());
                 cacheHit = false;
                 try {
                     in = fetchFromStore(item);
-                    cnode.message = new Mime.FixedMimeMessage(JMSession.getSession(), in);
+                    message = new Mime.FixedMimeMessage(JMSession.getSession(), in);
+                    cnode.message = message;
                     if (item.getSize() < MESSAGE_CACHE_DISK_STREAMING_THRESHOLD) {
                         cnode.size = item.getSize();
-                        // Not the best place to increment the data size, but cacheItem()
-                        // won't get called if we're expanding a message for an existing
-                        // node.
-                        sDataSize += cnode.size;
                     }
                 } finally {
                     ByteUtil.closeStream(in);
@@ -180,12 +245,10 @@ public class MessageCache {
                     MimeMessage decryptedMimeMessage = null;
                     if (item instanceof Message) {
                         // if the mime is encrypted; decrypt it first
-                        if (cnode.message != null) {
-                            isEncrypted = Mime.isEncrypted(cnode.message.getContentType());
-                        }
+                        isEncrypted = Mime.isEncrypted(message.getContentType());
                         if (isEncrypted) {
-                            if (cnode.expanded == null
-                                    || cnode.message == cnode.expanded
+                            if (expanded == null
+                                    || message == expanded
                                     || !cnode.smimeAccessInfo.containsKey(mboxId)) {
                                 cacheHit = false;
                                 decryptedMimeMessage = doDecryption(item, cnode, mboxId);
@@ -193,20 +256,24 @@ public class MessageCache {
                         }
                     }
                     //expand if the message has not yet been expanded or if the message is decrypted successfully
-                    if (cnode.expanded == null || (decryptedMimeMessage != null && cnode.expanded != decryptedMimeMessage)) {
+                    if (expanded == null || (decryptedMimeMessage != null && expanded != decryptedMimeMessage)) {
                         cacheHit = false;
-                        expandMessage(item, cnode, decryptedMimeMessage);
+                        expanded = expandMessage(item, cnode, decryptedMimeMessage);
                     }
                 } catch (Exception e) {
                     // if the conversion bombs for any reason, revert to the original
                     sLog.warn("MIME converter failed for message %d.  Reverting to original.", item.getId(), e);
-                    cnode.expanded = cnode.message;
+                    expanded = message;
+                    cnode.expanded = expanded;
                 }
             }
 
             if (newNode) {
                 cacheItem(digest, cnode);
             }
+            if (expand && !cacheHit) {
+                cacheExpanded(digest, cnode, item);
+            }
         } catch (IOException e) {
             throw ServiceException.FAILURE("IOException while retrieving content for item " + item.getId(), e);
         } catch (MessagingException e) {
@@ -226,15 +293,15 @@ public class MessageCache {
         if (expand) {
             if (isEncrypted && (!cnode.smimeAccessInfo.containsKey(mboxId)
                 || cnode.smimeAccessInfo.get(mboxId) != null)) {
-                return cnode.message;
+                return message;
             }
-            return cnode.expanded;
+            return expanded;
         } else {
-            return cnode.message;
+            return message;
         }
     }
 
-    private static void expandMessage(MailItem item, CacheNode cnode, MimeMessage decryptedMimeMessage)
+    private static MimeMessage expandMessage(MailItem item, CacheNode cnode, MimeMessage decryptedMimeMessage)
         throws MessagingException, ServiceException {
         MimeMessage mimeToExpand = cnode.message;
         if (decryptedMimeMessage != null) {
@@ -252,11 +319,25 @@ public class MessageCache {
         ExpandMimeMessage expander = new ExpandMimeMessage(
             decodedMimeMessage != null ? decodedMimeMessage : mimeToExpand);
         expander.expand();
-        cnode.expanded = expander.getExpanded();
-        if (cnode.expanded != cnode.message) {
-            sDataSize += cnode.size;
-            cnode.size *= 2;
+        MimeMessage expanded = expander.getExpanded();
+        cnode.expanded = expanded;
+        return expanded;
+    }
+
+    /**
+     * Accounts for a freshly expanded tree in the expanded budget.  Expanded trees that are just the
+     * raw tree cost nothing extra; converted or decrypted ones are assumed to hold the whole message.
+     */
+    private static void cacheExpanded(String digest, CacheNode cnode, MailItem item) {
+        MimeMessage expanded = cnode.expanded;
+        if (expanded == null || expanded == cnode.message || sCache.get(digest) != cnode) {
+            return;
         }
+        long size = Math.max(item.getSize(), cnode.size);
+        sDataSize.addAndGet(size - cnode.expandedSize);
+        cnode.expandedSize = size;
+        // put() reweighs the node if it is already there
+        sExpandedCache.put(digest, cnode);
     }
 
     static MimeMessage doDecryption(MailItem item, CacheNode cnode, int mboxId) {
@@ -331,38 +412,26 @@ public class MessageCache {
 
     private static void cacheItem(String digest, CacheNode cnode) {
         sLog.debug("Caching MimeMessage for digest %s.", digest);
-        synchronized (sCache) {
-            sCache.put(digest, cnode);
-            // Cache data size was incremented in getMimeMessage().
-
-            // trim the cache if needed
-            if (sCache.size() > sMaxCacheSize) {
-                Iterator<Map.Entry<String, CacheNode>> it = sCache.entrySet().iterator();
-                while (sCache.size() > sMaxCacheSize && it.hasNext()) {
-                    Map.Entry<String, CacheNode> entry = it.next();
-                    sLog.debug("Pruning digest %s from the cache.", entry.getKey());
-                    it.remove();
-                    sDataSize -= entry.getValue().size;
-                }
-            }
+        // count the data first: the put may evict the node right away
+        sDataSize.addAndGet(cnode.size);
+        CacheNode previous = sCache.put(digest, cnode);
+        if (previous != null && previous != cnode) {
+            sDataSize.addAndGet(-previous.size);
+            removeExpanded(digest);
         }
     }
 
     public static void removeDecryptedMessages(int mboxId) {
         sLog.debug("Start removing decrypted messages for mboxId=%d", mboxId);
-        synchronized (sCache) {
-            Iterator<Map.Entry<String, CacheNode>> it = sCache.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<String, CacheNode> entry = it.next();
-                CacheNode cacheNode = entry.getValue();
-                try {
-                    if (Mime.isEncrypted(cacheNode.message.getContentType())) {
-                        cacheNode.smimeAccessInfo.remove(mboxId);
-                    }
-                } catch (MessagingException e) {
-                    sLog.warn("MessagingException while checking content type for cache node with digest = %s",
-                        entry.getKey(), e);
+        for (Map.Entry<String, CacheNode> entry : sCache.entrySet()) {
+            CacheNode cacheNode = entry.getValue();
+            try {
+                if (Mime.isEncrypted(cacheNode.message.getContentType())) {
+                    cacheNode.smimeAccessInfo.remove(mboxId);
                 }
+            } catch (MessagingException e) {
+                sLog.warn("MessagingException while checking content type for cache node with digest = %s",
+                    entry.getKey(), e);
             }
         }
         sLog.debug("Removed decrypted messages for mboxId=%d", mboxId);
@@ -370,11 +439,9 @@ public class MessageCache {
 
     public static String getDecryptionError(int id, String digest) {
         if (digest != null) {
-            synchronized (sCache) {
-                CacheNode node = sCache.get(digest);
-                if (node != null) {
-                    return node.smimeAccessInfo.get(id);
-                }
+            CacheNode node = sCache.get(digest);
+            if (node != null) {
+                return node.smimeAccessInfo.get(id);
             }
         }
         return null;
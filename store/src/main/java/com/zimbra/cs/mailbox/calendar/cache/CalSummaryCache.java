@@ -35,17 +35,13 @@ import com.zimbra.cs.session.PendingModifications.Change;
 import com.zimbra.cs.session.PendingModifications.ModificationKey;
 import com.zimbra.cs.stats.ZimbraPerf;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
 // TODO: caching remote calendars
 // TODO: TTL instead of last-modified time check, if folder configured that way or remote
-// TODO: high cache stickiness (or dedicated non-LRU cache) for heavily shared, almost read-only
-// calendars
 // TODO: is the cached data friendly to JSON2 serialization?
 //       currently missing: CATEGORY, CREATED, LAST-MODIFIED, DESCRIPTION, STREET, CSZ, PHONE,
 //       RECUR,
@@ -97,14 +93,15 @@ public class CalSummaryCache {
     S_MAX_SEARCH_DAYS = LC.calendar_search_max_days.intValueWithinRange(0, 3660);
   }
 
-  // LRU cache containing range-limited calendar summary by calendar folder
-  private final SummaryLRU mSummaryCache;
+  // cache containing range-limited calendar summary by calendar folder
+  private final CalSummaryMemoryCache mSummaryCache;
   private final int mLRUCapacity;
   private final CalSummaryMemcachedCache mMemcachedCache;
 
   CalSummaryCache(final int capacity) {
     mLRUCapacity = capacity;
-    mSummaryCache = new SummaryLRU(capacity);
+    mSummaryCache =
+        new CalSummaryMemoryCache(capacity, LC.calendar_cache_max_instances.intValue());
     mMemcachedCache = new CalSummaryMemcachedCache();
   }
 
@@ -318,6 +315,7 @@ public class CalSummaryCache {
 
     Set<Integer> staleItemIds = new HashSet<>();
     prevCalData.copyStaleItemIdsTo(staleItemIds);
+    Set<Integer> changedItemIds = new HashSet<>(staleItemIds);
     Folder folder = mbox.getFolderById(octxt, folderId);
     CalendarData calData = new CalendarData(folderId, folder.getImapMODSEQ(), rangeStart, rangeEnd);
     for (Iterator<CalendarItemData> iter = prevCalData.calendarItemIterator(); iter.hasNext(); ) {
@@ -354,6 +352,10 @@ public class CalSummaryCache {
         calData.addCalendarItem(calItemData);
       }
     }
+    FreeBusyIndex prevIndex = prevCalData.getFreeBusyIndex();
+    if (prevIndex != null) {
+      calData.setFreeBusyIndex(prevIndex.update(calData, changedItemIds));
+    }
     return calData; // return a non-null object even if there are no items in the range
   }
 
@@ -512,7 +514,6 @@ public class CalSummaryCache {
       return null;
     }
 
-    int lruSize = 0;
     CacheLevel dataFrom = CacheLevel.MEMORY;
     boolean incrementalUpdate = S_MAX_STALE_ITEMS > 0;
 
@@ -523,11 +524,8 @@ public class CalSummaryCache {
     int currentModSeq = folder.getImapMODSEQ();
 
     // Lookup from heap LRU.
-    synchronized (mSummaryCache) {
-      if (mLRUCapacity > 0) {
-        calData = mSummaryCache.get(key);
-        lruSize = mSummaryCache.size();
-      }
+    if (mLRUCapacity > 0) {
+      calData = mSummaryCache.get(key);
     }
 
     // Sanity check: Cached data can't be newer than the backend data.
@@ -543,10 +541,7 @@ public class CalSummaryCache {
           // If data is up to date, add to LRU.
           if (calData.getModSeq() == currentModSeq) {
             if (mLRUCapacity > 0) {
-              synchronized (mSummaryCache) {
-                mSummaryCache.put(key, calData);
-                lruSize = mSummaryCache.size();
-              }
+              mSummaryCache.put(key, calData);
             }
           } else {
             // Data loaded from file doesn't have stale items list.  It can't be refreshed
@@ -599,11 +594,8 @@ public class CalSummaryCache {
               defaultRange.getSecond(),
               reusableCalData,
               incrementalUpdate);
-      synchronized (mSummaryCache) {
-        if (mLRUCapacity > 0) {
-          mSummaryCache.put(key, calData);
-          lruSize = mSummaryCache.size();
-        }
+      if (mLRUCapacity > 0) {
+        mSummaryCache.put(key, calData);
       }
       dataFrom = CacheLevel.MISS;
 
@@ -656,9 +648,15 @@ public class CalSummaryCache {
       default:
         ZimbraPerf.COUNTER_CALENDAR_CACHE_HIT.increment(0);
         ZimbraPerf.COUNTER_CALENDAR_CACHE_MEM_HIT.increment(0);
+        ZimbraPerf.COUNTER_CALENDAR_CACHE_MISS.increment();
         break;
     }
-    ZimbraPerf.COUNTER_CALENDAR_CACHE_LRU_SIZE.increment(lruSize);
+    if (mLRUCapacity > 0) {
+      ZimbraPerf.COUNTER_CALENDAR_CACHE_LRU_SIZE.increment(mSummaryCache.size());
+      ZimbraPerf.COUNTER_CALENDAR_CACHE_WEIGHT.increment(mSummaryCache.weightedSize());
+    } else {
+      ZimbraPerf.COUNTER_CALENDAR_CACHE_LRU_SIZE.increment(0);
+    }
 
     if (ZimbraLog.calendar.isDebugEnabled()) {
       ZimbraLog.calendar.debug(
@@ -676,9 +674,7 @@ public class CalSummaryCache {
     if (!LC.calendar_cache_enabled.booleanValue()) return;
     int mboxId = mbox.getId();
     CalSummaryKey key = new CalSummaryKey(mbox.getAccountId(), folderId);
-    synchronized (mSummaryCache) {
-      mSummaryCache.remove(key);
-    }
+    mSummaryCache.remove(key);
     try {
       FileStore.deleteCalendarData(mboxId, folderId);
     } catch (ServiceException e) {
@@ -690,10 +686,8 @@ public class CalSummaryCache {
     if (!LC.calendar_cache_enabled.booleanValue()) return;
     CalSummaryKey key = new CalSummaryKey(mbox.getAccountId(), folderId);
     CalendarData calData = null;
-    synchronized (mSummaryCache) {
-      if (mLRUCapacity > 0) {
-        calData = mSummaryCache.get(key);
-      }
+    if (mLRUCapacity > 0) {
+      calData = mSummaryCache.peek(key);
     }
     // Invalidate the item from the calendar.
     if (calData != null) {
@@ -730,11 +724,9 @@ public class CalSummaryCache {
           // If this is a folder move, invalidate the item from the old folder too.
           if ((change.why & Change.FOLDER) != 0) {
             String accountId = mbox.getAccountId();
-            int prevFolderId;
-            synchronized (mSummaryCache) {
-              prevFolderId = mSummaryCache.getFolderForItem(accountId, itemId);
-            }
-            if (prevFolderId != folderId && prevFolderId != SummaryLRU.FOLDER_NOT_FOUND) {
+            int prevFolderId = mSummaryCache.getFolderForItem(accountId, itemId);
+            if (prevFolderId != folderId
+                && prevFolderId != CalSummaryMemoryCache.FOLDER_NOT_FOUND) {
               invalidateItem(mbox, prevFolderId, itemId);
             }
           }
@@ -773,11 +765,8 @@ public class CalSummaryCache {
             lastMbox = mbox;
             int itemId = entry.getKey().getItemId();
             String accountId = mbox.getAccountId();
-            int folderId;
-            synchronized (mSummaryCache) {
-              folderId = mSummaryCache.getFolderForItem(accountId, itemId);
-            }
-            if (folderId != SummaryLRU.FOLDER_NOT_FOUND) {
+            int folderId = mSummaryCache.getFolderForItem(accountId, itemId);
+            if (folderId != CalSummaryMemoryCache.FOLDER_NOT_FOUND) {
               invalidateItem(mbox, folderId, itemId);
             }
           }
@@ -791,9 +780,7 @@ public class CalSummaryCache {
   }
 
   void purgeMailbox(Mailbox mbox) throws ServiceException {
-    synchronized (mSummaryCache) {
-      mSummaryCache.removeAccount(mbox.getAccountId());
-    }
+    mSummaryCache.removeAccount(mbox.getAccountId());
     if (MemcachedConnector.isConnected()) {
       mMemcachedCache.purgeMailbox(mbox);
     }
@@ -807,114 +794,6 @@ public class CalSummaryCache {
     MISS
   }
 
-  private static class SummaryLRU extends LinkedHashMap<CalSummaryKey, CalendarData> {
-    public static final int FOLDER_NOT_FOUND = -1;
-    private final int mMaxAllowed;
-    // map that keeps track of which calendar folders are cached for each account
-    // This map is updated every time a calendar folder is added, removed, or aged out
-    // of the LRU.
-    private final Map<String /* account id */, Set<Integer> /* folder ids */> mAccountFolders;
-
-    private SummaryLRU(int capacity) {
-      super(capacity + 1, 1.0f, true);
-      mMaxAllowed = Math.max(capacity, 1);
-      mAccountFolders = new HashMap<>();
-    }
-
-    @Override
-    public void clear() {
-      super.clear();
-      mAccountFolders.clear();
-    }
-
-    @Override
-    public CalendarData put(CalSummaryKey key, CalendarData value) {
-      CalendarData prevVal = super.put(key, value);
-      if (prevVal == null) registerWithAccount(key);
-      return prevVal;
-    }
-
-    @Override
-    public void putAll(Map<? extends CalSummaryKey, ? extends CalendarData> t) {
-      super.putAll(t);
-      for (CalSummaryKey key : t.keySet()) {
-        registerWithAccount(key);
-      }
-    }
-
-    @Override
-    public CalendarData remove(Object key) {
-      CalendarData prevVal = super.remove(key);
-      if (prevVal != null && key instanceof CalSummaryKey) {
-        CalSummaryKey k = (CalSummaryKey) key;
-        deregisterFromAccount(k);
-      }
-      return prevVal;
-    }
-
-    @Override
-    protected boolean removeEldestEntry(Map.Entry<CalSummaryKey, CalendarData> eldest) {
-      boolean remove = size() > mMaxAllowed;
-      if (remove) deregisterFromAccount(eldest.getKey());
-      return remove;
-    }
-
-    private void registerWithAccount(CalSummaryKey key) {
-      String accountId = key.getAccountId();
-      int folderId = key.getFolderId();
-      Set<Integer> folders = mAccountFolders.computeIfAbsent(accountId, k -> new HashSet<>());
-      folders.add(folderId);
-    }
-
-    private void deregisterFromAccount(CalSummaryKey key) {
-      String accountId = key.getAccountId();
-      int folderId = key.getFolderId();
-      Set<Integer> folders = mAccountFolders.get(accountId);
-      if (folders != null) {
-        folders.remove(folderId);
-        // If no folders are cached for the account, drop the account entry from the map to save
-        // memory.
-        if (folders.isEmpty()) mAccountFolders.remove(accountId);
-      }
-    }
-
-    public int getFolderForItem(String accountId, int itemId) {
-      int retval = FOLDER_NOT_FOUND;
-      Set<Integer> folders = mAccountFolders.get(accountId);
-      if (folders != null) {
-        for (int folderId : folders) {
-          CalSummaryKey key = new CalSummaryKey(accountId, folderId);
-          CalendarData calData = get(key);
-          if (calData != null) {
-            CalendarItemData ci = calData.getCalendarItemData(itemId);
-            if (ci != null) {
-              retval = folderId;
-              break;
-            }
-          }
-        }
-      }
-      return retval;
-    }
-
-    /**
-     * Toss all folders of the account from the LRU.
-     *
-     * @param accountId the account id
-     */
-    public void removeAccount(String accountId) {
-      Set<Integer> folders = mAccountFolders.get(accountId);
-      if (folders != null) {
-        // Get a copy of the folder list to avoid ConcurrentModificationException on mMboxFolders.
-        Integer[] fids = folders.toArray(new Integer[0]);
-        for (int folderId : fids) {
-          CalSummaryKey key = new CalSummaryKey(accountId, folderId);
-          remove(key);
-        }
-      }
-    }
-  }
-
   public static class CalendarDataResult {
     public CalendarData data;
     public boolean allowPrivateAccess; // whether caller has permission to view private data
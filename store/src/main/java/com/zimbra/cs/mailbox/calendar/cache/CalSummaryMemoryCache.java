@@ -0,0 +1,247 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.mailbox.calendar.cache;
+
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.zimbra.cs.stats.ZimbraPerf;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Calendar summaries in Java heap, by calendar folder. Safe for concurrent use without external
+ * locking.
+ *
+ * <p>The cache is bounded by the number of calendar item instances and free/busy index entries it
+ * holds rather than by the number of calendars, and evicts the least recently used calendars. A calendar that is not cached
+ * yet is only admitted when the cache has room for it, or when it has been requested more often
+ * recently than the calendar it would evict. A calendar shared by many users, such as a resource
+ * calendar, therefore stays cached while calendars that are only viewed once come and go.
+ */
+final class CalSummaryMemoryCache {
+
+  static final int FOLDER_NOT_FOUND = -1;
+
+  private final ConcurrentLinkedHashMap<CalSummaryKey, CalendarData> mCache;
+  private final FrequencySketch mFrequency;
+  // calendar folders cached for each account, updated every time a calendar folder is added,
+  // removed, or evicted. Updates recheck the cache within the map operation, so that a folder
+  // concurrently put back in the cache is never dropped, and one concurrently removed is never
+  // left behind.
+  private final ConcurrentHashMap<String /* account id */, Set<Integer> /* folder ids */>
+      mAccountFolders = new ConcurrentHashMap<>();
+
+  /**
+   * @param expectedCalendars number of calendars the cache is expected to hold
+   * @param maxInstances maximum number of calendar item instances and free/busy index entries in
+   *     the cache
+   */
+  CalSummaryMemoryCache(int expectedCalendars, int maxInstances) {
+    mCache =
+        new ConcurrentLinkedHashMap.Builder<CalSummaryKey, CalendarData>()
+            .maximumWeightedCapacity(Math.max(maxInstances, 1))
+            .weigher(CalSummaryMemoryCache::weigh)
+            .listener(
+                (key, value) -> {
+                  deregisterFromAccount(key);
+                  ZimbraPerf.COUNTER_CALENDAR_CACHE_EVICTIONS.increment();
+                })
+            .build();
+    mFrequency = new FrequencySketch(expectedCalendars);
+  }
+
+  /** Returns the cached summary of the calendar, and records the request for it. */
+  CalendarData get(CalSummaryKey key) {
+    mFrequency.increment(key);
+    return mCache.get(key);
+  }
+
+  /** Returns the cached summary of the calendar, without recording a request for it. */
+  CalendarData peek(CalSummaryKey key) {
+    return mCache.get(key);
+  }
+
+  /**
+   * Caches the summary of the calendar, replacing the cached one, and builds its free/busy index
+   * unless it already has one. The summary of a calendar that isn't cached yet may not be
+   * admitted, see {@link CalSummaryMemoryCache}, in which case it's left without an index.
+   */
+  void put(CalSummaryKey key, CalendarData value) {
+    if (!mCache.containsKey(key) && !admit(key, weigh(value))) {
+      value.setFreeBusyIndex(null);
+      ZimbraPerf.COUNTER_CALENDAR_CACHE_REJECTED.increment();
+      return;
+    }
+    if (value.getFreeBusyIndex() == null) {
+      value.setFreeBusyIndex(new FreeBusyIndex(value));
+    }
+    mCache.put(key, value);
+    registerWithAccount(key);
+  }
+
+  void remove(CalSummaryKey key) {
+    if (mCache.remove(key) != null) {
+      deregisterFromAccount(key);
+    }
+  }
+
+  int size() {
+    return mCache.size();
+  }
+
+  /** Returns the number of calendar item instances and free/busy index entries in the cache. */
+  long weightedSize() {
+    return mCache.weightedSize();
+  }
+
+  private boolean admit(CalSummaryKey key, int weight) {
+    if (weight > mCache.capacity()) {
+      return false;
+    }
+    if (mCache.weightedSize() + weight <= mCache.capacity()) {
+      return true;
+    }
+    Iterator<CalSummaryKey> coldest = mCache.ascendingKeySetWithLimit(1).iterator();
+    return !coldest.hasNext() || mFrequency.frequency(key) > mFrequency.frequency(coldest.next());
+  }
+
+  /**
+   * Returns the number of instances of the calendar plus the size of its free/busy index, if it
+   * has one. Calendars are admitted on the weight of their instances alone, so that the index is
+   * only built for the ones that get cached.
+   */
+  private static int weigh(CalendarData calData) {
+    long weight = 1;
+    for (Iterator<CalendarItemData> iter = calData.calendarItemIterator(); iter.hasNext(); ) {
+      weight += Math.max(iter.next().getNumInstances(), 1);
+    }
+    FreeBusyIndex index = calData.getFreeBusyIndex();
+    if (index != null) {
+      weight += index.size();
+    }
+    return (int) Math.min(weight, Integer.MAX_VALUE);
+  }
+
+  private void registerWithAccount(CalSummaryKey key) {
+    mAccountFolders.compute(
+        key.getAccountId(),
+        (accountId, folders) -> {
+          if (!mCache.containsKey(key)) {
+            return folders; // removed or evicted since it was put
+          }
+          if (folders == null) {
+            folders = ConcurrentHashMap.newKeySet();
+          }
+          folders.add(key.getFolderId());
+          return folders;
+        });
+  }
+
+  private void deregisterFromAccount(CalSummaryKey key) {
+    // If no folders are cached for the account, drop the account entry from the map to save
+    // memory.
+    mAccountFolders.computeIfPresent(
+        key.getAccountId(),
+        (accountId, folders) -> {
+          if (!mCache.containsKey(key)) {
+            folders.remove(key.getFolderId());
+          }
+          return folders.isEmpty() ? null : folders;
+        });
+  }
+
+  int getFolderForItem(String accountId, int itemId) {
+    Set<Integer> folders = mAccountFolders.get(accountId);
+    if (folders != null) {
+      for (int folderId : folders) {
+        CalendarData calData = mCache.get(new CalSummaryKey(accountId, folderId));
+        if (calData != null && calData.getCalendarItemData(itemId) != null) {
+          return folderId;
+        }
+      }
+    }
+    return FOLDER_NOT_FOUND;
+  }
+
+  /** Toss all folders of the account from the cache. */
+  void removeAccount(String accountId) {
+    Set<Integer> folders = mAccountFolders.remove(accountId);
+    if (folders != null) {
+      for (int folderId : folders) {
+        mCache.remove(new CalSummaryKey(accountId, folderId));
+      }
+    }
+  }
+
+  /**
+   * Approximate number of recent requests for each calendar, in a count-min sketch of 4-bit
+   * counters. The counters are halved once the number of requests reaches ten times the number of
+   * counters per row, so that calendars that were popular a long time ago don't stay popular
+   * forever. Increments are not synchronized: a lost increment only makes a count a bit lower.
+   */
+  static final class FrequencySketch {
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private final byte[][] mCounts;
+    private final int mMask;
+    private final int mSampleSize;
+    private final AtomicInteger mAdditions = new AtomicInteger();
+
+    FrequencySketch(int expectedKeys) {
+      int width = Integer.highestOneBit(Math.max(Math.min(expectedKeys, 1 << 24), 16) - 1) << 1;
+      mCounts = new byte[SEEDS.length][width];
+      mMask = width - 1;
+      mSampleSize = 10 * width;
+    }
+
+    void increment(Object key) {
+      int hash = key.hashCode();
+      boolean added = false;
+      for (int i = 0; i < SEEDS.length; i++) {
+        byte[] row = mCounts[i];
+        int index = indexOf(hash, i);
+        if (row[index] < MAX_COUNT) {
+          row[index]++;
+          added = true;
+        }
+      }
+      if (added && mAdditions.incrementAndGet() >= mSampleSize) {
+        reset();
+      }
+    }
+
+    int frequency(Object key) {
+      int hash = key.hashCode();
+      int frequency = MAX_COUNT;
+      for (int i = 0; i < SEEDS.length; i++) {
+        frequency = Math.min(frequency, mCounts[i][indexOf(hash, i)]);
+      }
+      return frequency;
+    }
+
+    private int indexOf(int hash, int row) {
+      long h = (hash + SEEDS[row]) * SEEDS[row];
+      h += h >>> 32;
+      return (int) h & mMask;
+    }
+
+    private synchronized void reset() {
+      if (mAdditions.get() < mSampleSize) {
+        return; // another thread just did it
+      }
+      for (byte[] row : mCounts) {
+        for (int i = 0; i < row.length; i++) {
+          row[i] >>>= 1;
+        }
+      }
+      mAdditions.set(0);
+    }
+  }
+}
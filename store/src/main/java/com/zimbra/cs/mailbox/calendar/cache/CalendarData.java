@@ -24,6 +24,7 @@ public class CalendarData {
     private List<CalendarItemData> mCalendarItems;
     private Map<Integer, CalendarItemData> mCalendarItemsMap;
     private Set<Integer> mStaleItemIds;
+    private volatile FreeBusyIndex mFreeBusyIndex;  // only while in the heap cache
 
     CalendarData(int folderId, int modSeq, long rangeStart, long rangeEnd) {
         mFolderId = folderId;
@@ -52,6 +53,26 @@ public class CalendarData {
     public Iterator<CalendarItemData> calendarItemIterator() { return mCalendarItems.iterator(); }
     public int getNumItems() { return mCalendarItems.size(); }
 
+    /**
+     * Returns the busy times of the calendar items that overlap the time range. They are looked up
+     * in the free/busy index of a calendar in the heap cache, and computed from the items
+     * otherwise.
+     */
+    public List<FreeBusyIndex.BusyTime> getBusyTimes(long rangeStart, long rangeEnd) {
+        FreeBusyIndex index = mFreeBusyIndex;
+        if (index != null)
+            return index.getBusyTimes(rangeStart, rangeEnd);
+        return FreeBusyIndex.scan(this, rangeStart, rangeEnd);
+    }
+
+    FreeBusyIndex getFreeBusyIndex() {
+        return mFreeBusyIndex;
+    }
+
+    void setFreeBusyIndex(FreeBusyIndex index) {
+        mFreeBusyIndex = index;
+    }
+
     public CalendarData getSubRange(long rangeStart, long rangeEnd) {
         if (rangeStart <= mRangeStart && rangeEnd >= mRangeEnd)
             return this;
@@ -0,0 +1,201 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.mailbox.calendar.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.zimbra.cs.mailbox.calendar.IcalXmlStrMap;
+
+/**
+ * Busy times of the calendar items of a {@link CalendarData}, sorted by start time, so that a
+ * free/busy lookup is a range search instead of a walk over every item and instance.
+ *
+ * Only the calendars in the heap cache have an index, built when the calendar is cached and
+ * counted in the weight of the cache entry. When appointments are created, modified or deleted,
+ * the cache marks them stale and refreshes the calendar with the unchanged items of the cached
+ * one. The index of the refreshed calendar is then {@link #update(CalendarData, Set) updated}:
+ * only the changed items are expanded again. Calendars that aren't in the heap cache, such as the
+ * ones read from memcached, are scanned on each lookup instead.
+ */
+public final class FreeBusyIndex {
+
+    private static final BusyTime[] NONE = new BusyTime[0];
+    private static final Comparator<BusyTime> BY_START = Comparator.comparingLong(BusyTime::getStart);
+
+    private final BusyTime[] mBusyTimes;  // sorted by start time
+    private final long[] mMaxEnd;         // latest end time among mBusyTimes[0..i]
+
+    FreeBusyIndex(CalendarData calData) {
+        this(sortedBusyTimes(calData));
+    }
+
+    private FreeBusyIndex(BusyTime[] busyTimes) {
+        mBusyTimes = busyTimes;
+        mMaxEnd = new long[mBusyTimes.length];
+        long maxEnd = Long.MIN_VALUE;
+        for (int i = 0; i < mBusyTimes.length; i++) {
+            maxEnd = Math.max(maxEnd, mBusyTimes[i].getEnd());
+            mMaxEnd[i] = maxEnd;
+        }
+    }
+
+    private static BusyTime[] sortedBusyTimes(CalendarData calData) {
+        List<BusyTime> busyTimes = new ArrayList<>();
+        for (Iterator<CalendarItemData> iter = calData.calendarItemIterator(); iter.hasNext(); ) {
+            Collections.addAll(busyTimes, busyTimes(iter.next()));
+        }
+        busyTimes.sort(BY_START);
+        return busyTimes.toArray(NONE);
+    }
+
+    /**
+     * Returns the index of a calendar refreshed from the calendar of this index. The busy times of
+     * the unchanged items are kept, the ones of the changed items are computed again and merged in.
+     *
+     * @param calData the refreshed calendar
+     * @param changedItemIds the items created, modified or deleted since this index was built
+     */
+    FreeBusyIndex update(CalendarData calData, Set<Integer> changedItemIds) {
+        List<BusyTime> changed = new ArrayList<>();
+        for (int calItemId : changedItemIds) {
+            CalendarItemData calItem = calData.getCalendarItemData(calItemId);
+            if (calItem != null)
+                Collections.addAll(changed, busyTimes(calItem));
+        }
+        changed.sort(BY_START);
+        BusyTime[] merged = new BusyTime[mBusyTimes.length + changed.size()];
+        int n = 0;
+        int next = 0;
+        for (BusyTime busy : mBusyTimes) {
+            if (changedItemIds.contains(busy.getCalItemId()))
+                continue;
+            while (next < changed.size() && changed.get(next).getStart() < busy.getStart())
+                merged[n++] = changed.get(next++);
+            merged[n++] = busy;
+        }
+        while (next < changed.size())
+            merged[n++] = changed.get(next++);
+        return new FreeBusyIndex(n == merged.length ? merged : Arrays.copyOf(merged, n));
+    }
+
+    /**
+     * Returns the busy times that overlap the time range, in start time order.
+     */
+    public List<BusyTime> getBusyTimes(long rangeStart, long rangeEnd) {
+        List<BusyTime> result = new ArrayList<>();
+        for (int i = firstEndingAfter(rangeStart); i < mBusyTimes.length && mBusyTimes[i].getStart() < rangeEnd; i++) {
+            if (mBusyTimes[i].getEnd() > rangeStart)
+                result.add(mBusyTimes[i]);
+        }
+        return result;
+    }
+
+    public int size() {
+        return mBusyTimes.length;
+    }
+
+    // index of the first busy time such that it or one of the busy times before it ends after time
+    private int firstEndingAfter(long time) {
+        int low = 0;
+        int high = mMaxEnd.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mMaxEnd[mid] > time)
+                high = mid;
+            else
+                low = mid + 1;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the busy times of a calendar without an index that overlap the time range.
+     */
+    static List<BusyTime> scan(CalendarData calData, long rangeStart, long rangeEnd) {
+        List<BusyTime> result = new ArrayList<>();
+        for (Iterator<CalendarItemData> iter = calData.calendarItemIterator(); iter.hasNext(); ) {
+            for (BusyTime busy : busyTimes(iter.next())) {
+                if (busy.getStart() < rangeEnd && busy.getEnd() > rangeStart)
+                    result.add(busy);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the busy times of the instances of a calendar item: the instances with a positive
+     * duration that are neither transparent nor free.
+     */
+    static BusyTime[] busyTimes(CalendarItemData calItem) {
+        FullInstanceData defaultInstance = calItem.getDefaultData();
+        if (defaultInstance == null)
+            return NONE;
+        boolean isTransparent = IcalXmlStrMap.TRANSP_TRANSPARENT.equals(defaultInstance.getTransparency());
+        long defaultDuration = 0;
+        if (defaultInstance.getDuration() != null)
+            defaultDuration = defaultInstance.getDuration();
+        String defaultFreeBusy = defaultInstance.getFreeBusyActual();
+        List<BusyTime> busyTimes = new ArrayList<>();
+        for (Iterator<InstanceData> iter = calItem.instanceIterator(); iter.hasNext(); ) {
+            InstanceData instance = iter.next();
+            long instStart = instance.getDtStart() != null ? instance.getDtStart() : 0;
+            long dur = defaultDuration;
+            if (instance.getDuration() != null)
+                dur = instance.getDuration();
+            if (dur <= 0)  // Only consider instances with non-zero, positive duration.
+                continue;
+
+            long recurIdDt = 0;
+            // Skip if instance is TRANSPARENT to free/busy searches.
+            if (instance instanceof FullInstanceData) {
+                FullInstanceData fullInst = (FullInstanceData) instance;
+                recurIdDt = fullInst.getRecurrenceId();
+                if (IcalXmlStrMap.TRANSP_TRANSPARENT.equals(fullInst.getTransparency()))
+                    continue;
+            } else if (isTransparent) {
+                continue;
+            }
+
+            String freeBusy = instance.getFreeBusyActual();
+            if (freeBusy == null)
+                freeBusy = defaultFreeBusy;
+            if (!IcalXmlStrMap.FBTYPE_FREE.equals(freeBusy))
+                busyTimes.add(new BusyTime(instStart, instStart + dur, freeBusy, calItem.getCalItemId(), recurIdDt));
+        }
+        return busyTimes.isEmpty() ? NONE : busyTimes.toArray(NONE);
+    }
+
+    /**
+     * An instance of a calendar item that is not free.
+     */
+    public static final class BusyTime {
+        private final long mStart;
+        private final long mEnd;
+        private final String mFreeBusy;
+        private final int mCalItemId;
+        private final long mRecurrenceId;
+
+        BusyTime(long start, long end, String freeBusy, int calItemId, long recurrenceId) {
+            mStart = start;
+            mEnd = end;
+            mFreeBusy = freeBusy;
+            mCalItemId = calItemId;
+            mRecurrenceId = recurrenceId;
+        }
+
+        public long getStart()        { return mStart; }
+        public long getEnd()          { return mEnd; }
+        public String getFreeBusy()   { return mFreeBusy; }
+        public int getCalItemId()     { return mCalItemId; }
+        public long getRecurrenceId() { return mRecurrenceId; }
+    }
+}
@@ -15,12 +15,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.GZIPInputStream;
 
 import javax.mail.Address;
@@ -134,7 +134,7 @@ public final class ParsedMessage {
     private CalendarPartInfo calendarPartInfo;
     private boolean wasMutated;
     private InputStream sharedStream;
-    private final Map<Mailbox, Threader> threaders = new HashMap<>();
+    private final Map<Mailbox, Threader> threaders = new ConcurrentHashMap<>();
     private String dataSourceId = null;
 
     public ParsedMessage(MimeMessage msg, boolean indexAttachments) throws ServiceException {
@@ -459,6 +459,21 @@ public final class ParsedMessage {
         analyzeNonBodyParts();
     }
 
+    /**
+     * Runs the lazy parsing steps that every delivery of the message goes through. These steps flag themselves as
+     * done before doing the work, so they must have completed before several mailboxes read the message concurrently.
+     */
+    public void prepareSharedDelivery() {
+        parse();
+        try {
+            analyzeBodyParts();
+        } catch (ServiceException e) {
+            LOG.warn("Message analysis failed when preparing shared delivery", e);
+        }
+        getCalendarPartInfo();
+        normalizeSubject();
+    }
+
     /**
      * Returns the {@link MimeMessage}.  Affected by both conversion and mutation.
      */
@@ -65,6 +65,11 @@ public class Pop3Config extends ServerConfig {
         return LC.pop3_thread_keep_alive_time.intValue();
     }
 
+    @Override
+    public boolean isVirtualThreadsEnabled() {
+        return LC.pop3_virtual_threads_enabled.booleanValue();
+    }
+
     @Override
     public int getMaxConnections() {
         return getIntAttr(A_zimbraPop3MaxConnections, super.getMaxConnections());
@@ -0,0 +1,722 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+/*
+ * Created on 2004. 11. 12.
+ */
+package com.zimbra.cs.redolog.logger;
+
+import com.zimbra.common.localconfig.DebugConfig;
+import com.zimbra.common.service.ServiceException;
+import com.zimbra.common.util.Constants;
+import com.zimbra.common.util.ZimbraLog;
+import com.zimbra.cs.account.Provisioning;
+import com.zimbra.cs.redolog.CommitId;
+import com.zimbra.cs.redolog.RedoCommitCallback;
+import com.zimbra.cs.redolog.RedoConfig;
+import com.zimbra.cs.redolog.RedoLogManager;
+import com.zimbra.cs.redolog.RolloverManager;
+import com.zimbra.cs.redolog.op.CommitTxn;
+import com.zimbra.cs.redolog.op.RedoableOp;
+import com.zimbra.cs.stats.ZimbraPerf;
+import com.zimbra.cs.util.Zimbra;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * @author jhahm
+ */
+public class FileLogWriter implements LogWriter {
+
+    private static String sServerId;
+    static {
+        try {
+            sServerId = Provisioning.getInstance().getLocalServer().getId();
+        } catch (ServiceException e) {
+            ZimbraLog.redolog.error("Unable to get local server ID", e);
+            sServerId = "unknown";
+        }
+    }
+
+    protected RedoLogManager mRedoLogMgr;
+
+    // Guards access to mRAF, mPending, mFileSize, mLogSeq, mFsyncSeq, mLogCount, mFsyncCount
+    // and mSyncing.  RandomAccessFile writes are done with the lock held, but FileChannel.force()
+    // is not, so that other threads can keep appending to the next batch during an fsync.
+    private final ReentrantLock mLock = new ReentrantLock();
+
+    // signalled whenever a group commit completes
+    private final Condition mFsyncDone = mLock.newCondition();
+
+    private FileHeader mHeader;
+    private long mFirstOpTstamp;
+    private long mLastOpTstamp;
+    private long mCreateTime;
+
+    private File mFile;
+    private RandomAccessFile mRAF;
+    private long mFileSize;
+    private long mLastLogTime;
+
+    // Records logged but not written to mRAF yet.  Bytes are only held here while another
+    // thread is fsyncing; the next group commit writes all of them with a single write().
+    private byte[] mPending = new byte[PENDING_INITIAL_SIZE];
+    private int mPendingLen;
+
+    private static final int PENDING_INITIAL_SIZE = 16 * 1024;
+
+    private long mFsyncIntervalMS;          // how many milliseconds fsync thread sleeps after each fync
+    private boolean mFsyncDisabled;
+
+    private FsyncThread mFsyncer;   // fsync thread
+
+    private int mLogSeq;            // last item logged
+    private int mFsyncSeq;          // last item fsynced
+    private boolean mSyncing;       // true while a thread is leading a group commit
+
+    // for gathering some stats; nonessential for functionality
+    private int mLogCount;          // how many times log was called
+    private int mFsyncCount;        // how many times fsync was called
+
+    private CommitNotifyQueue mCommitNotifyQueue;
+
+    public FileLogWriter(RedoLogManager redoLogMgr,
+                         File logfile,
+                         long fsyncIntervalMS) {
+        mRedoLogMgr = redoLogMgr;
+
+        mHeader = new FileHeader(sServerId);
+        mFile = logfile;
+        mFileSize = mFile.length();
+        mLastLogTime = mFile.lastModified();
+
+        mFsyncIntervalMS = fsyncIntervalMS;
+        mFsyncDisabled = DebugConfig.disableRedoLogFsync;
+
+        mFsyncCount = mLogCount = 0;
+
+        mCommitNotifyQueue = new CommitNotifyQueue(100);
+    }
+
+    @Override public long getSequence() {
+        mLock.lock();
+        try {
+            return mHeader.getSequence();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.zimbra.cs.redolog.LogWriter#getSize()
+     */
+    @Override public long getSize() {
+        mLock.lock();
+        try {
+            return mFileSize;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.zimbra.cs.redolog.logger.LogWriter#getCreateTime()
+     */
+    @Override public long getCreateTime() {
+        mLock.lock();
+        try {
+            return mCreateTime;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.zimbra.cs.redolog.logger.LogWriter#getLastLogTime()
+     */
+    @Override public long getLastLogTime() {
+        mLock.lock();
+        try {
+            return mLastLogTime;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see com.zimbra.cs.redolog.logger.LogWriter#isEmpty()
+     */
+    @Override public boolean isEmpty() throws IOException {
+        return getSize() <= FileHeader.HEADER_LEN;
+    }
+
+    /* (non-Javadoc)
+     * @see com.zimbra.cs.redolog.logger.LogWriter#exists()
+     */
+    @Override public boolean exists() {
+        return mFile.exists();
+    }
+
+    /* (non-Javadoc)
+     * @see com.zimbra.cs.redolog.LogWriter#getAbsolutePath()
+     */
+    @Override public String getAbsolutePath() {
+        return mFile.getAbsolutePath();
+    }
+
+    /* (non-Javadoc)
+     * @see com.zimbra.cs.redolog.LogWriter#renameTo()
+     */
+    @Override public boolean renameTo(File dest) {
+        return mFile.renameTo(dest);
+    }
+
+    /* (non-Javadoc)
+     * @see com.zimbra.cs.redolog.logger.LogWriter#delete()
+     */
+    @Override public boolean delete() {
+        return mFile.delete();
+    }
+
+    /* (non-Javadoc)
+     * @see com.zimbra.cs.redolog.LogWriter#open()
+     */
+    @Override public synchronized void open() throws IOException {
+        mLock.lock();
+        try {
+            if (mRAF != null) return;  // already open
+
+            mRAF = new RandomAccessFile(mFile, "rw");
+
+            if (mRAF.length() >= FileHeader.HEADER_LEN) {
+                mHeader.read(mRAF);
+                mCreateTime = mHeader.getCreateTime();
+                if (mCreateTime == 0) {
+                    mCreateTime = System.currentTimeMillis();
+                    mHeader.setCreateTime(mCreateTime);
+                }
+                mFirstOpTstamp = mHeader.getFirstOpTstamp();
+                mLastOpTstamp = mHeader.getLastOpTstamp();
+            } else {
+                mCreateTime = System.currentTimeMillis();
+                mHeader.setCreateTime(mCreateTime);
+                mHeader.setSequence(mRedoLogMgr.getCurrentLogSequence());
+            }
+            mHeader.setOpen(true);
+            mHeader.write(mRAF);
+
+            // go to the end of file, so we can append
+            long len = mRAF.length();
+            mRAF.seek(len);
+            mFileSize = len;
+
+            mLogSeq = mFsyncSeq = 0;
+            mPendingLen = 0;
+        } finally {
+            mLock.unlock();
+        }
+
+        if (mFsyncIntervalMS > 0)
+            startFsyncThread();
+    }
+
+    /* (non-Javadoc)
+     * @see com.zimbra.cs.redolog.LogWriter#close()
+     */
+    @Override public synchronized void close() throws IOException {
+        stopFsyncThread();
+
+        mLock.lock();
+        try {
+            if (mRAF == null)
+                return;
+            // let an in-flight group commit finish before the channel goes away
+            while (mSyncing)
+                mFsyncDone.awaitUninterruptibly();
+
+            writePending();
+            if (mLastOpTstamp != 0)
+                mHeader.setLastOpTstamp(mLastOpTstamp);
+            mHeader.setOpen(false);
+            mHeader.setFileSize(mRAF.length());
+            mHeader.write(mRAF);
+
+            mRAF.getChannel().force(true);
+            mRAF.close();
+            mRAF = null;
+
+            // everything logged so far is on disk now
+            mFsyncSeq = mLogSeq;
+            mFsyncDone.signalAll();
+            mCommitNotifyQueue.flush(mLogSeq);
+        } finally {
+            mLock.unlock();
+        }
+
+        // Write some stats, so we can see how many times we were able to avoid calling fsync.
+        if (!mNoStat && mLogCount > 0 && ZimbraLog.redolog.isDebugEnabled())
+            ZimbraLog.redolog.debug("Logged: " + mLogCount + " items, " + mFsyncCount + " fsyncs");
+    }
+
+    /**
+     * Log the supplied bytes.  Depending on the value of synchronous argument,
+     * this method can do one of 2 things:
+     *
+     * case 1: !synchronous
+     * action: write() only; no flush/fsync
+     * If another thread is in the middle of an fsync the bytes are only
+     * buffered, and go to disk with the next group commit.  Commit callbacks
+     * queued by this call are made by whichever fsync covers the record,
+     * typically the fsync thread's.
+     *
+     * case 2: synchronous
+     * action: write(), then group commit
+     * If no fsync is in progress, the current thread becomes the leader of a
+     * group commit: it writes every buffered record with a single write() and
+     * calls fsync once for all of them.  Threads logging while the fsync is
+     * in progress append to the buffer and wait; as soon as the fsync
+     * finishes, those whose record it covered return, and one of the others
+     * leads the next group commit for the records gathered in the meantime.
+     * The number of fsyncs thus adapts to the disk latency, and a synchronous
+     * caller never waits longer than the fsync that covers its record.
+     *
+     * The fsync interval only controls how often the fsync thread flushes
+     * records that were logged without synchronous flag.
+     */
+    @Override public void log(RedoableOp op, InputStream data, boolean synchronous) throws IOException {
+        long start = System.nanoTime();
+        int seq;
+        boolean flushNotifs;
+
+        mLock.lock();
+        try {
+            if (mRAF == null)
+                throw new IOException("Redolog file closed");
+
+            // Record first transaction in header.
+            long tstamp = op.getTimestamp();
+            mLastOpTstamp = Math.max(tstamp, mLastOpTstamp);
+            if (mFirstOpTstamp == 0) {
+            	mFirstOpTstamp = tstamp;
+                mHeader.setFirstOpTstamp(mFirstOpTstamp);
+                mHeader.setLastOpTstamp(mLastOpTstamp);
+                long pos = mRAF.getFilePointer();
+                mHeader.write(mRAF);
+                mRAF.seek(pos);
+            }
+
+            mLogSeq++;
+            mLogCount++;
+            seq = mLogSeq;
+            mFileSize += appendPending(data);
+            data.close();
+
+            // We do this with log writer lock held, so the commits and any
+            // callbacks made on their behalf are truly in the correct order.
+            if (op instanceof CommitTxn) {
+                CommitTxn cmt = (CommitTxn) op;
+                RedoCommitCallback cb = cmt.getCallback();
+                if (cb != null) {
+                    long redoSeq = mRedoLogMgr.getRolloverManager().getCurrentSequence();
+                    CommitId cid = new CommitId(redoSeq, (CommitTxn) op);
+                    Notif notif = new Notif(cb, cid, seq);
+                    // We queue it instead making the callback right away.
+                    // Call it only after the commit record has been fsynced.
+                    mCommitNotifyQueue.push(notif);
+                }
+            }
+            // don't let callbacks pile up when nobody else is going to fsync
+            flushNotifs = mCommitNotifyQueue.isFull();
+
+            // If nobody is fsyncing, write the bytes to the file right away like
+            // we always did.  Otherwise the next group commit will write them.
+            if (!mSyncing)
+                writePending();
+
+            mLastLogTime = System.currentTimeMillis();
+        } finally {
+            mLock.unlock();
+        }
+
+        // cases 1 above
+        if (!synchronous && !flushNotifs) {
+            ZimbraPerf.REDOLOG_TRACKER.addStat("log", System.nanoTime() - start);
+            return;
+        }
+
+        // case 2
+        groupCommit(seq);
+        ZimbraPerf.REDOLOG_TRACKER.addStat(synchronous ? "log_sync" : "log", System.nanoTime() - start);
+    }
+
+    @Override public void flush() throws IOException {
+        fsync();
+    }
+
+    private boolean mNoStat;
+    public void noStat(boolean b) {
+    	mNoStat = b;
+    }
+
+    int getLogCount() {
+        return mLogCount;
+    }
+
+    int getFsyncCount() {
+        return mFsyncCount;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override public synchronized File rollover(LinkedHashMap /*<TxnId, RedoableOp>*/ activeOps)
+    throws IOException {
+        RolloverManager romgr = mRedoLogMgr.getRolloverManager();
+
+        long lastSeq = getSequence();
+
+        // Close current log, so it's impossible for its content to change.
+        noStat(true);
+        close();
+
+        romgr.incrementSequence();
+
+        String currentPath = mFile.getAbsolutePath();
+
+        // Open a temporary logger.
+        File tempLogfile = new File(mFile.getParentFile(), romgr.getTempFilename(lastSeq + 1));
+        FileLogWriter tempLogger =
+            new FileLogWriter(mRedoLogMgr, tempLogfile, 0);
+        tempLogger.open();
+        tempLogger.noStat(true);
+
+        // Rewrite change entries for all active operations, maintaining
+        // their order of occurrence.  (LinkedHashMap ensures ordering.)
+        Set opsSet = activeOps.entrySet();
+      for (Object o : opsSet) {
+        Map.Entry entry = (Map.Entry) o;
+        RedoableOp op = (RedoableOp) entry.getValue();
+        tempLogger.log(op, op.getInputStream(), false);
+      }
+        tempLogger.close();
+
+        // Rename the current log to rolled-over name.
+        File rolloverFile = romgr.getRolloverFile(lastSeq);
+        if (RedoConfig.redoLogDeleteOnRollover()) {
+            // Delete the current log.  We don't need to hold on to the
+            // indexing-only log files after rollover.
+            if (!mFile.delete())
+                throw new IOException("Unable to delete current redo log " + mFile.getAbsolutePath());
+        } else {
+            File destDir = rolloverFile.getParentFile();
+            if (destDir != null && !destDir.exists())
+                destDir.mkdirs();
+            if (!mFile.renameTo(rolloverFile))
+                throw new IOException("Unable to rename current redo log to " + rolloverFile.getAbsolutePath());
+        }
+
+        // Rename the temporary logger to current logfile name.
+        String tempPath = tempLogfile.getAbsolutePath();
+        mFile = new File(currentPath);
+        if (!tempLogfile.renameTo(mFile))
+            throw new IOException("Unable to rename " + tempPath + " to " + currentPath);
+
+        // Reopen current log.
+        open();
+        noStat(false);
+
+        return rolloverFile;
+    }
+
+    public synchronized void enableFsync() throws IOException {
+        startFsyncThread();
+        fsync();
+    }
+
+    public synchronized void disableFsync() throws IOException {
+        fsync();
+        stopFsyncThread();
+    }
+
+    private synchronized void startFsyncThread() {
+        if (mFsyncer == null && mFsyncIntervalMS > 0) {
+            mFsyncer = new FsyncThread(mFsyncIntervalMS);
+            mFsyncer.start();
+        }
+    }
+
+    private synchronized void stopFsyncThread() {
+        if (mFsyncer != null) {
+            mFsyncer.stopThread();
+            mFsyncer = null;
+        }
+    }
+
+    // do fsync if there are items logged since last fsync
+    private void fsync() throws IOException {
+        int seq;
+        mLock.lock();
+        try {
+            seq = mLogSeq;
+        } finally {
+            mLock.unlock();
+        }
+        groupCommit(seq);
+    }
+
+    /**
+     * Returns once the record with the given sequence number is on disk, either
+     * because another thread's fsync covered it or because the current thread
+     * led a group commit for it and every record buffered so far.
+     */
+    private void groupCommit(int seq) throws IOException {
+        FileChannel channel;
+        int target;
+        int batch;
+
+        mLock.lock();
+        try {
+            while (true) {
+                if (mFsyncSeq >= seq)
+                    return;
+                if (mRAF == null)
+                    throw new IOException("Redolog file closed");
+                if (!mSyncing)
+                    break;
+                mFsyncDone.awaitUninterruptibly();
+            }
+            // become the leader of the next group commit
+            mSyncing = true;
+            try {
+                writePending();
+            } catch (IOException | RuntimeException e) {
+                endGroupCommit(-1);
+                throw e;
+            }
+            channel = mRAF.getChannel();
+            target = mLogSeq;
+            batch = target - mFsyncSeq;
+        } finally {
+            mLock.unlock();
+        }
+
+        int durable = target;
+        try {
+            if (!mFsyncDisabled) {
+                long start = System.nanoTime();
+                channel.force(false);
+                ZimbraPerf.REDOLOG_TRACKER.addStat("fsync", System.nanoTime() - start);
+                ZimbraPerf.COUNTER_REDOLOG_FSYNC.increment(batch);
+            }
+        } catch (IOException | RuntimeException e) {
+            durable = -1;
+            throw e;
+        } finally {
+            mLock.lock();
+            try {
+                endGroupCommit(durable);
+                // Write what was logged asynchronously during the fsync, so it
+                // doesn't sit in memory until the next call to log().
+                if (durable >= 0 && mRAF != null)
+                    writePending();
+            } finally {
+                mLock.unlock();
+            }
+        }
+    }
+
+    // Called with mLock held by the group commit leader.  Records everything up
+    // to durableSeq as fsynced, makes the commit callbacks for those records and
+    // wakes up the threads waiting for them.  A negative durableSeq means the
+    // fsync failed; waiters then retry and hit the error themselves.
+    private void endGroupCommit(int durableSeq) {
+        try {
+            if (durableSeq > mFsyncSeq) {
+                if (!mFsyncDisabled)
+                    mFsyncCount++;
+                mFsyncSeq = durableSeq;
+                mCommitNotifyQueue.flush(durableSeq);
+            }
+        } finally {
+            mSyncing = false;
+            mFsyncDone.signalAll();
+        }
+    }
+
+    // Called with mLock held.  Reads the record into the pending buffer and returns its length.
+    private int appendPending(InputStream data) throws IOException {
+        int len = 0;
+        int numRead;
+        while (true) {
+            if (mPendingLen == mPending.length)
+                mPending = Arrays.copyOf(mPending, mPending.length * 2);
+            numRead = data.read(mPending, mPendingLen, mPending.length - mPendingLen);
+            if (numRead < 0)
+                break;
+            mPendingLen += numRead;
+            len += numRead;
+        }
+        return len;
+    }
+
+    // Called with mLock held.  Writes all pending records to the file with a single write().
+    private void writePending() throws IOException {
+        if (mPendingLen == 0)
+            return;
+        try {
+            mRAF.write(mPending, 0, mPendingLen);
+        } finally {
+            mPendingLen = 0;
+            // don't hang on to the memory of an unusually large batch
+            if (mPending.length > PENDING_MAX_RETAINED_SIZE)
+                mPending = new byte[PENDING_INITIAL_SIZE];
+        }
+    }
+
+    private static final int PENDING_MAX_RETAINED_SIZE = 1024 * 1024;
+
+
+    // Thread that calls fsync() periodically.  Threads that call log()
+    // will write the log entry and wait for this thread to signal them
+    // after sync to disk has occurred.  This way, there are fewer fsyncs
+    // than there are calls to log(), resulting in improved throughput.
+    private class FsyncThread extends Thread {
+        private long mSleepMS;
+        private Object mFsyncLock;  // synchronizes access to mRunning
+        private boolean mRunning;
+
+        private static final long MIN_SLEEP_MILLIS = 1;
+        private static final long MAX_SLEEP_MILLIS = 1000;  // never sleep longer than 1 seconds
+
+        public FsyncThread(long fsyncIntervalMS) {
+            super("FileLogWriter.FsyncThread-"+System.currentTimeMillis());
+            // Sanity check the sleep interval.
+            if (fsyncIntervalMS < MIN_SLEEP_MILLIS) {
+                ZimbraLog.redolog.warn("Invalid fsync thread sleep interval %dms; using %dms instead",
+                        fsyncIntervalMS, MIN_SLEEP_MILLIS);
+                mSleepMS = MIN_SLEEP_MILLIS;
+            } else if (fsyncIntervalMS > MAX_SLEEP_MILLIS) {
+                ZimbraLog.redolog.warn("Fsync thread sleep interval %ms is too long; using %dms instead",
+                        fsyncIntervalMS, MAX_SLEEP_MILLIS);
+                mSleepMS = MAX_SLEEP_MILLIS;
+            } else {
+                mSleepMS = fsyncIntervalMS;
+            }
+            mFsyncLock = new Object();
+            mRunning = true;
+        }
+
+        @Override public void run() {
+            boolean running = true;
+        	ZimbraLog.redolog.info("Starting fsync thread with interval %d", mSleepMS);
+            while (running) {
+                // Sleep between fsyncs.
+                try {
+                	ZimbraLog.redolog.trace("Sleeping for %s", mSleepMS);
+                    Thread.sleep(mSleepMS);
+                	ZimbraLog.redolog.trace("Slept for %s running? %s", mSleepMS, mRunning);
+                } catch (InterruptedException e) {
+                    ZimbraLog.redolog.warn("Sync thread interrupted", e);
+                }
+
+                try {
+                    fsync();    // do the sync
+                } catch (IOException e) {
+                    String message = "Error while fsyncing " + mFile.getAbsolutePath() + "; Aborting.";
+                    Zimbra.halt(message, e);
+                }
+
+                synchronized (mFsyncLock) {
+                    running = mRunning;
+                }
+            }
+            ZimbraLog.redolog.info("fsync thread exiting");
+        }
+
+        // Stop the fsync thread.  Wait until the thread really stops.
+        public void stopThread() {
+            synchronized (mFsyncLock) {
+                mRunning = false;
+            }
+            try {
+            	while (isAlive()) {
+            		if (ZimbraLog.redolog.isTraceEnabled()) {
+            			ZimbraLog.redolog.trace("waiting for %s to finish. running? %s", getName(), mRunning);
+            		} else {
+            			ZimbraLog.redolog.info("waiting for %s to finish.", getName());
+            		}
+            		join(Constants.MILLIS_PER_MINUTE);
+            	}
+            	ZimbraLog.redolog.info("%s finished", getName());
+            } catch (InterruptedException e) {
+                ZimbraLog.redolog.warn("InterruptedException while stopping FsyncThread", e);
+            }
+        }
+    }
+
+
+    // Commit callback handling
+
+    private static class Notif {
+        private RedoCommitCallback mCallback;
+        private CommitId mCommitId;
+        private int mSeq;
+
+        public Notif(RedoCommitCallback callback, CommitId cid, int seq) {
+            mCallback = callback;
+            mCommitId = cid;
+            mSeq = seq;
+        }
+        public RedoCommitCallback getCallback() { return mCallback; }
+        public CommitId getCommitId() { return mCommitId; }
+        public int getSeq() { return mSeq; }
+    }
+
+    // Accessed with mLock held.  Notifs are in the order of their log sequence numbers.
+    private static class CommitNotifyQueue {
+        private final ArrayDeque<Notif> mQueue;
+        private final int mSize;
+
+        public CommitNotifyQueue(int size) {
+            mQueue = new ArrayDeque<Notif>(size);
+            mSize = size;
+        }
+
+        public void push(Notif notif) {
+            if (notif != null)
+                mQueue.addLast(notif);
+        }
+
+        public boolean isFull() {
+            return mQueue.size() >= mSize;
+        }
+
+        // Makes the callbacks for all commits logged up to and including seq.
+        public void flush(int seq) {
+            Notif notif;
+            while ((notif = mQueue.peekFirst()) != null && notif.getSeq() <= seq) {
+                mQueue.removeFirst();
+                RedoCommitCallback cb = notif.getCallback();
+                assert(cb != null);
+                try {
+                    cb.callback(notif.getCommitId());
+                } catch (OutOfMemoryError e) {
+                    Zimbra.halt("out of memory", e);
+                } catch (Throwable t) {
+                    ZimbraLog.misc.error("Error while making commit callback", t);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.redolog.op;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.zimbra.common.mailbox.Color;
+import com.zimbra.cs.mailbox.MailItem;
+import com.zimbra.cs.mailbox.Mailbox;
+import com.zimbra.cs.mailbox.MailboxManager;
+import com.zimbra.cs.mailbox.MailboxOperation;
+import com.zimbra.cs.redolog.RedoLogInput;
+import com.zimbra.cs.redolog.RedoLogOutput;
+
+/**
+ * @since Sep 19, 2005
+ */
+public class ColorItem extends RedoableOp {
+
+    private int[] mIds;
+    private MailItem.Type type;
+    private long mColor;
+
+    public ColorItem() {
+        super(MailboxOperation.ColorItem);
+    }
+
+    public ColorItem(int mailboxId, int[] ids, MailItem.Type type, Color color) {
+        this();
+        setMailboxId(mailboxId);
+        mIds = ids;
+        this.type = type;
+        mColor = color.getValue();
+    }
+
+    @Override
+    protected String getPrintableData() {
+        StringBuffer sb = new StringBuffer("id=");
+        sb.append(Arrays.toString(mIds)).append(", color=").append(mColor);
+        return sb.toString();
+    }
+
+    @Override
+    protected void serializeData(RedoLogOutput out) throws IOException {
+        out.writeInt(-1);
+        out.writeByte(type.toByte());
+        // mColor from byte to long in Version 1.27
+        out.writeLong(mColor);
+        out.writeInt(mIds == null ? 0 : mIds.length);
+        if (mIds != null) {
+          for (int mId : mIds)
+            out.writeInt(mId);
+        }
+    }
+
+    @Override
+    protected void deserializeData(RedoLogInput in) throws IOException {
+        int id = in.readInt();
+        if (id > 0)
+            mIds = new int[] { id };
+        type = MailItem.Type.of(in.readByte());
+        if (getVersion().atLeast(1, 27))
+            mColor = in.readLong();
+        else
+            mColor = in.readByte();
+        if (id <= 0) {
+            mIds = new int[in.readInt()];
+            for (int i = 0; i < mIds.length; i++)
+                mIds[i] = in.readInt();
+        }
+    }
+
+    @Override
+    public void redo() throws Exception {
+        int mboxId = getMailboxId();
+        Mailbox mailbox = MailboxManager.getInstance().getMailboxById(mboxId);
+        mailbox.setColor(getOperationContext(), mIds, type, Color.fromMetadata(mColor));
+    }
+}
@@ -0,0 +1,12 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.redolog.op;
+
+public interface CreateCalendarItemPlayer {
+    int getCalendarItemId();
+    String getCalendarItemPartStat();
+    int getFolderId();
+}
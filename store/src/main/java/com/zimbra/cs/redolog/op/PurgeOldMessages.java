@@ -0,0 +1,54 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+/*
+ * Created on 2005. 4. 4.
+ */
+package com.zimbra.cs.redolog.op;
+
+import com.zimbra.cs.mailbox.Mailbox;
+import com.zimbra.cs.mailbox.MailboxManager;
+import com.zimbra.cs.mailbox.MailboxOperation;
+import com.zimbra.cs.redolog.RedoLogInput;
+import com.zimbra.cs.redolog.RedoLogOutput;
+
+/**
+ * Purge old messages.  The arguments to this operation are mailbox ID and
+ * operation timestamp, both of which are managed by the superclass.  See
+ * Mailbox.purgeMessages() for more info.
+ */
+public class PurgeOldMessages extends RedoableOp {
+
+    public PurgeOldMessages() {
+        super(MailboxOperation.PurgeOldMessages);
+    }
+
+    public PurgeOldMessages(int mailboxId) {
+        this();
+        setMailboxId(mailboxId);
+    }
+
+    @Override protected String getPrintableData() {
+        // no members to print
+        return null;
+    }
+
+    @Override protected void serializeData(RedoLogOutput out) {
+        // no members to serialize
+    }
+
+    @Override protected void deserializeData(RedoLogInput in) {
+        // no members to deserialize
+    }
+
+    @Override public boolean isDeleteOp() {
+        return true;
+    }
+
+    @Override public void redo() throws Exception {
+        Mailbox mbox = MailboxManager.getInstance().getMailboxById(getMailboxId());
+        mbox.purgeMessages(getOperationContext());
+    }
+}
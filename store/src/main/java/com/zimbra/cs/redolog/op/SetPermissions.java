@@ -0,0 +1,61 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.redolog.op;
+
+import java.io.IOException;
+
+import com.zimbra.cs.mailbox.*;
+import com.zimbra.cs.redolog.RedoLogInput;
+import com.zimbra.cs.redolog.RedoLogOutput;
+
+public class SetPermissions extends RedoableOp {
+
+    private int mFolderId;
+    private String mACL;
+
+    public SetPermissions() {
+        super(MailboxOperation.SetPermissions);
+        mFolderId = UNKNOWN_ID;
+        mACL = "";
+    }
+
+    public SetPermissions(int mailboxId, int folderId, ACL acl) {
+        this();
+        setMailboxId(mailboxId);
+        mFolderId = folderId;
+        mACL = acl == null ? "" : acl.toString();
+    }
+
+    @Override protected String getPrintableData() {
+        StringBuffer sb = new StringBuffer("id=").append(mFolderId);
+        sb.append(", acl=").append(mACL);
+        return sb.toString();
+    }
+
+    @Override protected void serializeData(RedoLogOutput out) throws IOException {
+        out.writeInt(mFolderId);
+        out.writeUTF(mACL);
+    }
+
+    @Override protected void deserializeData(RedoLogInput in) throws IOException {
+        mFolderId = in.readInt();
+        mACL = in.readUTF();
+    }
+
+    
+    @Override public void redo() throws Exception {
+        Mailbox mbox = MailboxManager.getInstance().getMailboxById(getMailboxId());
+        ACL acl;
+        if (mACL.equals("")) {
+            acl = null;
+        } else if (getVersion().atLeast(1, 36)) {
+            acl = new ACL(new Metadata(mACL));
+        } else {
+            acl = new ACL(new MetadataList(mACL));
+        }
+        mbox.setPermissions(getOperationContext(), mFolderId, acl);
+    }
+}
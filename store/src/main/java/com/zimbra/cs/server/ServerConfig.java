@@ -152,6 +152,17 @@ public abstract class ServerConfig {
         return DEFAULT_THREAD_KEEP_ALIVE_TIME;
     }
 
+    /**
+     * Returns whether TCP handlers run on virtual threads instead of a bounded platform thread pool. In this mode the
+     * number of concurrent handlers is limited by the larger of {@link #getMaxConnections()} and
+     * {@link #getMaxThreads()} rather than by the thread pool size.
+     *
+     * @return true to start one virtual thread per connection
+     */
+    public boolean isVirtualThreadsEnabled() {
+        return false;
+    }
+
     public int getNioMaxWriteQueueDelay() {
         return getWriteTimeout() * (int) Constants.MILLIS_PER_SECOND;
     }
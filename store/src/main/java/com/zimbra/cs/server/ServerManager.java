@@ -84,7 +84,7 @@ public final class ServerManager {
 
     private Pop3Server startPop3Server(boolean ssl) throws ServiceException {
         Pop3Config config = new Pop3Config(ssl);
-        Pop3Server server = NIO_ENABLED || LC.nio_pop3_enabled.booleanValue() ?
+        Pop3Server server = !config.isVirtualThreadsEnabled() && (NIO_ENABLED || LC.nio_pop3_enabled.booleanValue()) ?
             new NioPop3Server(config, Metrics.METER_REGISTRY) : new TcpPop3Server(config, Metrics.METER_REGISTRY);
         server.start();
         return server;
@@ -92,7 +92,7 @@ public final class ServerManager {
 
     private ImapServer startImapServer(boolean ssl) throws ServiceException {
         ImapConfig config = new ImapConfig(ssl);
-        ImapServer server = NIO_ENABLED || LC.nio_imap_enabled.booleanValue() ?
+        ImapServer server = !config.isVirtualThreadsEnabled() && (NIO_ENABLED || LC.nio_imap_enabled.booleanValue()) ?
             new NioImapServer(config, Metrics.METER_REGISTRY) : new TcpImapServer(config, Metrics.METER_REGISTRY);
         server.start();
         return server;
@@ -12,10 +12,12 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.util.Arrays;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -28,12 +30,19 @@ import com.zimbra.cs.account.Provisioning;
 
 /**
  * Base class for TCP servers using thread per connection model.
+ * <p>
+ * Handlers run either on a bounded pool of platform threads or, when {@link ServerConfig#isVirtualThreadsEnabled()}
+ * is set, on one virtual thread per connection. Virtual threads make mostly idle connections (e.g. IMAP IDLE) cheap,
+ * so the number of concurrent handlers is then bounded by a permit count instead of by the pool size.
  */
 public abstract class TcpServer implements Runnable, Server {
     private Log log;
-    private ThreadPoolExecutor pooledExecutor;
+    private ExecutorService executor;
+    private ThreadPoolExecutor pooledExecutor; // null in virtual thread mode
+    private Semaphore virtualThreadPermits; // null in platform thread mode
+    private int maxHandlers;
     private ServerSocket serverSocket;
-    private List<ProtocolHandler> activeHandlers;
+    private Set<ProtocolHandler> activeHandlers;
     private boolean sslEnabled;
     private final ServerConfig config;
     private volatile boolean shutdownRequested;
@@ -58,16 +67,23 @@ public abstract class TcpServer implements Runnable, Server {
             maxThreads = 10;
         }
 
-        // Core pool size is 1, to limit the number of idle threads in thread dumps.
-        // Idle threads are aged out of the pool after X minutes.
-        int keepAlive = config != null ? config.getThreadKeepAliveTime() : 2 * 60;
-        pooledExecutor = new ThreadPoolExecutor(1, maxThreads, keepAlive, TimeUnit.SECONDS,
-            new SynchronousQueue<>(), new TcpThreadFactory(getName(), false, Thread.NORM_PRIORITY));
+        if (config != null && config.isVirtualThreadsEnabled()) {
+            maxHandlers = Math.max(config.getMaxConnections(), maxThreads);
+            virtualThreadPermits = new Semaphore(maxHandlers);
+            executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(getName() + "-", 1).factory());
+        } else {
+            // Core pool size is 1, to limit the number of idle threads in thread dumps.
+            // Idle threads are aged out of the pool after X minutes.
+            int keepAlive = config != null ? config.getThreadKeepAliveTime() : 2 * 60;
+            maxHandlers = maxThreads;
+            pooledExecutor = new ThreadPoolExecutor(1, maxThreads, keepAlive, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new TcpThreadFactory(getName(), false, Thread.NORM_PRIORITY));
+            executor = pooledExecutor;
+        }
 
-        // TODO a linked list is probably the wrong datastructure here
         // TODO write tests with multiple concurrent client
         // TODO write some tests for shutdown/startup
-        activeHandlers = new LinkedList<>();
+        activeHandlers = ConcurrentHashMap.newKeySet();
     }
 
     @Override
@@ -94,39 +110,67 @@ public abstract class TcpServer implements Runnable, Server {
     }
 
     public void addActiveHandler(ProtocolHandler handler) {
-        synchronized (activeHandlers) {
-            activeHandlers.add(handler);
-        }
+        activeHandlers.add(handler);
     }
 
     public void removeActiveHandler(ProtocolHandler handler) {
-        synchronized (activeHandlers) {
-            activeHandlers.remove(handler);
-        }
+        activeHandlers.remove(handler);
     }
 
     protected int numActiveHandlers() {
-        synchronized (activeHandlers) {
-            return activeHandlers.size();
-        }
+        return activeHandlers.size();
     }
 
     public int numThreads() {
+        if (virtualThreadPermits != null) {
+            return maxHandlers - virtualThreadPermits.availablePermits();
+        }
         return pooledExecutor.getPoolSize();
     }
 
+    public boolean isVirtualThreadsEnabled() {
+        return virtualThreadPermits != null;
+    }
+
+    private int numBusyThreads() {
+        if (virtualThreadPermits != null) {
+            return numThreads();
+        }
+        return pooledExecutor.getActiveCount();
+    }
+
     private void shutdownActiveHandlers(boolean graceful) {
-        synchronized (activeHandlers) {
-            for (ProtocolHandler handler : activeHandlers) {
-                if (graceful) {
-                    handler.gracefulShutdown("graceful shutdown requested");
-                } else {
-                    handler.hardShutdown("hard shutdown requested");
-                }
+        for (ProtocolHandler handler : activeHandlers) {
+            if (graceful) {
+                handler.gracefulShutdown("graceful shutdown requested");
+            } else {
+                handler.hardShutdown("hard shutdown requested");
             }
         }
     }
 
+    private void execute(ProtocolHandler handler) {
+        if (virtualThreadPermits == null) {
+            pooledExecutor.execute(handler);
+            return;
+        }
+        if (!virtualThreadPermits.tryAcquire()) {
+            throw new RejectedExecutionException(maxHandlers + " handlers already running");
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    handler.run();
+                } finally {
+                    virtualThreadPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            virtualThreadPermits.release();
+            throw e;
+        }
+    }
+
     @Override
     public void start() {
         Thread thread = new Thread(this);
@@ -151,19 +195,19 @@ public abstract class TcpServer implements Runnable, Server {
             log.warn(getName() + " error closing server socket", ioe);
         }
 
-        pooledExecutor.shutdown();
+        executor.shutdown();
 
         shutdownActiveHandlers(true);
 
         if (numActiveHandlers() == 0) {
             log.info(getName() + " shutting down idle thread pool");
-            pooledExecutor.shutdownNow();
+            executor.shutdownNow();
             return;
         }
 
         log.info(getName() + " waiting " + forceShutdownAfterSeconds + " seconds for thread pool shutdown");
         try {
-            pooledExecutor.awaitTermination(forceShutdownAfterSeconds, TimeUnit.SECONDS);
+            executor.awaitTermination(forceShutdownAfterSeconds, TimeUnit.SECONDS);
         } catch (InterruptedException ie) {
             log.warn(getName() + " interrupted while waiting for graceful shutdown", ie);
         }
@@ -182,8 +226,12 @@ public abstract class TcpServer implements Runnable, Server {
     public void run() {
         Thread.currentThread().setName(getName());
 
-        log.info("Starting accept loop: %d core threads, %d max threads.",
-            pooledExecutor.getCorePoolSize(), pooledExecutor.getMaximumPoolSize());
+        if (virtualThreadPermits != null) {
+            log.info("Starting accept loop: virtual threads, %d max handlers.", maxHandlers);
+        } else {
+            log.info("Starting accept loop: %d core threads, %d max threads.",
+                pooledExecutor.getCorePoolSize(), pooledExecutor.getMaximumPoolSize());
+        }
 
         while (!shutdownRequested) {
             try {
@@ -192,7 +240,7 @@ public abstract class TcpServer implements Runnable, Server {
                 ProtocolHandler handler = newProtocolHandler();
                 handler.setConnection(connection);
                 try {
-                    pooledExecutor.execute(handler);
+                    execute(handler);
                 } catch (RejectedExecutionException e) {
                     log.error("cannot handle connection; thread pool exhausted", e);
                     // send a "server busy" message to the client before dropping connection
@@ -236,8 +284,8 @@ public abstract class TcpServer implements Runnable, Server {
         if (log.isWarnEnabled()) {
             int warnPercent = LC.thread_pool_warn_percent.intValue();
             // Add 1 because the thread for this connection is not active yet.
-            int active = pooledExecutor.getActiveCount() + 1;
-            int max = pooledExecutor.getMaximumPoolSize();
+            int active = numBusyThreads() + 1;
+            int max = maxHandlers;
             int utilization = active * 100 / max;
             if (utilization >= warnPercent) {
                 log.warn("Thread pool is %d%% utilized.  %d out of %d threads in use.",
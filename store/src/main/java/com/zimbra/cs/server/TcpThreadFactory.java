@@ -6,9 +6,10 @@
 package com.zimbra.cs.server;
 
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TcpThreadFactory implements ThreadFactory {
-    private int count = 0;
+    private final AtomicInteger count = new AtomicInteger();
     private final String prefix;
     private final boolean isDaemon;
     private final int priority;
@@ -25,10 +26,7 @@ public class TcpThreadFactory implements ThreadFactory {
 
     @Override
     public Thread newThread(Runnable runnable) {
-        int n;
-        synchronized (this) {
-            n = ++count;
-        }
+        int n = count.incrementAndGet();
         StringBuffer sb = new StringBuffer(prefix);
         sb.append('-').append(n);
         Thread t = new Thread(runnable, sb.toString());
@@ -87,6 +87,11 @@ public class GetInfo extends AccountDocumentHandler  {
         }
     }
 
+    @Override
+    public boolean isBatchParallelSafe() {
+        return true;
+    }
+
     @Override
     public Element handle(Element request, Map<String, Object> context) throws ServiceException {
         ZimbraSoapContext zsc = getZimbraSoapContext(context);
@@ -24,6 +24,11 @@ import java.util.Set;
  */
 public class GetPrefs extends AccountDocumentHandler  {
 
+	@Override
+	public boolean isBatchParallelSafe() {
+		return true;
+	}
+
 	public Element handle(Element request, Map<String, Object> context) throws ServiceException {
         ZimbraSoapContext zsc = getZimbraSoapContext(context);
         Account account = getRequestedAccount(zsc);
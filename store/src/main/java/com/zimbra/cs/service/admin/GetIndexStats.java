@@ -76,6 +76,12 @@ public class GetIndexStats extends AdminDocumentHandler {
         Element statsElem = response.addElement(AdminConstants.E_STATS);
         statsElem.addAttribute(AdminConstants.A_MAX_DOCS, stats.getMaxDocs());
         statsElem.addAttribute(AdminConstants.A_DELETED_DOCS, stats.getNumDeletedDocs());
+        if (stats.hasIOStats()) {
+            statsElem.addAttribute(AdminConstants.A_BYTES_READ, stats.getBytesRead());
+            statsElem.addAttribute(AdminConstants.A_BYTES_WRITTEN, stats.getBytesWritten());
+            statsElem.addAttribute(AdminConstants.A_FILES_OPENED, stats.getFilesOpened());
+            statsElem.addAttribute(AdminConstants.A_MAPPED, stats.isMapped());
+        }
         return response;
     }
 
@@ -56,7 +56,7 @@ public class XmlFormatter extends Formatter {
                 ToXML.encodeItem(elt, ifmt, context.opContext, item, ToXML.NOTIFY_FIELDS);
             }
 
-            context.resp.getOutputStream().write(elt.toUTF8());
+            elt.output(context.resp.getOutputStream());
         } finally {
             if (iterator instanceof QueryResultIterator)
                 ((QueryResultIterator) iterator).finished();
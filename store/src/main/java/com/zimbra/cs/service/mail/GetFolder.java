@@ -51,6 +51,11 @@ public class GetFolder extends MailDocumentHandler {
 
     static final String DEFAULT_FOLDER_ID = Integer.toString(Mailbox.ID_FOLDER_USER_ROOT);
 
+    @Override
+    public boolean isBatchParallelSafe() {
+        return true;
+    }
+
     @Override
     public Element handle(Element request, Map<String, Object> context) throws ServiceException {
         ZimbraSoapContext zsc = getZimbraSoapContext(context);
@@ -26,6 +26,11 @@ import com.zimbra.soap.ZimbraSoapContext;
  */
 public class GetTag extends MailDocumentHandler  {
 
+    @Override
+    public boolean isBatchParallelSafe() {
+        return true;
+    }
+
     public Element handle(Element request, Map<String, Object> context) throws ServiceException {
         ZimbraSoapContext zsc = getZimbraSoapContext(context);
         Mailbox mbox = getRequestedMailbox(zsc);
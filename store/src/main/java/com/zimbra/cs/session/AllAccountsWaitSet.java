@@ -38,7 +38,11 @@ public final class AllAccountsWaitSet extends WaitSetBase {
     private static volatile Set<MailItem.Type> interestTypes = EnumSet.noneOf(MailItem.Type.class);
 
     /** If non-null, then we're buffering the commits during creation */
-    private List<Pair<String/*AccountId*/, String/*CommitId*/>> mBufferedCommits;
+    private volatile List<Pair<String/*AccountId*/, String/*CommitId*/>> mBufferedCommits;
+
+    /** Commits signalled by the committing threads, not yet handed to the waitset */
+    private final WaitSetSignalQueue mSignals = new WaitSetSignalQueue();
+    private final WaitSetSignalQueue.Sink mSignalSink = this::onSignalled;
 
     private String mCbSeqNo; // seqno returned by the most recent callback
     private String mCurrentSeqNo;
@@ -137,17 +141,33 @@ public final class AllAccountsWaitSet extends WaitSetBase {
         return new ArrayList<>();
     }
 
-    private synchronized void onMailboxChangeCommitted(String commitIdStr, String accountId,
+    /**
+     * Called on the committing thread. Only the thread that drains the signal queue takes the
+     * waitset lock, so concurrent commits in different mailboxes don't serialize on it.
+     */
+    private void onMailboxChangeCommitted(String commitIdStr, String accountId,
             Set<MailItem.Type> changedTypes) {
-        if (!Collections.disjoint(changedTypes, defaultInterest)) {
-            if (mBufferedCommits != null) {
-                mBufferedCommits.add(new Pair<>(accountId, commitIdStr));
-            } else {
-                mNextSeqNo = commitIdStr;
-                mCurrentSignalledAccounts.add(accountId);
-                trySendData();
+        if (Collections.disjoint(changedTypes, defaultInterest)) {
+            return;
+        }
+        if (mBufferedCommits != null) {
+            synchronized(this) {
+                if (mBufferedCommits != null) {
+                    mBufferedCommits.add(new Pair<>(accountId, commitIdStr));
+                    return;
+                }
             }
         }
+        if (!mSignals.offer(accountId, commitIdStr)) {
+            ZimbraLog.session.trace("AllAccountsWaitSet coalesced signal for %s", accountId);
+        }
+        mSignals.drain(mSignalSink);
+    }
+
+    private synchronized void onSignalled(String seqNo, List<String> accountIds) {
+        mNextSeqNo = seqNo;
+        mCurrentSignalledAccounts.addAll(accountIds);
+        trySendData();
     }
 
     /**
@@ -245,6 +265,7 @@ public final class AllAccountsWaitSet extends WaitSetBase {
             }
             interestTypes = types;
         }
+        mSignals.clear();
         mCurrentSignalledSessions.clear();
         mSentSignalledSessions.clear();
         mSentSignalledAccounts.clear();
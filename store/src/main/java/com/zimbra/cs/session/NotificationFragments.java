@@ -0,0 +1,157 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.session;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.zimbra.common.localconfig.LC;
+import com.zimbra.common.service.ServiceException;
+import com.zimbra.common.soap.Element;
+import com.zimbra.cs.mailbox.MailItem;
+import com.zimbra.cs.mailbox.Mountpoint;
+import com.zimbra.cs.mailbox.OperationContext;
+import com.zimbra.cs.service.mail.ToXML;
+import com.zimbra.cs.service.util.ItemIdFormatter;
+import com.zimbra.cs.stats.ZimbraPerf;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Rendered &lt;created> and &lt;modified> notification entries, shared by all the sessions that
+ * notify the same mailbox change.
+ *
+ * <p>The items in the notifications a {@link com.zimbra.cs.mailbox.Mailbox} hands to its sessions
+ * are snapshots taken when the change was committed, and every session listening on the mailbox
+ * gets the same snapshot instances. An item snapshot, the fields to serialize and the way the
+ * viewer wants it serialized therefore fully determine the rendered element: it is rendered by the
+ * first session that sends it, and cloned by the others. Entries are keyed by snapshot identity and
+ * only weakly referenced, they go away once no session still queues the snapshot.
+ */
+final class NotificationFragments {
+
+  private static final Cache<MailItem, ConcurrentMap<Key, Element>> FRAGMENTS =
+      CacheBuilder.newBuilder()
+          .weakKeys()
+          .maximumSize(Math.max(0, LC.zimbra_session_notification_fragment_cache_size.intValue()))
+          .build();
+
+  private NotificationFragments() {}
+
+  /**
+   * Identifies how a session serializes notifications. Sessions with equal viewers get identical
+   * elements from {@link ToXML#encodeItem} for the same item snapshot.
+   */
+  static final class Viewer {
+    final String authAccountId;
+    final boolean unqualifiedIds;
+    final boolean asAdmin;
+    final Class<? extends Element> encoding;
+
+    Viewer(
+        String authAccountId,
+        boolean unqualifiedIds,
+        boolean asAdmin,
+        Class<? extends Element> encoding) {
+      this.authAccountId = authAccountId;
+      this.unqualifiedIds = unqualifiedIds;
+      this.asAdmin = asAdmin;
+      this.encoding = encoding;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Viewer)) {
+        return false;
+      }
+      Viewer other = (Viewer) o;
+      return unqualifiedIds == other.unqualifiedIds
+          && asAdmin == other.asAdmin
+          && authAccountId.equals(other.authAccountId)
+          && encoding == other.encoding;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(authAccountId, unqualifiedIds, asAdmin, encoding);
+    }
+  }
+
+  private static final class Key {
+    final Viewer viewer;
+    final int fields;
+
+    Key(Viewer viewer, int fields) {
+      this.viewer = viewer;
+      this.fields = fields;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return fields == other.fields && viewer.equals(other.viewer);
+    }
+
+    @Override
+    public int hashCode() {
+      return viewer.hashCode() * 31 + fields;
+    }
+  }
+
+  /**
+   * Returns whether the element rendered for {@code item} can be shared with the other sessions of
+   * the viewer. Only items of the viewer's own mailbox are, except mountpoints: the sessions
+   * complete new mountpoints with contents that depend on the session.
+   */
+  static boolean isShared(Element parent, Viewer viewer, MailItem item) {
+    return viewer != null
+        && viewer.encoding.equals(parent.getClass())
+        && !(item instanceof Mountpoint)
+        && viewer.authAccountId.equals(item.getMailbox().getAccountId());
+  }
+
+  /**
+   * Adds the serialized {@code item} to {@code parent}, reusing the element rendered for another
+   * session if there is one.
+   *
+   * @return the added element, or null if the item isn't serialized
+   */
+  static Element encodeItem(
+      Element parent,
+      Viewer viewer,
+      ItemIdFormatter ifmt,
+      OperationContext octxt,
+      MailItem item,
+      int fields)
+      throws ServiceException {
+    if (!isShared(parent, viewer, item)) {
+      return ToXML.encodeItem(parent, ifmt, octxt, item, fields);
+    }
+    ConcurrentMap<Key, Element> rendered = FRAGMENTS.getIfPresent(item);
+    Key key = new Key(viewer, fields);
+    Element cached = rendered == null ? null : rendered.get(key);
+    if (cached != null) {
+      ZimbraPerf.COUNTER_SOAP_NOTIFY_FRAGMENT.increment(100);
+      return parent.addNonUniqueElement(cached.clone());
+    }
+    ZimbraPerf.COUNTER_SOAP_NOTIFY_FRAGMENT.increment(0);
+    Element elt = ToXML.encodeItem(parent, ifmt, octxt, item, fields);
+    if (elt != null) {
+      if (rendered == null) {
+        rendered = FRAGMENTS.asMap().computeIfAbsent(item, k -> new ConcurrentHashMap<>(2));
+      }
+      // the added element may still be modified by the caller, keep a copy of it
+      rendered.putIfAbsent(key, elt.clone());
+    }
+    return elt;
+  }
+}
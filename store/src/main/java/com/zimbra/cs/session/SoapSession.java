@@ -49,6 +49,7 @@ import com.zimbra.cs.service.util.ItemId;
 import com.zimbra.cs.service.util.ItemIdFormatter;
 import com.zimbra.cs.session.PendingModifications.Change;
 import com.zimbra.cs.session.PendingModifications.ModificationKey;
+import com.zimbra.cs.stats.ZimbraPerf;
 import com.zimbra.cs.util.BuildInfo;
 import com.zimbra.cs.util.IOUtil;
 import com.zimbra.cs.util.Zimbra;
@@ -59,9 +60,11 @@ import com.zimbra.soap.ZimbraSoapContext;
 import com.zimbra.soap.mail.type.PendingFolderModifications;
 import com.zimbra.soap.type.AccountWithModifications;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -364,6 +367,8 @@ public class SoapSession extends Session {
     List<Element> created;
     List<Element> modified;
     List<Element> activities;
+    /** position in {@link #modified} of the modify of each item, built lazily */
+    private Map<String, Integer> modifiedIndex;
 
     public RemoteNotifications(Element eNotify) {
       if (eNotify == null) return;
@@ -378,26 +383,84 @@ public class SoapSession extends Session {
       if (activities.isEmpty()) activities = null;
     }
 
+    /**
+     * Merges later notifications into these. A delete wipes the creates and modifies of the same
+     * item, and a modify replaces the previous modify of the item when it updates at least the same
+     * attributes. The lists of {@code rns} are never shared, as the same notifications may be queued
+     * by several sessions.
+     */
     RemoteNotifications add(RemoteNotifications rns) {
       if (rns == null) return this;
 
-      // FIXME: need to switch to the "delete I wipes create/modify I" model
-      if (deleted == null) deleted = rns.deleted;
-      else if (rns.deleted != null) deleted = deleted + "," + rns.deleted;
+      if (rns.deleted != null && !rns.deleted.isEmpty()) {
+        Set<String> ids = new HashSet<>(Arrays.asList(rns.deleted.split(",")));
+        removeItems(created, ids);
+        if (removeItems(modified, ids)) {
+          modifiedIndex = null;
+        }
+        deleted = deleted == null ? rns.deleted : deleted + "," + rns.deleted;
+      }
 
-      if (created == null) created = rns.created;
-      else if (rns.created != null) created.addAll(rns.created);
+      if (rns.created != null) {
+        if (created == null) created = new ArrayList<>(rns.created.size());
+        created.addAll(rns.created);
+      }
 
-      if (modified == null) modified = rns.modified;
-      else if (rns.modified != null) modified.addAll(rns.modified);
+      if (rns.modified != null) {
+        if (modified == null) modified = new ArrayList<>(rns.modified.size());
+        for (Element elt : rns.modified) {
+          addModified(elt);
+        }
+      }
 
-      if (activities == null) activities = rns.activities;
-      else if (rns.activities != null) activities.addAll(rns.activities);
+      if (rns.activities != null) {
+        if (activities == null) activities = new ArrayList<>(rns.activities.size());
+        activities.addAll(rns.activities);
+      }
 
-      count = (count >= 0 && rns.count >= 0 ? count + rns.count : -1);
+      count = -1;
       return this;
     }
 
+    private static boolean removeItems(List<Element> elts, Set<String> ids) {
+      return elts != null && elts.removeIf(elt -> ids.contains(elt.getAttribute(A_ID, null)));
+    }
+
+    private void addModified(Element elt) {
+      String id = elt.getAttribute(A_ID, null);
+      if (id == null || elt.hasChildren()) {
+        modified.add(elt);
+        return;
+      }
+      if (modifiedIndex == null) {
+        modifiedIndex = new HashMap<>();
+        for (int i = 0; i < modified.size(); i++) {
+          Element existing = modified.get(i);
+          if (existing.getAttribute(A_ID, null) != null && !existing.hasChildren()) {
+            modifiedIndex.put(existing.getName() + ':' + existing.getAttribute(A_ID, null), i);
+          }
+        }
+      }
+      String key = elt.getName() + ':' + id;
+      Integer pos = modifiedIndex.get(key);
+      if (pos != null && overrides(elt, modified.get(pos))) {
+        modified.set(pos, elt);
+      } else {
+        modifiedIndex.put(key, modified.size());
+        modified.add(elt);
+      }
+    }
+
+    /** Returns whether a later modify carries all the attributes of an earlier one. */
+    private static boolean overrides(Element later, Element earlier) {
+      for (Element.Attribute attr : earlier.listAttributes()) {
+        if (later.getAttribute(attr.getKey(), null) == null) {
+          return false;
+        }
+      }
+      return true;
+    }
+
     int getScaledNotificationCount() {
       if (count == -1) {
         count = 0;
@@ -472,8 +535,8 @@ public class SoapSession extends Session {
     }
 
     void addNotification(RemoteNotifications rns) {
-      if (mRemoteChanges == null) mRemoteChanges = rns;
-      else mRemoteChanges.add(rns);
+      if (mRemoteChanges == null) mRemoteChanges = new RemoteNotifications(null);
+      mRemoteChanges.add(rns);
     }
 
     void clearMailboxChanges() {
@@ -1480,6 +1543,11 @@ public class SoapSession extends Session {
         ZimbraLog.session.warn(
             "clearing abnormally long notification change list due to misbehaving client");
         sentChanges.clear();
+        // the dropped changes are replaced by a <refresh>
+        int force = changes.getSequence();
+        ZimbraLog.session.debug(
+            "putNotifications: changing mForceRefresh: %d -> %d", forceRefresh, force);
+        forceRefresh = force;
       }
 
       if (changes.hasNotifications() || requiresRefresh(lastSequence)) {
@@ -1500,12 +1568,14 @@ public class SoapSession extends Session {
     }
 
     // send all the old changes
+    long start = ZimbraPerf.STOPWATCH_SOAP_NOTIFY.start();
     QueuedNotifications last = notifications.getLast();
     for (QueuedNotifications ntfn : notifications) {
       if (ntfn.hasNotifications() || ntfn == last) {
         putQueuedNotifications(mbox, ntfn, ctxt, zsc);
       }
     }
+    ZimbraPerf.STOPWATCH_SOAP_NOTIFY.stop(start);
 
     return ctxt;
   }
@@ -1524,6 +1594,23 @@ public class SoapSession extends Session {
     return parent.getClass().equals(newChild.getClass());
   }
 
+  /**
+   * Returns how this session serializes the items of its own mailbox, to share the rendered
+   * elements with the other sessions on the mailbox. Returns null if the rendering may depend on
+   * anything else than the authenticated account.
+   */
+  private NotificationFragments.Viewer getNotificationViewer(
+      Mailbox mbox, ZimbraSoapContext zsc, Element parent, boolean unqualifiedIds) {
+    String accountId = mbox.getAccountId();
+    if (!accountId.equals(mAuthenticatedAccountId)
+        || !accountId.equals(zsc.getAuthtokenAccountId())
+        || !accountId.equals(zsc.getRequestedAccountId())) {
+      return null;
+    }
+    return new NotificationFragments.Viewer(
+        accountId, unqualifiedIds, zsc.isUsingAdminPrivileges(), parent.getClass());
+  }
+
   /**
    * Write a single instance of the PendingLocalModifications structure into the passed-in <ctxt>
    * block.
@@ -1579,13 +1666,17 @@ public class SoapSession extends Session {
     if (hasLocalCreates || hasRemoteCreates) {
       Element eCreated = eNotify.addUniqueElement(ZimbraNamespace.E_CREATED);
       if (hasLocalCreates) {
+        NotificationFragments.Viewer viewer =
+            getNotificationViewer(mbox, zsc, eCreated, false);
         for (BaseItemInfo item : pms.created.values()) {
           if (item instanceof MailItem) {
             MailItem mi = (MailItem) item;
             ItemIdFormatter ifmt =
                 new ItemIdFormatter(mAuthenticatedAccountId, mi.getMailbox(), false);
             try {
-              Element elem = ToXML.encodeItem(eCreated, ifmt, octxt, mi, ToXML.NOTIFY_FIELDS);
+              Element elem =
+                  NotificationFragments.encodeItem(
+                      eCreated, viewer, ifmt, octxt, mi, ToXML.NOTIFY_FIELDS);
               // special-case notifications for new mountpoints in the authenticated user's mailbox
               if (item instanceof Mountpoint && mbox == mi.getMailbox()) {
                 Map<ItemId, Pair<Boolean, Element>> mountpoints =
@@ -1624,12 +1715,15 @@ public class SoapSession extends Session {
     if (hasLocalModifies || hasRemoteModifies) {
       Element eModified = eNotify.addUniqueElement(ZimbraNamespace.E_MODIFIED);
       if (hasLocalModifies) {
+        NotificationFragments.Viewer viewer =
+            getNotificationViewer(mbox, zsc, eModified, zsc.wantsUnqualifiedIds());
         for (Change chg : pms.modified.values()) {
           if (chg.why != 0 && chg.what instanceof MailItem) {
             MailItem item = (MailItem) chg.what;
 
             try {
-              Element elt = ToXML.encodeItem(eModified, ifmt, octxt, item, chg.why);
+              Element elt =
+                  NotificationFragments.encodeItem(eModified, viewer, ifmt, octxt, item, chg.why);
               if (elt == null) {
                 ModificationKey mkey = new ModificationKey(item);
                 addDeletedNotification(mkey, deletedIds);
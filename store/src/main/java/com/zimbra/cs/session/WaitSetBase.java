@@ -29,7 +29,7 @@ public abstract class WaitSetBase implements IWaitSet {
     protected final String mOwnerAccountId;
     protected final Set<MailItem.Type> defaultInterest;
 
-    protected long mLastAccessedTime = -1;
+    protected volatile long mLastAccessedTime = -1;
     protected WaitSetCallback mCb = null;
 
     /**
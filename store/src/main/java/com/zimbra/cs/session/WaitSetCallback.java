@@ -12,9 +12,9 @@ import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 
 import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import com.zimbra.common.util.ZimbraLog;
 import com.zimbra.cs.servlet.continuation.ResumeContinuationListener;
 
@@ -50,8 +50,10 @@ public class WaitSetCallback {
                 }
             }
 
-            this.signalledAccounts = (signalledAccounts == null) ? Sets.newHashSetWithExpectedSize(0)
-                    : Sets.newCopyOnWriteArraySet(signalledAccounts);
+            // an all-accounts waitset can signal a large share of the server's accounts at once,
+            // which a copy-on-write set would copy in quadratic time
+            this.signalledAccounts = (signalledAccounts == null) ? ImmutableSet.of()
+                    : ImmutableSet.copyOf(signalledAccounts);
             if(pms != null) {
                 this.pendingModifications = Maps.newHashMapWithExpectedSize(pms.size());
                 this.pendingModifications.putAll(pms);
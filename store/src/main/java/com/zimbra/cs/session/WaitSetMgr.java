@@ -6,12 +6,12 @@
 package com.zimbra.cs.session;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.zimbra.common.account.Key;
 import com.zimbra.common.localconfig.LC;
@@ -53,9 +53,14 @@ public class WaitSetMgr {
         }
     };
 
-    private static final HashMap<String, WaitSetBase> sWaitSets = new HashMap<>();
+    /*
+     * Neither map is guarded by a global lock: lookups never block, and the two maps are updated
+     * with per-key atomic operations. sWaitSets is authoritative, a waitset is registered once it is
+     * in there and unregistered once it was removed from there.
+     */
+    private static final ConcurrentMap<String, WaitSetBase> sWaitSets = new ConcurrentHashMap<>();
 
-    private static final HashMap<String /*AccountId*/, List<String /*WaitSetId*/>> sWaitSetsByAccountId = new HashMap<>();
+    private static final ConcurrentMap<String /*AccountId*/, Set<String /*WaitSetId*/>> sWaitSetsByAccountId = new ConcurrentHashMap<>();
 
     private static final int WAITSET_SWEEP_DELAY = 1000 * 60; // once every minute
 
@@ -102,39 +107,83 @@ public class WaitSetMgr {
             ws = sws;
         }
 
-        synchronized(sWaitSets) {
-            if (!allowMultiple) {
-                List<String> list = sWaitSetsByAccountId.get(ownerAccountId);
-                if (list != null) {
-                    if (list.size() >= MAX_WAITSETS_PER_NONADMIN_ACCOUNT) {
-                        // find the least-recently-used
-                        long oldestTime = Long.MAX_VALUE;
-                        String oldestId = null;
-                        for (String wsid : list) {
-                            WaitSetBase existingWs = lookupInternal(wsid);
-                            long time = existingWs.getLastAccessedTime();
-                            if (time < oldestTime) {
-                                oldestTime = time;
-                                oldestId = wsid;
-                            }
-                        }
-                        destroy(null, ownerAccountId, oldestId);
+        // bookkeeping: update access time, add to static wait set maps
+        ws.setLastAccessedTime(System.currentTimeMillis());
+        register(id, ws);
+
+        if (!allowMultiple) {
+            // evict after registering, so that concurrent creates for the same account can't
+            // both slip under the limit
+            Set<String> ids;
+            while ((ids = sWaitSetsByAccountId.get(ownerAccountId)) != null && ids.size() > MAX_WAITSETS_PER_NONADMIN_ACCOUNT) {
+                // find the least-recently-used
+                long oldestTime = Long.MAX_VALUE;
+                WaitSetBase oldest = null;
+                for (String wsid : ids) {
+                    WaitSetBase existingWs = sWaitSets.get(wsid);
+                    if (existingWs != null && existingWs != ws && existingWs.getLastAccessedTime() < oldestTime) {
+                        oldestTime = existingWs.getLastAccessedTime();
+                        oldest = existingWs;
                     }
                 }
+                if (oldest == null) {
+                    break;
+                }
+                destroyInternal(oldest);
             }
+        }
 
-            // bookkeeping: update access time, add to static wait set maps
-            ws.setLastAccessedTime(System.currentTimeMillis());
-            sWaitSets.put(id, ws);
-            List<String> list = sWaitSetsByAccountId.get(ownerAccountId);
-            if (list == null) {
-                list = new ArrayList<>();
-                sWaitSetsByAccountId.put(ownerAccountId, list);
+        // return!
+        return new Pair<>(id, errors);
+    }
+
+    private static void register(String id, WaitSetBase ws) {
+        sWaitSets.put(id, ws);
+        indexByAccount(id, ws);
+    }
+
+    private static void indexByAccount(String id, WaitSetBase ws) {
+        sWaitSetsByAccountId.compute(ws.getOwnerAccountId(), (acctId, ids) -> {
+            if (ids == null) {
+                ids = ConcurrentHashMap.newKeySet();
             }
-            list.add(id);
+            ids.add(id);
+            return ids;
+        });
+    }
+
+    /**
+     * Unregisters and destroys a waitset.
+     *
+     * @return false if it was already unregistered by another thread
+     */
+    private static boolean destroyInternal(WaitSetBase ws) {
+        if (!unregister(ws)) {
+            return false;
+        }
+        cleanup(ws);
+        return true;
+    }
 
-            // return!
-            return new Pair<>(id, errors);
+    private static boolean unregister(WaitSetBase ws) {
+        if (!sWaitSets.remove(ws.getWaitSetId(), ws)) {
+            return false;
+        }
+        sWaitSetsByAccountId.computeIfPresent(ws.getOwnerAccountId(), (acctId, ids) -> {
+            ids.remove(ws.getWaitSetId());
+            return ids.isEmpty() ? null : ids;
+        });
+        return true;
+    }
+
+    private static void cleanup(WaitSetBase ws) {
+        assert(!Thread.holdsLock(ws));
+        Map<String, WaitSetAccount> toCleanup = ws.destroy();
+        if (toCleanup != null) {
+            assert(!Thread.holdsLock(ws));
+            for (WaitSetAccount wsa: toCleanup.values()) {
+                wsa.cleanupSession();
+            }
         }
     }
 
@@ -148,40 +197,22 @@ public class WaitSetMgr {
      * @throws ServiceException
      */
     public static void destroy(ZimbraSoapContext zsc, String requestingAcctId, String id) throws ServiceException {
-        synchronized(sWaitSets) {
-            WaitSetBase ws = lookupInternal(id);
-            if (ws == null) {
-                throw MailServiceException.NO_SUCH_WAITSET(id);
-            }
-            assert(!Thread.holdsLock(ws));
-
-            // skip permission checking if zsc is null
-            if (zsc != null) {
-                if (id.startsWith(WaitSetMgr.ALL_ACCOUNTS_ID_PREFIX)) {
-                    checkRightForAllAccounts(zsc);
-                } else {
-                    checkRightForOwnerAccount(ws, requestingAcctId);
-                }
-            }
+        WaitSetBase ws = lookupInternal(id);
+        if (ws == null) {
+            throw MailServiceException.NO_SUCH_WAITSET(id);
+        }
 
-            //remove from the by-id map
-            List<String> list = sWaitSetsByAccountId.get(ws.getOwnerAccountId());
-            assert(list != null);
-            list.remove(id);
-            if (list.size() == 0) {
-                sWaitSetsByAccountId.remove(ws.getOwnerAccountId());
+        // skip permission checking if zsc is null
+        if (zsc != null) {
+            if (id.startsWith(WaitSetMgr.ALL_ACCOUNTS_ID_PREFIX)) {
+                checkRightForAllAccounts(zsc);
+            } else {
+                checkRightForOwnerAccount(ws, requestingAcctId);
             }
+        }
 
-            // remove the wait set
-            sWaitSets.remove(id);
-
-            Map<String, WaitSetAccount> toCleanup = ws.destroy();
-            if (toCleanup != null) {
-                assert(!Thread.holdsLock(ws));
-                for (WaitSetAccount wsa: toCleanup.values()) {
-                    wsa.cleanupSession();
-                }
-            }
+        if (!destroyInternal(ws)) {
+            throw MailServiceException.NO_SUCH_WAITSET(id);
         }
     }
 
@@ -207,31 +238,29 @@ public class WaitSetMgr {
      */
     public static IWaitSet lookupOrCreateForAllAccts(String ownerAccountId, String id,
             Set<MailItem.Type> defaultInterests, String lastKnownSeqNo) throws ServiceException {
-        synchronized(sWaitSets) {
-            if (!id.startsWith(ALL_ACCOUNTS_ID_PREFIX)) {
-                throw ServiceException.INVALID_REQUEST("Called WaitSetMgr.lookupOrCreate but wasn't an 'All-' waitset ID", null);
-            }
+        if (!id.startsWith(ALL_ACCOUNTS_ID_PREFIX)) {
+            throw ServiceException.INVALID_REQUEST("Called WaitSetMgr.lookupOrCreate but wasn't an 'All-' waitset ID", null);
+        }
 
-            IWaitSet toRet = lookup(id);
-            if (toRet == null) {
-                // oops, it's gone!  Try to re-create it given the last known sequence number
-                AllAccountsWaitSet ws = AllAccountsWaitSet.createWithSeqNo(ownerAccountId, id, defaultInterests, lastKnownSeqNo);
-                toRet = ws;
-                ws.setLastAccessedTime(System.currentTimeMillis());
-
-                // add the set to the two hashmaps
-                sWaitSets.put(id, ws);
-                List<String> list = sWaitSetsByAccountId.get(ownerAccountId);
-                if (list == null) {
-                    list = new ArrayList<>();
-                    sWaitSetsByAccountId.put(ownerAccountId, list);
-                }
-                list.add(id);
+        IWaitSet toRet = lookup(id);
+        if (toRet == null) {
+            // oops, it's gone!  Try to re-create it given the last known sequence number
+            AllAccountsWaitSet ws = AllAccountsWaitSet.createWithSeqNo(ownerAccountId, id, defaultInterests, lastKnownSeqNo);
+            ws.setLastAccessedTime(System.currentTimeMillis());
 
+            WaitSetBase existing = sWaitSets.putIfAbsent(id, ws);
+            if (existing == null) {
+                // add the set to the by-account map
+                indexByAccount(id, ws);
+                toRet = ws;
+            } else {
+                // re-created concurrently by another request, drop ours
+                ws.destroy();
+                toRet = existing;
             }
-            assert(toRet instanceof AllAccountsWaitSet);
-            return toRet;
         }
+        assert(toRet instanceof AllAccountsWaitSet);
+        return toRet;
     }
 
     public static void shutdown() {
@@ -244,25 +273,16 @@ public class WaitSetMgr {
     }
 
     public static List<IWaitSet> getAll() {
-        synchronized(sWaitSets) {
-            List<IWaitSet> toRet = new ArrayList<>(sWaitSets.size());
-            toRet.addAll(sWaitSets.values());
-            return toRet;
-        }
+        return new ArrayList<>(sWaitSets.values());
     }
 
 
     private static WaitSetBase lookupInternal(String id) {
-        synchronized(sWaitSets) {
-            WaitSetBase toRet = sWaitSets.get(id);
-            if (toRet != null) {
-                assert(!Thread.holdsLock(toRet));
-                synchronized(toRet) {
-                    toRet.setLastAccessedTime(System.currentTimeMillis());
-                }
-            }
-            return toRet;
+        WaitSetBase toRet = sWaitSets.get(id);
+        if (toRet != null) {
+            toRet.setLastAccessedTime(System.currentTimeMillis());
         }
+        return toRet;
     }
 
     /**
@@ -273,47 +293,28 @@ public class WaitSetMgr {
         int activeSessions = 0;
         int removed = 0;
         int withCallback = 0;
-        synchronized(sWaitSets) {
-            ZimbraLog.session.debug("active waitset timeout = %d ms", WAITSET_TIMEOUT);
-            long cutoffTime = System.currentTimeMillis() - WAITSET_TIMEOUT;
-
-            for (Iterator<WaitSetBase> iter = sWaitSets.values().iterator(); iter.hasNext();) {
-                WaitSetBase ws = iter.next();
-                assert(!Thread.holdsLock(ws)); // must never lock WS before sWaitSets or deadlock
-
-                Map<String, WaitSetAccount> toCleanup = null;
-
-                synchronized(ws) {
-                    // only timeout if no cb AND if not accessed for a timeout
-                    if (ws.getCb() == null && ws.getLastAccessedTime() < cutoffTime) {
-                        //remove from the by-id map
-                        List<String> list = sWaitSetsByAccountId.get(ws.getOwnerAccountId());
-                        assert(list != null);
-                        list.remove(ws.getWaitSetId());
-                        if (list.size() == 0) {
-                            sWaitSetsByAccountId.remove(ws.getOwnerAccountId());
-                        }
-
-                        // remove
-                        iter.remove();
-                        toCleanup = ws.destroy();
-                        removed++;
-                    } else {
-                        if (ws.getCb() != null) {
-                            withCallback++;
-                        }
-                        activeSets++;
-                        activeSessions+=ws.countSessions();
+        ZimbraLog.session.debug("active waitset timeout = %d ms", WAITSET_TIMEOUT);
+        long cutoffTime = System.currentTimeMillis() - WAITSET_TIMEOUT;
+
+        for (WaitSetBase ws : sWaitSets.values()) {
+            boolean expired;
+            synchronized(ws) {
+                // only timeout if no cb AND if not accessed for a timeout; unregister while holding
+                // the lock so that no callback can be attached in the meantime
+                expired = ws.getCb() == null && ws.getLastAccessedTime() < cutoffTime && unregister(ws);
+                if (!expired) {
+                    if (ws.getCb() != null) {
+                        withCallback++;
                     }
+                    activeSets++;
+                    activeSessions+=ws.countSessions();
                 }
+            }
 
-                // cleanup w/o WaitSet lock held
-                if (toCleanup != null) {
-                    assert(!Thread.holdsLock(ws));
-                    for (WaitSetAccount wsa : toCleanup.values()) {
-                        wsa.cleanupSession();
-                    }
-                }
+            // cleanup w/o WaitSet lock held
+            if (expired) {
+                cleanup(ws);
+                removed++;
             }
         }
         if (removed > 0) {
@@ -327,13 +328,11 @@ public class WaitSetMgr {
     }
 
     public static boolean isMonitoringFolderForImap(String accountId, int folderId) {
-        synchronized(sWaitSets) {
-            for (IWaitSet ws : sWaitSets.values()) {
-                if (ws instanceof SomeAccountsWaitSet) {
-                    SomeAccountsWaitSet saWs = (SomeAccountsWaitSet) ws;
-                    if (saWs.isMonitoringFolder(accountId, folderId)) {
-                        return true;
-                    }
+        for (IWaitSet ws : sWaitSets.values()) {
+            if (ws instanceof SomeAccountsWaitSet) {
+                SomeAccountsWaitSet saWs = (SomeAccountsWaitSet) ws;
+                if (saWs.isMonitoringFolder(accountId, folderId)) {
+                    return true;
                 }
             }
         }
@@ -0,0 +1,86 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.session;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Coalescing queue of account signals between committing threads and a waitset.
+ *
+ * <p>Committing threads only add the account to a concurrent set and publish the commit's sequence
+ * number; they never wait for the waitset. One of them at a time drains everything that is pending
+ * into the waitset, the others return immediately and leave their signal to that drainer. Pending
+ * signals for an account that is already queued are dropped, so the queue never holds more than one
+ * entry per account.
+ */
+final class WaitSetSignalQueue {
+
+  /** Receives a batch of drained signals. */
+  interface Sink {
+    /**
+     * @param seqNo sequence number of the most recent commit published before the batch was drained
+     * @param accountIds accounts signalled since the previous batch, without duplicates
+     */
+    void signalled(String seqNo, List<String> accountIds);
+  }
+
+  private final Set<String> pending = ConcurrentHashMap.newKeySet();
+  private final AtomicReference<String> latestSeqNo = new AtomicReference<>();
+  private final AtomicBoolean draining = new AtomicBoolean();
+
+  /**
+   * Queues a signal for an account.
+   *
+   * @return false if the account was already pending and the signal was coalesced
+   */
+  boolean offer(String accountId, String seqNo) {
+    // queue the account before publishing its seqno: a drainer reads the seqno before taking the
+    // accounts, so the seqno it reports never covers a commit whose account it did not deliver
+    boolean added = pending.add(accountId);
+    latestSeqNo.set(seqNo);
+    return added;
+  }
+
+  /**
+   * Drains the pending signals into {@code sink}, unless another thread is already doing so. In
+   * that case the other thread picks up whatever was queued before it returns.
+   */
+  void drain(Sink sink) {
+    while (!pending.isEmpty() && draining.compareAndSet(false, true)) {
+      try {
+        String seqNo = latestSeqNo.get();
+        if (seqNo == null) {
+          // the first signal is queued but its seqno isn't published yet, its committer drains it
+          return;
+        }
+        List<String> batch = new ArrayList<>();
+        for (Iterator<String> iter = pending.iterator(); iter.hasNext(); ) {
+          batch.add(iter.next());
+          iter.remove();
+        }
+        if (!batch.isEmpty()) {
+          sink.signalled(seqNo, batch);
+        }
+      } finally {
+        draining.set(false);
+      }
+    }
+  }
+
+  int size() {
+    return pending.size();
+  }
+
+  void clear() {
+    pending.clear();
+  }
+}
@@ -0,0 +1,75 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.stats;
+
+import com.zimbra.common.stats.LatencyHistogram;
+import com.zimbra.common.stats.StatsDumperDataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Like {@link ActivityTracker}, but keeps a {@link LatencyHistogram} per "command" instead of a
+ * plain average, so that tail latencies are visible in the stats files.
+ */
+public class LatencyTracker implements StatsDumperDataSource {
+
+  private final String filename;
+  private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+  public LatencyTracker(String filename) {
+    this.filename = filename;
+  }
+
+  public void addStat(String commandName, long nanos) {
+    getHistogram(commandName).record(nanos);
+  }
+
+  public LatencyHistogram getHistogram(String commandName) {
+    return histograms.computeIfAbsent(commandName, name -> new LatencyHistogram());
+  }
+
+  ////////////// StatsDumperDataSource implementation //////////////
+  @Override
+  public Collection<String> getDataLines() {
+    List<String> dataLines = new ArrayList<>(histograms.size());
+    histograms.forEach(
+        (command, histogram) -> {
+          // same trade-off as ActivityTracker: no synchronization, numbers may be slightly off
+          // when a sample is recorded while the line is being built
+          long count = histogram.getCount();
+          if (count == 0) {
+            return;
+          }
+          StringBuilder line = new StringBuilder(command).append(',').append(count);
+          line.append(',').append(String.format(Locale.ROOT, "%.3f", histogram.getAverageMillis()));
+          for (long bucket : histogram.getBuckets()) {
+            line.append(',').append(bucket);
+          }
+          histogram.reset();
+          dataLines.add(line.toString());
+        });
+    return dataLines;
+  }
+
+  @Override
+  public String getFilename() {
+    return filename;
+  }
+
+  @Override
+  public String getHeader() {
+    return "command,exec_count,exec_ms_avg," + String.join(",", LatencyHistogram.getBucketNames());
+  }
+
+  @Override
+  public boolean hasTimestampColumn() {
+    return true;
+  }
+}
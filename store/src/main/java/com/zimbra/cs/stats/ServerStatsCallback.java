@@ -21,6 +21,8 @@ public class ServerStatsCallback implements RealtimeStatsCallback {
     Map<String, Object> data = new HashMap<>();
     data.put(ZimbraPerf.RTS_MBOX_CACHE_SIZE, ZimbraPerf.getMailboxCacheSize());
     data.put(ZimbraPerf.RTS_MSG_CACHE_SIZE, MessageCache.getSize());
+    data.put(ZimbraPerf.RTS_MSG_CACHE_BYTES, MessageCache.getDataSize());
+    data.put(ZimbraPerf.RTS_MSG_CACHE_EXPANDED_SIZE, MessageCache.getExpandedSize());
 
     FileDescriptorCache fdc = BlobInputStream.getFileDescriptorCache();
     data.put(ZimbraPerf.RTS_FD_CACHE_SIZE, fdc.getSize());
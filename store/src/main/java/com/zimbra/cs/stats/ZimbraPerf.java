@@ -23,6 +23,7 @@ import com.zimbra.common.util.LogFactory;
 import com.zimbra.common.util.StringUtil;
 import com.zimbra.common.util.ZimbraLog;
 import com.zimbra.cs.db.DbPool;
+import com.zimbra.cs.mailbox.ItemCacheBudget;
 import com.zimbra.cs.mailbox.MailboxManager;
 import com.zimbra.cs.util.MemoryStats;
 import java.lang.annotation.ElementType;
@@ -108,6 +109,12 @@ public class ZimbraPerf {
   @Description("Number of message structures cached in memory")
   public static final String RTS_MSG_CACHE_SIZE = "msg_cache_size";
 
+  @Description("Bytes of message data held in memory by the message cache")
+  public static final String RTS_MSG_CACHE_BYTES = "msg_cache_bytes";
+
+  @Description("Number of expanded message structures cached in memory")
+  public static final String RTS_MSG_CACHE_EXPANDED_SIZE = "msg_cache_expanded_size";
+
   @Description("Number of open file descriptors that reference message content")
   public static final String RTS_FD_CACHE_SIZE = "fd_cache_size";
 
@@ -160,6 +167,8 @@ public class ZimbraPerf {
   public static final Counter COUNTER_LMTP_RCVD_RCPT = new Counter();
   public static final Counter COUNTER_LMTP_DLVD_MSGS = new Counter();
   public static final Counter COUNTER_LMTP_DLVD_BYTES = new Counter();
+  public static final StopWatch STOPWATCH_LMTP_DLVD_RCPT = new StopWatch();
+  public static final Counter COUNTER_LMTP_DLVD_POOL_FULL = new Counter();
   public static final StopWatch STOPWATCH_DB_CONN = new StopWatch();
   public static final StopWatch STOPWATCH_LDAP_DC = new StopWatch();
   public static final StopWatch STOPWATCH_MBOX_ADD_MSG = new StopWatch();
@@ -167,6 +176,8 @@ public class ZimbraPerf {
       new StopWatch(); // Mailbox accessor response time
   public static final Counter COUNTER_MBOX_CACHE = new Counter(); // Mailbox cache hit rate
   public static final Counter COUNTER_MBOX_MSG_CACHE = new Counter();
+  public static final Counter COUNTER_MSG_CACHE_EVICTIONS = new Counter();
+  public static final Counter COUNTER_MSG_CACHE_EXPANDED_EVICTIONS = new Counter();
   public static final Counter COUNTER_MBOX_ITEM_CACHE = new Counter();
   public static final StopWatch STOPWATCH_SOAP = new StopWatch();
   public static final StopWatch STOPWATCH_IMAP = new StopWatch();
@@ -177,10 +188,25 @@ public class ZimbraPerf {
   public static final Counter COUNTER_CALENDAR_CACHE_HIT = new Counter();
   public static final Counter COUNTER_CALENDAR_CACHE_MEM_HIT = new Counter();
   public static final Counter COUNTER_CALENDAR_CACHE_LRU_SIZE = new Counter();
+  public static final Counter COUNTER_CALENDAR_CACHE_MISS = new Counter();
+  public static final Counter COUNTER_CALENDAR_CACHE_EVICTIONS = new Counter();
+  public static final Counter COUNTER_CALENDAR_CACHE_REJECTED = new Counter();
+  public static final Counter COUNTER_CALENDAR_CACHE_WEIGHT = new Counter();
   public static final Counter COUNTER_IDX_BYTES_WRITTEN = new Counter();
   public static final Counter COUNTER_IDX_BYTES_READ = new Counter();
   public static final Counter COUNTER_BLOB_INPUT_STREAM_READ = new Counter();
   public static final Counter COUNTER_BLOB_INPUT_STREAM_SEEK_RATE = new Counter();
+  public static final Counter COUNTER_FD_CACHE_OPENS = new Counter();
+  public static final Counter COUNTER_FD_CACHE_REUSES = new Counter();
+  public static final Counter COUNTER_FD_CACHE_EVICTIONS = new Counter();
+  public static final Counter COUNTER_REDOLOG_FSYNC = new Counter();
+  public static final StopWatch STOPWATCH_SOAP_NOTIFY = new StopWatch();
+  public static final Counter COUNTER_SOAP_NOTIFY_FRAGMENT = new Counter();
+  public static final StopWatch STOPWATCH_IDX_REOPEN = new StopWatch();
+  public static final Counter COUNTER_IDX_SEGMENTS = new Counter();
+  public static final Counter COUNTER_SEARCH_RESULT_CACHE = new Counter();
+  public static final Counter COUNTER_IDX_FILES_OPENED = new Counter();
+  public static final Counter COUNTER_IDX_MMAP = new Counter();
   public static final ActivityTracker SOAP_TRACKER = new ActivityTracker("soap");
   public static final ActivityTracker IMAP_TRACKER = new ActivityTracker("imap");
   public static final ActivityTracker POP_TRACKER = new ActivityTracker("pop3");
@@ -193,6 +219,10 @@ public class ZimbraPerf {
   public static final ActivityTracker LDAP_TRACKER_PROMETHEUS = new ActivityTracker("ldap");
   public static final ActivityTracker SQL_TRACKER_PROMETHEUS = new ActivityTracker("sql");
 
+  public static final LatencyTracker MBOX_LOCK_WAIT_TRACKER = new LatencyTracker("mbox_lock_wait");
+  public static final LatencyTracker MBOX_LOCK_HOLD_TRACKER = new LatencyTracker("mbox_lock_hold");
+  public static final LatencyTracker REDOLOG_TRACKER = new LatencyTracker("redolog");
+
   private static final Log log = LogFactory.getLog(ZimbraPerf.class);
   private static final String[] mboxRealtimeStatsNames =
       new String[] {
@@ -213,6 +243,8 @@ public class ZimbraPerf {
         RTS_SOAP_SESSIONS,
         RTS_MBOX_CACHE_SIZE,
         RTS_MSG_CACHE_SIZE,
+        RTS_MSG_CACHE_BYTES,
+        RTS_MSG_CACHE_EXPANDED_SIZE,
         RTS_FD_CACHE_SIZE,
         RTS_FD_CACHE_HIT_RATE,
         RTS_ACL_CACHE_HIT_RATE,
@@ -245,6 +277,15 @@ public class ZimbraPerf {
   @Description("Number of bytes of data delivered to mailboxes as a result of LMTP delivery")
   private static final String DC_LMTP_DLVD_BYTES = "lmtp_dlvd_bytes";
 
+  @Description("Number of LMTP recipients a message was delivered to")
+  private static final String DC_LMTP_DLVD_RCPT_COUNT = "lmtp_dlvd_rcpt_count";
+
+  @Description("Average latency (ms) of delivering a message to an LMTP recipient")
+  private static final String DC_LMTP_DLVD_RCPT_MS_AVG = "lmtp_dlvd_rcpt_ms_avg";
+
+  @Description("Percentage of LMTP recipient deliveries that found all delivery threads busy")
+  private static final String DC_LMTP_DLVD_POOL_FULL = "lmtp_dlvd_pool_full";
+
   @Description("Number of times that the server got a database connection from the pool")
   private static final String DC_DB_CONN_COUNT = "db_conn_count";
 
@@ -275,6 +316,15 @@ public class ZimbraPerf {
   @Description("Message cache hit rate")
   private static final String DC_MBOX_MSG_CACHE = "mbox_msg_cache";
 
+  @Description("Number of message cache lookups")
+  private static final String DC_MBOX_MSG_CACHE_COUNT = "mbox_msg_cache_count";
+
+  @Description("Number of message structures evicted from the message cache")
+  private static final String DC_MSG_CACHE_EVICTIONS = "msg_cache_evictions";
+
+  @Description("Number of expanded message structures evicted from the message cache")
+  private static final String DC_MSG_CACHE_EXPANDED_EVICTIONS = "msg_cache_expanded_evictions";
+
   @Description("Item cache hit rate")
   private static final String DC_MBOX_ITEM_CACHE = "mbox_item_cache";
 
@@ -302,6 +352,48 @@ public class ZimbraPerf {
   @Description("Percentage of file descriptor cache disk reads that required a seek")
   private static final String DC_BIS_SEEK_RATE = "bis_seek_rate";
 
+  @Description("Number of file descriptors opened by the file descriptor cache")
+  private static final String DC_FD_CACHE_OPENS = "fd_cache_opens";
+
+  @Description("Number of reads that reused a cached file descriptor")
+  private static final String DC_FD_CACHE_REUSES = "fd_cache_reuses";
+
+  @Description("Number of file descriptors evicted from the file descriptor cache")
+  private static final String DC_FD_CACHE_EVICTIONS = "fd_cache_evictions";
+
+  @Description("Number of redo log fsyncs")
+  private static final String DC_REDOLOG_FSYNC = "redolog_fsync";
+
+  @Description("Average number of redo log records made durable by one fsync")
+  private static final String DC_REDOLOG_FSYNC_BATCH_AVG = "redolog_fsync_batch_avg";
+
+  @Description("Number of SOAP <notify> blocks rendered")
+  private static final String DC_SOAP_NOTIFY_COUNT = "soap_notify_count";
+
+  @Description("Average time (ms) spent rendering a SOAP <notify> block")
+  private static final String DC_SOAP_NOTIFY_MS_AVG = "soap_notify_ms_avg";
+
+  @Description("Percentage of notified items reusing the element rendered for another session")
+  private static final String DC_SOAP_NOTIFY_FRAGMENT_REUSE = "soap_notify_fragment_reuse";
+
+  @Description("Number of cached index searchers reopened after an index commit")
+  private static final String DC_IDX_REOPEN_COUNT = "idx_reopen_count";
+
+  @Description("Average time (ms) spent reopening a cached index searcher")
+  private static final String DC_IDX_REOPEN_MS_AVG = "idx_reopen_ms_avg";
+
+  @Description("Average number of segments of a reopened index searcher")
+  private static final String DC_IDX_SEGMENTS_AVG = "idx_segments_avg";
+
+  @Description("Percentage of searches served from the search result cache")
+  private static final String DC_SEARCH_RESULT_CACHE_HIT = "search_result_cache_hit";
+
+  @Description("Accumulated number of index files opened by Lucene")
+  private static final String DC_IDX_FILES_OPENED = "idx_files_opened";
+
+  @Description("Percentage of index files opened for read that were memory mapped")
+  private static final String DC_IDX_MMAP = "idx_mmap";
+
   @Description("Average number of concurrent index writers")
   private static final String DC_IDX_WRT_AVG = "idx_wrt_avg";
 
@@ -332,6 +424,21 @@ public class ZimbraPerf {
   @Description("Number of calendars (folders) in the calendar summary cache LRU in Java heap")
   private static final String DC_CALCACHE_LRU_SIZE = "calcache_lru_size";
 
+  @Description("Number of calendar summaries recomputed from the database")
+  private static final String DC_CALCACHE_MISS = "calcache_miss";
+
+  @Description("Number of calendars evicted from the calendar summary cache in Java heap")
+  private static final String DC_CALCACHE_EVICTIONS = "calcache_evictions";
+
+  @Description(
+      "Number of calendars not admitted to the calendar summary cache in Java heap because they"
+          + " are used less often than the calendars they would evict")
+  private static final String DC_CALCACHE_REJECTED = "calcache_rejected";
+
+  @Description(
+      "Number of calendar item instances held by the calendar summary cache in Java heap")
+  private static final String DC_CALCACHE_WEIGHT = "calcache_weight";
+
   private static final Lock LOCK = new ReentrantLock();
 
   private static final StatsScheduler statsScheduler = StatsScheduler.getDefault();
@@ -463,6 +570,11 @@ public class ZimbraPerf {
                     new DeltaCalculator(COUNTER_LMTP_RCVD_RCPT).setTotalName(DC_LMTP_RCVD_RCPT),
                     new DeltaCalculator(COUNTER_LMTP_DLVD_MSGS).setTotalName(DC_LMTP_DLVD_MSGS),
                     new DeltaCalculator(COUNTER_LMTP_DLVD_BYTES).setTotalName(DC_LMTP_DLVD_BYTES),
+                    new DeltaCalculator(STOPWATCH_LMTP_DLVD_RCPT)
+                        .setCountName(DC_LMTP_DLVD_RCPT_COUNT)
+                        .setAverageName(DC_LMTP_DLVD_RCPT_MS_AVG),
+                    new DeltaCalculator(COUNTER_LMTP_DLVD_POOL_FULL)
+                        .setAverageName(DC_LMTP_DLVD_POOL_FULL),
                     new DeltaCalculator(STOPWATCH_DB_CONN)
                         .setCountName(DC_DB_CONN_COUNT)
                         .setAverageName(DC_DB_CONN_MS_AVG),
@@ -476,7 +588,13 @@ public class ZimbraPerf {
                         .setCountName(DC_MBOX_GET_COUNT)
                         .setAverageName(DC_MBOX_GET_MS_AVG),
                     new DeltaCalculator(COUNTER_MBOX_CACHE).setAverageName(DC_MBOX_CACHE),
-                    new DeltaCalculator(COUNTER_MBOX_MSG_CACHE).setAverageName(DC_MBOX_MSG_CACHE),
+                    new DeltaCalculator(COUNTER_MBOX_MSG_CACHE)
+                        .setCountName(DC_MBOX_MSG_CACHE_COUNT)
+                        .setAverageName(DC_MBOX_MSG_CACHE),
+                    new DeltaCalculator(COUNTER_MSG_CACHE_EVICTIONS)
+                        .setCountName(DC_MSG_CACHE_EVICTIONS),
+                    new DeltaCalculator(COUNTER_MSG_CACHE_EXPANDED_EVICTIONS)
+                        .setCountName(DC_MSG_CACHE_EXPANDED_EVICTIONS),
                     new DeltaCalculator(COUNTER_MBOX_ITEM_CACHE).setAverageName(DC_MBOX_ITEM_CACHE),
                     new DeltaCalculator(STOPWATCH_SOAP)
                         .setCountName(DC_SOAP_COUNT)
@@ -496,6 +614,13 @@ public class ZimbraPerf {
                         .setAverageName(DC_CALCACHE_MEM_HIT),
                     new DeltaCalculator(COUNTER_CALENDAR_CACHE_LRU_SIZE)
                         .setAverageName(DC_CALCACHE_LRU_SIZE),
+                    new DeltaCalculator(COUNTER_CALENDAR_CACHE_MISS).setCountName(DC_CALCACHE_MISS),
+                    new DeltaCalculator(COUNTER_CALENDAR_CACHE_EVICTIONS)
+                        .setCountName(DC_CALCACHE_EVICTIONS),
+                    new DeltaCalculator(COUNTER_CALENDAR_CACHE_REJECTED)
+                        .setCountName(DC_CALCACHE_REJECTED),
+                    new DeltaCalculator(COUNTER_CALENDAR_CACHE_WEIGHT)
+                        .setAverageName(DC_CALCACHE_WEIGHT),
                     new DeltaCalculator(COUNTER_IDX_BYTES_WRITTEN)
                         .setTotalName(DC_IDX_BYTES_WRITTEN)
                         .setAverageName(DC_IDX_BYTES_WRITTTEN_AVG),
@@ -505,6 +630,25 @@ public class ZimbraPerf {
                     new DeltaCalculator(COUNTER_BLOB_INPUT_STREAM_READ).setTotalName(DC_BIS_READ),
                     new DeltaCalculator(COUNTER_BLOB_INPUT_STREAM_SEEK_RATE)
                         .setAverageName(DC_BIS_SEEK_RATE),
+                    new DeltaCalculator(COUNTER_FD_CACHE_OPENS).setCountName(DC_FD_CACHE_OPENS),
+                    new DeltaCalculator(COUNTER_FD_CACHE_REUSES).setCountName(DC_FD_CACHE_REUSES),
+                    new DeltaCalculator(COUNTER_FD_CACHE_EVICTIONS).setCountName(DC_FD_CACHE_EVICTIONS),
+                    new DeltaCalculator(COUNTER_REDOLOG_FSYNC)
+                        .setCountName(DC_REDOLOG_FSYNC)
+                        .setAverageName(DC_REDOLOG_FSYNC_BATCH_AVG),
+                    new DeltaCalculator(STOPWATCH_SOAP_NOTIFY)
+                        .setCountName(DC_SOAP_NOTIFY_COUNT)
+                        .setAverageName(DC_SOAP_NOTIFY_MS_AVG),
+                    new DeltaCalculator(COUNTER_SOAP_NOTIFY_FRAGMENT)
+                        .setAverageName(DC_SOAP_NOTIFY_FRAGMENT_REUSE),
+                    new DeltaCalculator(STOPWATCH_IDX_REOPEN)
+                        .setCountName(DC_IDX_REOPEN_COUNT)
+                        .setAverageName(DC_IDX_REOPEN_MS_AVG),
+                    new DeltaCalculator(COUNTER_IDX_SEGMENTS).setAverageName(DC_IDX_SEGMENTS_AVG),
+                    new DeltaCalculator(COUNTER_SEARCH_RESULT_CACHE)
+                        .setAverageName(DC_SEARCH_RESULT_CACHE_HIT),
+                    new DeltaCalculator(COUNTER_IDX_FILES_OPENED).setCountName(DC_IDX_FILES_OPENED),
+                    new DeltaCalculator(COUNTER_IDX_MMAP).setAverageName(DC_IDX_MMAP),
                     realtimeStats
                   });
           break;
@@ -565,6 +709,11 @@ public class ZimbraPerf {
       statsScheduler.schedule(new CsvStatsDumper(LDAP_TRACKER), DUMP_FREQUENCY);
       statsScheduler.schedule(new CsvStatsDumper(SQL_TRACKER), DUMP_FREQUENCY);
       statsScheduler.schedule(new CsvStatsDumper(threadsTracker), DUMP_FREQUENCY);
+      statsScheduler.schedule(new CsvStatsDumper(MBOX_LOCK_WAIT_TRACKER), DUMP_FREQUENCY);
+      statsScheduler.schedule(new CsvStatsDumper(MBOX_LOCK_HOLD_TRACKER), DUMP_FREQUENCY);
+      statsScheduler.schedule(new CsvStatsDumper(REDOLOG_TRACKER), DUMP_FREQUENCY);
+      statsScheduler.schedule(
+          new CsvStatsDumper(ItemCacheBudget.getInstance()), DUMP_FREQUENCY);
 
       // PROM
       statsScheduler.schedule(new PrometheusStatsDumper(mailboxdTracker), DUMP_FREQUENCY);
@@ -9,63 +9,72 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.GZIPInputStream;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.googlecode.concurrentlinkedhashmap.ConcurrentLinkedHashMap;
+import com.zimbra.common.localconfig.LC;
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.stats.Counter;
 import com.zimbra.common.util.FileCache;
 import com.zimbra.common.util.FileUtil;
 import com.zimbra.common.util.Log;
 import com.zimbra.common.util.LogFactory;
-import com.zimbra.common.util.ZimbraLog;
 import com.zimbra.cs.account.Provisioning;
 import com.zimbra.cs.account.Server;
+import com.zimbra.cs.stats.ZimbraPerf;
 
 /**
  * Caches file descriptors to blobs in the mail store.  If the blob is compressed,
  * uses a {@link FileCache} to access the uncompressed data.  Cache entries
  * that reference uncompressed blobs keep the file descriptor open until {@link #remove}
  * is called or the cache entry is aged out.
+ * <p>
+ * Entries live in a lock-striped {@link ConcurrentLinkedHashMap}, so lookups never take a
+ * cache-wide lock.  Descriptors aged out of the cache are closed asynchronously once their
+ * last reader is done.
  */
 public class FileDescriptorCache
 {
     private static final Log sLog = LogFactory.getLog(FileDescriptorCache.class);
 
-    // Create the file cache with default LinkedHashMap values, but sorted by last access time.
-    private final LinkedHashMap<String, SharedFile> mCache = new LinkedHashMap<>(16, 0.75f, true);
-    // Create a concurrent list for the SharedFies for which the mapping has been removed but is still in use by some threads.
-    private final List<SharedFileInfo> mInactiveCache = Collections.synchronizedList(new ArrayList<>());
-    private int mMaxSize = 1000;
+    private static final ExecutorService CLOSER = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("FileDescriptorCacheCloser").setDaemon(true).build());
+
+    // Sorted by last access time; evicted entries are handed to onEviction().
+    private final ConcurrentLinkedHashMap<String, SharedFile> mCache;
+    private final Executor mCloseExecutor;
     private final FileCache<String> mUncompressedFileCache;
     private final Counter mHitRate = new Counter();
+    private final boolean mPositionalRead = LC.zimbra_blob_positional_read_enabled.booleanValue();
 
-    private static class SharedFileInfo {
-        public String path;
-        public SharedFile file;
-
-        public SharedFileInfo(String path, SharedFile file) {
-            this.path = path;
-            this.file = file;
-        }
+    public FileDescriptorCache(FileCache<String> uncompressedCache) {
+        this(uncompressedCache, CLOSER);
     }
 
-    public FileDescriptorCache(FileCache<String> uncompressedCache) {
+    /**
+     * @param closeExecutor runs the close of evicted file descriptors
+     */
+    FileDescriptorCache(FileCache<String> uncompressedCache, Executor closeExecutor) {
         mUncompressedFileCache = uncompressedCache;
+        mCloseExecutor = closeExecutor;
+        mCache = new ConcurrentLinkedHashMap.Builder<String, SharedFile>()
+            .maximumWeightedCapacity(1000)
+            .concurrencyLevel(Math.max(LC.zimbra_fd_cache_concurrency_level.intValue(), 1))
+            .listener(this::onEviction)
+            .build();
     }
 
-    public synchronized FileDescriptorCache setMaxSize(int maxSize) {
+    public FileDescriptorCache setMaxSize(int maxSize) {
         if (maxSize < 0)
             throw new IllegalArgumentException("maxSize value of " + maxSize + " is invalid (must be at least 0)");
 
-        mMaxSize = maxSize;
+        mCache.setCapacity(maxSize);
         mHitRate.reset(); // Recalculate hit rate based on the new size.
-        pruneIfNecessary();
         return this;
     }
 
@@ -85,13 +94,13 @@ public class FileDescriptorCache
      * Closes all file descriptors, clears the cache, and removes any files from
      * the uncompressed cache.
      */
-    public synchronized void shutdown() {
-        Iterator<Map.Entry<String, SharedFile>> iEntries = mCache.entrySet().iterator();
-        while (iEntries.hasNext()) {
-            Map.Entry<String, SharedFile> entry = iEntries.next();
-            String path = entry.getKey();
-            SharedFile file = entry.getValue();
-            iEntries.remove();
+    public void shutdown() {
+        for (String path : mCache.keySet()) {
+            SharedFile file = mCache.remove(path);
+            if (file == null) {
+                continue;
+            }
+            file.retire();
             try {
                 boolean success = close(file, path);
                 if (!success)
@@ -108,25 +117,31 @@ public class FileDescriptorCache
     public int read(String path, long rawSize, long fileOffset, byte[] buf, int bufferOffset, int len)
     throws IOException {
         sLog.debug("Reading %s.  rawSize=%d, fileOffset=%d, bufferOffset=%d, len=%d.", path, rawSize, fileOffset, bufferOffset, len);
-        SharedFile file = null;
-        int numRead;
 
-        try {
-            file = getSharedFile(path, rawSize);
-            numRead = file.read(fileOffset, buf, bufferOffset, len);
-        } finally {
-            if (file != null) {
-               file.doneReading();
+        for (boolean retry = true; ; retry = false) {
+            SharedFile file = getSharedFile(path, rawSize);
+            try {
+                return file.read(fileOffset, buf, bufferOffset, len);
+            } catch (ClosedChannelException e) {
+                // Interrupting any reader of a FileChannel closes it for all of them.
+                // Drop the broken descriptor and let this reader open a fresh one.
+                if (mCache.remove(path, file)) {
+                    file.retire();
+                }
+                if (!retry || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                sLog.debug("File descriptor for %s was closed by another reader, reopening.", path);
+            } finally {
+                if (file.doneReading()) {
+                    scheduleClose(file, path);
+                }
             }
         }
-
-        return numRead;
     }
 
     boolean contains(String path) {
-        synchronized (this) {
-            return mCache.containsKey(path);
-        }
+        return mCache.containsKey(path);
     }
 
     /**
@@ -134,15 +149,11 @@ public class FileDescriptorCache
      * increments the number of readers for the <tt>SharedFile</tt>.
      */
     private SharedFile getSharedFile(String path, long rawSize) throws IOException {
-        SharedFile sharedFile = null;
-
-        synchronized (this) {
-            sharedFile = mCache.get(path);
-        }
-        if (sharedFile != null) {
+        SharedFile sharedFile = mCache.get(path);
+        if (sharedFile != null && sharedFile.aboutToRead()) {
             sLog.debug("Found existing file descriptor for %s, rawSize=%d.", path, rawSize);
-            sharedFile.aboutToRead();
             mHitRate.increment(100);
+            ZimbraPerf.COUNTER_FD_CACHE_REUSES.increment();
             return sharedFile;
         }
 
@@ -164,26 +175,33 @@ public class FileDescriptorCache
                     throw new IOException("Unable to get uncompressed file for " + path);
                 }
             }
-            sharedFile = new SharedFile(uncompressed.file);
+            sharedFile = new SharedFile(uncompressed.file, mPositionalRead);
         } else {
             sLog.debug("Opening new file descriptor for %s.", path);
-            sharedFile = new SharedFile(file);
+            sharedFile = new SharedFile(file, mPositionalRead);
         }
+        ZimbraPerf.COUNTER_FD_CACHE_OPENS.increment();
 
-        synchronized (this) {
-            if (mCache.containsKey(path)) {
-                sLog.debug("Another thread just opened the same file.  Closing our copy and returning the other one.");
-                sharedFile.close();
-                sharedFile = mCache.get(path);
-            } else {
+        // Register as a reader before publishing, so that an immediate eviction can't close it under us.
+        sharedFile.aboutToRead();
+        while (true) {
+            SharedFile existing = mCache.putIfAbsent(path, sharedFile);
+            if (existing == null) {
                 sLog.debug("Caching file descriptor: path=%s, sharedFile=%s", path, sharedFile);
-                mCache.put(path, sharedFile);
+                return sharedFile;
+            }
+            if (existing.aboutToRead()) {
+                sLog.debug("Another thread just opened the same file.  Closing our copy and returning the other one.");
+                sharedFile.doneReading();
+                sharedFile.retire();
+                sharedFile.closeIfIdle();
+                return existing;
+            }
+            // the other copy is being retired, replace it with ours
+            if (mCache.replace(path, existing, sharedFile)) {
+                return sharedFile;
             }
         }
-        sharedFile.aboutToRead();
-        pruneIfNecessary();
-
-        return sharedFile;
     }
 
     /**
@@ -191,104 +209,60 @@ public class FileDescriptorCache
      * descriptor is not in the cache.
      */
     public void remove(String path) throws IOException {
-        SharedFile file = null;
-
-        synchronized (this) {
-            file = mCache.remove(path);
-        }
+        SharedFile file = mCache.remove(path);
 
         if (file != null) {
-            boolean success = close(file, path);
-            if (!success)
-                mInactiveCache.add(new SharedFileInfo(path, file));
+            // Closed synchronously when idle, so that a stale uncompressed copy can't be read back.
+            file.retire();
+            close(file, path);
         } else {
             sLog.debug("Attempted to remove %s but could not find it in the cache.", path);
         }
+    }
 
-        // Close if there are any SharedFiles in the inactive cache.
-        quietCloseInactiveCache();
+    private void onEviction(String path, SharedFile file) {
+        ZimbraPerf.COUNTER_FD_CACHE_EVICTIONS.increment();
+        file.retire();
+        scheduleClose(file, path);
+    }
+
+    private void scheduleClose(SharedFile file, String path) {
+        mCloseExecutor.execute(() -> {
+            try {
+                close(file, path);
+            } catch (IOException e) {
+                sLog.warn("Unable to close file descriptor for %s", path, e);
+            }
+        });
     }
 
     /**
-     * Close the file if it is not in use.
+     * Close the file if it is not in use.  A retired file that is still in use gets
+     * closed by its last reader.
      * @return true if the file is closed, false otherwise.
      * @throws IOException if there is an error closing the file.
      */
     private boolean close(SharedFile file, String path) throws IOException {
-        if (file != null) {
-            sLog.debug("Closing file descriptor for %s, %s", path, file);
+        sLog.debug("Closing file descriptor for %s, %s", path, file);
 
-            if (file.getNumReaders() == 0) {
-                file.close();
-                if (mUncompressedFileCache != null) {
-                    synchronized (this) {
-                        if (!mCache.containsKey(path)) {
-                            mUncompressedFileCache.remove(path);
-                        } else {
-                            sLog.debug("Not removing %s from the uncompressed cache.  Another thread reopened it.");
-                        }
-                    }
-                }
-                return true;
-            }
+        if (!file.closeIfIdle()) {
             return false;
         }
-        return true;
-    }
-
-    private void quietCloseInactiveCache() {
-        synchronized (mInactiveCache) {
-            Iterator<SharedFileInfo> iter = mInactiveCache.iterator();
-            while (iter.hasNext()) {
-                SharedFileInfo info = iter.next();
-                try {
-                    boolean success = close(info.file, info.path);
-                    if (success)
-                        iter.remove();
-                } catch (IOException e) {
-                    ZimbraLog.store.warn("Unable to close file descriptor for " + info.path, e);
-                    iter.remove();
-                }
+        if (mUncompressedFileCache != null) {
+            if (!mCache.containsKey(path)) {
+                mUncompressedFileCache.remove(path);
+            } else {
+                sLog.debug("Not removing %s from the uncompressed cache.  Another thread reopened it.", path);
             }
         }
+        return true;
     }
 
-    public synchronized int getSize() {
+    public int getSize() {
         return mCache.size();
     }
 
     public double getHitRate() {
         return mHitRate.getAverage();
     }
-
-    private void pruneIfNecessary() {
-         if (getSize() <= mMaxSize)
-            return;
-
-        List<Map.Entry<String, SharedFile>> removeList = new ArrayList<>();
-
-        synchronized (this) {
-            Iterator<Map.Entry<String, SharedFile>> iEntries = mCache.entrySet().iterator();
-            while (iEntries.hasNext() && mCache.size() > mMaxSize) {
-                Map.Entry<String, SharedFile> mapEntry = iEntries.next();
-                iEntries.remove();
-                removeList.add(mapEntry);
-            }
-        }
-        for (Map.Entry<String, SharedFile> mapEntry : removeList) {
-            String path = mapEntry.getKey();
-            SharedFile file = mapEntry.getValue();
-            try {
-                boolean success = close(file, path);
-                if (!success) {
-                    mInactiveCache.add(new SharedFileInfo(path, file));
-                }
-            } catch (IOException e) {
-                ZimbraLog.store.warn("Unable to close file descriptor for " + path, e);
-            }
-        }
-
-        // Close if there are any SharedFiles in the inactive cache.
-        quietCloseInactiveCache();
-    }
 }
@@ -11,37 +11,53 @@ package com.zimbra.cs.store;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.zimbra.cs.stats.ZimbraPerf;
 
 /**
- * Synchronized container for a <tt>RandomAccessFile</tt> object.  Used by multiple
+ * Container for a <tt>RandomAccessFile</tt> object.  Used by multiple
  * <tt>BlobInputStream</tt> objects that share a single file descriptor.
+ * <p>
+ * With positional reads enabled, readers go through {@link FileChannel#read(ByteBuffer, long)}
+ * and never serialize on each other.  Otherwise reads seek the shared file pointer under a lock.
+ * <p>
+ * Once {@link #retire retired} by the cache, no new reader can acquire the file, and the
+ * descriptor is closed as soon as the last current reader is done.
  */
 public class SharedFile {
 
-    private File mFile;
-    private RandomAccessFile mRAF;
+    private static final int CLOSED = -1;
+
+    private final File mFile;
+    private final RandomAccessFile mRAF;
+    private final FileChannel mChannel;
+    private final boolean mPositional;
+    private final ReentrantLock mLock = new ReentrantLock(); // guards mPos when not using positional reads
     private long mPos = 0;
-    
+
     /**
      * Keep track of the number of threads that are reading from this file.
      * We do this so that we don't delete a file that's being read on
-     * Windows (bug 43497).
+     * Windows (bug 43497).  {@link #CLOSED} once the descriptor has been closed.
      */
-    private int mNumReaders;
-    
+    private final AtomicInteger mNumReaders = new AtomicInteger();
+    private volatile boolean mRetired;
+
     /**
      * Remember the file's length, in case we have an open file descriptor and the
      * uncompressed cache deletes this file from disk.
      */
-    private long mLength;
+    private final long mLength;
 
     /**
      * Creates a new <tt>SharedFile</tt> and opens the underlying
      * file descriptor.
      */
-    SharedFile(File file)
+    SharedFile(File file, boolean positional)
     throws IOException {
         if (file == null) {
             throw new NullPointerException("file cannot be null");
@@ -51,70 +67,102 @@ public class SharedFile {
         }
         mFile = file;
         mLength = file.length();
-        openIfNecessary();
+        mPositional = positional;
+        mRAF = new RandomAccessFile(mFile, "r");
+        mChannel = mRAF.getChannel();
     }
 
-    synchronized long getLength() {
+    long getLength() {
         return mLength;
     }
-    
-    synchronized int read(long fileOffset, byte[] b, int off, int len)
+
+    int read(long fileOffset, byte[] b, int off, int len)
     throws IOException {
-        int numRead = 0;
-        boolean seeked = false;
-        openIfNecessary();
-        
-        if (mPos != fileOffset) {
-            mRAF.seek(fileOffset);
-            mPos = fileOffset;
-            seeked = true;
-        }
-        numRead = mRAF.read(b, off, len);
-        mPos += numRead;
-        
-        if (seeked) {
-            ZimbraPerf.COUNTER_BLOB_INPUT_STREAM_SEEK_RATE.increment(100);
+        int numRead;
+        if (mPositional) {
+            numRead = mChannel.read(ByteBuffer.wrap(b, off, len), fileOffset);
         } else {
-            ZimbraPerf.COUNTER_BLOB_INPUT_STREAM_SEEK_RATE.increment(0);
+            mLock.lock();
+            try {
+                boolean seeked = false;
+                if (mPos != fileOffset) {
+                    mRAF.seek(fileOffset);
+                    mPos = fileOffset;
+                    seeked = true;
+                }
+                numRead = mRAF.read(b, off, len);
+                if (numRead > 0) {
+                    mPos += numRead;
+                }
+                ZimbraPerf.COUNTER_BLOB_INPUT_STREAM_SEEK_RATE.increment(seeked ? 100 : 0);
+            } finally {
+                mLock.unlock();
+            }
         }
         ZimbraPerf.COUNTER_BLOB_INPUT_STREAM_READ.increment();
         return numRead;
     }
-    
-    synchronized void aboutToRead() {
-        mNumReaders++;
-    }
-    
-    synchronized void doneReading() {
-        if (mNumReaders > 0) {
-            mNumReaders--;
+
+    /**
+     * Registers a reader.
+     * @return false if the file has been retired or closed and must not be read
+     */
+    boolean aboutToRead() {
+        while (true) {
+            int n = mNumReaders.get();
+            if (n == CLOSED || mRetired) {
+                return false;
+            }
+            if (mNumReaders.compareAndSet(n, n + 1)) {
+                return true;
+            }
         }
     }
-    
-    synchronized int getNumReaders() {
-        return mNumReaders;
-    }
-    
-    private synchronized void openIfNecessary()
-    throws IOException {
-        if (mRAF == null) {
-            if (!mFile.exists()) {
-                throw new IOException(mFile.getPath() + " does not exist.");
+
+    /**
+     * Unregisters a reader.
+     * @return true if this was the last reader of a retired file, which should now be closed
+     */
+    boolean doneReading() {
+        while (true) {
+            int n = mNumReaders.get();
+            if (n <= 0) {
+                return false;
+            }
+            if (mNumReaders.compareAndSet(n, n - 1)) {
+                return n == 1 && mRetired;
             }
-            mRAF = new RandomAccessFile(mFile, "r");
-            mPos = 0;
         }
     }
-    
-    synchronized void close()
+
+    int getNumReaders() {
+        return Math.max(mNumReaders.get(), 0);
+    }
+
+    /**
+     * Prevents new readers from acquiring this file.
+     */
+    void retire() {
+        mRetired = true;
+    }
+
+    boolean isRetired() {
+        return mRetired;
+    }
+
+    /**
+     * Closes the file descriptor if nobody is reading from it.
+     * @return true if the file is closed, false if it is still in use
+     */
+    boolean closeIfIdle()
     throws IOException {
-        if (mRAF != null) {
-            mRAF.close();
-            mPos = 0;
-            mRAF = null;
+        if (!mNumReaders.compareAndSet(0, CLOSED)) {
+            return mNumReaders.get() == CLOSED;
         }
+        mRAF.close();
+        return true;
     }
-    
+
     public String toString() {
         return mFile.toString();
     }
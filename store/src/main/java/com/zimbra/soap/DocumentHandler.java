@@ -285,6 +285,16 @@ public abstract class DocumentHandler {
     return true;
   }
 
+  /**
+   * Returns <tt>true</tt> if the operation may run concurrently with the other sub-requests of a
+   * <tt>BatchRequest</tt> sent with <tt>parallel="1"</tt>. Only read-only handlers that don't
+   * depend on the outcome of the preceding sub-requests, and don't keep per-request state in the
+   * {@link ZimbraSoapContext}, should return <tt>true</tt>.
+   */
+  public boolean isBatchParallelSafe() {
+    return false;
+  }
+
   /** Returns whether the client making the SOAP request is localhost. */
   protected boolean clientIsLocal(Map<String, Object> context) {
     HttpServletRequest req = (HttpServletRequest) context.get(SoapServlet.SERVLET_REQUEST);
@@ -628,6 +638,21 @@ public abstract class DocumentHandler {
   public static Element proxyWithNotification(
       Element request, ProxyTarget proxy, ZimbraSoapContext zscProxy, Session localSession)
       throws ServiceException {
+    localSession = prepareProxyNotification(proxy, zscProxy, localSession);
+    Pair<Element, Element> envelope = proxy.execute(request, zscProxy);
+    handleProxyNotification(proxy, zscProxy, localSession, envelope.getFirst());
+    return envelope.getSecond().detach();
+  }
+
+  /**
+   * Sets up the context of a request about to be proxied, so that the notifications collected by
+   * the remote session are returned for {@code localSession}.
+   *
+   * @return the session to hand the notifications of the response to, see {@link
+   *     #handleProxyNotification}
+   */
+  public static Session prepareProxyNotification(
+      ProxyTarget proxy, ZimbraSoapContext zscProxy, Session localSession) {
     Server server = proxy.getServer();
     boolean isLocal = getLocalHostId().equalsIgnoreCase(server.getId());
 
@@ -650,12 +675,16 @@ public abstract class DocumentHandler {
         zscProxy.setProxySession(localSession.getSessionId());
       }
     }
+    return localSession;
+  }
 
-    Pair<Element, Element> envelope = proxy.execute(request, zscProxy);
+  /** Hands the notifications returned in the header of a proxied response to the local session. */
+  public static void handleProxyNotification(
+      ProxyTarget proxy, ZimbraSoapContext zscProxy, Session localSession, Element header) {
     // if we've got a SOAP session, handle the returned notifications and session ID
-    if (localSession instanceof SoapSession && zscProxy.isNotificationEnabled())
-      ((SoapSession) localSession).handleRemoteNotifications(server, envelope.getFirst());
-    return envelope.getSecond().detach();
+    if (localSession instanceof SoapSession && zscProxy.isNotificationEnabled()) {
+      ((SoapSession) localSession).handleRemoteNotifications(proxy.getServer(), header);
+    }
   }
 
   /**
@@ -6,6 +6,7 @@
 package com.zimbra.soap;
 
 import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.zimbra.common.localconfig.LC;
 import com.zimbra.common.service.ServiceException;
 import com.zimbra.common.soap.Element;
@@ -29,6 +30,7 @@ import com.zimbra.cs.account.AccountServiceException.AuthFailedServiceException;
 import com.zimbra.cs.account.AuthToken;
 import com.zimbra.cs.account.GuestAccount;
 import com.zimbra.cs.account.Provisioning;
+import com.zimbra.cs.account.ZimbraAuthToken;
 import com.zimbra.cs.mailbox.Mailbox;
 import com.zimbra.cs.mailbox.MailboxManager;
 import com.zimbra.cs.redolog.RedoLogProvider;
@@ -50,10 +52,20 @@ import com.zimbra.soap.ZimbraSoapContext.SessionInfo;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletRequest;
@@ -98,6 +110,9 @@ public class SoapEngine {
   /** context name of the original user agent */
   public static final String ORIG_REQUEST_USER_AGENT = "orig.request.user.agent";
 
+  /** Runs the parallel-safe sub-requests of <tt>BatchRequest</tt>s with <tt>parallel="1"</tt>. */
+  private static final ExecutorService BATCH_EXECUTOR = newBatchExecutor();
+
   private final DocumentDispatcher dispatcher = new DocumentDispatcher();
   private final MeterRegistry meterRegistry;
 
@@ -106,6 +121,21 @@ public class SoapEngine {
     SoapTransport.setDefaultUserAgent(SoapTransport.DEFAULT_USER_AGENT_NAME, BuildInfo.VERSION);
   }
 
+  private static ExecutorService newBatchExecutor() {
+    int threads = LC.soap_batch_parallel_threads.intValueWithinRange(1, 256);
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            60,
+            TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("SoapBatch-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
   /**
    * wraps an exception in a soap fault and returns a SOAP envelope with the soap fault in the body
    * (without throwing the exception)
@@ -487,34 +517,7 @@ public class SoapEngine {
       acknowledgeNotifications(zsc);
 
       if (doc.getQName().equals(ZimbraNamespace.E_BATCH_REQUEST)) {
-        boolean contOnError =
-            doc.getAttribute(ZimbraNamespace.A_ONERROR, ZimbraNamespace.DEF_ONERROR)
-                .equals("continue");
-        responseBody = zsc.createElement(ZimbraNamespace.E_BATCH_RESPONSE);
-        if (!isResumed) {
-          ZimbraLog.soap.info(doc.getName());
-        }
-        for (Element req : doc.listElements()) {
-          String id = req.getAttribute(A_REQUEST_CORRELATOR, null);
-          long start = System.currentTimeMillis();
-          Element br = dispatchRequest(dispatcher.getHandler(req), req, context, zsc);
-          if (!isResumed) {
-            ZimbraLog.soap.info(
-                "(batch) %s elapsed=%d", req.getName(), System.currentTimeMillis() - start);
-          }
-          if (id != null) {
-            br.addAttribute(A_REQUEST_CORRELATOR, id);
-          }
-          responseBody.addNonUniqueElement(br);
-          if (!contOnError && responseProto.isFault(br)) {
-            break;
-          }
-          if (proxyAuthToken != null) {
-            // requests will invalidate it when proxying locally;
-            // make sure it's set for each sub-request in batch
-            zsc.getAuthToken().setProxyAuthToken(proxyAuthToken);
-          }
-        }
+        responseBody = dispatchBatch(doc, context, zsc, isResumed, proxyAuthToken);
       } else {
         String id = doc.getAttribute(A_REQUEST_CORRELATOR, null);
         long start = System.currentTimeMillis();
@@ -565,6 +568,184 @@ public class SoapEngine {
     return responseProto.soapEnvelope(responseBody, responseHeader);
   }
 
+  /**
+   * Handles the sub-requests of a <tt>BatchRequest</tt>, in order.
+   *
+   * <p>With <tt>parallel="1"</tt>, consecutive sub-requests whose handlers are {@link
+   * DocumentHandler#isBatchParallelSafe() parallel-safe} run concurrently. The first sub-request of
+   * such a run is dispatched on the calling thread before the others are started, so that it
+   * validates the auth token and faults in the session the others share. The others each get a
+   * copy of the request context and of its auth token. Batches that may be proxied, because they
+   * are delegated or the requested account lives on another server, always run sequentially.
+   * Responses are always returned in request order, and with <tt>onerror="stop"</tt> the
+   * responses following the first fault are dropped.
+   */
+  private Element dispatchBatch(
+      Element batch,
+      Map<String, Object> context,
+      ZimbraSoapContext zsc,
+      boolean isResumed,
+      String proxyAuthToken) {
+    SoapProtocol responseProto = zsc.getResponseProtocol();
+    boolean contOnError =
+        batch.getAttribute(ZimbraNamespace.A_ONERROR, ZimbraNamespace.DEF_ONERROR)
+            .equals("continue");
+    boolean parallel;
+    try {
+      parallel = batch.getAttributeBool(ZimbraNamespace.A_PARALLEL, false);
+    } catch (ServiceException e) {
+      return soapFault(responseProto, "cannot dispatch request", e);
+    }
+    parallel = parallel && canRunInParallel(zsc);
+    Element responseBody = zsc.createElement(ZimbraNamespace.E_BATCH_RESPONSE);
+    if (!isResumed) {
+      ZimbraLog.soap.info(batch.getName());
+    }
+    List<Element> requests = batch.listElements();
+    int next = 0;
+    while (next < requests.size()) {
+      int end = next + 1;
+      if (parallel && isBatchParallelSafe(requests.get(next))) {
+        while (end < requests.size() && isBatchParallelSafe(requests.get(end))) {
+          end++;
+        }
+      }
+      Element[] responses = new Element[end - next];
+      responses[0] = dispatchBatched(requests.get(next), context, zsc, isResumed, false);
+      if (responseProto.isFault(responses[0])) {
+        // run the others on their own, they'll most likely fail the same way
+        end = next + 1;
+      } else if (end - next > 1) {
+        long start = System.currentTimeMillis();
+        dispatchParallel(requests.subList(next + 1, end), responses, context, zsc, isResumed);
+        if (!isResumed) {
+          ZimbraLog.soap.info(
+              "(batch) %d sub-requests in parallel elapsed=%d",
+              end - next - 1, System.currentTimeMillis() - start);
+        }
+      }
+      for (int i = 0; i < end - next; i++) {
+        Element br = responses[i];
+        String id = requests.get(next + i).getAttribute(A_REQUEST_CORRELATOR, null);
+        if (id != null) {
+          br.addAttribute(A_REQUEST_CORRELATOR, id);
+        }
+        responseBody.addNonUniqueElement(br);
+        if (!contOnError && responseProto.isFault(br)) {
+          return responseBody;
+        }
+      }
+      if (proxyAuthToken != null) {
+        // requests will invalidate it when proxying locally;
+        // make sure it's set for each sub-request in batch
+        zsc.getAuthToken().setProxyAuthToken(proxyAuthToken);
+      }
+      next = end;
+    }
+    return responseBody;
+  }
+
+  private static boolean canRunInParallel(ZimbraSoapContext zsc) {
+    if (zsc.isDelegatedRequest() || !(zsc.getAuthToken() instanceof ZimbraAuthToken)) {
+      return false;
+    }
+    try {
+      Account account = DocumentHandler.getRequestedAccount(zsc);
+      return account != null && Provisioning.getInstance().onLocalServer(account);
+    } catch (ServiceException e) {
+      // let the sub-requests report the error
+      return false;
+    }
+  }
+
+  private boolean isBatchParallelSafe(Element request) {
+    DocumentHandler handler = dispatcher.getHandler(request);
+    return handler != null && handler.isReadOnly() && handler.isBatchParallelSafe();
+  }
+
+  private Element dispatchBatched(
+      Element request,
+      Map<String, Object> context,
+      ZimbraSoapContext zsc,
+      boolean isResumed,
+      boolean parallel) {
+    long start = System.currentTimeMillis();
+    Element response = dispatchRequest(dispatcher.getHandler(request), request, context, zsc);
+    if (!isResumed) {
+      ZimbraLog.soap.info(
+          "(batch) %s elapsed=%d%s",
+          request.getName(), System.currentTimeMillis() - start, parallel ? ",parallel" : "");
+    }
+    return response;
+  }
+
+  /**
+   * Dispatches the given sub-requests concurrently on {@link #BATCH_EXECUTOR}, and stores their
+   * responses in {@code responses}, starting at index 1. Each sub-request gets its own copy of the
+   * engine context and of the caller's logging context.
+   */
+  private void dispatchParallel(
+      List<Element> requests,
+      Element[] responses,
+      Map<String, Object> context,
+      ZimbraSoapContext zsc,
+      boolean isResumed) {
+    SoapProtocol soapProto = zsc.getResponseProtocol();
+    Thread caller = Thread.currentThread();
+    Map<String, String> logContext = ZimbraLog.getContext();
+    List<Future<Element>> futures = new ArrayList<>(requests.size());
+    for (Element request : requests) {
+      ZimbraSoapContext requestZsc;
+      try {
+        requestZsc = zsc.copyForBatch(((ZimbraAuthToken) zsc.getAuthToken()).clone());
+      } catch (ServiceException | CloneNotSupportedException e) {
+        futures.add(null);
+        continue;
+      }
+      Map<String, Object> requestContext = new HashMap<>(context);
+      requestContext.put(ZIMBRA_CONTEXT, requestZsc);
+      Callable<Element> task =
+          () -> {
+            // the executor runs the task on the calling thread when it's saturated
+            if (Thread.currentThread() == caller) {
+              return dispatchBatched(request, requestContext, requestZsc, isResumed, true);
+            }
+            ZimbraLog.setContext(logContext);
+            try {
+              return dispatchBatched(request, requestContext, requestZsc, isResumed, true);
+            } finally {
+              ZimbraLog.clearContext();
+            }
+          };
+      futures.add(BATCH_EXECUTOR.submit(Context.current().wrap(task)));
+    }
+    for (int i = 0; i < futures.size(); i++) {
+      Element response;
+      try {
+        if (futures.get(i) == null) {
+          // couldn't copy the request context, run it like a sequential sub-request
+          response = dispatchBatched(requests.get(i), context, zsc, isResumed, false);
+        } else {
+          response = futures.get(i).get();
+        }
+      } catch (ExecutionException e) {
+        response =
+            soapFault(
+                soapProto,
+                "handler exception",
+                ServiceException.FAILURE(e.getCause().toString(), e.getCause()));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        response =
+            soapFault(
+                soapProto,
+                "handler exception",
+                ServiceException.INTERRUPTED(requests.get(i).getName()));
+      }
+      responses[i + 1] = response;
+    }
+  }
+
   private Element getSoapContextElement(SoapProtocol soapProto, Element envelope)
       throws ServiceException {
     Element contextElmt = null;
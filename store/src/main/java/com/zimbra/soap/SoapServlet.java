@@ -24,11 +24,11 @@ import com.zimbra.common.util.Log;
 import com.zimbra.common.util.LogFactory;
 import com.zimbra.common.util.RemoteIP;
 import com.zimbra.common.util.ZimbraLog;
-import com.zimbra.common.util.ZimbraServletOutputStream;
 import com.zimbra.cs.account.Provisioning;
 import com.zimbra.cs.servlet.ZimbraServlet;
 import com.zimbra.cs.stats.ZimbraPerf;
 import com.zimbra.cs.util.Zimbra;
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -382,15 +382,15 @@ public class SoapServlet extends ZimbraServlet {
     resp.setHeader("Cache-Control", "no-store, no-cache");
 
     if (chunkingEnabled) {
-      // Let jetty chunk the response if applicable.
-      ZimbraServletOutputStream out = new ZimbraServletOutputStream(resp.getOutputStream());
-      envelope.output(out);
-      out.flush();
+      // Let jetty chunk the response if applicable.  The envelope is encoded as it is marshaled,
+      // so the serialized response is never held in memory as a whole.
+      envelope.output(resp.getOutputStream());
     } else {
       // serialize the envelope to a byte array and send the response with Content-Length header.
-      byte[] soapBytes = envelope.toUTF8();
-      resp.setContentLength(soapBytes.length);
-      resp.getOutputStream().write(soapBytes);
+      ByteArrayOutputStream soapBytes = new ByteArrayOutputStream();
+      envelope.output(soapBytes);
+      resp.setContentLength(soapBytes.size());
+      soapBytes.writeTo(resp.getOutputStream());
       resp.getOutputStream().flush();
     }
     envelope.destroy();
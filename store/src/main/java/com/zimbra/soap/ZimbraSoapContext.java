@@ -260,6 +260,35 @@ public final class ZimbraSoapContext {
     }
   }
 
+  /**
+   * Returns a copy of this context for a sub-request of a <tt>BatchRequest</tt> that runs
+   * concurrently with the other sub-requests. Whatever a handler records in the context while it
+   * runs (a new session, a traversed mountpoint, a new SOAP request id) then stays with its own
+   * sub-request. The auth token is cloned as well, because proxying sets and resets its proxy auth
+   * token.
+   *
+   * @param authToken clone of this context's auth token
+   */
+  ZimbraSoapContext copyForBatch(AuthToken authToken) throws ServiceException {
+    ZimbraSoapContext copy = new ZimbraSoapContext(this, authToken, mRequestedAccountId, null);
+    // the sub-request is neither proxied nor one hop further
+    copy.mSessionProxied = mSessionProxied;
+    copy.mHopCount = mHopCount;
+    copy.mSessionInfo =
+        mSessionInfo == null
+            ? null
+            : copy.new SessionInfo(
+                mSessionInfo.sessionId, mSessionInfo.sequence, mSessionInfo.created);
+    copy.mChangeConstraintType = mChangeConstraintType;
+    copy.mMaximumChangeId = mMaximumChangeId;
+    copy.mProxyTarget = mProxyTarget;
+    copy.mIsProxyRequest = mIsProxyRequest;
+    copy.mOriginalUserAgent = mOriginalUserAgent;
+    copy.mNotificationFormat = mNotificationFormat;
+    copy.mCurWaitSetID = mCurWaitSetID;
+    return copy;
+  }
+
   /**
    * Creates a {@link ZimbraSoapContext} from the {@code <context>} {@link Element} from the SOAP
    * header.
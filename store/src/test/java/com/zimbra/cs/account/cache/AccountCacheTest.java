@@ -0,0 +1,184 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.account.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zextras.mailbox.MailboxTestSuite;
+import com.zimbra.common.localconfig.LC;
+import com.zimbra.cs.account.Account;
+import com.zimbra.cs.account.Provisioning;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class AccountCacheTest extends MailboxTestSuite {
+
+  private static Account account(String id, String name, String... aliases) {
+    Map<String, Object> attrs = new HashMap<>();
+    attrs.put(Provisioning.A_zimbraId, id);
+    attrs.put(Provisioning.A_zimbraMailAlias, aliases);
+    attrs.put(Provisioning.A_zimbraForeignPrincipal, "fp:" + name);
+    return new Account(name, id, attrs, null, Provisioning.getInstance());
+  }
+
+  @Test
+  void lookupsByEveryIndex() {
+    AccountCache cache = new AccountCache(100, 0);
+    Account account = account("1", "user@example.com", "alias@example.com");
+    cache.put(account);
+
+    assertSame(account, cache.getById("1"));
+    assertSame(account, cache.getByName("USER@example.com"));
+    assertSame(account, cache.getByName("alias@example.com"));
+    assertSame(account, cache.getByForeignPrincipal("fp:user@example.com"));
+    assertEquals(1, cache.getSize());
+
+    cache.remove(account);
+    assertNull(cache.getById("1"));
+    assertNull(cache.getByName("alias@example.com"));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void replaceDropsTheKeysOfTheReplacedEntry() {
+    AccountCache cache = new AccountCache(100, 0);
+    cache.put(account("1", "user@example.com", "old-alias@example.com"));
+    Account renamed = account("1", "renamed@example.com", "new-alias@example.com");
+    cache.replace(renamed);
+
+    assertSame(renamed, cache.getById("1"));
+    assertSame(renamed, cache.getByName("new-alias@example.com"));
+    assertNull(cache.getByName("user@example.com"));
+    assertNull(cache.getByName("old-alias@example.com"));
+  }
+
+  @Test
+  void evictionDropsEveryIndex() {
+    AccountCache cache = new AccountCache(2, 0);
+    cache.put(account("1", "one@example.com"));
+    cache.put(account("2", "two@example.com"));
+    cache.put(account("3", "three@example.com"));
+
+    assertEquals(2, cache.getSize());
+    assertNull(cache.getByName("one@example.com"));
+    assertNull(cache.getByForeignPrincipal("fp:one@example.com"));
+  }
+
+  @Test
+  void staleEntriesAreExpired() {
+    AccountCache cache = new AccountCache(100, 60_000);
+    cache.put(account("1", "user@example.com"));
+    assertEquals(1, cache.getSize());
+
+    cache.expire(System.currentTimeMillis() + 120_000);
+    assertEquals(0, cache.getSize());
+    assertNull(cache.getByName("user@example.com"));
+  }
+
+  @Test
+  void negativeCache() {
+    AccountCache cache = new AccountCache(100, 0, 100, 60_000);
+    assertFalse(cache.isNonExistingName("nobody@example.com"));
+    cache.putNonExistingName("Nobody@example.com");
+    assertTrue(cache.isNonExistingName("nobody@example.com"));
+
+    // creating the account, or an alias with that name, clears the negative entry
+    cache.put(account("1", "somebody@example.com", "nobody@example.com"));
+    assertFalse(cache.isNonExistingName("nobody@example.com"));
+
+    // a name that belongs to a cached account is never cached as non-existing
+    cache.putNonExistingName("somebody@example.com");
+    assertFalse(cache.isNonExistingName("somebody@example.com"));
+
+    cache.putNonExistingName("ghost@example.com");
+    cache.expire(System.currentTimeMillis() + 120_000);
+    assertFalse(cache.isNonExistingName("ghost@example.com"));
+
+    cache.putNonExistingName("ghost@example.com");
+    cache.removeFromNegativeCache("ghost@example.com");
+    assertFalse(cache.isNonExistingName("ghost@example.com"));
+  }
+
+  @Test
+  void negativeCacheIsOffByDefault() {
+    AccountCache cache =
+        new AccountCache(100, 0, LC.ldap_cache_account_negative_maxsize.intValue(), 60_000);
+    cache.putNonExistingName("nobody@example.com");
+    assertFalse(cache.isNonExistingName("nobody@example.com"));
+  }
+
+  @Test
+  void hitRateCountsEachLookupOnce() {
+    AccountCache cache = new AccountCache(100, 0);
+    cache.put(account("1", "user@example.com", "alias@example.com"));
+    cache.getByName("alias@example.com");
+    cache.getByName("unknown@example.com");
+    assertEquals(50.0, cache.getHitRate());
+  }
+
+  @Test
+  void concurrentPutsAndLookups() throws Exception {
+    AccountCache cache = new AccountCache(50, 0);
+    final int threads = 8;
+    final int iterations = 20000;
+    List<Account> accounts = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      accounts.add(
+          account(Integer.toString(i), "user" + i + "@example.com", "a" + i + "@example.com"));
+    }
+
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int offset = t;
+        futures.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  for (int i = 0; i < iterations; i++) {
+                    int n = (i * 7 + offset) % accounts.size();
+                    Account account = accounts.get(n);
+                    if (i % 3 == 0) {
+                      cache.put(account);
+                    } else if (i % 11 == 0) {
+                      cache.remove(account);
+                    }
+                    Account found = cache.getByName("a" + n + "@example.com");
+                    // never an entry cached under another account's keys
+                    assertTrue(found == null || found == account);
+                  }
+                  return null;
+                }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertTrue(cache.getSize() <= 50);
+    for (Account account : accounts) {
+      Account byId = cache.getById(account.getId());
+      Account byName = cache.getByName(account.getName());
+      assertTrue(byName == null || byName == byId, "name index is consistent with the id index");
+    }
+  }
+}
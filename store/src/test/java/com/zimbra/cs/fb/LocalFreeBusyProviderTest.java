@@ -0,0 +1,118 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.fb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.zextras.mailbox.MailboxTestSuite;
+import com.zimbra.common.calendar.ZCalendar.ZCalendarBuilder;
+import com.zimbra.cs.account.Account;
+import com.zimbra.cs.mailbox.Appointment;
+import com.zimbra.cs.mailbox.MailItem;
+import com.zimbra.cs.mailbox.Mailbox;
+import com.zimbra.cs.mailbox.MailboxManager;
+import com.zimbra.cs.mailbox.calendar.Invite;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+/** Unit test for {@link LocalFreeBusyProvider}. */
+public class LocalFreeBusyProviderTest extends MailboxTestSuite {
+
+  private static final long HOUR = 60 * 60 * 1000L;
+  private static final long DAY = 24 * HOUR;
+  private static final long TOMORROW = (System.currentTimeMillis() / DAY + 1) * DAY;
+  private static final long TEN = TOMORROW + 10 * HOUR;
+
+  private static String utc(long time) {
+    SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd'T'HHmmss'Z'");
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    return format.format(new Date(time));
+  }
+
+  private static Appointment createAppointment(Account account, long start, long end)
+      throws Exception {
+    String ical =
+        "BEGIN:VCALENDAR\r\n"
+            + "VERSION:2.0\r\n"
+            + "PRODID:test\r\n"
+            + "BEGIN:VEVENT\r\n"
+            + "UID:" + UUID.randomUUID() + "\r\n"
+            + "SUMMARY:meeting\r\n"
+            + "DTSTART:" + utc(start) + "\r\n"
+            + "DTEND:" + utc(end) + "\r\n"
+            + "TRANSP:OPAQUE\r\n"
+            + "END:VEVENT\r\n"
+            + "END:VCALENDAR\r\n";
+    Invite invite =
+        Invite.createFromCalendar(account, "", ZCalendarBuilder.build(ical), true).get(0);
+    Mailbox mbox = MailboxManager.getInstance().getMailboxByAccount(account);
+    int calItemId = mbox.addInvite(null, invite, Mailbox.ID_FOLDER_CALENDAR).calItemId;
+    return (Appointment) mbox.getCalendarItemById(null, calItemId);
+  }
+
+  /** Returns the ids of the appointments that make the account busy in the range. */
+  private static Set<Integer> busy(Account account, long start, long end, Appointment exAppt)
+      throws Exception {
+    FreeBusy fb =
+        LocalFreeBusyProvider.getFreeBusyList(
+            account,
+            false,
+            MailboxManager.getInstance().getMailboxByAccount(account),
+            account.getName(),
+            start,
+            end,
+            FreeBusyQuery.CALENDAR_FOLDER_ALL,
+            exAppt);
+    Set<Integer> ids = new HashSet<>();
+    for (FreeBusy.Interval interval : fb) {
+      for (FreeBusy.FBInstance instance : interval.getInstances()) {
+        ids.add(instance.getApptId());
+      }
+    }
+    return ids;
+  }
+
+  @Test
+  void excludesTheAppointmentBeingRescheduled() throws Exception {
+    Account account = createAccount().create();
+    Appointment first = createAppointment(account, TEN, TEN + HOUR);
+    Appointment second = createAppointment(account, TEN + HOUR, TEN + 2 * HOUR);
+
+    assertEquals(Set.of(first.getId(), second.getId()), busy(account, TEN, TEN + 2 * HOUR, null));
+    assertEquals(Set.of(second.getId()), busy(account, TEN, TEN + 2 * HOUR, first));
+  }
+
+  @Test
+  void appointmentsEndingOrStartingAtTheRangeEdgesAreNotBusy() throws Exception {
+    Account account = createAccount().create();
+    Appointment first = createAppointment(account, TEN, TEN + HOUR);
+    Appointment second = createAppointment(account, TEN + HOUR, TEN + 2 * HOUR);
+
+    assertEquals(Set.of(), busy(account, TEN - HOUR, TEN, null));
+    assertEquals(Set.of(), busy(account, TEN + 2 * HOUR, TEN + 3 * HOUR, null));
+    assertEquals(Set.of(first.getId()), busy(account, TEN + HOUR - 1, TEN + HOUR, null));
+    assertEquals(
+        Set.of(first.getId(), second.getId()), busy(account, TEN + HOUR - 1, TEN + HOUR + 1, null));
+  }
+
+  @Test
+  void followsCreatedAndDeletedAppointmentsOfACachedCalendar() throws Exception {
+    Account account = createAccount().create();
+    Mailbox mbox = MailboxManager.getInstance().getMailboxByAccount(account);
+    Appointment first = createAppointment(account, TEN, TEN + HOUR);
+    Appointment second = createAppointment(account, TEN + HOUR, TEN + 2 * HOUR);
+    assertEquals(Set.of(first.getId(), second.getId()), busy(account, TEN, TEN + 3 * HOUR, null));
+
+    Appointment third = createAppointment(account, TEN + 2 * HOUR, TEN + 3 * HOUR);
+    mbox.delete(null, second.getId(), MailItem.Type.APPOINTMENT);
+    assertEquals(Set.of(first.getId(), third.getId()), busy(account, TEN, TEN + 3 * HOUR, null));
+  }
+}
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
@@ -203,4 +204,15 @@ public class FilterUtilTest extends MailboxTestSuite {
     String regex = FilterUtil.sieveToJavaRegex("coyote@**.com");
     assertEquals("coyote@(.*?)(.*)\\.com", regex);
   }
+
+  @Test
+  void sievePatternIsCompiledOncePerFlags() {
+    Pattern caseInsensitive = FilterUtil.getSievePattern("coyote@*.com", Pattern.CASE_INSENSITIVE);
+    assertSame(
+        caseInsensitive, FilterUtil.getSievePattern("coyote@*.com", Pattern.CASE_INSENSITIVE));
+    assertTrue(caseInsensitive.matcher("Coyote@Acme.com").matches());
+    Pattern caseSensitive = FilterUtil.getSievePattern("coyote@*.com", 0);
+    assertNotSame(caseInsensitive, caseSensitive);
+    assertFalse(caseSensitive.matcher("Coyote@Acme.com").matches());
+  }
 }
@@ -19,7 +19,9 @@ import com.zimbra.cs.mailbox.Message;
 import com.zimbra.cs.mailbox.OperationContext;
 import com.zimbra.cs.mime.ParsedMessage;
 import com.zimbra.cs.service.util.ItemId;
+import com.zimbra.soap.mail.type.FilterAction;
 import java.util.List;
+import org.apache.jsieve.parser.generated.Node;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -96,4 +98,30 @@ public final class RuleManagerTest extends MailboxTestSuite {
   assertEquals(requireLine, RuleManager.getRuleByName(script, "filter2").getFirst());
   assertEquals(rule2, RuleManager.getRuleByName(script, "filter2").getSecond());
  }
+
+ @Test
+ void accountsWithTheSameScriptShareTheParsedRules() throws Exception {
+  String script = "require \"fileinto\"; if header :contains \"Subject\" \"shared\" { fileinto \"old\"; }";
+  Account account1 = createAccount().create();
+  Account account2 = createAccount().create();
+  Account account3 = createAccount().create();
+  account1.setMailSieveScript(script);
+  account2.setMailSieveScript(script);
+  account3.setMailSieveScript(script + "\nkeep;");
+
+  Node node = RuleManager.getRulesNode(account1, RuleManager.FILTER_RULES_CACHE_KEY);
+  assertSame(node, RuleManager.getRulesNode(account2, RuleManager.FILTER_RULES_CACHE_KEY));
+  assertNotSame(node, RuleManager.getRulesNode(account3, RuleManager.FILTER_RULES_CACHE_KEY));
+
+  RuleManager.folderRenamed(account1, "old", "new");
+  assertTrue(RuleManager.getIncomingRules(account1).contains("\"/new\""));
+  assertSame(node, RuleManager.getRulesNode(account2, RuleManager.FILTER_RULES_CACHE_KEY));
+  assertEquals("/old", fileIntoFolder(account2));
+ }
+
+ private static String fileIntoFolder(Account account) throws Exception {
+  FilterAction.FileIntoAction action = (FilterAction.FileIntoAction)
+      RuleManager.getIncomingRulesAsXML(account).get(0).getFilterActions().get(0);
+  return action.getFolder();
+ }
 }
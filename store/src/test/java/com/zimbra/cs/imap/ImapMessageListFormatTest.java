@@ -0,0 +1,42 @@
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.imap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zimbra.cs.mailbox.Flag;
+import com.zimbra.cs.mailbox.MailItem;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ImapMessageListFormatTest {
+
+	@Test
+	void roundTripsMessagesThroughBytes() {
+		ImapMessage contact = new ImapMessage(7, MailItem.Type.CONTACT, 12, 0, new String[] {"work", "ünïcode"});
+		ImapMessage expunged = new ImapMessage(9, MailItem.Type.MESSAGE, 9, Flag.BITMASK_FLAGGED, null).setExpunged(true);
+
+		List<ImapMessage> restored = ImapMessageListFormat.decode(ImapMessageListFormat.encode(List.of(expunged, contact)));
+
+		assertEquals(2, restored.size());
+		assertMessageEquals(expunged, restored.get(0));
+		assertMessageEquals(contact, restored.get(1));
+		assertEquals(2, restored.get(1).sequence);
+		assertEquals(MailItem.Type.CONTACT, restored.get(1).getType());
+		assertTrue(restored.get(0).isExpunged());
+		assertNull(restored.get(0).tags);
+	}
+
+	private static void assertMessageEquals(ImapMessage expected, ImapMessage actual) {
+		assertEquals(expected.msgId, actual.msgId);
+		assertEquals(expected.imapUid, actual.imapUid);
+		assertEquals(expected.flags, actual.flags);
+		assertEquals(expected.sflags, actual.sflags);
+		assertArrayEquals(expected.tags, actual.tags);
+	}
+}
@@ -12,6 +12,7 @@ import com.zimbra.cs.stats.ZimbraPerf;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import org.apache.lucene.store.BufferedIndexInput;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
 import org.junit.jupiter.api.BeforeAll;
@@ -63,4 +64,116 @@ public final class LuceneDirectoryTest {
 		assertEquals(3, ZimbraPerf.COUNTER_IDX_BYTES_WRITTEN.getTotal() - total);
 	}
 
+	@Test
+	void reportsReadsWhenClosed() throws IOException {
+		FileOutputStream out = new FileOutputStream(new File(tmpDir, "closed"));
+		out.write(new byte[]{0, 1, 2, 3, 4});
+		out.close();
+
+		long count = ZimbraPerf.COUNTER_IDX_BYTES_READ.getCount();
+		LuceneDirectory dir = LuceneDirectory.open(tmpDir);
+		IndexInput in = dir.openInput("closed");
+		for (int i = 0; i < 5; i++) {
+			assertEquals(i, in.readByte());
+		}
+		assertEquals(0, dir.getBytesRead());
+		in.close();
+		assertEquals(1, ZimbraPerf.COUNTER_IDX_BYTES_READ.getCount() - count);
+		assertEquals(5, dir.getBytesRead());
+	}
+
+	@Test
+	void reportsReadsOfClonesInBatches() throws IOException {
+		FileOutputStream out = new FileOutputStream(new File(tmpDir, "clone"));
+		out.write(new byte[BufferedIndexInput.BUFFER_SIZE + 1]);
+		out.close();
+
+		LuceneDirectory dir = LuceneDirectory.open(tmpDir);
+		IndexInput in = dir.openInput("clone");
+		IndexInput clone = (IndexInput) in.clone();
+		clone.readBytes(new byte[BufferedIndexInput.BUFFER_SIZE - 1], 0, BufferedIndexInput.BUFFER_SIZE - 1);
+		assertEquals(0, dir.getBytesRead());
+		clone.readByte();
+		clone.readByte();
+		assertEquals(BufferedIndexInput.BUFFER_SIZE + 1, dir.getBytesRead());
+		in.close();
+	}
+
+	@Test
+	void countsNothingWhenDisabled() throws IOException {
+		LC.zimbra_index_disable_perf_counters.setDefault(true);
+		LuceneDirectory dir;
+		try {
+			dir = LuceneDirectory.open(tmpDir);
+		} finally {
+			LC.zimbra_index_disable_perf_counters.setDefault(false);
+		}
+		IndexOutput out = dir.createOutput("disabled");
+		out.writeBytes(new byte[]{0, 1, 2}, 3);
+		out.close();
+		IndexInput in = dir.openInput("disabled");
+		in.readBytes(new byte[3], 0, 3);
+		in.close();
+		assertEquals(0, dir.getFilesOpened());
+		assertEquals(0, dir.getBytesRead());
+		assertEquals(0, dir.getBytesWritten());
+	}
+
+	@Test
+	void autoMapsFilesOfHotIndex() throws IOException {
+		FileOutputStream out = new FileOutputStream(new File(tmpDir, "hot"));
+		out.write(new byte[]{0, 1, 2, 3, 4});
+		out.close();
+
+		String impl = LC.zimbra_index_lucene_io_impl.value();
+		String hotSearches = LC.zimbra_index_lucene_mmap_hot_searches.value();
+		LC.zimbra_index_lucene_io_impl.setDefault("auto");
+		LC.zimbra_index_lucene_mmap_hot_searches.setDefault(2);
+		try {
+			LuceneDirectory dir = LuceneDirectory.open(tmpDir);
+			long mapped = ZimbraPerf.COUNTER_IDX_MMAP.getTotal();
+			IndexInput in = dir.openInput("hot");
+			in.readBytes(new byte[5], 0, 5);
+			in.close();
+			assertFalse(dir.isMapped());
+			assertEquals(mapped, ZimbraPerf.COUNTER_IDX_MMAP.getTotal());
+
+			dir.recordSearch();
+			dir.recordSearch();
+			assertTrue(dir.isMapped());
+			in = dir.openInput("hot");
+			in.readBytes(new byte[5], 0, 5);
+			in.close();
+			assertEquals(mapped + 100, ZimbraPerf.COUNTER_IDX_MMAP.getTotal());
+			assertEquals(2, dir.getFilesOpened());
+			assertEquals(10, dir.getBytesRead());
+			assertEquals(0, dir.getBytesWritten());
+			dir.close();
+		} finally {
+			LC.zimbra_index_lucene_io_impl.setDefault(impl);
+			LC.zimbra_index_lucene_mmap_hot_searches.setDefault(hotSearches);
+		}
+	}
+
+	@Test
+	void hotIndexCoolsDown() {
+		LuceneDirectory.HotPolicy policy = new LuceneDirectory.HotPolicy(2, 1000);
+		long now = System.currentTimeMillis();
+		policy.recordSearch(now);
+		assertFalse(policy.isHot(now));
+		policy.recordSearch(now);
+		assertTrue(policy.isHot(now));
+		long windowAfterHotOne = now + 1000;
+		policy.recordSearch(windowAfterHotOne);
+		assertTrue(policy.isHot(windowAfterHotOne));
+		long windowAfterSingleSearch = now + 2000;
+		policy.recordSearch(windowAfterSingleSearch);
+		assertFalse(policy.isHot(windowAfterSingleSearch));
+		long secondSearchOfWindow = now + 2500;
+		policy.recordSearch(secondSearchOfWindow);
+		assertTrue(policy.isHot(secondSearchOfWindow));
+		long wholeWindowWithoutSearches = now + 4000;
+		assertFalse(policy.isHot(wholeWindowWithoutSearches));
+	}
+
 }
@@ -5,6 +5,20 @@
 
 package com.zimbra.cs.index;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zimbra.common.mailbox.ContactConstants;
+import com.zimbra.cs.mailbox.Mailbox;
+import com.zimbra.cs.mailbox.MailboxManager;
+import com.zimbra.cs.mime.ParsedContact;
+import com.zimbra.cs.stats.ZimbraPerf;
+import java.util.Collections;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.junit.jupiter.api.Test;
+
 /**
  * Unit test for {@link LuceneIndex}.
  */
@@ -16,4 +30,34 @@ public final class LuceneIndexTest extends AbstractIndexStoreTest {
         // Default for LC.zimbra_class_index_store_factory.value() is USUALLY this
         return "com.zimbra.cs.index.LuceneIndex$Factory";
     }
+
+    private static void createContact(Mailbox mbox, String email) throws Exception {
+        mbox.createContact(null, new ParsedContact(
+                Collections.singletonMap(ContactConstants.A_email, email)), Mailbox.ID_FOLDER_CONTACTS, null);
+    }
+
+    @Test
+    void commitRefreshesCachedSearcher() throws Exception {
+        Mailbox mbox = MailboxManager.getInstance().getMailboxByAccountId(testAcct.getId());
+        IndexStore index = mbox.index.getIndexStore();
+        createContact(mbox, "first@zimbra.com");
+        mbox.index.indexDeferredItems();
+
+        ZimbraIndexSearcher first = index.openSearcher();
+        int docs = first.getIndexReader().numDocs();
+        first.close();
+
+        long reopens = ZimbraPerf.STOPWATCH_IDX_REOPEN.getCount();
+        createContact(mbox, "second@zimbra.com");
+        mbox.index.indexDeferredItems();
+
+        // the commit replaced the cached searcher, searching doesn't open the whole index again
+        ZimbraIndexSearcher second = index.openSearcher();
+        assertNotSame(first, second);
+        assertTrue(ZimbraPerf.STOPWATCH_IDX_REOPEN.getCount() > reopens);
+        assertEquals(docs + 1, second.getIndexReader().numDocs());
+        assertEquals(1, second.search(
+                new TermQuery(new Term(LuceneFields.L_CONTACT_DATA, "second@zimbra.com")), 10).getTotalHits());
+        second.close();
+    }
 }
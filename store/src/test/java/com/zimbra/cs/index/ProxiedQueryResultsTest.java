@@ -0,0 +1,165 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zextras.mailbox.MailboxTestSuite;
+import com.zimbra.common.soap.Element;
+import com.zimbra.common.soap.MailConstants;
+import com.zimbra.common.soap.SoapProtocol;
+import com.zimbra.cs.account.Account;
+import com.zimbra.cs.account.Provisioning;
+import com.zimbra.cs.account.Server;
+import com.zimbra.cs.mailbox.MailItem;
+import com.zimbra.cs.service.AuthProvider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/** Unit test for {@link ProxiedQueryResults}. */
+public final class ProxiedQueryResultsTest extends MailboxTestSuite {
+
+  private static final String REMOTE_HOST = "127.0.0.1";
+
+  private static Account account;
+  private static ServerSocket remote;
+  // the search requests received by the remote server, which never answers them
+  private static final BlockingQueue<String> requests = new LinkedBlockingQueue<>();
+  private static final List<Socket> connections = new CopyOnWriteArrayList<>();
+
+  @BeforeAll
+  static void init() throws Exception {
+    account = createAccount().create();
+    remote = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    Thread acceptor = new Thread(ProxiedQueryResultsTest::accept, "RemoteSearchServer");
+    acceptor.setDaemon(true);
+    acceptor.start();
+
+    Map<String, Object> attrs = new HashMap<>();
+    attrs.put(Provisioning.A_zimbraServiceHostname, REMOTE_HOST);
+    attrs.put(Provisioning.A_zimbraServiceEnabled, "mailbox");
+    attrs.put(Provisioning.A_zimbraMailMode, "http");
+    attrs.put(Provisioning.A_zimbraMailPort, Integer.toString(remote.getLocalPort()));
+    Server server = Provisioning.getInstance().createServer(REMOTE_HOST, attrs);
+    assertNotNull(server);
+  }
+
+  @AfterAll
+  static void shutdown() throws Exception {
+    remote.close();
+    for (Socket connection : connections) {
+      connection.close();
+    }
+  }
+
+  private static void accept() {
+    while (!remote.isClosed()) {
+      try {
+        Socket connection = remote.accept();
+        connections.add(connection);
+        Thread reader = new Thread(() -> read(connection), "RemoteSearchConnection");
+        reader.setDaemon(true);
+        reader.start();
+      } catch (IOException e) {
+        return;
+      }
+    }
+  }
+
+  private static void read(Socket connection) {
+    StringBuilder request = new StringBuilder();
+    byte[] buf = new byte[4096];
+    try (InputStream in = connection.getInputStream()) {
+      for (int n = in.read(buf); n > 0; n = in.read(buf)) {
+        request.append(new String(buf, 0, n, StandardCharsets.UTF_8));
+        if (request.indexOf("</SearchRequest>") >= 0) {
+          requests.add(request.toString());
+          request.setLength(0);
+        }
+      }
+    } catch (IOException e) {
+      // closed by the test
+    }
+  }
+
+  private static ProxiedQueryResults search() throws Exception {
+    SearchParams params = new SearchParams();
+    params.setQueryString("in:inbox");
+    params.setTypes(EnumSet.of(MailItem.Type.MESSAGE));
+    params.setSortBy(SortBy.DATE_DESC);
+    params.setLimit(10);
+    return new ProxiedQueryResults(
+        SoapProtocol.Soap12,
+        AuthProvider.getAuthToken(account),
+        account.getId(),
+        REMOTE_HOST,
+        params,
+        "in:inbox",
+        SearchParams.Fetch.NORMAL);
+  }
+
+  @Test
+  void remotePartThatTimesOutIsReportedAsPartial() throws Exception {
+    ProxiedQueryResults results = search();
+    results.setBranchTimeout(200);
+    long start = System.currentTimeMillis();
+    try {
+      assertNull(results.getNext());
+    } finally {
+      results.close();
+    }
+    assertTrue(System.currentTimeMillis() - start < 10_000, "didn't give up on the remote server");
+
+    List<QueryInfo> info = results.getResultInfo();
+    assertEquals(1, info.size());
+    Element partial = info.get(0).toXml(new Element.XMLElement(MailConstants.E_INFO));
+    assertEquals(MailConstants.E_PARTIAL, partial.getName());
+    assertEquals(
+        MailConstants.PARTIAL_REASON_TIMEOUT,
+        partial.getAttribute(MailConstants.A_PARTIAL_REASON));
+    assertEquals(REMOTE_HOST, partial.getAttribute(MailConstants.A_PARTIAL_SERVER));
+    assertEquals(account.getId(), partial.getAttribute(MailConstants.A_PARTIAL_ACCOUNT));
+    // later hits aren't requested again from a server that timed out
+    assertNull(results.getNext());
+    assertEquals(1, results.getResultInfo().size());
+  }
+
+  @Test
+  void prefetchSendsTheRequestBeforeTheHitsAreRead() throws Exception {
+    requests.clear();
+    ProxiedQueryResults results = search();
+    results.setBranchTimeout(2000);
+    try {
+      results.prefetch();
+      String request = requests.poll(10, TimeUnit.SECONDS);
+      assertNotNull(request, "the remote server didn't get the search request");
+      assertTrue(request.contains("in:inbox"), request);
+      // the request in flight is the one the hits are read from
+      assertNull(results.getNext());
+      assertNull(requests.poll(500, TimeUnit.MILLISECONDS));
+    } finally {
+      results.close();
+    }
+  }
+}
@@ -0,0 +1,54 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.zextras.mailbox.MailboxTestSuite;
+import com.zimbra.common.soap.SoapProtocol;
+import com.zimbra.cs.account.Account;
+import com.zimbra.cs.mailbox.DeliveryOptions;
+import com.zimbra.cs.mailbox.MailItem;
+import com.zimbra.cs.mailbox.Mailbox;
+import com.zimbra.cs.mailbox.MailboxManager;
+import com.zimbra.cs.mailbox.MailboxTestUtil;
+import com.zimbra.cs.mailbox.OperationContext;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Unit test for {@link UnionQueryOperation}. */
+public final class UnionQueryOperationTest extends MailboxTestSuite {
+
+  @Test
+  void mergesSortedHitsOfTheBranches() throws Exception {
+    Account account = createAccount().create();
+    Mailbox mbox = MailboxManager.getInstance().getMailboxByAccountId(account.getId());
+    DeliveryOptions inbox = new DeliveryOptions().setFolderId(Mailbox.ID_FOLDER_INBOX);
+    DeliveryOptions sent = new DeliveryOptions().setFolderId(Mailbox.ID_FOLDER_SENT);
+    mbox.addMessage(null, MailboxTestUtil.generateMessage("d union"), sent, null);
+    mbox.addMessage(null, MailboxTestUtil.generateMessage("a inbox"), inbox, null);
+    mbox.addMessage(null, MailboxTestUtil.generateMessage("c inbox"), inbox, null);
+    mbox.addMessage(null, MailboxTestUtil.generateMessage("b union"), sent, null);
+    mbox.addMessage(null, MailboxTestUtil.generateMessage("e other"), sent, null);
+    MailboxTestUtil.index(mbox);
+
+    SearchParams params = new SearchParams();
+    params.setQueryString("in:inbox OR subject:union");
+    params.setTypes(EnumSet.of(MailItem.Type.MESSAGE));
+    params.setSortBy(SortBy.SUBJ_ASC);
+    ZimbraQuery query =
+        new ZimbraQuery(new OperationContext(mbox), SoapProtocol.Soap12, mbox, params);
+    List<String> subjects = new ArrayList<>();
+    try (ZimbraQueryResults results = query.execute()) {
+      while (results.hasNext()) {
+        subjects.add(((MessageHit) results.getNext()).getMessage().getSubject());
+      }
+    }
+    assertEquals(List.of("a inbox", "b union", "c inbox", "d union"), subjects);
+  }
+}
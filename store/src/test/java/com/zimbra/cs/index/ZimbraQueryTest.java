@@ -29,7 +29,9 @@ import com.zimbra.cs.util.IOUtil;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -134,6 +136,35 @@ public final class ZimbraQueryTest extends MailboxTestSuite {
 		IOUtil.closeQuietly(result);
 	}
 
+	@Test
+	void dbFirstJoinReturnsMatchingItems() throws Exception {
+		Mailbox mbox =
+				MailboxManager.getInstance().getMailboxByAccountId(account.getId());
+		DeliveryOptions dopt = new DeliveryOptions().setFolderId(Mailbox.ID_FOLDER_INBOX);
+		Message one = mbox.addMessage(null, MailboxTestUtil.generateMessage("dbfirst one"), dopt, null);
+		Message two = mbox.addMessage(null, MailboxTestUtil.generateMessage("dbfirst two"), dopt, null);
+		Message other = mbox.addMessage(null, MailboxTestUtil.generateMessage("other"), dopt, null);
+		MailboxTestUtil.index(mbox);
+
+		SearchParams params = new SearchParams();
+		// item ids make the DB constraints run before the text part
+		params.setQueryString("item:{" + one.getId() + "," + two.getId() + "," + other.getId() + "} subject:dbfirst");
+		params.setSortBy(SortBy.DATE_ASC);
+		params.setTypes(EnumSet.of(MailItem.Type.MESSAGE));
+
+		ZimbraQuery query =
+				new ZimbraQuery(new OperationContext(mbox), SoapProtocol.Soap12, mbox, params);
+		ZimbraQueryResults result = query.execute();
+		Set<Integer> ids = new HashSet<>();
+		while (result.hasNext()) {
+			ZimbraHit hit = result.getNext();
+			assertEquals(hit.getItemId(), hit.getMailItem().getId());
+			ids.add(hit.getItemId());
+		}
+		IOUtil.closeQuietly(result);
+		assertEquals(Set.of(one.getId(), two.getId()), ids);
+	}
+
 	@Test
 	@Disabled("Fix me. Assertions fails. Standard error: missing .platform")
 	void calItemExpandRange() throws Exception {
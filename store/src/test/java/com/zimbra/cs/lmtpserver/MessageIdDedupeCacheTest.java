@@ -0,0 +1,118 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.lmtpserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/** Unit test for {@link MessageIdDedupeCache}. */
+public class MessageIdDedupeCacheTest {
+
+  private final AtomicLong now = new AtomicLong(1000);
+
+  @Test
+  void remembersMailboxesPerMessageId() {
+    MessageIdDedupeCache cache = new MessageIdDedupeCache(1, now::get);
+    cache.configure(10, 0);
+    cache.add("<a@test.com>", 3);
+    cache.add("<a@test.com>", 1);
+    cache.add("<b@test.com>", 2);
+
+    assertTrue(cache.contains("<a@test.com>", 1));
+    assertTrue(cache.contains("<a@test.com>", 3));
+    assertFalse(cache.contains("<a@test.com>", 2));
+    assertFalse(cache.contains("<c@test.com>", 1));
+
+    cache.remove("<a@test.com>", 1);
+    assertFalse(cache.contains("<a@test.com>", 1));
+    assertTrue(cache.contains("<a@test.com>", 3));
+    cache.remove("<a@test.com>", 3);
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  void evictsLeastRecentlyUsedMessageIds() {
+    MessageIdDedupeCache cache = new MessageIdDedupeCache(1, now::get);
+    cache.configure(2, 0);
+    cache.add("<a@test.com>", 1);
+    cache.add("<b@test.com>", 1);
+    assertTrue(cache.contains("<a@test.com>", 1));
+    cache.add("<c@test.com>", 1);
+
+    assertTrue(cache.contains("<a@test.com>", 1));
+    assertFalse(cache.contains("<b@test.com>", 1));
+    assertTrue(cache.contains("<c@test.com>", 1));
+
+    int roomForTheMostRecentlyUsedOnly = 1;
+    cache.configure(roomForTheMostRecentlyUsedOnly, 0);
+    assertEquals(1, cache.size());
+    assertTrue(cache.contains("<c@test.com>", 1));
+
+    cache.configure(0, 0);
+    cache.add("<d@test.com>", 1);
+    assertFalse(cache.contains("<d@test.com>", 1));
+  }
+
+  @Test
+  void expiresMessageIdsAfterTimeout() {
+    MessageIdDedupeCache cache = new MessageIdDedupeCache(1, now::get);
+    cache.configure(10, 100);
+    cache.add("<a@test.com>", 1);
+    now.addAndGet(60);
+    cache.add("<b@test.com>", 1);
+    now.addAndGet(60);
+
+    assertFalse(cache.contains("<a@test.com>", 1));
+    assertTrue(cache.contains("<b@test.com>", 1));
+
+    long longerTimeout = 1000;
+    cache.configure(10, longerTimeout);
+    now.addAndGet(500);
+    assertTrue(cache.contains("<b@test.com>", 1), "the new timeout applies to cached entries");
+  }
+
+  @Test
+  void concurrentSessions() throws Exception {
+    MessageIdDedupeCache cache = new MessageIdDedupeCache();
+    cache.configure(100000, 0);
+    int sessions = 64;
+    ExecutorService executor = Executors.newFixedThreadPool(sessions);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int s = 0; s < sessions; s++) {
+        int session = s;
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 1000; i++) {
+                    String msgid = "<" + i + "@test.com>";
+                    if (!cache.contains(msgid, session)) {
+                      cache.add(msgid, session);
+                    }
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(1000, cache.size());
+    for (int s = 0; s < sessions; s++) {
+      assertTrue(cache.contains("<999@test.com>", s));
+    }
+  }
+}
@@ -0,0 +1,58 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.lmtpserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.zextras.mailbox.MailboxTestSuite;
+import com.zimbra.cs.account.Account;
+import com.zimbra.cs.mailbox.MailItem;
+import com.zimbra.cs.mailbox.Mailbox;
+import com.zimbra.cs.mailbox.MailboxManager;
+import com.zimbra.cs.mailbox.Message;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Unit test for {@link ZimbraLmtpBackend}. */
+public final class ZimbraLmtpBackendTest extends MailboxTestSuite {
+
+  @Test
+  void sharedDeliveryReachesEveryRecipient() throws Exception {
+    List<Account> accounts = new ArrayList<>();
+    LmtpEnvelope env = new LmtpEnvelope();
+    env.setSender(new LmtpAddress("<sender@test.com>", null, null));
+    for (int i = 0; i < 12; i++) {
+      Account account = createAccount().create();
+      accounts.add(account);
+      env.addLocalRecipient(new LmtpAddress("<" + account.getName() + ">", null, null));
+    }
+    // not found, its reply keeps its place among the others
+    env.addLocalRecipient(new LmtpAddress("<nobody@test.com>", null, null));
+
+    byte[] content =
+        ("From: sender@test.com\r\n"
+                + "Subject: shared delivery\r\n"
+                + "Message-ID: <shared-delivery@test.com>\r\n"
+                + "\r\n"
+                + "delivered to every recipient\r\n")
+            .getBytes(StandardCharsets.UTF_8);
+    new ZimbraLmtpBackend(LmtpConfig.getInstance())
+        .deliver(env, new ByteArrayInputStream(content), content.length);
+
+    List<LmtpAddress> recipients = env.getLocalRecipients();
+    for (int i = 0; i < accounts.size(); i++) {
+      assertEquals(LmtpReply.DELIVERY_OK, recipients.get(i).getDeliveryStatus());
+      Mailbox mbox = MailboxManager.getInstance().getMailboxByAccount(accounts.get(i));
+      List<MailItem> inbox = mbox.getItemList(null, MailItem.Type.MESSAGE, Mailbox.ID_FOLDER_INBOX);
+      assertEquals(1, inbox.size());
+      assertEquals("shared delivery", ((Message) inbox.get(0)).getSubject());
+    }
+    assertEquals(LmtpReply.PERMANENT_FAILURE, recipients.get(accounts.size()).getDeliveryStatus());
+  }
+}
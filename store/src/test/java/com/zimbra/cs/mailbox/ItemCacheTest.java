@@ -0,0 +1,185 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.mailbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zextras.mailbox.MailboxTestSuite;
+import com.zimbra.cs.account.Account;
+import com.zimbra.cs.mailbox.MailItem.UnderlyingData;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class ItemCacheTest extends MailboxTestSuite {
+
+  private static Mailbox mbox;
+
+  @BeforeAll
+  static void init() throws Exception {
+    Account account = createAccount().create();
+    mbox = MailboxManager.getInstance().getMailboxByAccount(account);
+  }
+
+  /** Returns a message of the test mailbox, without adding it to the mailbox's own cache. */
+  private static MailItem item(int id) throws Exception {
+    UnderlyingData data = new UnderlyingData();
+    data.id = id;
+    data.type = MailItem.Type.MESSAGE.toByte();
+    data.folderId = Mailbox.ID_FOLDER_INBOX;
+    data.uuid = "uuid-" + id;
+    data.setSubject("message " + id);
+    return MailItem.constructItem(mbox, data, true /* skipCache */);
+  }
+
+  @Test
+  void putGetRemove() throws Exception {
+    ItemCache cache = new ItemCache(1, new ItemCacheBudget(Long.MAX_VALUE));
+    List<MailItem> items = new ArrayList<>();
+    // enough items to grow the table a few times and exercise the probe runs on removal
+    for (int id = 1; id <= 1000; id++) {
+      MailItem item = item(id);
+      items.add(item);
+      cache.put(item);
+    }
+    assertEquals(1000, cache.size());
+    for (int id = 1; id <= 1000; id += 2) {
+      assertSame(items.get(id - 1), cache.remove(id));
+    }
+    assertEquals(500, cache.size());
+    for (int id = 1; id <= 1000; id++) {
+      if (id % 2 == 0) {
+        assertSame(items.get(id - 1), cache.get(id));
+        assertSame(items.get(id - 1), cache.get("uuid-" + id));
+      } else {
+        assertNull(cache.get(id));
+        assertNull(cache.get("uuid-" + id));
+      }
+    }
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertNull(cache.get(2));
+  }
+
+  @Test
+  void valuesAreInAccessOrder() throws Exception {
+    ItemCache cache = new ItemCache(1, new ItemCacheBudget(Long.MAX_VALUE));
+    MailItem one = item(1);
+    MailItem two = item(2);
+    MailItem three = item(3);
+    cache.put(one);
+    cache.put(two);
+    cache.put(three);
+    cache.get(1);
+    assertEquals(List.of(two, three, one), cache.values());
+
+    assertEquals(1, cache.evictEldest(1));
+    assertFalse(cache.contains(two));
+    assertEquals(List.of(three, one), cache.values());
+  }
+
+  @Test
+  void lookupsDoNotExcludeEachOther() throws Exception {
+    ItemCache cache = new ItemCache(1, new ItemCacheBudget(Long.MAX_VALUE));
+    List<MailItem> items = new ArrayList<>();
+    for (int id = 1; id <= 100; id++) {
+      MailItem item = item(id);
+      items.add(item);
+      cache.put(item);
+    }
+    int threads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 10000; i++) {
+                    int id = i % 100 + 1;
+                    assertSame(items.get(id - 1), cache.get(id));
+                    assertSame(items.get(id - 1), cache.get("uuid-" + id));
+                  }
+                }));
+      }
+      // writers still get in while the readers run
+      for (int i = 0; i < 100; i++) {
+        cache.put(items.get(i));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(100, cache.size());
+    assertEquals(100, cache.evictEldest(100), "referenced items only get one second chance");
+  }
+
+  @Test
+  void budgetEvictsFromIdleCachesFirst() throws Exception {
+    ItemCacheBudget budget = new ItemCacheBudget(100);
+    ItemCache idle = new ItemCache(1, budget);
+    ItemCache busy = new ItemCache(2, budget);
+    ItemCache self = new ItemCache(3, budget);
+    for (int id = 1; id <= 80; id++) {
+      idle.put(item(id));
+    }
+    busy.pin();
+    for (int id = 1; id <= 50; id++) {
+      busy.put(item(id));
+    }
+    for (int id = 1; id <= 30; id++) {
+      self.put(item(id));
+    }
+    assertEquals(160, budget.getTotal());
+
+    self.enforceBudget();
+    assertEquals(100, budget.getTotal());
+    assertEquals(50, busy.size(), "caches in use are never evicted from");
+    assertEquals(30, self.size(), "the caller's cache is only evicted from as a last resort");
+    assertEquals(20, idle.size());
+    assertTrue(idle.contains(item(80)), "eldest items go first");
+
+    busy.clear();
+    assertEquals(50, budget.getTotal());
+  }
+
+  @Test
+  void budgetDoesNotEvictFromPinnedCaches() throws Exception {
+    ItemCache cache = new ItemCache(1, new ItemCacheBudget(Long.MAX_VALUE));
+    cache.put(item(1));
+    cache.pin();
+    assertEquals(0, cache.evictEldestIfUnpinned(1));
+    cache.unpin();
+    assertEquals(1, cache.evictEldestIfUnpinned(1));
+  }
+
+  @Test
+  void reportsHitRatePerMailbox() throws Exception {
+    ItemCacheBudget budget = new ItemCacheBudget(Long.MAX_VALUE);
+    ItemCache cache = new ItemCache(42, budget);
+    new ItemCache(43, budget);
+    cache.put(item(1));
+    cache.get(1);
+    cache.get(1);
+    cache.get(1);
+    cache.get(2);
+
+    Collection<String> lines = budget.getDataLines();
+    assertEquals(List.of("42,1,3,1,75.0"), new ArrayList<>(lines));
+    assertTrue(budget.getDataLines().isEmpty(), "counters are reset after each dump");
+  }
+}
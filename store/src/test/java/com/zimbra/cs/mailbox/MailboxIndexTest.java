@@ -0,0 +1,179 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.mailbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zextras.mailbox.MailboxTestSuite;
+import com.zimbra.common.mailbox.ContactConstants;
+import com.zimbra.cs.account.Account;
+import com.zimbra.cs.index.LuceneFields;
+import com.zimbra.cs.index.SearchParams;
+import com.zimbra.cs.index.SortBy;
+import com.zimbra.cs.index.ZimbraHit;
+import com.zimbra.cs.index.ZimbraIndexSearcher;
+import com.zimbra.cs.index.ZimbraQueryResults;
+import com.zimbra.cs.mime.ParsedContact;
+import com.zimbra.cs.stats.ZimbraPerf;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.junit.jupiter.api.Test;
+
+/** Unit test for {@link MailboxIndex}. */
+public final class MailboxIndexTest extends MailboxTestSuite {
+
+  private static int countContacts(Mailbox mbox, String email) throws Exception {
+    try (ZimbraIndexSearcher searcher = mbox.index.getIndexStore().openSearcher()) {
+      return searcher
+          .search(new TermQuery(new Term(LuceneFields.L_CONTACT_DATA, email)), 1000)
+          .getTotalHits();
+    }
+  }
+
+  private static List<Integer> searchContacts(Mailbox mbox, String query) throws Exception {
+    List<Integer> ids = new ArrayList<>();
+    try (ZimbraQueryResults results =
+        mbox.index.search(
+            new OperationContext(mbox),
+            query,
+            EnumSet.of(MailItem.Type.CONTACT),
+            SortBy.NAME_ASC,
+            100)) {
+      while (results.hasNext()) {
+        ids.add(results.getNext().getItemId());
+      }
+    }
+    return ids;
+  }
+
+  /** Reads one page of contacts the way SearchRequest does. */
+  private static List<Integer> searchContactsPage(Mailbox mbox, int offset, int limit)
+      throws Exception {
+    SearchParams params = new SearchParams();
+    params.setQueryString("in:contacts");
+    params.setTypes(EnumSet.of(MailItem.Type.CONTACT));
+    params.setSortBy(SortBy.NAME_ASC);
+    params.setFetchMode(SearchParams.Fetch.NORMAL);
+    params.setOffset(offset);
+    params.setLimit(limit);
+    List<Integer> ids = new ArrayList<>();
+    try (ZimbraQueryResults results = mbox.index.search(new OperationContext(mbox), params)) {
+      ZimbraHit hit = results.skipToHit(offset);
+      while (hit != null && ids.size() < limit) {
+        ids.add(hit.getItemId());
+        hit = ids.size() < limit ? results.getNext() : null;
+      }
+      results.hasNext();
+    }
+    return ids;
+  }
+
+  @Test
+  void reIndexGoesThroughSeveralFetchBatchesAndChunks() throws Exception {
+    Account account = createAccount().create();
+    Mailbox mbox = MailboxManager.getInstance().getMailboxByAccountId(account.getId());
+    // more than one fetch batch and commit chunk of MAX_TX_ITEMS
+    final int contacts = 250;
+    List<Integer> ids = new ArrayList<>();
+    for (int i = 0; i < contacts; i++) {
+      ids.add(
+          mbox.createContact(
+                  null,
+                  new ParsedContact(
+                      Collections.singletonMap(ContactConstants.A_email, i + "@reindex.test")),
+                  Mailbox.ID_FOLDER_CONTACTS,
+                  null)
+              .getId());
+    }
+    mbox.index.indexDeferredItems();
+    assertEquals(contacts, countContacts(mbox, "@reindex.test"));
+
+    // a deleted item makes its fetch batch fall back to fetching items one by one
+    mbox.delete(null, ids.get(contacts / 2), MailItem.Type.CONTACT);
+    mbox.index.startReIndexById(ids);
+    long deadline = System.currentTimeMillis() + 60_000;
+    while (mbox.index.isReIndexInProgress()) {
+      assertTrue(System.currentTimeMillis() < deadline, "re-index didn't complete");
+      Thread.sleep(50);
+    }
+    assertEquals(contacts - 1, countContacts(mbox, "@reindex.test"));
+  }
+
+  @Test
+  void repeatedSearchIsServedFromCacheUntilTheMailboxChanges() throws Exception {
+    Account account = createAccount().create();
+    Mailbox mbox = MailboxManager.getInstance().getMailboxByAccountId(account.getId());
+    for (int i = 0; i < 3; i++) {
+      mbox.createContact(
+          null,
+          new ParsedContact(Collections.singletonMap(ContactConstants.A_email, i + "@cache.test")),
+          Mailbox.ID_FOLDER_CONTACTS,
+          null);
+    }
+    List<Integer> first = searchContacts(mbox, "in:contacts");
+    assertEquals(3, first.size());
+
+    long cacheHits = ZimbraPerf.COUNTER_SEARCH_RESULT_CACHE.getTotal();
+    assertEquals(first, searchContacts(mbox, "in:contacts"));
+    assertEquals(cacheHits + 100, ZimbraPerf.COUNTER_SEARCH_RESULT_CACHE.getTotal());
+
+    mbox.createContact(
+        null,
+        new ParsedContact(Collections.singletonMap(ContactConstants.A_email, "3@cache.test")),
+        Mailbox.ID_FOLDER_CONTACTS,
+        null);
+    cacheHits = ZimbraPerf.COUNTER_SEARCH_RESULT_CACHE.getTotal();
+    assertEquals(4, searchContacts(mbox, "in:contacts").size());
+    assertEquals(cacheHits, ZimbraPerf.COUNTER_SEARCH_RESULT_CACHE.getTotal());
+  }
+
+  @Test
+  void nextPageIsReadAheadOnlyWhenPaging() throws Exception {
+    Account account = createAccount().create();
+    Mailbox mbox = MailboxManager.getInstance().getMailboxByAccountId(account.getId());
+    for (int i = 0; i < 4; i++) {
+      mbox.createContact(
+          null,
+          new ParsedContact(Collections.singletonMap(ContactConstants.A_email, i + "@page.test")),
+          Mailbox.ID_FOLDER_CONTACTS,
+          null);
+    }
+    List<Integer> all = searchContacts(mbox, "in:contacts");
+    mbox.index.evict(); // drops the hits cached by the full search
+
+    long cacheHits = ZimbraPerf.COUNTER_SEARCH_RESULT_CACHE.getTotal();
+    assertEquals(all.subList(0, 1), searchContactsPage(mbox, 0, 1));
+    // the first page only cached the hit it returned
+    assertEquals(all.subList(1, 2), searchContactsPage(mbox, 1, 1));
+    assertEquals(cacheHits, ZimbraPerf.COUNTER_SEARCH_RESULT_CACHE.getTotal());
+    // the second page read the third one ahead
+    assertEquals(all.subList(2, 3), searchContactsPage(mbox, 2, 1));
+    assertEquals(cacheHits + 100, ZimbraPerf.COUNTER_SEARCH_RESULT_CACHE.getTotal());
+  }
+
+  @Test
+  void indexStatsReportTheIOOfTheMailbox() throws Exception {
+    Account account = createAccount().create();
+    Mailbox mbox = MailboxManager.getInstance().getMailboxByAccountId(account.getId());
+    mbox.createContact(
+        null,
+        new ParsedContact(Collections.singletonMap(ContactConstants.A_email, "io@stats.test")),
+        Mailbox.ID_FOLDER_CONTACTS,
+        null);
+    assertEquals(1, countContacts(mbox, "@stats.test"));
+
+    MailboxIndex.IndexStats stats = mbox.index.getIndexStats();
+    assertTrue(stats.hasIOStats());
+    assertTrue(stats.getBytesWritten() > 0);
+    assertTrue(stats.getBytesRead() > 0);
+    assertTrue(stats.getFilesOpened() > 0);
+  }
+}
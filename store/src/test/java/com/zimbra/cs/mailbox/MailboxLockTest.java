@@ -17,6 +17,7 @@ import com.zimbra.cs.account.Provisioning;
 import com.zimbra.cs.mailbox.Mailbox.FolderNode;
 import com.zimbra.cs.mailbox.MailboxLock.LockFailedException;
 import com.zimbra.cs.service.util.ItemId;
+import com.zimbra.cs.stats.ZimbraPerf;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -670,4 +671,21 @@ public class MailboxLockTest  extends MailboxTestSuite {
 			t.join();
 		}
 	}
+
+	@Test
+	void waitAndHoldTimesAreRecordedOncePerOutermostLock() throws Exception {
+		Mailbox mbox = MailboxManager.getInstance().getMailboxByAccountId(account.getId());
+		String operation = "timedLockTest-" + account.getId();
+		mbox.lock.lock(true, operation);
+		try {
+			mbox.lock.lock(false, operation);
+			mbox.lock.release();
+			assertEquals(0, ZimbraPerf.MBOX_LOCK_HOLD_TRACKER.getHistogram(operation).getCount());
+		} finally {
+			mbox.lock.release();
+		}
+		assertTrue(mbox.lock.isUnlocked());
+		assertEquals(1, ZimbraPerf.MBOX_LOCK_WAIT_TRACKER.getHistogram(operation).getCount());
+		assertEquals(1, ZimbraPerf.MBOX_LOCK_HOLD_TRACKER.getHistogram(operation).getCount());
+	}
 }
@@ -0,0 +1,88 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.mailbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zextras.mailbox.MailboxTestSuite;
+import com.zimbra.cs.account.Account;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class MailboxManagerTest extends MailboxTestSuite {
+
+  @Test
+  void concurrentLookupsByAccountId() throws Exception {
+    MailboxManager mmgr = MailboxManager.getInstance();
+    List<String> accountIds = new ArrayList<>();
+    List<Mailbox> mailboxes = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Account account = createAccount().create();
+      accountIds.add(account.getId());
+      mailboxes.add(mmgr.getMailboxByAccount(account));
+    }
+
+    final int threads = 16;
+    final int lookupsPerThread = 5000;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int offset = t;
+        futures.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  for (int i = 0; i < lookupsPerThread; i++) {
+                    int index = (i + offset) % accountIds.size();
+                    assertSame(
+                        mailboxes.get(index), mmgr.getMailboxByAccountId(accountIds.get(index)));
+                  }
+                  return null;
+                }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    for (int i = 0; i < accountIds.size(); i++) {
+      assertEquals(mailboxes.get(i).getId(), mmgr.lookupMailboxId(accountIds.get(i)));
+      assertTrue(mmgr.isMailboxLoadedAndAvailable(mailboxes.get(i).getId()));
+    }
+    assertTrue(mmgr.getAllLoadedMailboxes().containsAll(mailboxes));
+  }
+
+  @Test
+  void mailboxMapKeepsSoftlyReferencedMailboxes() throws Exception {
+    MailboxManager mmgr = MailboxManager.getInstance();
+    Mailbox first = mmgr.getMailboxByAccount(createAccount().create());
+    Mailbox second = mmgr.getMailboxByAccount(createAccount().create());
+
+    MailboxManager.MailboxMap map = new MailboxManager.MailboxMap(1);
+    map.put(first.getId(), first);
+    map.put(second.getId(), second);
+    // the first mailbox was demoted to a soft reference, but is still there
+    assertEquals(2, map.size());
+    assertSame(first, map.get(first.getId()));
+    assertSame(second, map.get(second.getId()));
+    assertTrue(map.values().contains(first));
+
+    assertSame(first, map.remove(first.getId()));
+    assertEquals(1, map.size());
+  }
+}
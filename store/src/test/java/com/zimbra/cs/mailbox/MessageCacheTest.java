@@ -15,10 +15,12 @@ import javax.mail.internet.MimeMessage;
 
 class MessageCacheTest {
 
+    private Server server;
+
     @BeforeEach
     public void setUp() throws Exception {
         Provisioning provisioning = Mockito.mock();
-        Server server = Mockito.mock();
+        server = Mockito.mock();
         Mockito.when(provisioning.getLocalServer()).thenReturn(server);
         Mockito.when(server.getMessageCacheSize()).thenReturn(0);
         Provisioning.setInstance(provisioning);
@@ -70,4 +72,51 @@ class MessageCacheTest {
         Assertions.assertEquals(mimeMessage, MessageCache.doDecryption(item, cache, 0));
         Assertions.assertFalse(cache.smimeAccessInfo.isEmpty());
     }
+
+    @Test
+    void test_cacheMessage_when_entry_limit_is_exceeded_then_evict_least_recently_used() throws Exception {
+        Mockito.when(server.getMessageCacheSize()).thenReturn(2);
+        MessageCache.loadSettings();
+        try {
+            MessageCache.cacheMessage("digest-1", Mockito.mock(), null);
+            MessageCache.cacheMessage("digest-2", Mockito.mock(), null);
+            MessageCache.cacheMessage("digest-3", Mockito.mock(), null);
+
+            Assertions.assertEquals(2, MessageCache.getSize());
+            Assertions.assertFalse(MessageCache.contains("digest-1"));
+            Assertions.assertTrue(MessageCache.contains("digest-3"));
+        } finally {
+            disableCache();
+        }
+    }
+
+    @Test
+    void test_cacheMessage_when_cache_is_disabled_then_cache_nothing() throws Exception {
+        MessageCache.loadSettings();
+
+        MessageCache.cacheMessage("digest", Mockito.mock(), null);
+
+        Assertions.assertFalse(MessageCache.contains("digest"));
+        Assertions.assertEquals(0, MessageCache.getDataSize());
+    }
+
+    @Test
+    void test_purge_then_remove_cached_message() throws Exception {
+        Mockito.when(server.getMessageCacheSize()).thenReturn(10);
+        MessageCache.loadSettings();
+        try {
+            MessageCache.cacheMessage("digest", Mockito.mock(), null);
+
+            MessageCache.purge("digest");
+
+            Assertions.assertFalse(MessageCache.contains("digest"));
+        } finally {
+            disableCache();
+        }
+    }
+
+    private void disableCache() throws Exception {
+        Mockito.when(server.getMessageCacheSize()).thenReturn(0);
+        MessageCache.loadSettings();
+    }
 }
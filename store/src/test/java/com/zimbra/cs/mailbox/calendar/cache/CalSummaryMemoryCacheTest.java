@@ -0,0 +1,184 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.mailbox.calendar.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zimbra.cs.mailbox.MailItem;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+/** Unit test for {@link CalSummaryMemoryCache}. */
+public class CalSummaryMemoryCacheTest {
+
+  /** Returns a calendar whose items have one instance each, weighing {@code items + 1}. */
+  private static CalendarData calendar(int folderId, int... itemIds) {
+    CalendarData calData = new CalendarData(folderId, 1, 0, Long.MAX_VALUE);
+    for (int itemId : itemIds) {
+      CalendarItemData calItem =
+          new CalendarItemData(
+              MailItem.Type.APPOINTMENT, folderId, itemId, null, null, null, 1, 1, 0, 0, 0,
+              "uid-" + itemId, false, false, true, null, null);
+      calItem.addInstance(new InstanceData(null, 1000L, 1000L, null, null, null, null, null));
+      calData.addCalendarItem(calItem);
+    }
+    return calData;
+  }
+
+  @Test
+  void boundedByNumberOfInstances() {
+    CalSummaryMemoryCache cache = new CalSummaryMemoryCache(10, 12);
+    cache.put(new CalSummaryKey("a", 10), calendar(10, 100));
+    cache.put(new CalSummaryKey("a", 11), calendar(11, 200, 201, 202, 203, 204, 205, 206, 207));
+    assertEquals(2, cache.size());
+    assertEquals(11, cache.weightedSize());
+
+    CalSummaryKey tooLargeForTheCache = new CalSummaryKey("a", 12);
+    cache.put(tooLargeForTheCache, calendar(12, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11));
+    assertNull(cache.peek(tooLargeForTheCache));
+  }
+
+  @Test
+  void onlyCachedCalendarsKeepAFreeBusyIndex() {
+    CalSummaryMemoryCache cache = new CalSummaryMemoryCache(10, 12);
+    CalendarData admitted = calendar(10, 100);
+    cache.put(new CalSummaryKey("a", 10), admitted);
+    assertNotNull(admitted.getFreeBusyIndex());
+
+    CalendarData tooLarge = calendar(12, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+    tooLarge.setFreeBusyIndex(new FreeBusyIndex(tooLarge));
+    cache.put(new CalSummaryKey("a", 12), tooLarge);
+    assertNull(cache.peek(new CalSummaryKey("a", 12)));
+    assertNull(tooLarge.getFreeBusyIndex());
+  }
+
+  @Test
+  void sharedCalendarIsNotEvictedByOneOffCalendars() {
+    CalSummaryMemoryCache cache = new CalSummaryMemoryCache(100, 20);
+    CalSummaryKey room = new CalSummaryKey("room", 10);
+    CalendarData roomData = calendar(10, 1, 2, 3, 4);
+    for (int i = 0; i < 50; i++) {
+      if (cache.get(room) == null) {
+        cache.put(room, roomData);
+      }
+    }
+
+    for (int i = 0; i < 100; i++) {
+      CalSummaryKey personalViewedOnce = new CalSummaryKey("user" + i, 10);
+      if (cache.get(personalViewedOnce) == null) {
+        cache.put(personalViewedOnce, calendar(10, 1, 2, 3, 4));
+      }
+    }
+    assertSame(roomData, cache.peek(room));
+    assertTrue(cache.weightedSize() <= 20);
+  }
+
+  @Test
+  void replacesCachedCalendarEvenWhenFull() {
+    CalSummaryMemoryCache cache = new CalSummaryMemoryCache(10, 4);
+    CalSummaryKey key = new CalSummaryKey("a", 10);
+    cache.put(key, calendar(10, 1, 2));
+    CalendarData refreshed = calendar(10, 1, 2, 3);
+    cache.put(key, refreshed);
+    assertSame(refreshed, cache.peek(key));
+  }
+
+  @Test
+  void findsFolderOfItemAndRemovesAccount() {
+    CalSummaryMemoryCache cache = new CalSummaryMemoryCache(10, 100);
+    cache.put(new CalSummaryKey("a", 10), calendar(10, 100, 101));
+    cache.put(new CalSummaryKey("a", 11), calendar(11, 200));
+    cache.put(new CalSummaryKey("b", 10), calendar(10, 300));
+
+    assertEquals(11, cache.getFolderForItem("a", 200));
+    assertEquals(10, cache.getFolderForItem("a", 101));
+    assertEquals(CalSummaryMemoryCache.FOLDER_NOT_FOUND, cache.getFolderForItem("a", 300));
+
+    cache.remove(new CalSummaryKey("a", 11));
+    assertEquals(CalSummaryMemoryCache.FOLDER_NOT_FOUND, cache.getFolderForItem("a", 200));
+
+    cache.removeAccount("a");
+    assertNull(cache.peek(new CalSummaryKey("a", 10)));
+    assertEquals(CalSummaryMemoryCache.FOLDER_NOT_FOUND, cache.getFolderForItem("a", 100));
+    assertNotNull(cache.peek(new CalSummaryKey("b", 10)));
+    assertEquals(10, cache.getFolderForItem("b", 300));
+  }
+
+  @Test
+  void concurrentLookups() throws Exception {
+    CalSummaryMemoryCache cache = new CalSummaryMemoryCache(100, 1000);
+    int threads = 16;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 10000; i++) {
+                    CalSummaryKey key = new CalSummaryKey("acct" + (i % 50), i % 7);
+                    if (cache.get(key) == null) {
+                      cache.put(key, calendar(i % 7, i % 13));
+                    }
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(350, cache.size());
+  }
+
+  @Test
+  void cachedCalendarsStayRegisteredWithTheirAccount() throws Exception {
+    int calendars = 5;
+    int calendarsThatFit = 3;
+    int calendarWeight = 3;
+    CalSummaryMemoryCache cache =
+        new CalSummaryMemoryCache(10, calendarsThatFit * calendarWeight + 1);
+    int threads = 8;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 20000; i++) {
+                    int folderId = i % calendars;
+                    CalSummaryKey key = new CalSummaryKey("acct", folderId);
+                    if (i % 3 == 0) {
+                      cache.remove(key);
+                    } else {
+                      cache.put(key, calendar(folderId, 100 + folderId, 200 + folderId));
+                    }
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    for (int folderId = 0; folderId < calendars; folderId++) {
+      if (cache.peek(new CalSummaryKey("acct", folderId)) != null) {
+        assertEquals(folderId, cache.getFolderForItem("acct", 100 + folderId));
+      }
+    }
+  }
+}
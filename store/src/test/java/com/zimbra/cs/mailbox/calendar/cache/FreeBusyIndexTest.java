@@ -0,0 +1,156 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.mailbox.calendar.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.zimbra.cs.mailbox.MailItem;
+import com.zimbra.cs.mailbox.calendar.IcalXmlStrMap;
+import com.zimbra.cs.mailbox.calendar.cache.FreeBusyIndex.BusyTime;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/** Unit test for {@link FreeBusyIndex}. */
+public class FreeBusyIndexTest {
+
+  private static final long HOUR = 60 * 60 * 1000L;
+
+  private static FullInstanceData defaultInstance(
+      long duration, String freeBusy, String transparency) {
+    return new FullInstanceData(
+        null, 0, duration, 0, 0, null, freeBusy, null, 1, 0, 0, 0, 0, null, null, null, null,
+        null, null, null, "summary", null, null, null, null, null, null, null, null, null,
+        freeBusy, transparency, null, null);
+  }
+
+  private static CalendarItemData calItem(int id, FullInstanceData defaultData, long... starts) {
+    CalendarItemData calItem =
+        new CalendarItemData(
+            MailItem.Type.APPOINTMENT, 10, id, null, null, null, 1, 1, 0, 0, 0, "uid-" + id,
+            starts.length > 1, false, true, null, defaultData);
+    for (long start : starts) {
+      calItem.addInstance(new InstanceData(null, start, null, null, null, null, null, null));
+    }
+    return calItem;
+  }
+
+  private static CalendarItemData busyEvent(int id, long... starts) {
+    return calItem(
+        id, defaultInstance(HOUR, IcalXmlStrMap.FBTYPE_BUSY, IcalXmlStrMap.TRANSP_OPAQUE), starts);
+  }
+
+  private static CalendarItemData dailyMeeting(int id, int days) {
+    long[] starts = new long[days];
+    for (int day = 0; day < days; day++) {
+      starts[day] = day * 24 * HOUR;
+    }
+    return busyEvent(id, starts);
+  }
+
+  private static CalendarItemData transparentEvent(int id, long start) {
+    return calItem(
+        id,
+        defaultInstance(HOUR, IcalXmlStrMap.FBTYPE_BUSY, IcalXmlStrMap.TRANSP_TRANSPARENT),
+        start);
+  }
+
+  private static CalendarItemData freeEvent(int id, long start) {
+    return calItem(
+        id, defaultInstance(HOUR, IcalXmlStrMap.FBTYPE_FREE, IcalXmlStrMap.TRANSP_OPAQUE), start);
+  }
+
+  private static CalendarItemData tentativeEvent(int id, long start, long duration) {
+    return calItem(
+        id,
+        defaultInstance(
+            duration, IcalXmlStrMap.FBTYPE_BUSY_TENTATIVE, IcalXmlStrMap.TRANSP_OPAQUE),
+        start);
+  }
+
+  private static String describe(List<BusyTime> busyTimes) {
+    StringBuilder sb = new StringBuilder();
+    for (BusyTime busy : busyTimes) {
+      sb.append(busy.getCalItemId()).append('@').append(busy.getStart() / HOUR).append(' ');
+    }
+    return sb.toString().trim();
+  }
+
+  @Test
+  void findsTheBusyTimesOverlappingARange() {
+    CalendarData calData = new CalendarData(10, 1, 0, 1000 * HOUR);
+    calData.addCalendarItem(dailyMeeting(1, 3));
+    calData.addCalendarItem(transparentEvent(2, 24 * HOUR));
+    calData.addCalendarItem(freeEvent(3, 24 * HOUR));
+    calData.addCalendarItem(tentativeEvent(4, -HOUR, 100 * HOUR));
+
+    FreeBusyIndex index = new FreeBusyIndex(calData);
+    assertEquals(4, index.size());
+    assertEquals("4@-1 1@0 1@24 1@48", describe(index.getBusyTimes(0, 1000 * HOUR)));
+    assertEquals("4@-1 1@24", describe(index.getBusyTimes(23 * HOUR, 25 * HOUR)));
+    assertEquals("4@-1", describe(index.getBusyTimes(HOUR, 24 * HOUR)));
+    assertEquals("4@-1 1@48", describe(index.getBusyTimes(48 * HOUR, 1000 * HOUR)));
+    assertEquals("", describe(index.getBusyTimes(99 * HOUR, 1000 * HOUR)));
+    assertEquals(
+        IcalXmlStrMap.FBTYPE_BUSY_TENTATIVE,
+        index.getBusyTimes(HOUR, 2 * HOUR).get(0).getFreeBusy());
+  }
+
+  @Test
+  void scansCalendarsWithoutAnIndexInItemOrder() {
+    CalendarData calData = new CalendarData(10, 1, 0, 1000 * HOUR);
+    calData.addCalendarItem(dailyMeeting(1, 3));
+    calData.addCalendarItem(tentativeEvent(4, -HOUR, 100 * HOUR));
+    assertNull(calData.getFreeBusyIndex());
+    assertEquals("1@24 4@-1", describe(calData.getBusyTimes(23 * HOUR, 25 * HOUR)));
+    assertEquals("", describe(calData.getBusyTimes(99 * HOUR, 1000 * HOUR)));
+
+    calData.setFreeBusyIndex(new FreeBusyIndex(calData));
+    assertEquals("4@-1 1@24", describe(calData.getBusyTimes(23 * HOUR, 25 * HOUR)));
+  }
+
+  @Test
+  void updatesOnlyTheBusyTimesOfChangedItems() {
+    CalendarItemData unchanged = busyEvent(1, 0, 10 * HOUR);
+    CalendarData calData = new CalendarData(10, 1, 0, 1000 * HOUR);
+    calData.addCalendarItem(unchanged);
+    calData.addCalendarItem(busyEvent(2, 5 * HOUR));
+    calData.addCalendarItem(busyEvent(3, 6 * HOUR));
+    FreeBusyIndex cachedIndex = new FreeBusyIndex(calData);
+    BusyTime unchangedBusyTime = cachedIndex.getBusyTimes(0, HOUR).get(0);
+
+    CalendarItemData moved = busyEvent(2, 20 * HOUR);
+    int deletedId = 3;
+    CalendarItemData created = busyEvent(4, 2 * HOUR);
+    CalendarData refreshed = new CalendarData(10, 2, 0, 1000 * HOUR);
+    refreshed.addCalendarItem(unchanged);
+    refreshed.addCalendarItem(moved);
+    refreshed.addCalendarItem(created);
+    FreeBusyIndex updated =
+        cachedIndex.update(
+            refreshed, Set.of(moved.getCalItemId(), deletedId, created.getCalItemId()));
+    assertEquals(4, updated.size());
+    assertEquals("1@0 4@2 1@10 2@20", describe(updated.getBusyTimes(0, 1000 * HOUR)));
+    assertSame(unchangedBusyTime, updated.getBusyTimes(0, HOUR).get(0));
+    assertEquals("1@0 2@5 3@6 1@10", describe(cachedIndex.getBusyTimes(0, 1000 * HOUR)));
+  }
+
+  @Test
+  void heapCacheIndexesTheCalendarsItHolds() {
+    CalendarData calData = new CalendarData(10, 1, 0, 1000 * HOUR);
+    calData.addCalendarItem(dailyMeeting(1, 2));
+    CalSummaryMemoryCache cache = new CalSummaryMemoryCache(10, 100);
+    cache.put(new CalSummaryKey("a", 10), calData);
+    assertNotNull(calData.getFreeBusyIndex());
+    int calendar = 1;
+    int instances = 2;
+    int busyTimes = 2;
+    assertEquals(calendar + instances + busyTimes, cache.weightedSize());
+  }
+}
@@ -0,0 +1,119 @@
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: AGPL-3.0-only
+
+package com.zimbra.cs.redolog.logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.zextras.mailbox.MailboxTestSuite;
+import com.zimbra.cs.redolog.RedoLogManager;
+import com.zimbra.cs.redolog.op.Checkpoint;
+import com.zimbra.cs.redolog.op.RedoableOp;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FileLogWriterTest extends MailboxTestSuite {
+
+	@TempDir
+	public File folder;
+
+	private RedoLogManager redoLogManager;
+	private FileLogWriter logWriter;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		redoLogManager = new RedoLogManager(new File(folder, "redo.log"), new File(folder, "archive"),
+				false /* supportsCrashRecovery */);
+
+		logWriter =
+				new FileLogWriter(redoLogManager, new File(folder.getAbsolutePath(), "logfile"),
+						10 /* fsync interval in ms */);
+	}
+
+	@Test
+	void openLogClose() throws Exception {
+		assertTrue(logWriter.isEmpty(), "file starts empty");
+		logWriter.open();
+		assertTrue(logWriter.isEmpty(), "file empty after open");
+
+		logWriter.log(new Checkpoint(), new ByteArrayInputStream("some bytes".getBytes()),
+				false /* asynchronous */);
+		// The file is the size of the header plus the op bytes (10)
+		assertEquals(FileHeader.HEADER_LEN + 10, logWriter.getSize(), "file size incorrect.");
+		logWriter.close();
+		// store some fields from the current writer.
+		final long createTime = logWriter.getCreateTime();
+		final long sequence = logWriter.getSequence();
+
+		// reset the FileLogWriter
+		logWriter =
+				new FileLogWriter(redoLogManager, new File(folder.getAbsolutePath(), "logfile"),
+						10 /* fsync interval in ms */);
+		assertEquals(FileHeader.HEADER_LEN + 10, logWriter.getSize(), "file size incorrect.");
+		logWriter.open();
+
+		assertEquals(createTime, logWriter.getCreateTime());
+		assertEquals(sequence, logWriter.getSequence());
+	}
+
+	@Test
+	void logBeforeOpen() throws Exception {
+		assertThrows(IOException.class, () -> {
+			logWriter.log(null, null, false);
+		});
+	}
+
+	@Test
+	void asynchronousLogIsWrittenImmediately() throws Exception {
+		logWriter.open();
+		logWriter.log(new Checkpoint(), new ByteArrayInputStream("some bytes".getBytes()),
+				false /* asynchronous */);
+		// nobody is fsyncing, so the bytes must not wait in the group commit buffer
+		assertEquals(FileHeader.HEADER_LEN + 10, new File(folder, "logfile").length());
+		logWriter.close();
+	}
+
+	@Test
+	void concurrentSynchronousLogs() throws Exception {
+		logWriter.open();
+		final int threads = 8;
+		final int opsPerThread = 50;
+		final byte[] data = new byte[100];
+		final RedoableOp op = new Checkpoint();
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(() -> {
+					for (int j = 0; j < opsPerThread; j++) {
+						logWriter.log(op, new ByteArrayInputStream(data), true /* synchronous */);
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(threads * opsPerThread, logWriter.getLogCount());
+		assertTrue(logWriter.getFsyncCount() <= logWriter.getLogCount(),
+				"group commit never needs more fsyncs than log calls");
+		logWriter.close();
+		assertEquals(FileHeader.HEADER_LEN + threads * opsPerThread * data.length,
+				new File(folder, "logfile").length(), "file size incorrect.");
+	}
+}
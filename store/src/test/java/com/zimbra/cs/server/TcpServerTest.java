@@ -0,0 +1,181 @@
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zimbra.common.util.Log;
+import com.zimbra.common.util.LogFactory;
+import com.zimbra.cs.lmtpserver.LmtpWriter;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for {@link TcpServer}.
+ */
+public final class TcpServerTest {
+
+ @Test
+ void runsHandlersOnVirtualThreads() throws Exception {
+  EchoServer server = new EchoServer(new TestConfig(true));
+  assertTrue(server.isVirtualThreadsEnabled());
+  server.start();
+  try {
+   for (int i = 0; i < 3; i++) {
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+     socket.setSoTimeout(10000);
+     BufferedReader in = new BufferedReader(
+         new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+     Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+     assertEquals("220 ready", in.readLine());
+     out.write("hello " + i + "\r\nQUIT\r\n");
+     out.flush();
+     assertEquals("250 hello " + i, in.readLine());
+     assertEquals("221 bye", in.readLine());
+    }
+   }
+  } finally {
+   server.stop(1);
+  }
+  assertEquals(Set.of(Boolean.TRUE), server.virtualThreads);
+ }
+
+ @Test
+ void runsHandlersOnPooledThreadsByDefault() throws Exception {
+  EchoServer server = new EchoServer(new TestConfig(false));
+  server.start();
+  try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+   socket.setSoTimeout(10000);
+   BufferedReader in = new BufferedReader(
+       new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+   assertEquals("220 ready", in.readLine());
+   socket.getOutputStream().write("QUIT\r\n".getBytes(StandardCharsets.US_ASCII));
+   assertEquals("221 bye", in.readLine());
+  } finally {
+   server.stop(1);
+  }
+  assertEquals(Set.of(Boolean.FALSE), server.virtualThreads);
+ }
+
+ private static final class TestConfig extends ServerConfig {
+  private final boolean virtualThreads;
+  private final ServerSocket serverSocket;
+
+  TestConfig(boolean virtualThreads) throws IOException {
+   super("TEST", false);
+   this.virtualThreads = virtualThreads;
+   this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+  }
+
+  @Override
+  public int getBindPort() {
+   return serverSocket.getLocalPort();
+  }
+
+  @Override
+  public Log getLog() {
+   return LogFactory.getLog(TcpServerTest.class);
+  }
+
+  @Override
+  public boolean isVirtualThreadsEnabled() {
+   return virtualThreads;
+  }
+
+  @Override
+  public ServerSocket getServerSocket() {
+   return serverSocket;
+  }
+ }
+
+ private static final class EchoServer extends TcpServer {
+  private final Set<Boolean> virtualThreads = ConcurrentHashMap.newKeySet();
+
+  EchoServer(ServerConfig config) throws Exception {
+   super(config);
+  }
+
+  int getPort() {
+   return getConfig().getBindPort();
+  }
+
+  @Override
+  public String getName() {
+   return "TestServer";
+  }
+
+  @Override
+  protected ProtocolHandler newProtocolHandler() {
+   return new EchoHandler(this);
+  }
+ }
+
+ /** Answers each line with an LMTP-style reply written through {@link LmtpWriter}. */
+ private static final class EchoHandler extends ProtocolHandler {
+  private final EchoServer server;
+  private BufferedReader in;
+  private LmtpWriter out;
+
+  EchoHandler(EchoServer server) {
+   super(server);
+   this.server = server;
+  }
+
+  @Override
+  protected boolean setupConnection(Socket connection) throws IOException {
+   server.virtualThreads.add(Thread.currentThread().isVirtual());
+   in = new BufferedReader(
+       new InputStreamReader(connection.getInputStream(), StandardCharsets.US_ASCII));
+   out = new LmtpWriter(connection.getOutputStream());
+   out.println("220 ready");
+   out.flush();
+   return true;
+  }
+
+  @Override
+  protected boolean authenticate() {
+   return true;
+  }
+
+  @Override
+  protected boolean processCommand() throws IOException {
+   String line = in.readLine();
+   if (line == null) {
+    return false;
+   }
+   if (line.equals("QUIT")) {
+    out.println("221 bye");
+    out.flush();
+    return false;
+   }
+   out.print("250 ");
+   out.println(line);
+   out.flush();
+   return !out.checkError();
+  }
+
+  @Override
+  protected void dropConnection() {
+   if (out != null) {
+    out.close();
+   }
+  }
+
+  @Override
+  protected void notifyIdleConnection() {
+  }
+ }
+}
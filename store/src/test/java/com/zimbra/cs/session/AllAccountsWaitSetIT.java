@@ -0,0 +1,105 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zimbra.common.util.ZimbraLog;
+import com.zimbra.cs.mailbox.MailItem;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Load test for {@link AllAccountsWaitSet}, run by failsafe rather than with the unit tests. See
+ * {@link AllAccountsWaitSetTest} for the functional checks.
+ */
+@Tag("performance")
+class AllAccountsWaitSetIT {
+
+  private static final Set<MailItem.Type> INTEREST = EnumSet.of(MailItem.Type.MESSAGE);
+
+  /**
+   * Commits in 100k distinct accounts from several threads while a client keeps re-arming its
+   * callback, and reports the commit-to-wakeup latency.
+   */
+  @Test
+  void commitToWakeupLatencyWith100kAccounts() throws Exception {
+    final int accounts = 100_000;
+    final int threads = 8;
+    AllAccountsWaitSet ws = AllAccountsWaitSet.create("owner", "AllWaitSet-test", INTEREST);
+    try {
+      Set<String> signalled = new HashSet<>();
+      CountDownLatch start = new CountDownLatch(1);
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      long maxLatency = 0;
+      long totalLatency = 0;
+      int wakeups = 0;
+      try {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+          final int offset = t;
+          futures.add(
+              executor.submit(
+                  () -> {
+                    start.await();
+                    for (int i = offset; i < accounts; i += threads) {
+                      // every account commits twice, the second signal is coalesced or re-sent
+                      for (int n = 0; n < 2; n++) {
+                        AllAccountsWaitSet.mailboxChangeCommitted(
+                            System.nanoTime() + "-" + i, "account-" + i, INTEREST);
+                      }
+                    }
+                    return null;
+                  }));
+        }
+
+        String seqNo = "0";
+        start.countDown();
+        while (signalled.size() < accounts) {
+          WaitSetCallback cb = new WaitSetCallback();
+          cb.completedLatch = new CountDownLatch(1);
+          long waitStart = System.nanoTime();
+          ws.doWait(cb, seqNo, null, null);
+          assertTrue(cb.completedLatch.await(30, TimeUnit.SECONDS), "waiter was never woken up");
+          // each wakeup carries the seqno of a commit made no earlier than the wait started
+          long latency =
+              System.nanoTime()
+                  - Math.max(waitStart, Long.parseLong(cb.seqNo.split("-")[0]));
+          maxLatency = Math.max(maxLatency, latency);
+          totalLatency += latency;
+          wakeups++;
+          signalled.addAll(cb.signalledAccounts);
+          seqNo = cb.seqNo;
+        }
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } finally {
+        executor.shutdown();
+      }
+      assertEquals(accounts, signalled.size());
+      ZimbraLog.test.info(
+          "%d accounts, %d wakeups, commit-to-wakeup latency avg=%dus max=%dus",
+          accounts,
+          wakeups,
+          TimeUnit.NANOSECONDS.toMicros(totalLatency / wakeups),
+          TimeUnit.NANOSECONDS.toMicros(maxLatency));
+    } finally {
+      ws.destroy();
+    }
+  }
+}
@@ -0,0 +1,94 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zimbra.cs.mailbox.MailItem;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class AllAccountsWaitSetTest {
+
+  private static final Set<MailItem.Type> INTEREST = EnumSet.of(MailItem.Type.MESSAGE);
+
+  @Test
+  void signalQueueCoalescesDuplicateAccounts() {
+    WaitSetSignalQueue queue = new WaitSetSignalQueue();
+    assertTrue(queue.offer("a", "1"));
+    assertTrue(queue.offer("b", "2"));
+    assertFalse(queue.offer("a", "3"));
+    assertEquals(2, queue.size());
+
+    List<String> seqNos = new ArrayList<>();
+    Set<String> accounts = new HashSet<>();
+    queue.drain(
+        (seqNo, accountIds) -> {
+          seqNos.add(seqNo);
+          accounts.addAll(accountIds);
+        });
+    assertEquals(List.of("3"), seqNos);
+    assertEquals(Set.of("a", "b"), accounts);
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  void everyCommittedAccountWakesUpTheWaiter() throws Exception {
+    final int accounts = 200;
+    final int threads = 4;
+    AllAccountsWaitSet ws = AllAccountsWaitSet.create("owner", "AllWaitSet-test", INTEREST);
+    try {
+      Set<String> signalled = new HashSet<>();
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+          final int offset = t;
+          futures.add(
+              executor.submit(
+                  () -> {
+                    for (int i = offset; i < accounts; i += threads) {
+                      // every account commits twice, the second signal is coalesced or re-sent
+                      for (int n = 0; n < 2; n++) {
+                        AllAccountsWaitSet.mailboxChangeCommitted(
+                            i + "-" + n, "account-" + i, INTEREST);
+                      }
+                    }
+                  }));
+        }
+
+        String seqNo = "0";
+        while (signalled.size() < accounts) {
+          WaitSetCallback cb = new WaitSetCallback();
+          cb.completedLatch = new CountDownLatch(1);
+          ws.doWait(cb, seqNo, null, null);
+          assertTrue(cb.completedLatch.await(30, TimeUnit.SECONDS), "waiter was never woken up");
+          signalled.addAll(cb.signalledAccounts);
+          seqNo = cb.seqNo;
+        }
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } finally {
+        executor.shutdown();
+      }
+      assertEquals(accounts, signalled.size());
+    } finally {
+      ws.destroy();
+    }
+  }
+}
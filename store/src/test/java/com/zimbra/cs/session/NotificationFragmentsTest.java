@@ -0,0 +1,148 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.session;
+
+import static com.zimbra.common.soap.MailConstants.A_NAME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zextras.mailbox.MailboxTestSuite;
+import com.zimbra.common.soap.Element;
+import com.zimbra.common.soap.ZimbraNamespace;
+import com.zimbra.cs.account.Account;
+import com.zimbra.cs.mailbox.Folder;
+import com.zimbra.cs.mailbox.MailItem;
+import com.zimbra.cs.mailbox.Mailbox;
+import com.zimbra.cs.mailbox.MailboxManager;
+import com.zimbra.cs.mailbox.Mountpoint;
+import com.zimbra.cs.service.mail.ToXML;
+import com.zimbra.cs.service.util.ItemIdFormatter;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class NotificationFragmentsTest extends MailboxTestSuite {
+
+  private static Account account;
+  private static Mailbox mbox;
+  private static Mailbox otherMbox;
+
+  @BeforeAll
+  static void init() throws Exception {
+    account = createAccount().create();
+    mbox = MailboxManager.getInstance().getMailboxByAccount(account);
+    otherMbox = MailboxManager.getInstance().getMailboxByAccount(createAccount().create());
+  }
+
+  private static NotificationFragments.Viewer viewer(Account viewer, boolean asAdmin) {
+    return new NotificationFragments.Viewer(
+        viewer.getId(), false, asAdmin, Element.XMLElement.class);
+  }
+
+  private static Element encode(NotificationFragments.Viewer viewer, MailItem item)
+      throws Exception {
+    Element parent = new Element.XMLElement(ZimbraNamespace.E_MODIFIED);
+    Element elt =
+        NotificationFragments.encodeItem(
+            parent,
+            viewer,
+            new ItemIdFormatter(account.getId(), item.getMailbox(), false),
+            null,
+            item,
+            ToXML.NOTIFY_FIELDS);
+    assertSame(parent, elt.getParent());
+    return elt;
+  }
+
+  /** Changes the in-memory item, which a snapshot handed to the sessions never is. */
+  private static void rename(MailItem item, String name) {
+    item.getUnderlyingData().name = name;
+  }
+
+  private static Folder createFolder(Mailbox mailbox, String name) throws Exception {
+    return mailbox.createFolder(
+        null, name, Mailbox.ID_FOLDER_USER_ROOT, new Folder.FolderOptions());
+  }
+
+  @Test
+  void reusesTheElementRenderedForAnotherSession() throws Exception {
+    Folder folder = createFolder(mbox, "reused");
+    Element first = encode(viewer(account, false), folder);
+    rename(folder, "renamed");
+
+    // another session of the same viewer gets the first rendering
+    Element second = encode(viewer(account, false), folder);
+    assertNotSame(first, second);
+    assertEquals("reused", second.getAttribute(A_NAME));
+    assertEquals(first.prettyPrint(), second.prettyPrint());
+  }
+
+  @Test
+  void reusedElementsAreClones() throws Exception {
+    Folder folder = createFolder(mbox, "cloned");
+    Element first = encode(viewer(account, false), folder);
+    // the session that rendered the element completes it...
+    first.addAttribute("session", "first");
+    Element second = encode(viewer(account, false), folder);
+    assertNull(second.getAttribute("session", null));
+    // ...and so do the sessions it is shared with
+    second.addAttribute("session", "second");
+    assertNull(encode(viewer(account, false), folder).getAttribute("session", null));
+  }
+
+  @Test
+  void otherViewersRenderTheirOwnElements() throws Exception {
+    Folder folder = createFolder(mbox, "viewers");
+    encode(viewer(account, false), folder);
+    rename(folder, "renamed");
+
+    assertEquals("renamed", encode(viewer(account, true), folder).getAttribute(A_NAME));
+    assertEquals("renamed", encode(null, folder).getAttribute(A_NAME));
+    // a JSON session doesn't get the XML rendering
+    assertFalse(
+        NotificationFragments.isShared(
+            new Element.JSONElement(ZimbraNamespace.E_MODIFIED), viewer(account, false), folder));
+  }
+
+  @Test
+  void itemsOfOtherMailboxesAreNotShared() throws Exception {
+    Folder shared = createFolder(otherMbox, "shared");
+    Element parent = new Element.XMLElement(ZimbraNamespace.E_MODIFIED);
+    assertFalse(NotificationFragments.isShared(parent, viewer(account, false), shared));
+
+    encode(viewer(account, false), shared);
+    rename(shared, "renamed");
+    assertEquals("renamed", encode(viewer(account, false), shared).getAttribute(A_NAME));
+    assertTrue(
+        NotificationFragments.isShared(parent, viewer(account, false), createFolder(mbox, "own")));
+  }
+
+  @Test
+  void mountpointsAreNotShared() throws Exception {
+    Mountpoint mpt =
+        mbox.createMountpoint(
+            null,
+            Mailbox.ID_FOLDER_USER_ROOT,
+            "mountpoint",
+            otherMbox.getAccountId(),
+            createFolder(otherMbox, "target").getId(),
+            UUID.randomUUID().toString(),
+            MailItem.Type.MESSAGE,
+            0,
+            (byte) 0,
+            false);
+    Element parent = new Element.XMLElement(ZimbraNamespace.E_MODIFIED);
+    assertFalse(NotificationFragments.isShared(parent, viewer(account, false), mpt));
+
+    encode(viewer(account, false), mpt);
+    rename(mpt, "renamed");
+    assertEquals("renamed", encode(viewer(account, false), mpt).getAttribute(A_NAME));
+  }
+}
@@ -0,0 +1,78 @@
+// SPDX-FileCopyrightText: 2022 Synacor, Inc.
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.cs.session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.zimbra.common.soap.Element;
+import com.zimbra.common.soap.Element.XMLElement;
+import com.zimbra.common.soap.MailConstants;
+import com.zimbra.common.soap.ZimbraNamespace;
+import com.zimbra.cs.session.SoapSession.RemoteNotifications;
+import org.junit.jupiter.api.Test;
+
+class RemoteNotificationsTest {
+
+  private static Element notify() {
+    return new XMLElement(ZimbraNamespace.E_NOTIFY);
+  }
+
+  private static void modified(Element eNotify, String id, String... attrs) {
+    Element eModified = eNotify.getOptionalElement(ZimbraNamespace.E_MODIFIED);
+    if (eModified == null) {
+      eModified = eNotify.addUniqueElement(ZimbraNamespace.E_MODIFIED);
+    }
+    Element m =
+        eModified.addNonUniqueElement(MailConstants.E_MSG).addAttribute(MailConstants.A_ID, id);
+    for (int i = 0; i < attrs.length; i += 2) {
+      m.addAttribute(attrs[i], attrs[i + 1]);
+    }
+  }
+
+  @Test
+  void laterModifiesOfTheSameItemAreCoalesced() {
+    Element first = notify();
+    modified(first, "257", MailConstants.A_FLAGS, "u");
+    modified(first, "258", MailConstants.A_FLAGS, "u");
+    Element second = notify();
+    modified(second, "257", MailConstants.A_FLAGS, "f");
+    // a modify with fewer attributes can't replace the earlier one
+    modified(second, "258", MailConstants.A_TAG_NAMES, "work");
+
+    RemoteNotifications rns = new RemoteNotifications(null);
+    rns.add(new RemoteNotifications(first));
+    rns.add(new RemoteNotifications(second));
+
+    assertEquals(3, rns.modified.size());
+    assertEquals("f", rns.modified.get(0).getAttribute(MailConstants.A_FLAGS, null));
+    assertEquals("258", rns.modified.get(2).getAttribute(MailConstants.A_ID, null));
+  }
+
+  @Test
+  void deleteWipesEarlierNotificationsOfTheItem() {
+    Element first = notify();
+    first
+        .addUniqueElement(ZimbraNamespace.E_CREATED)
+        .addNonUniqueElement(MailConstants.E_MSG)
+        .addAttribute(MailConstants.A_ID, "300");
+    modified(first, "257", MailConstants.A_FLAGS, "u");
+    Element second = notify();
+    second.addUniqueElement(ZimbraNamespace.E_DELETED).addAttribute(MailConstants.A_ID, "300,257");
+
+    RemoteNotifications shared = new RemoteNotifications(first);
+    RemoteNotifications rns = new RemoteNotifications(null);
+    rns.add(shared);
+    rns.add(new RemoteNotifications(second));
+
+    assertTrue(rns.created.isEmpty());
+    assertTrue(rns.modified.isEmpty());
+    assertEquals("300,257", rns.deleted);
+    // notifications queued by another session are left alone
+    assertEquals(1, shared.created.size());
+    assertEquals(1, shared.modified.size());
+  }
+}
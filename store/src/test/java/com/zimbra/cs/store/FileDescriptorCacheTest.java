@@ -13,6 +13,11 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPOutputStream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -26,7 +31,8 @@ public class FileDescriptorCacheTest {
   @Test
   void testUncompressedCache() throws Exception {
     FileCache<String> uc = FileCache.Builder.createWithStringKey(uncompressedDir, false).build();
-    FileDescriptorCache fdc = new FileDescriptorCache(uc);
+    // close evicted descriptors on the calling thread so the uncompressed cache can be checked right away
+    FileDescriptorCache fdc = new FileDescriptorCache(uc, Runnable::run);
     fdc.setMaxSize(2);
 
     File file1 = File.createTempFile(NAME_PREFIX, ".tmp.gz");
@@ -80,6 +86,76 @@ public class FileDescriptorCacheTest {
     assertEquals(2, fdc.getSize());
   }
 
+  @Test
+  void evictedFileIsClosedWhenLastReaderIsDone() throws Exception {
+    FileDescriptorCache fdc = new FileDescriptorCache(null, Runnable::run);
+    fdc.setMaxSize(1);
+    File file1 = createFile("first");
+    File file2 = createFile("second");
+
+    byte[] buf = new byte[6];
+    assertEquals(5, fdc.read(file1.getPath(), file1.length(), 0, buf, 0, buf.length));
+    assertTrue(fdc.contains(file1.getPath()));
+
+    assertEquals(6, fdc.read(file2.getPath(), file2.length(), 0, buf, 0, buf.length));
+    assertFalse(fdc.contains(file1.getPath()));
+    assertTrue(fdc.contains(file2.getPath()));
+    assertEquals(1, fdc.getSize());
+
+    // reopened transparently after eviction
+    assertEquals(5, fdc.read(file1.getPath(), file1.length(), 0, buf, 0, buf.length));
+    assertEquals("first", new String(buf, 0, 5));
+  }
+
+  @Test
+  void retiredSharedFileRejectsNewReaders() throws Exception {
+    SharedFile file = new SharedFile(createFile("content"), true);
+    assertTrue(file.aboutToRead());
+    file.retire();
+
+    assertFalse(file.aboutToRead());
+    assertFalse(file.closeIfIdle());
+    assertTrue(file.doneReading());
+    assertTrue(file.closeIfIdle());
+    assertEquals(0, file.getNumReaders());
+  }
+
+  @Test
+  void concurrentPositionalReads() throws Exception {
+    FileDescriptorCache fdc = new FileDescriptorCache(null, Runnable::run);
+    String content = "0123456789abcdefghijklmnopqrstuvwxyz";
+    File file = createFile(content);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 32; i++) {
+        int offset = i % content.length();
+        results.add(
+            executor.submit(
+                () -> {
+                  byte[] buf = new byte[1];
+                  fdc.read(file.getPath(), file.length(), offset, buf, 0, 1);
+                  return new String(buf);
+                }));
+      }
+      for (int i = 0; i < results.size(); i++) {
+        assertEquals(String.valueOf(content.charAt(i % content.length())), results.get(i).get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(1, fdc.getSize());
+  }
+
+  private File createFile(String content) throws IOException {
+    File file = new File(uncompressedDir, NAME_PREFIX + "-" + content + ".msg");
+    try (OutputStream out = new FileOutputStream(file)) {
+      out.write(content.getBytes());
+    }
+    return file;
+  }
+
   private void write(File file, String content) throws IOException {
     OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
     out.write(content.getBytes());
@@ -0,0 +1,170 @@
+// SPDX-FileCopyrightText: 2022 Zextras <https://www.zextras.com>
+//
+// SPDX-License-Identifier: GPL-2.0-only
+
+package com.zimbra.soap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.zextras.mailbox.MailboxTestSuite;
+import com.zimbra.common.service.ServiceException;
+import com.zimbra.common.soap.Element;
+import com.zimbra.common.soap.HeaderConstants;
+import com.zimbra.common.soap.SoapProtocol;
+import com.zimbra.common.soap.ZimbraNamespace;
+import com.zimbra.cs.account.Account;
+import com.zimbra.cs.service.AuthProvider;
+import com.zimbra.cs.service.MockHttpServletRequest;
+import com.zimbra.cs.service.MockHttpServletResponse;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import org.dom4j.QName;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class SoapEngineTest extends MailboxTestSuite {
+
+	private static final QName PARALLEL_REQUEST =
+			QName.get("ParallelTestRequest", "urn:zimbraTest");
+	private static final QName SEQUENTIAL_REQUEST =
+			QName.get("SequentialTestRequest", "urn:zimbraTest");
+
+	private static Account account;
+
+	@BeforeAll
+	public static void init() throws Exception {
+		account = createAccount().create();
+	}
+
+	/**
+	 * Records the contexts it runs with. Requests with <tt>wait="1"</tt> wait for each other, so
+	 * they only succeed when they run concurrently. Requests with <tt>fail="1"</tt> fault.
+	 */
+	private static final class RecordingHandler extends DocumentHandler {
+		private final boolean parallelSafe;
+		private final CyclicBarrier barrier;
+		final Set<ZimbraSoapContext> contexts = ConcurrentHashMap.newKeySet();
+		final Set<Object> authTokens = ConcurrentHashMap.newKeySet();
+
+		RecordingHandler(boolean parallelSafe, int waiting) {
+			this.parallelSafe = parallelSafe;
+			this.barrier = new CyclicBarrier(waiting);
+		}
+
+		@Override
+		public boolean isBatchParallelSafe() {
+			return parallelSafe;
+		}
+
+		@Override
+		public Element handle(Element request, Map<String, Object> context)
+				throws ServiceException {
+			ZimbraSoapContext zsc = getZimbraSoapContext(context);
+			contexts.add(zsc);
+			authTokens.add(zsc.getAuthToken());
+			if (request.getAttributeBool("fail", false)) {
+				throw ServiceException.INVALID_REQUEST("failing as requested", null);
+			}
+			if (request.getAttributeBool("wait", false)) {
+				try {
+					barrier.await(10, TimeUnit.SECONDS);
+				} catch (Exception e) {
+					throw ServiceException.FAILURE("sub-requests did not run concurrently", e);
+				}
+			}
+			return getResponseElement(zsc);
+		}
+	}
+
+	private static List<Element> dispatchBatch(SoapEngine engine, Element batch) throws Exception {
+		Element header = new Element.XMLElement(HeaderConstants.CONTEXT);
+		header.addNonUniqueElement(HeaderConstants.E_AUTH_TOKEN)
+				.setText(AuthProvider.getAuthToken(account).getEncoded());
+		Element envelope = SoapProtocol.Soap12.soapEnvelope(batch, header);
+
+		Map<String, Object> context = new HashMap<>();
+		context.put(SoapServlet.SERVLET_REQUEST,
+				new MockHttpServletRequest("test".getBytes("UTF-8"),
+						new URL("http://localhost:7070/service/soap/BatchRequest"), ""));
+		context.put(SoapServlet.SERVLET_RESPONSE, new MockHttpServletResponse());
+		Element response = engine.dispatch("/service/soap/", envelope.toUTF8(), context);
+		return SoapProtocol.Soap12.getBodyElement(response).listElements();
+	}
+
+	@Test
+	void parallelSafeSubRequestsRunConcurrentlyWithTheirOwnContext() throws Exception {
+		RecordingHandler handler = new RecordingHandler(true, 3);
+		SoapEngine engine = new MockSoapEngine(
+				dispatcher -> dispatcher.registerHandler(PARALLEL_REQUEST, handler));
+
+		Element batch = new Element.XMLElement(ZimbraNamespace.E_BATCH_REQUEST);
+		batch.addAttribute(ZimbraNamespace.A_PARALLEL, true);
+		batch.addNonUniqueElement(PARALLEL_REQUEST).addAttribute("requestId", "0");
+		for (int i = 1; i <= 3; i++) {
+			batch.addNonUniqueElement(PARALLEL_REQUEST)
+					.addAttribute("requestId", Integer.toString(i))
+					.addAttribute("wait", true);
+		}
+
+		List<Element> responses = dispatchBatch(engine, batch);
+		assertEquals(4, responses.size());
+		for (int i = 0; i < responses.size(); i++) {
+			assertEquals("ParallelTestResponse", responses.get(i).getName(),
+					responses.get(i).prettyPrint());
+			assertEquals(Integer.toString(i), responses.get(i).getAttribute("requestId"));
+		}
+		assertEquals(4, handler.contexts.size(), "the sub-requests run with copies of the context");
+		assertEquals(4, handler.authTokens.size(), "the sub-requests run with copies of the token");
+	}
+
+	@Test
+	void otherSubRequestsRunSequentially() throws Exception {
+		RecordingHandler handler = new RecordingHandler(false, 1);
+		SoapEngine engine = new MockSoapEngine(
+				dispatcher -> dispatcher.registerHandler(SEQUENTIAL_REQUEST, handler));
+
+		Element batch = new Element.XMLElement(ZimbraNamespace.E_BATCH_REQUEST);
+		batch.addAttribute(ZimbraNamespace.A_PARALLEL, true);
+		for (int i = 0; i < 3; i++) {
+			batch.addNonUniqueElement(SEQUENTIAL_REQUEST)
+					.addAttribute("requestId", Integer.toString(i));
+		}
+
+		List<Element> responses = dispatchBatch(engine, batch);
+		assertEquals(3, responses.size());
+		assertEquals(1, handler.contexts.size(), "every sub-request shares the batch's context");
+	}
+
+	@Test
+	void subRequestsFollowingAFaultingFirstOneGetTheirResponses() throws Exception {
+		RecordingHandler handler = new RecordingHandler(true, 1);
+		SoapEngine engine = new MockSoapEngine(
+				dispatcher -> dispatcher.registerHandler(PARALLEL_REQUEST, handler));
+
+		Element batch = new Element.XMLElement(ZimbraNamespace.E_BATCH_REQUEST);
+		batch.addAttribute(ZimbraNamespace.A_PARALLEL, true);
+		batch.addAttribute(ZimbraNamespace.A_ONERROR, "continue");
+		batch.addNonUniqueElement(PARALLEL_REQUEST)
+				.addAttribute("requestId", "0")
+				.addAttribute("fail", true);
+		for (int i = 1; i < 3; i++) {
+			batch.addNonUniqueElement(PARALLEL_REQUEST)
+					.addAttribute("requestId", Integer.toString(i));
+		}
+
+		List<Element> responses = dispatchBatch(engine, batch);
+		assertEquals(3, responses.size());
+		assertTrue(SoapProtocol.Soap12.isFault(responses.get(0)), responses.get(0).prettyPrint());
+		for (int i = 0; i < responses.size(); i++) {
+			assertEquals(Integer.toString(i), responses.get(i).getAttribute("requestId"));
+		}
+		assertEquals("ParallelTestResponse", responses.get(1).getName());
+		assertEquals("ParallelTestResponse", responses.get(2).getName());
+	}
+}